@@ -0,0 +1,45 @@
+package com.example.Mini.Expense.Tracker.benchmark;
+
+import com.example.Mini.Expense.Tracker.model.ExpenseCategory;
+import com.example.Mini.Expense.Tracker.model.ExpenseDto;
+import com.example.Mini.Expense.Tracker.model.Money;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+
+/**
+ * Deterministic expense rows spread evenly over 2025, shared by the benchmarks so their
+ * results stay comparable between runs and releases.
+ */
+final class BenchmarkData {
+
+    static final int YEAR = 2025;
+
+    private static final String[] DESCRIPTIONS = {
+            "Lunch", "Dinner", "Groceries", "Bus ticket", "Train ticket", "Coffee", "Rent",
+            "Electricity bill", "Movie night", "Taxi", "Pharmacy", "Gym membership"
+    };
+
+    private static final ExpenseCategory[] CATEGORIES = ExpenseCategory.values();
+
+    private BenchmarkData() {
+    }
+
+    static List<ExpenseDto> expenses(int rows) {
+        Random random = new Random(42);
+        LocalDate first = LocalDate.of(YEAR, 1, 1);
+
+        List<ExpenseDto> expenses = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            expenses.add(new ExpenseDto(i + 1L,
+                    DESCRIPTIONS[random.nextInt(DESCRIPTIONS.length)],
+                    Money.toBigDecimal(100 + random.nextInt(49_901)),
+                    CATEGORIES[random.nextInt(CATEGORIES.length)],
+                    first.plusDays(random.nextInt(365))));
+        }
+        return expenses;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.Mini.Expense.Tracker.benchmark;
+
+import com.example.Mini.Expense.Tracker.model.Expense;
+import com.example.Mini.Expense.Tracker.model.ExpenseDto;
+import com.example.Mini.Expense.Tracker.service.ExpenseService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Entity to DTO mapping, as done for every row a query returns.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MappingBenchmark {
+
+    @Param({"1000"})
+    private int rows;
+
+    private final ExpenseService expenseService = new ExpenseService();
+
+    private List<Expense> expenses;
+
+
+    @Setup
+    public void setup() {
+        expenses = new ArrayList<>(rows);
+        for (ExpenseDto dto : BenchmarkData.expenses(rows)) {
+            expenses.add(new Expense(dto.getId(), dto.getDescription(), dto.getAmount(), dto.getCategory(),
+                    dto.getDate()));
+        }
+    }
+
+
+    @Benchmark
+    public void mapDto(Blackhole blackhole) {
+        for (Expense expense : expenses) {
+            blackhole.consume(expenseService.mapDto(expense));
+        }
+    }
+}
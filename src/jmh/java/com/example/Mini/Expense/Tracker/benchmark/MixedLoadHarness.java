@@ -0,0 +1,326 @@
+package com.example.Mini.Expense.Tracker.benchmark;
+
+import com.example.Mini.Expense.Tracker.MiniExpenseTrackerApplication;
+import com.example.Mini.Expense.Tracker.model.ExpenseCategory;
+import com.example.Mini.Expense.Tracker.model.ExpenseDto;
+import com.example.Mini.Expense.Tracker.service.ExpenseService;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * Sustained mixed load against the whole application: creates, reads, updates, deletes,
+ * filtered searches and monthly summaries from many concurrent clients at a fixed total
+ * request rate, with throughput and latency percentiles per operation written to a report.
+ *
+ * The application is booted on a random port with its own seeded database. Every client sends
+ * on a fixed schedule of {@code clients / rate} seconds. When the application stalls, a
+ * client falls behind its schedule and its later requests are measured from the time they
+ * were due, not the time they were finally sent. A stall therefore shows up in the
+ * percentiles for every request it delayed, not just the one that hit it (coordinated
+ * omission). The report lists that response time next to the plain service time, so the gap
+ * between the two shows how much queueing the schedule ran into.
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec \
+ *     -Dbenchmark.main=com.example.Mini.Expense.Tracker.benchmark.MixedLoadHarness \
+ *     -Dbenchmark.args="--rate=2000 --clients=100 --duration=120 --report=target/load-report.txt"
+ * </pre>
+ *
+ * Options: {@code --rate} in requests per second over all clients (500), {@code --clients}
+ * (50), {@code --warmup} and {@code --duration} in seconds (10, 60), {@code --rows} seeded when
+ * the table is empty (100000), {@code --mix} as operation:weight pairs
+ * (create:10,get:35,update:10,delete:5,filter:25,summary:15), {@code --profile} for the Spring
+ * profiles, {@code --datasource} (an in-memory H2 database) and {@code --report}
+ * (target/load-report.txt).
+ */
+public final class MixedLoadHarness {
+
+    // Latencies up to a minute at three significant digits.
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private static final String DEFAULT_MIX = "create:10,get:35,update:10,delete:5,filter:25,summary:15";
+
+    private static final ExpenseCategory[] CATEGORIES = ExpenseCategory.values();
+
+    private static final Pattern CREATED_ID = Pattern.compile("\"id\"\\s*:\\s*(\\d+)");
+
+    private enum Operation { CREATE, GET, UPDATE, DELETE, FILTER, SUMMARY }
+
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        double rate = Double.parseDouble(options.getOrDefault("rate", "500"));
+        int clients = Integer.parseInt(options.getOrDefault("clients", "50"));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "10")));
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "60")));
+        int rows = Integer.parseInt(options.getOrDefault("rows", "100000"));
+        Operation[] mix = mix(options.getOrDefault("mix", DEFAULT_MIX));
+        Path report = Path.of(options.getOrDefault("report", "target/load-report.txt"));
+
+        List<String> appArgs = new ArrayList<>(List.of("--server.port=0", "--logging.level.root=WARN",
+                "--spring.datasource.url=" + options.getOrDefault("datasource", "jdbc:h2:mem:load")));
+        if (options.containsKey("profile")) appArgs.add("--spring.profiles.active=" + options.get("profile"));
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(MiniExpenseTrackerApplication.class)
+                .run(appArgs.toArray(String[]::new))) {
+
+            long[] ids = seed(context, rows);
+            String base = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            System.out.printf("%d clients at %.0f requests/s against %s, %d expenses%n", clients, rate, base, ids.length);
+
+            Run run = new Run(base, ids, mix, clients, rate);
+            run.start();
+            Thread.sleep(warmup.toMillis());
+            run.resetStats();
+            Instant started = Instant.now();
+            Thread.sleep(duration.toMillis());
+            String text = run.report(options, started, Duration.between(started, Instant.now()));
+            run.stop();
+
+            Files.createDirectories(report.toAbsolutePath().getParent());
+            Files.writeString(report, text);
+            System.out.print(text);
+            System.out.println("Report written to " + report);
+        }
+    }
+
+
+    // The ids get and update pick from. Deletes only remove expenses a client created itself.
+    private static long[] seed(ConfigurableApplicationContext context, int rows) {
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        Integer existing = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM expenses", Integer.class);
+
+        if (existing == null || existing == 0) {
+            ExpenseService expenseService = context.getBean(ExpenseService.class);
+            List<ExpenseDto> expenses = BenchmarkData.expenses(rows);
+            for (int i = 0; i < rows; i += ExpenseService.MAX_BATCH_SIZE) {
+                expenseService.saveAll(expenses.subList(i, Math.min(i + ExpenseService.MAX_BATCH_SIZE, rows)));
+            }
+        }
+        return jdbcTemplate.queryForList("SELECT id FROM expenses", Long.class).stream()
+                .mapToLong(Long::longValue).toArray();
+    }
+
+    // One slot per unit of weight, so a uniform pick follows the mix.
+    private static Operation[] mix(String spec) {
+        List<Operation> slots = new ArrayList<>();
+        for (String part : spec.split(",")) {
+            String[] pair = part.trim().split(":");
+            Operation operation = Operation.valueOf(pair[0].trim().toUpperCase(Locale.ROOT));
+            for (int i = Integer.parseInt(pair[1].trim()); i > 0; i--) slots.add(operation);
+        }
+        if (slots.isEmpty()) throw new IllegalArgumentException("Empty mix: " + spec);
+        return slots.toArray(Operation[]::new);
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        return options;
+    }
+
+
+    private static final class Stats {
+
+        // From the time the request was due: what a user arriving on schedule would have seen.
+        final Histogram responseTime = new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, 3);
+        // From the time the request was actually sent.
+        final Histogram serviceTime = new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, 3);
+        final AtomicLong errors = new AtomicLong();
+
+        void reset() {
+            responseTime.reset();
+            serviceTime.reset();
+            errors.set(0);
+        }
+    }
+
+    private static final class Run {
+
+        private final String base;
+        private final long[] ids;
+        private final Operation[] mix;
+        private final long intervalNanos;
+        private final HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        private final Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+        private final List<Thread> threads = new ArrayList<>();
+        private final CountDownLatch stopped;
+        private volatile boolean running = true;
+
+        Run(String base, long[] ids, Operation[] mix, int clients, double rate) {
+            this.base = base;
+            this.ids = ids;
+            this.mix = mix;
+            this.intervalNanos = (long) (clients * 1e9 / rate);
+            this.stopped = new CountDownLatch(clients);
+            for (Operation operation : Operation.values()) stats.put(operation, new Stats());
+            for (int i = 0; i < clients; i++) threads.add(new Thread(this::client, "load-client-" + i));
+        }
+
+        void start() {
+            threads.forEach(Thread::start);
+        }
+
+        void stop() throws InterruptedException {
+            running = false;
+            stopped.await();
+        }
+
+        void resetStats() {
+            stats.values().forEach(Stats::reset);
+        }
+
+        private void client() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Deque<Long> created = new ArrayDeque<>();
+            // Spread the clients' schedules over one interval instead of starting them together.
+            long due = System.nanoTime() + random.nextLong(intervalNanos);
+
+            while (running) {
+                long wait = due - System.nanoTime();
+                if (wait > 0) LockSupport.parkNanos(wait);
+
+                Operation operation = mix[random.nextInt(mix.length)];
+                if (operation == Operation.DELETE && created.isEmpty()) operation = Operation.CREATE;
+
+                long sent = System.nanoTime();
+                boolean ok;
+                try {
+                    ok = send(operation, random, created);
+                } catch (IOException e) {
+                    ok = false;
+                } catch (InterruptedException e) {
+                    break;
+                }
+                long done = System.nanoTime();
+
+                Stats operationStats = stats.get(operation);
+                if (ok) {
+                    operationStats.responseTime.recordValue(Math.min(done - due, HIGHEST_TRACKABLE_NANOS));
+                    operationStats.serviceTime.recordValue(Math.min(done - sent, HIGHEST_TRACKABLE_NANOS));
+                } else {
+                    operationStats.errors.incrementAndGet();
+                }
+                // The next request is due one interval after this one was, however late it went out.
+                due += intervalNanos;
+            }
+            stopped.countDown();
+        }
+
+        private boolean send(Operation operation, ThreadLocalRandom random, Deque<Long> created)
+                throws IOException, InterruptedException {
+            LocalDate day = LocalDate.ofYearDay(BenchmarkData.YEAR, 1 + random.nextInt(365));
+
+            HttpRequest request = switch (operation) {
+                case CREATE -> json(HttpRequest.newBuilder(uri("/expenses")), "POST", body(random, day));
+                case GET -> HttpRequest.newBuilder(uri("/expenses/" + ids[random.nextInt(ids.length)])).build();
+                case UPDATE -> json(HttpRequest.newBuilder(uri("/expenses/" + ids[random.nextInt(ids.length)])),
+                        "PUT", body(random, day));
+                case DELETE -> HttpRequest.newBuilder(uri("/expenses/" + created.pop())).DELETE().build();
+                case FILTER -> HttpRequest.newBuilder(uri("/expenses?from=" + day.withDayOfMonth(1)
+                        + "&to=" + day.withDayOfMonth(day.lengthOfMonth())
+                        + "&category=" + CATEGORIES[random.nextInt(CATEGORIES.length)])).build();
+                case SUMMARY -> HttpRequest.newBuilder(uri("/expenses/summary?year=" + day.getYear()
+                        + "&month=" + day.getMonthValue())).build();
+            };
+
+            if (operation == Operation.CREATE) {
+                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() >= 400) return false;
+                // With expense.ingest.mode=async the body is a tracking id, and there is nothing to delete yet.
+                Matcher id = CREATED_ID.matcher(response.body());
+                if (id.find()) created.push(Long.parseLong(id.group(1)));
+                return true;
+            }
+            return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() < 400;
+        }
+
+        private URI uri(String path) {
+            return URI.create(base + path);
+        }
+
+        private static HttpRequest json(HttpRequest.Builder builder, String method, String body) {
+            return builder.header("Content-Type", "application/json")
+                    .method(method, HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+        }
+
+        private static String body(ThreadLocalRandom random, LocalDate day) {
+            return "{\"description\":\"Load test\",\"amount\":" + (1 + random.nextInt(500)) + "." + random.nextInt(10)
+                    + "0,\"category\":\"" + CATEGORIES[random.nextInt(CATEGORIES.length)] + "\",\"date\":\"" + day + "\"}";
+        }
+
+        String report(Map<String, String> options, Instant started, Duration elapsed) {
+            StringWriter text = new StringWriter();
+            PrintWriter out = new PrintWriter(text);
+            double seconds = elapsed.toNanos() / 1e9;
+
+            out.printf("Mixed load from %s for %.1fs, options %s%n", started, seconds, options);
+            out.printf("Response time is measured from when a request was due, service time from when it was sent.%n%n");
+            out.printf("%-8s %10s %8s %10s %10s %10s %10s %10s %10s %10s%n", "op", "requests/s", "errors",
+                    "p50 ms", "p99 ms", "p99.9 ms", "max ms", "svc p50", "svc p99", "svc p99.9");
+
+            Histogram allResponses = new Histogram(HIGHEST_TRACKABLE_NANOS, 3);
+            Histogram allServices = new Histogram(HIGHEST_TRACKABLE_NANOS, 3);
+            long allErrors = 0;
+            for (Map.Entry<Operation, Stats> entry : stats.entrySet()) {
+                Stats operationStats = entry.getValue();
+                Histogram response = operationStats.responseTime.copy();
+                Histogram service = operationStats.serviceTime.copy();
+                allResponses.add(response);
+                allServices.add(service);
+                allErrors += operationStats.errors.get();
+                line(out, entry.getKey().name().toLowerCase(Locale.ROOT), response, service,
+                        operationStats.errors.get(), seconds);
+            }
+            line(out, "all", allResponses, allServices, allErrors, seconds);
+            out.flush();
+            return text.toString();
+        }
+
+        private static void line(PrintWriter out, String name, Histogram response, Histogram service, long errors,
+                                 double seconds) {
+            out.printf("%-8s %10.1f %8d %10.2f %10.2f %10.2f %10.2f %10.2f %10.2f %10.2f%n", name,
+                    response.getTotalCount() / seconds, errors,
+                    millis(response, 50), millis(response, 99), millis(response, 99.9), response.getMaxValue() / 1e6,
+                    millis(service, 50), millis(service, 99), millis(service, 99.9));
+        }
+
+        private static double millis(Histogram histogram, double percentile) {
+            return histogram.getTotalCount() == 0 ? Double.NaN : histogram.getValueAtPercentile(percentile) / 1e6;
+        }
+    }
+}
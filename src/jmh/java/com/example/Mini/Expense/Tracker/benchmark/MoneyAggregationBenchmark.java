@@ -0,0 +1,103 @@
+package com.example.Mini.Expense.Tracker.benchmark;
+
+import com.example.Mini.Expense.Tracker.model.Money;
+import com.example.Mini.Expense.Tracker.model.MoneyAccumulator;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Month and year totals over in-memory rows, summed as {@link BigDecimal} and as cents.
+ * Run with {@code -prof gc} to compare allocation rates; the cents variants should report
+ * close to zero bytes per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MoneyAggregationBenchmark {
+
+    @Param({"1000000"})
+    private int rows;
+
+    private BigDecimal[] amounts;
+    private long[] amountCents;
+    private int[] epochDays;
+
+    private int monthFrom;
+    private int monthTo;
+    private int yearFrom;
+    private int yearTo;
+
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        int firstDay = (int) LocalDate.of(2025, 1, 1).toEpochDay();
+
+        amounts = new BigDecimal[rows];
+        amountCents = new long[rows];
+        epochDays = new int[rows];
+
+        for (int i = 0; i < rows; i++) {
+            // 1.00 to 500.00, like the amounts the API accepts in practice.
+            long cents = 100 + random.nextInt(49_901);
+            amountCents[i] = cents;
+            amounts[i] = Money.toBigDecimal(cents);
+            epochDays[i] = firstDay + random.nextInt(365);
+        }
+
+        YearMonth june = YearMonth.of(2025, 6);
+        monthFrom = (int) june.atDay(1).toEpochDay();
+        monthTo = (int) june.atEndOfMonth().toEpochDay();
+        yearFrom = firstDay;
+        yearTo = (int) LocalDate.of(2025, 12, 31).toEpochDay();
+    }
+
+
+    @Benchmark
+    public BigDecimal monthBigDecimal() {
+        return sumBigDecimal(monthFrom, monthTo);
+    }
+
+    @Benchmark
+    public BigDecimal monthCents() {
+        return sumCents(monthFrom, monthTo);
+    }
+
+    @Benchmark
+    public BigDecimal yearBigDecimal() {
+        return sumBigDecimal(yearFrom, yearTo);
+    }
+
+    @Benchmark
+    public BigDecimal yearCents() {
+        return sumCents(yearFrom, yearTo);
+    }
+
+
+    private BigDecimal sumBigDecimal(int from, int to) {
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < rows; i++) {
+            int day = epochDays[i];
+            if (day >= from && day <= to) total = total.add(amounts[i]);
+        }
+        return total;
+    }
+
+    private BigDecimal sumCents(int from, int to) {
+        MoneyAccumulator total = new MoneyAccumulator();
+        for (int i = 0; i < rows; i++) {
+            int day = epochDays[i];
+            if (day >= from && day <= to) total.add(amountCents[i]);
+        }
+        return total.toBigDecimal();
+    }
+}
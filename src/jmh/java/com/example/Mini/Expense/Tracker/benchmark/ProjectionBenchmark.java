@@ -0,0 +1,117 @@
+package com.example.Mini.Expense.Tracker.benchmark;
+
+import com.example.Mini.Expense.Tracker.MiniExpenseTrackerApplication;
+import com.example.Mini.Expense.Tracker.model.Expense;
+import com.example.Mini.Expense.Tracker.model.ExpenseCategory;
+import com.example.Mini.Expense.Tracker.model.ExpenseDto;
+import com.example.Mini.Expense.Tracker.repository.ExpenseRepository;
+import com.example.Mini.Expense.Tracker.service.ExpenseService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * One filteredSearch response of {@code rows} expenses, read three ways: as managed entities
+ * mapped to dtos (the previous implementation), as read-only entities, and as the JPQL
+ * constructor projection {@link ExpenseRepository#filteredSearch} now uses.
+ *
+ * Run with {@code -prof gc}: the difference in bytes per operation is the persistence-context
+ * registration and snapshot cost per row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProjectionBenchmark {
+
+    private static final int SEED_CHUNK = 10_000;
+
+    @Param({"10000"})
+    private int rows;
+
+    private ConfigurableApplicationContext context;
+    private ExpenseService expenseService;
+    private ExpenseRepository repository;
+    private EntityManager entityManager;
+    private TransactionTemplate readWrite;
+    private TransactionTemplate readOnly;
+
+    private final LocalDate from = LocalDate.of(BenchmarkData.YEAR, 1, 1);
+    private final LocalDate to = LocalDate.of(BenchmarkData.YEAR, 12, 31);
+
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new SpringApplicationBuilder(MiniExpenseTrackerApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:projection-" + rows, "--logging.level.root=WARN");
+
+        expenseService = context.getBean(ExpenseService.class);
+        repository = context.getBean(ExpenseRepository.class);
+        entityManager = SharedEntityManagerCreator.createSharedEntityManager(
+                context.getBean(EntityManagerFactory.class));
+
+        PlatformTransactionManager transactionManager = context.getBean(PlatformTransactionManager.class);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        // Every row in one category, so a single query returns all of them.
+        List<ExpenseDto> expenses = BenchmarkData.expenses(rows);
+        expenses.forEach(expense -> expense.setCategory(ExpenseCategory.FOOD));
+        for (int i = 0; i < rows; i += SEED_CHUNK) {
+            expenseService.saveAll(expenses.subList(i, Math.min(i + SEED_CHUNK, rows)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+
+    @Benchmark
+    public List<ExpenseDto> managedEntities() {
+        return readWrite.execute(status -> entitiesToDtos());
+    }
+
+    @Benchmark
+    public List<ExpenseDto> readOnlyEntities() {
+        return readOnly.execute(status -> entitiesToDtos());
+    }
+
+    @Benchmark
+    public List<ExpenseDto> dtoProjection() {
+        return repository.filteredSearch(Expense.DEFAULT_USER_ID, from, to, ExpenseCategory.FOOD);
+    }
+
+
+    @SuppressWarnings("unchecked")
+    private List<ExpenseDto> entitiesToDtos() {
+        List<Expense> expenses = entityManager.createNativeQuery(ExpenseRepository.FILTERED_SEARCH_QUERY, Expense.class)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .setParameter("categoryName", ExpenseCategory.FOOD.name())
+                .getResultList();
+
+        List<ExpenseDto> dtos = new ArrayList<>(expenses.size());
+        for (Expense expense : expenses) {
+            dtos.add(expenseService.mapDto(expense));
+        }
+        return dtos;
+    }
+}
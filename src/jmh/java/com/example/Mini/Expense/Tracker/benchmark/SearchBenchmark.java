@@ -0,0 +1,86 @@
+package com.example.Mini.Expense.Tracker.benchmark;
+
+import com.example.Mini.Expense.Tracker.MiniExpenseTrackerApplication;
+import com.example.Mini.Expense.Tracker.model.Expense;
+import com.example.Mini.Expense.Tracker.model.ExpenseCategory;
+import com.example.Mini.Expense.Tracker.model.ExpenseDto;
+import com.example.Mini.Expense.Tracker.service.ExpenseService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * {@code GET /expenses/search} for a word in one of every twelve expenses ({@code taxi}) and
+ * one in one of every thousand ({@code refund}), answered by the inverted index and by the
+ * {@code LIKE '%word%'} scan it replaces. Both return the newest {@code limit} matches as dtos.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    private static final int SEED_CHUNK = 10_000;
+    private static final int RARE_EVERY = 1000;
+
+    private static final String LIKE_QUERY = "SELECT id, description, amount, category, date, version" +
+            " FROM expenses WHERE user_id = ? AND LOWER(description) LIKE ? ORDER BY date DESC, id DESC LIMIT ?";
+
+    @Param({"100000"})
+    private int rows;
+
+    @Param({"taxi", "refund"})
+    private String word;
+
+    @Param({"100"})
+    private int limit;
+
+    private ConfigurableApplicationContext context;
+    private ExpenseService expenseService;
+    private JdbcTemplate jdbcTemplate;
+
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new SpringApplicationBuilder(MiniExpenseTrackerApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:search-" + rows, "--logging.level.root=WARN");
+
+        expenseService = context.getBean(ExpenseService.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+
+        List<ExpenseDto> expenses = BenchmarkData.expenses(rows);
+        for (int i = 0; i < rows; i += RARE_EVERY) {
+            expenses.get(i).setDescription("Pharmacy refund");
+        }
+        for (int i = 0; i < rows; i += SEED_CHUNK) {
+            expenseService.saveAll(expenses.subList(i, Math.min(i + SEED_CHUNK, rows)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+
+    @Benchmark
+    public List<ExpenseDto> invertedIndex() {
+        return expenseService.search(word, Expense.DEFAULT_USER_ID, null, null, null, limit);
+    }
+
+    @Benchmark
+    public List<ExpenseDto> likeScan() {
+        return jdbcTemplate.query(LIKE_QUERY, (rs, row) -> new ExpenseDto(rs.getLong(1), rs.getString(2),
+                rs.getBigDecimal(3), ExpenseCategory.valueOf(rs.getString(4)), rs.getDate(5).toLocalDate(),
+                rs.getLong(6)), Expense.DEFAULT_USER_ID, "%" + word + "%", limit);
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.Mini.Expense.Tracker.benchmark;
+
+import com.example.Mini.Expense.Tracker.controller.ExpenseJsonSerializers;
+import com.example.Mini.Expense.Tracker.model.CategorySumDto;
+import com.example.Mini.Expense.Tracker.model.ExpenseCategory;
+import com.example.Mini.Expense.Tracker.model.ExpenseDto;
+import com.example.Mini.Expense.Tracker.model.Money;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Jackson serialization of the response bodies of GET /expenses and GET /expenses/summary,
+ * with the mapper configured the way Spring Boot configures it by default, once with Jackson's
+ * bean serializers and once with the pre-encoded ones in {@link ExpenseJsonSerializers}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"100", "10000"})
+    private int rows;
+
+    private List<ExpenseDto> expenses;
+    private List<CategorySumDto> summary;
+
+    private ObjectWriter expenseWriter;
+    private ObjectWriter summaryWriter;
+    private ObjectWriter preEncodedExpenseWriter;
+    private ObjectWriter preEncodedSummaryWriter;
+
+
+    @Setup
+    public void setup() {
+        expenses = BenchmarkData.expenses(rows);
+
+        summary = new ArrayList<>();
+        for (ExpenseCategory category : ExpenseCategory.values()) {
+            summary.add(new CategorySumDto(category.name(), Money.toBigDecimal(1_234_567)));
+        }
+
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        TypeFactory types = objectMapper.getTypeFactory();
+        expenseWriter = objectMapper.writerFor(types.constructCollectionType(List.class, ExpenseDto.class));
+        summaryWriter = objectMapper.writerFor(types.constructCollectionType(List.class, CategorySumDto.class));
+
+        ObjectMapper preEncodedMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .serializers(new ExpenseJsonSerializers.ExpenseDtoSerializer(),
+                        new ExpenseJsonSerializers.CategorySumDtoSerializer())
+                .build();
+        preEncodedExpenseWriter = preEncodedMapper.writerFor(types.constructCollectionType(List.class, ExpenseDto.class));
+        preEncodedSummaryWriter = preEncodedMapper.writerFor(types.constructCollectionType(List.class, CategorySumDto.class));
+    }
+
+
+    @Benchmark
+    public byte[] expenseList() throws JsonProcessingException {
+        return expenseWriter.writeValueAsBytes(expenses);
+    }
+
+    @Benchmark
+    public byte[] categorySummary() throws JsonProcessingException {
+        return summaryWriter.writeValueAsBytes(summary);
+    }
+
+    @Benchmark
+    public byte[] expenseListPreEncoded() throws JsonProcessingException {
+        return preEncodedExpenseWriter.writeValueAsBytes(expenses);
+    }
+
+    @Benchmark
+    public byte[] categorySummaryPreEncoded() throws JsonProcessingException {
+        return preEncodedSummaryWriter.writeValueAsBytes(summary);
+    }
+}
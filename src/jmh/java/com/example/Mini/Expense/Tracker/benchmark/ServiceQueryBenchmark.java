@@ -0,0 +1,89 @@
+package com.example.Mini.Expense.Tracker.benchmark;
+
+import com.example.Mini.Expense.Tracker.MiniExpenseTrackerApplication;
+import com.example.Mini.Expense.Tracker.model.CategorySumDto;
+import com.example.Mini.Expense.Tracker.model.Expense;
+import com.example.Mini.Expense.Tracker.model.ExpenseCategory;
+import com.example.Mini.Expense.Tracker.model.ExpenseDto;
+import com.example.Mini.Expense.Tracker.service.ExpenseService;
+import com.example.Mini.Expense.Tracker.service.MonthlyRollupService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * {@link ExpenseService} reads against an embedded H2 database seeded with {@code rows}
+ * expenses through the regular write path, for each analytics engine.
+ *
+ * categorySum is served from the summary cache after the first call, so the rollup read
+ * behind it is measured separately.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServiceQueryBenchmark {
+
+    private static final int SEED_CHUNK = 10_000;
+
+    @Param({"10000", "100000"})
+    private int rows;
+
+    @Param({"database", "columnar"})
+    private String engine;
+
+    private ConfigurableApplicationContext context;
+    private ExpenseService expenseService;
+    private MonthlyRollupService rollupService;
+
+    private final LocalDate from = LocalDate.of(BenchmarkData.YEAR, 6, 1);
+    private final LocalDate to = LocalDate.of(BenchmarkData.YEAR, 6, 30);
+
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new SpringApplicationBuilder(MiniExpenseTrackerApplication.class)
+                .web(WebApplicationType.NONE)
+                // Arguments rather than default properties, which application.properties would override.
+                .run("--spring.datasource.url=jdbc:h2:mem:bench-" + engine + "-" + rows,
+                        "--expense.analytics.engine=" + engine,
+                        "--logging.level.root=WARN");
+
+        expenseService = context.getBean(ExpenseService.class);
+        rollupService = context.getBean(MonthlyRollupService.class);
+
+        List<ExpenseDto> expenses = BenchmarkData.expenses(rows);
+        for (int i = 0; i < rows; i += SEED_CHUNK) {
+            expenseService.saveAll(expenses.subList(i, Math.min(i + SEED_CHUNK, rows)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+
+    @Benchmark
+    public List<ExpenseDto> filteredSearch() {
+        return expenseService.filteredSearch(Expense.DEFAULT_USER_ID, from, to, ExpenseCategory.FOOD);
+    }
+
+    @Benchmark
+    public List<CategorySumDto> categorySum() {
+        return expenseService.categorySum(BenchmarkData.YEAR, 6);
+    }
+
+    @Benchmark
+    public List<CategorySumDto> categorySumRollup() {
+        return rollupService.categorySum(BenchmarkData.YEAR, 6);
+    }
+}
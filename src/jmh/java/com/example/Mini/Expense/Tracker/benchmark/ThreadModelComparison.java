@@ -0,0 +1,188 @@
+package com.example.Mini.Expense.Tracker.benchmark;
+
+import com.example.Mini.Expense.Tracker.MiniExpenseTrackerApplication;
+import com.example.Mini.Expense.Tracker.model.ExpenseDto;
+import com.example.Mini.Expense.Tracker.service.ExpenseService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Throughput and tail latency of the default platform-thread Tomcat pool against the
+ * virtual-threads profile, under a fixed number of concurrent closed-loop clients.
+ *
+ * Each mode boots the application on a random port with its own seeded database. Every client
+ * keeps exactly one request in flight, so what is compared is how each model copes once
+ * concurrency exceeds its worker threads. JMH is not used: it drives threads, not sockets.
+ *
+ * <pre>
+ * mvn -Pbenchmark,java21 test-compile exec:exec \
+ *     -Dbenchmark.main=com.example.Mini.Expense.Tracker.benchmark.ThreadModelComparison \
+ *     -Dbenchmark.args="--clients=1000 --duration=30 --datasource=jdbc:postgresql://localhost/expenses"
+ * </pre>
+ *
+ * Options: {@code --clients} (1000), {@code --warmup} and {@code --duration} in seconds
+ * (10, 30), {@code --rows} seeded when the table is empty (100000), {@code --path}
+ * requested by every client, and {@code --datasource} (an in-memory H2 database per mode).
+ */
+public final class ThreadModelComparison {
+
+    private static final int MAX_SAMPLES = 5_000_000;
+
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        int clients = Integer.parseInt(options.getOrDefault("clients", "1000"));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup", "10")));
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration", "30")));
+        int rows = Integer.parseInt(options.getOrDefault("rows", "100000"));
+        String path = options.getOrDefault("path", "/expenses?from=2025-06-01&to=2025-06-30&category=FOOD");
+
+        List<Result> results = new ArrayList<>();
+        results.add(run("platform", null, options.get("datasource"), rows, clients, warmup, duration, path));
+
+        if (Runtime.version().feature() >= 21) {
+            results.add(run("virtual", "virtual-threads", options.get("datasource"), rows, clients, warmup,
+                    duration, path));
+        } else {
+            System.out.println("Skipping virtual threads: running on Java " + Runtime.version().feature());
+        }
+
+        System.out.printf("%n%d clients, %ds, GET %s%n", clients, duration.toSeconds(), path);
+        System.out.printf("%-10s %12s %10s %10s %10s %10s %10s %10s%n",
+                "mode", "requests/s", "errors", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "samples");
+        for (Result result : results) {
+            System.out.printf("%-10s %12.1f %10d %10.2f %10.2f %10.2f %10.2f %10d%n",
+                    result.mode, result.throughput, result.errors, result.percentile(0.50),
+                    result.percentile(0.99), result.percentile(0.999), result.percentile(1.0), result.count);
+        }
+    }
+
+
+    private static Result run(String mode, String profile, String datasource, int rows, int clients,
+                              Duration warmup, Duration duration, String path) throws Exception {
+        List<String> args = new ArrayList<>(List.of("--server.port=0", "--logging.level.root=WARN",
+                "--spring.datasource.url=" + (datasource != null ? datasource : "jdbc:h2:mem:threads-" + mode)));
+        if (profile != null) args.add("--spring.profiles.active=" + profile);
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(MiniExpenseTrackerApplication.class)
+                .run(args.toArray(String[]::new))) {
+
+            seed(context, rows);
+            String port = context.getEnvironment().getProperty("local.server.port");
+            URI uri = URI.create("http://localhost:" + port + path);
+
+            System.out.printf("%s: %d clients against %s%n", mode, clients, uri);
+            return drive(mode, uri, clients, warmup, duration);
+        }
+    }
+
+    private static void seed(ConfigurableApplicationContext context, int rows) {
+        ExpenseService expenseService = context.getBean(ExpenseService.class);
+
+        Integer existing = context.getBean(JdbcTemplate.class)
+                .queryForObject("SELECT COUNT(*) FROM expenses", Integer.class);
+        if (existing != null && existing > 0) return;
+
+        List<ExpenseDto> expenses = BenchmarkData.expenses(rows);
+        for (int i = 0; i < rows; i += ExpenseService.MAX_BATCH_SIZE) {
+            expenseService.saveAll(expenses.subList(i, Math.min(i + ExpenseService.MAX_BATCH_SIZE, rows)));
+        }
+    }
+
+    private static Result drive(String mode, URI uri, int clients, Duration warmup, Duration duration)
+            throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(60)).GET().build();
+
+        long[] samples = new long[MAX_SAMPLES];
+        AtomicInteger recorded = new AtomicInteger();
+        AtomicLong errors = new AtomicLong();
+        AtomicBoolean recording = new AtomicBoolean();
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch stopped = new CountDownLatch(clients);
+
+        for (int i = 0; i < clients; i++) {
+            new ClosedLoopClient(client, request, samples, recorded, errors, recording, running, stopped).next();
+        }
+
+        Thread.sleep(warmup.toMillis());
+        recording.set(true);
+        long started = System.nanoTime();
+        Thread.sleep(duration.toMillis());
+        recording.set(false);
+        long elapsed = System.nanoTime() - started;
+
+        running.set(false);
+        stopped.await();
+
+        int count = Math.min(recorded.get(), MAX_SAMPLES);
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        return new Result(mode, count * 1e9 / elapsed, errors.get(), sorted, count);
+    }
+
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        return options;
+    }
+
+
+    private record ClosedLoopClient(HttpClient client, HttpRequest request, long[] samples, AtomicInteger recorded,
+                                    AtomicLong errors, AtomicBoolean recording, AtomicBoolean running,
+                                    CountDownLatch stopped) {
+
+        void next() {
+            if (!running.get()) {
+                stopped.countDown();
+                return;
+            }
+
+            long sent = System.nanoTime();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+                long latency = System.nanoTime() - sent;
+
+                if (recording.get()) {
+                    if (failure != null || response.statusCode() >= 400) {
+                        errors.incrementAndGet();
+                    } else {
+                        int slot = recorded.getAndIncrement();
+                        if (slot < samples.length) samples[slot] = latency;
+                    }
+                }
+                next();
+            });
+        }
+    }
+
+    private record Result(String mode, double throughput, long errors, long[] sorted, int count) {
+
+        double percentile(double quantile) {
+            if (count == 0) return Double.NaN;
+            int index = (int) Math.min(count - 1, Math.ceil(quantile * count) - 1);
+            return sorted[Math.max(0, index)] / 1e6;
+        }
+    }
+}
@@ -2,8 +2,10 @@ package com.example.Mini.Expense.Tracker;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class MiniExpenseTrackerApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,326 @@
+package com.example.Mini.Expense.Tracker.analytics;
+
+import com.example.Mini.Expense.Tracker.model.CategorySumDto;
+import com.example.Mini.Expense.Tracker.model.ExpenseCategory;
+import com.example.Mini.Expense.Tracker.model.ExpenseDto;
+import com.example.Mini.Expense.Tracker.model.Money;
+import com.example.Mini.Expense.Tracker.model.MoneyAccumulator;
+import com.example.Mini.Expense.Tracker.service.ExpenseChangedEvent;
+import com.example.Mini.Expense.Tracker.service.VersionStamps;
+import com.example.Mini.Expense.Tracker.sharding.ShardRouter;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+
+/**
+ * In-process, column-oriented mirror of the expenses table for analytics queries.
+ *
+ * Each expense is one row index across parallel primitive arrays: owner, amount in cents, date
+ * as epoch day, category as the {@link ExpenseCategory} ordinal and description as a code
+ * into a dictionary. Filters and monthly sums are single passes over the date and category
+ * columns that only touch the other columns for matching rows.
+ *
+ * The store holds the expenses of every shard. It is loaded once at startup and then follows
+ * committed writes through {@link ExpenseChangedEvent}. Listeners of concurrent commits can run
+ * in any order, so every row keeps its version and an event older than what the store holds is
+ * ignored. Deleted ids keep a tombstone with their last version until restart, so a late update
+ * cannot bring a deleted expense back. Events for writes that raced the initial load are
+ * harmless for the same reason.
+ *
+ * Enabled with {@code expense.analytics.engine=columnar}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "expense.analytics.engine", havingValue = "columnar")
+public class ColumnarExpenseStore {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int LOAD_FETCH_SIZE = 1000;
+
+    private static final ExpenseCategory[] CATEGORIES = ExpenseCategory.values();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private long[] userIds = new long[INITIAL_CAPACITY];
+    private long[] amountCents = new long[INITIAL_CAPACITY];
+    private int[] epochDays = new int[INITIAL_CAPACITY];
+    private byte[] categories = new byte[INITIAL_CAPACITY];
+    private int[] descriptionCodes = new int[INITIAL_CAPACITY];
+    private long[] versions = new long[INITIAL_CAPACITY];
+    private int size;
+
+    private final Map<Long, Integer> rowById = new HashMap<>();
+
+    // Ids are never reused, so like descriptions, tombstones stay until restart.
+    private final Map<Long, Long> deletedVersions = new HashMap<>();
+
+    // Codes are never reused, so descriptions of deleted rows stay until restart.
+    private final List<String> descriptions = new ArrayList<>();
+    private final Map<String, Integer> descriptionCodeByValue = new HashMap<>();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+
+    /**
+     * Replaces the contents with a fresh scan of the table. The write lock is held for the
+     * whole scan, so commits that land meanwhile are applied right after it.
+     */
+    @PostConstruct
+    public void load() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        lock.writeLock().lock();
+        try {
+            long started = System.nanoTime();
+            size = 0;
+            rowById.clear();
+            descriptions.clear();
+            descriptionCodeByValue.clear();
+
+            // Postgres only honours the fetch size inside a transaction.
+            shardRouter.forEachShard(shard -> readOnly.executeWithoutResult(status -> {
+                JdbcTemplate cursor = new JdbcTemplate(jdbcTemplate.getDataSource());
+                cursor.setFetchSize(LOAD_FETCH_SIZE);
+                cursor.query("SELECT id, user_id, description, amount, category, date, version FROM expenses", rs -> {
+                    upsertRow(rs.getLong(1), rs.getLong(2), rs.getString(3), rs.getBigDecimal(4),
+                            ExpenseCategory.valueOf(rs.getString(5)), rs.getDate(6).toLocalDate(), rs.getLong(7));
+                });
+            }));
+
+            log.info("Loaded {} expenses into the columnar store in {} ms", size,
+                    (System.nanoTime() - started) / 1_000_000);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Order(VersionStamps.BEFORE_STAMPS)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onExpenseChanged(ExpenseChangedEvent event) {
+        if (event.getCurrent() != null) {
+            upsert(event.getCurrent());
+        } else {
+            remove(event.getPrevious().getId(), event.getPrevious().getVersion());
+        }
+    }
+
+    /**
+     * Stores the expense unless the store already has a newer version of it, or it was deleted.
+     */
+    public void upsert(ExpenseDto expense) {
+        lock.writeLock().lock();
+        try {
+            upsertRow(expense.getId(), expense.getUserId(), expense.getDescription(), expense.getAmount(),
+                    expense.getCategory(), expense.getDate(), expense.getVersion());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the expense deleted at the given version, unless the store has a newer one.
+     */
+    public void remove(long id, long version) {
+        lock.writeLock().lock();
+        try {
+            deletedVersions.merge(id, version, Math::max);
+
+            Integer row = rowById.get(id);
+            if (row == null || versions[row] > version) return;
+            rowById.remove(id);
+
+            // Move the last row into the hole so the columns stay dense.
+            int last = --size;
+            if (row != last) {
+                ids[row] = ids[last];
+                userIds[row] = userIds[last];
+                amountCents[row] = amountCents[last];
+                epochDays[row] = epochDays[last];
+                categories[row] = categories[last];
+                descriptionCodes[row] = descriptionCodes[last];
+                versions[row] = versions[last];
+                rowById.put(ids[row], row);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Expenses of one user and category dated within [from, to], ordered by date and id.
+     */
+    public List<ExpenseDto> filteredSearch(long userId, LocalDate from, LocalDate to, ExpenseCategory category) {
+        int fromDay = (int) from.toEpochDay();
+        int toDay = (int) to.toEpochDay();
+        byte code = (byte) category.ordinal();
+
+        lock.readLock().lock();
+        try {
+            int[] matches = new int[16];
+            int found = 0;
+
+            for (int row = 0; row < size; row++) {
+                int day = epochDays[row];
+                if (day >= fromDay && day <= toDay && categories[row] == code && userIds[row] == userId) {
+                    if (found == matches.length) matches = Arrays.copyOf(matches, found * 2);
+                    matches[found++] = row;
+                }
+            }
+
+            // (epoch day, id) packed into one sortable long; ids stay well below 2^40.
+            long[] keys = new long[found];
+            for (int i = 0; i < found; i++) {
+                int row = matches[i];
+                keys[i] = ((long) epochDays[row] << 40) | ids[row];
+            }
+            Arrays.sort(keys);
+
+            List<ExpenseDto> result = new ArrayList<>(found);
+            for (long key : keys) {
+                int row = rowById.get(key & ((1L << 40) - 1));
+                result.add(new ExpenseDto(ids[row], descriptions.get(descriptionCodes[row]),
+                        Money.toBigDecimal(amountCents[row]), category,
+                        LocalDate.ofEpochDay(epochDays[row]), 0, userId));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Per-category totals for one calendar month, ordered by category name like the rollup.
+     */
+    public List<CategorySumDto> categorySum(int year, int month) {
+        YearMonth period = YearMonth.of(year, month);
+        int fromDay = (int) period.atDay(1).toEpochDay();
+        int toDay = (int) period.atEndOfMonth().toEpochDay();
+
+        MoneyAccumulator[] sums = new MoneyAccumulator[CATEGORIES.length];
+        for (int i = 0; i < sums.length; i++) sums[i] = new MoneyAccumulator();
+
+        lock.readLock().lock();
+        try {
+            for (int row = 0; row < size; row++) {
+                int day = epochDays[row];
+                if (day >= fromDay && day <= toDay) {
+                    sums[categories[row]].add(amountCents[row]);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<CategorySumDto> dtos = new ArrayList<>();
+        for (ExpenseCategory category : CATEGORIES) {
+            MoneyAccumulator sum = sums[category.ordinal()];
+            if (sum.count() > 0) dtos.add(new CategorySumDto(category.name(), sum.toBigDecimal()));
+        }
+        dtos.sort(Comparator.comparing(CategorySumDto::getCategory));
+        return dtos;
+    }
+
+    /**
+     * Totals in cents per category and bucket over [from, to], in one pass over the date,
+     * category and amount columns.
+     *
+     * @param start first day of the first bucket, on or before from
+     * @param category the only category to count, or null for all
+     * @return {@code buckets} totals per category ordinal, category after category
+     */
+    public long[] histogram(LocalDate from, LocalDate to, LocalDate start, int bucketDays, int buckets,
+                            ExpenseCategory category) {
+        int fromDay = (int) from.toEpochDay();
+        int toDay = (int) to.toEpochDay();
+        int startDay = (int) start.toEpochDay();
+        int only = category == null ? -1 : category.ordinal();
+
+        long[] totals = new long[CATEGORIES.length * buckets];
+
+        lock.readLock().lock();
+        try {
+            for (int row = 0; row < size; row++) {
+                int day = epochDays[row];
+                if (day >= fromDay && day <= toDay && (only < 0 || categories[row] == only)) {
+                    int cell = categories[row] * buckets + (day - startDay) / bucketDays;
+                    totals[cell] = Math.addExact(totals[cell], amountCents[row]);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return totals;
+    }
+
+
+    private void upsertRow(long id, long userId, String description, BigDecimal amount, ExpenseCategory category,
+                           LocalDate date, long version) {
+        Long deleted = deletedVersions.get(id);
+        if (deleted != null && version <= deleted) return;
+
+        Integer existing = rowById.get(id);
+        int row;
+        if (existing != null) {
+            if (versions[existing] > version) return;
+            row = existing;
+        } else {
+            if (size == ids.length) grow();
+            row = size++;
+            rowById.put(id, row);
+        }
+
+        ids[row] = id;
+        userIds[row] = userId;
+        amountCents[row] = Money.toCents(amount);
+        epochDays[row] = (int) date.toEpochDay();
+        categories[row] = (byte) category.ordinal();
+        versions[row] = version;
+        descriptionCodes[row] = descriptionCodeByValue.computeIfAbsent(description, value -> {
+            descriptions.add(value);
+            return descriptions.size() - 1;
+        });
+    }
+
+    private void grow() {
+        int capacity = ids.length + (ids.length >> 1);
+        ids = Arrays.copyOf(ids, capacity);
+        userIds = Arrays.copyOf(userIds, capacity);
+        amountCents = Arrays.copyOf(amountCents, capacity);
+        epochDays = Arrays.copyOf(epochDays, capacity);
+        categories = Arrays.copyOf(categories, capacity);
+        descriptionCodes = Arrays.copyOf(descriptionCodes, capacity);
+        versions = Arrays.copyOf(versions, capacity);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.Mini.Expense.Tracker.controller;
+
+import com.example.Mini.Expense.Tracker.model.ExpenseDto;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Writes expenses as RFC 4180 CSV onto a response stream, header first. Only descriptions
+ * can hold a delimiter, quote or line break, so they are the only field ever quoted.
+ */
+public class CsvWriter implements Closeable {
+
+    public static final String MEDIA_TYPE = "text/csv";
+
+    static final String HEADER = "id,description,amount,category,date";
+
+    private static final String LINE_END = "\r\n";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Writer writer;
+
+    public CsvWriter(OutputStream outputStream) throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+        this.writer.write(HEADER);
+        this.writer.write(LINE_END);
+    }
+
+    public void write(ExpenseDto expense) throws IOException {
+        writer.write(Long.toString(expense.getId()));
+        writer.write(',');
+        writeQuoted(expense.getDescription());
+        writer.write(',');
+        writer.write(expense.getAmount().toPlainString());
+        writer.write(',');
+        writer.write(expense.getCategory().name());
+        writer.write(',');
+        writer.write(expense.getDate().toString());
+        writer.write(LINE_END);
+    }
+
+    private void writeQuoted(String value) throws IOException {
+        if (value == null) return;
+
+        if (!needsQuotes(value)) {
+            writer.write(value);
+            return;
+        }
+
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') writer.write('"');
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\r' || c == '\n') return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -1,21 +1,59 @@
 package com.example.Mini.Expense.Tracker.controller;
 
 
+import com.example.Mini.Expense.Tracker.idempotency.IdempotencyKeyReusedException;
+import com.example.Mini.Expense.Tracker.idempotency.IdempotencyKeys;
+import com.example.Mini.Expense.Tracker.ingest.WriteBehindQueue;
+import com.example.Mini.Expense.Tracker.model.CacheStatsDto;
+import com.example.Mini.Expense.Tracker.model.CategoryStatsDto;
 import com.example.Mini.Expense.Tracker.model.CategorySumDto;
 import com.example.Mini.Expense.Tracker.model.ExpenseCategory;
 import com.example.Mini.Expense.Tracker.model.ExpenseDto;
+import com.example.Mini.Expense.Tracker.model.ExpensePageDto;
+import com.example.Mini.Expense.Tracker.model.HistogramBucket;
+import com.example.Mini.Expense.Tracker.model.HistogramDto;
+import com.example.Mini.Expense.Tracker.model.ImportResultDto;
+import com.example.Mini.Expense.Tracker.model.IngestStatusDto;
+import com.example.Mini.Expense.Tracker.model.PeriodSummaryDto;
+import com.example.Mini.Expense.Tracker.model.SummaryGranularity;
+import com.example.Mini.Expense.Tracker.service.ExpenseImportService;
 import com.example.Mini.Expense.Tracker.service.ExpenseService;
+import com.example.Mini.Expense.Tracker.service.RangeSummaryService;
+import com.example.Mini.Expense.Tracker.stats.ExpenseStatsService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ProblemDetail;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.resource.NoResourceFoundException;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 
@@ -26,6 +64,32 @@ public class ExpenseController {
     @Autowired
     private ExpenseService expenseService;
 
+    @Autowired
+    private ExpenseImportService importService;
+
+    @Autowired
+    private RangeSummaryService rangeSummaryService;
+
+    @Autowired
+    private ExpenseStatsService statsService;
+
+    @Autowired
+    private IdempotencyKeys idempotencyKeys;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Validator validator;
+
+    // Present only with expense.ingest.mode=async.
+    @Autowired(required = false)
+    private WriteBehindQueue writeBehindQueue;
+
+    private static final int EXPORT_GZIP_BUFFER_SIZE = 8192;
+
+    private static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+
 
 //    public ExpenseController(ExpenseService expenseService) {
 //        this.expenseService = expenseService;
@@ -34,52 +98,185 @@ public class ExpenseController {
 
 
     @PostMapping
-    public ResponseEntity<ExpenseDto> createExpense(@Valid @RequestBody ExpenseDto dto) {
-        return ResponseEntity.status(HttpStatus.CREATED).body(expenseService.save(dto));
+    public ResponseEntity<?> createExpense(@Valid @RequestBody ExpenseDto dto,
+                                           @RequestParam(defaultValue = "false") boolean durable,
+                                           @RequestHeader(value = IdempotencyKeys.HEADER, required = false)
+                                           String idempotencyKey) throws NoResourceFoundException {
+        // Keyed requests are written directly even in async mode: a retry must be answered
+        // with the expense the first attempt created.
+        if (idempotencyKey != null) return createIdempotent(dto, idempotencyKey);
+        if (writeBehindQueue != null) return enqueue(dto, durable);
+
+        ExpenseDto created = expenseService.save(dto);
+        return ResponseEntity.status(HttpStatus.CREATED).eTag(etag(created.getVersion())).body(created);
+    }
+
+    private ResponseEntity<?> createIdempotent(ExpenseDto dto, String idempotencyKey) throws NoResourceFoundException {
+        if (!IdempotencyKeys.isValid(idempotencyKey)) return ResponseEntity.badRequest().build();
+
+        IdempotencyKeys.Outcome outcome;
+        try {
+            outcome = idempotencyKeys.create(dto, idempotencyKey);
+        } catch (IdempotencyKeyReusedException e) {
+            return ResponseEntity.unprocessableEntity().build();
+        }
+        ExpenseDto created = outcome.expense();
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .eTag(etag(created.getVersion()))
+                .header(IDEMPOTENT_REPLAYED_HEADER, Boolean.toString(outcome.replayed()))
+                .body(created);
+    }
+
+    // 202 with a tracking id, or with durable=true 201 once the expense's group has committed.
+    private ResponseEntity<?> enqueue(ExpenseDto dto, boolean durable) {
+        WriteBehindQueue.Ticket ticket = writeBehindQueue.offer(dto, durable);
+        if (ticket == null) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+
+        if (durable) {
+            try {
+                ExpenseDto created = ticket.committed()
+                        .get(writeBehindQueue.ackTimeout().toMillis(), TimeUnit.MILLISECONDS);
+                return ResponseEntity.status(HttpStatus.CREATED).eTag(etag(created.getVersion())).body(created);
+            } catch (ExecutionException e) {
+                return ResponseEntity.internalServerError().body(writeBehindQueue.status(ticket.trackingId()));
+            } catch (TimeoutException e) {
+                // Still queued; the client can follow it like any other accepted expense.
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        return ResponseEntity.accepted()
+                .location(URI.create("/expenses/ingest/" + ticket.trackingId()))
+                .body(new IngestStatusDto(ticket.trackingId(), IngestStatusDto.State.PENDING, null, null));
+    }
+
+    @GetMapping("/ingest/{trackingId}")
+    public ResponseEntity<IngestStatusDto> getIngestStatus(@PathVariable String trackingId) {
+        IngestStatusDto status = writeBehindQueue == null ? null : writeBehindQueue.status(trackingId);
+        return status == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(status);
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<?> createExpenses(@RequestBody List<ExpenseDto> dtos) {
+        if (dtos.isEmpty() || dtos.size() > ExpenseService.MAX_BATCH_SIZE) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        // Every element is checked before the transaction, so a bad one costs no writes.
+        for (int index = 0; index < dtos.size(); index++) {
+            ProblemDetail invalid = invalidBatchElement(index, dtos.get(index));
+            if (invalid != null) return ResponseEntity.of(invalid).build();
+        }
+
+        // A batch is one transaction, so it can only hold expenses of users on the same shard.
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(expenseService.saveAll(dtos));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    private ProblemDetail invalidBatchElement(int index, ExpenseDto dto) {
+        String reason;
+        if (dto == null) {
+            reason = "is null";
+        } else {
+            Set<ConstraintViolation<ExpenseDto>> violations = validator.validate(dto);
+            if (violations.isEmpty()) return null;
+            reason = violations.stream()
+                    .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+        }
+
+        ProblemDetail problem = ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST,
+                "Expense " + index + " " + reason);
+        problem.setProperty("index", index);
+        return problem;
+    }
+
+    // The body is parsed as it arrives; resend the same file with the same importId to resume.
+    @PostMapping(value = "/import", consumes = CsvWriter.MEDIA_TYPE)
+    public ResponseEntity<ImportResultDto> importExpenses(InputStream body,
+                                                          @RequestParam(required = false) String importId,
+                                                          @RequestParam(required = false) Integer chunkSize,
+                                                          @RequestParam(defaultValue = "0") long userId)
+            throws IOException {
+        try {
+            String id = importId != null ? importId : UUID.randomUUID().toString();
+            return ResponseEntity.ok(importService.importCsv(id, userId, body, chunkSize));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<ExpenseDto> getExpense(@PathVariable long id) {
+    public ResponseEntity<ExpenseDto> getExpense(@PathVariable long id,
+                                                 @RequestParam(defaultValue = "0") long userId,
+                                                 @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false)
+                                                 String ifNoneMatch) {
+        // A client polling an unchanged expense is answered without a query.
+        Long knownVersion = ifNoneMatch == null ? null : expenseService.knownVersion(id, userId);
+        if (knownVersion != null && notModified(ifNoneMatch, etag(knownVersion))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag(knownVersion)).build();
+        }
 
         ExpenseDto dto;
 
         try {
-            dto = expenseService.find(id);;
+            dto = expenseService.find(id, userId);;
         } catch (NoResourceFoundException e) {
 
             return new ResponseEntity<>(new ExpenseDto(), HttpStatus.NOT_FOUND);
         }
 
-        return new ResponseEntity<>(dto, HttpStatus.OK);
+        // Spring still answers a matching If-None-Match with 304 here, just after the query.
+        return ResponseEntity.ok().eTag(etag(dto.getVersion())).body(dto);
     }
 
 
 
 
     @PutMapping("/{id}")
-    public ResponseEntity<String> updateExpense(@RequestBody ExpenseDto expenseDto,
-                                                    @PathVariable long id) {
+    public ResponseEntity<String> updateExpense(@Valid @RequestBody ExpenseDto expenseDto,
+                                                    @PathVariable long id,
+                                                    @RequestParam(defaultValue = "0") long userId,
+                                                    @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+                                                    String ifMatch) {
         ExpenseDto dto;
         try {
-             dto = expenseService.updateExpense(expenseDto, id);
+             dto = expenseService.updateExpense(expenseDto, id, userId, expectedVersion(ifMatch));
         } catch (NoResourceFoundException e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+        } catch (OptimisticLockingFailureException e) {
+            return new ResponseEntity<>(e.getMessage(), conflictStatus(ifMatch));
         }
 
-        return new ResponseEntity<>("Expense entry updated", HttpStatus.OK);
+        return ResponseEntity.ok().eTag(etag(dto.getVersion())).body("Expense entry updated");
 
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<String> deleteById(@PathVariable long id) {
+    public ResponseEntity<String> deleteById(@PathVariable long id,
+                                             @RequestParam(defaultValue = "0") long userId,
+                                             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+                                             String ifMatch) {
         //<ExpenseDto> dto = Optional.ofNullable(expenseService.find(id));
 
         try {
-            expenseService.delete(id);
+            expenseService.delete(id, userId, expectedVersion(ifMatch));
         }
         catch (NoResourceFoundException e) {
             return new ResponseEntity<>(e.getMessage(),  HttpStatus.NOT_FOUND);
         }
+        catch (OptimisticLockingFailureException e) {
+            return new ResponseEntity<>(e.getMessage(), conflictStatus(ifMatch));
+        }
 
         return new ResponseEntity<>("Expense entry deleted", HttpStatus.OK);
     }
@@ -88,16 +285,209 @@ public class ExpenseController {
     @GetMapping
     public ResponseEntity<List<ExpenseDto>> filteredExpenses(@RequestParam @DateTimeFormat LocalDate from,
                                                              @RequestParam @DateTimeFormat LocalDate to,
-                                                             @RequestParam ExpenseCategory category) {
-        List<ExpenseDto> filteredExpenses = expenseService.filteredSearch(from, to, category);
+                                                             @RequestParam ExpenseCategory category,
+                                                             @RequestParam(defaultValue = "0") long userId) {
+        List<ExpenseDto> filteredExpenses = expenseService.filteredSearch(userId, from, to, category);
 
 
         return new ResponseEntity<>(filteredExpenses, HttpStatus.OK);
     }
 
+    @GetMapping("/page")
+    public ResponseEntity<ExpensePageDto> filteredExpensesPage(@RequestParam @DateTimeFormat LocalDate from,
+                                                               @RequestParam @DateTimeFormat LocalDate to,
+                                                               @RequestParam ExpenseCategory category,
+                                                               @RequestParam(defaultValue = "100") int limit,
+                                                               @RequestParam(required = false) String cursor,
+                                                               @RequestParam(defaultValue = "0") long userId) {
+        try {
+            return ResponseEntity.ok(expenseService.filteredSearchPage(userId, from, to, category, limit, cursor));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<List<ExpenseDto>> searchExpenses(@RequestParam String q,
+                                                           @RequestParam(required = false)
+                                                           @DateTimeFormat LocalDate from,
+                                                           @RequestParam(required = false)
+                                                           @DateTimeFormat LocalDate to,
+                                                           @RequestParam(required = false) ExpenseCategory category,
+                                                           @RequestParam(defaultValue = "100") int limit,
+                                                           @RequestParam(defaultValue = "0") long userId) {
+        try {
+            return ResponseEntity.ok(expenseService.search(q, userId, from, to, category, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping(value = "/stream", produces = NdjsonWriter.MEDIA_TYPE)
+    public ResponseEntity<StreamingResponseBody> streamFilteredExpenses(@RequestParam @DateTimeFormat LocalDate from,
+                                                                        @RequestParam @DateTimeFormat LocalDate to,
+                                                                        @RequestParam ExpenseCategory category,
+                                                                        @RequestParam(defaultValue = "0") long userId) {
+        StreamingResponseBody body = outputStream -> {
+            try (NdjsonWriter writer = new NdjsonWriter(objectMapper, outputStream)) {
+                expenseService.streamFilteredSearch(userId, from, to, category, unchecked(writer::write));
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NdjsonWriter.MEDIA_TYPE))
+                .body(body);
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportExpenses(@RequestParam @DateTimeFormat LocalDate from,
+                                                                @RequestParam @DateTimeFormat LocalDate to,
+                                                                @RequestParam(required = false)
+                                                                Set<ExpenseCategory> category,
+                                                                @RequestParam(defaultValue = "csv") String format,
+                                                                @RequestParam(defaultValue = "false") boolean gzip,
+                                                                @RequestParam(defaultValue = "0") long userId) {
+        ExportFormat exportFormat;
+        try {
+            exportFormat = ExportFormat.parse(format);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (from.isAfter(to)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        // Rows go from the cursor through the writer's buffer (and the deflater) to the socket,
+        // so memory stays flat however wide the range is.
+        StreamingResponseBody body = outputStream -> {
+            OutputStream target = gzip ? new GZIPOutputStream(outputStream, EXPORT_GZIP_BUFFER_SIZE) : outputStream;
+
+            if (exportFormat == ExportFormat.CSV) {
+                try (CsvWriter writer = new CsvWriter(target)) {
+                    expenseService.export(userId, from, to, category, unchecked(writer::write));
+                }
+            } else {
+                try (NdjsonWriter writer = new NdjsonWriter(objectMapper, target)) {
+                    expenseService.export(userId, from, to, category, unchecked(writer::write));
+                }
+            }
+        };
+
+        String filename = "expenses-" + from + "-" + to + "." + exportFormat.extension() + (gzip ? ".gz" : "");
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(gzip ? "application/gzip" : exportFormat.mediaType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(filename).build().toString())
+                .body(body);
+    }
+
     @GetMapping("/summary")
-    public ResponseEntity<List<CategorySumDto>> getCategorySum(@RequestParam int year, @RequestParam int month) {
-        return ResponseEntity.ok(expenseService.categorySum(year, month));
+    public ResponseEntity<List<CategorySumDto>> getCategorySum(@RequestParam int year, @RequestParam int month,
+                                                               @RequestHeader(value = HttpHeaders.IF_NONE_MATCH,
+                                                                       required = false) String ifNoneMatch) {
+        if (month < 1 || month > 12) return ResponseEntity.ok(expenseService.categorySum(year, month));
+
+        // Taken before the read, so the tag is never newer than the body it goes out with.
+        String etag = etag(expenseService.summaryStamp(year, month));
+        if (ifNoneMatch != null && notModified(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
+        return ResponseEntity.ok().eTag(etag).body(expenseService.categorySum(year, month));
+    }
+
+    @GetMapping("/summary/range")
+    public ResponseEntity<List<PeriodSummaryDto>> getCategorySumRange(@RequestParam YearMonth from,
+                                                                      @RequestParam YearMonth to,
+                                                                      @RequestParam(defaultValue = "month")
+                                                                      String granularity) {
+        try {
+            return ResponseEntity.ok(rangeSummaryService.categorySumRange(from, to,
+                    SummaryGranularity.parse(granularity)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/histogram")
+    public ResponseEntity<HistogramDto> getHistogram(@RequestParam @DateTimeFormat LocalDate from,
+                                                     @RequestParam @DateTimeFormat LocalDate to,
+                                                     @RequestParam(defaultValue = "day") String bucket,
+                                                     @RequestParam(required = false) ExpenseCategory category) {
+        try {
+            return ResponseEntity.ok(expenseService.histogram(from, to, HistogramBucket.parse(bucket), category));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<List<CategoryStatsDto>> getStats(@RequestParam YearMonth from,
+                                                           @RequestParam YearMonth to,
+                                                           @RequestParam(required = false) ExpenseCategory category,
+                                                           @RequestParam(defaultValue = "10") int top) {
+        try {
+            return ResponseEntity.ok(statsService.stats(from, to, category, top));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/summary/cache")
+    public ResponseEntity<CacheStatsDto> getSummaryCacheStats() {
+        return ResponseEntity.ok(expenseService.summaryCacheStats());
+    }
+
+
+    private static Consumer<ExpenseDto> unchecked(RowWriter writer) {
+        return dto -> {
+            try {
+                writer.write(dto);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    private interface RowWriter {
+        void write(ExpenseDto dto) throws IOException;
+    }
+
+    private static String etag(long version) {
+        return "\"" + version + "\"";
+    }
+
+    private static String etag(String stamp) {
+        return "\"" + stamp + "\"";
+    }
+
+    // If-None-Match uses weak comparison, so a W/ prefix on the client's tag is ignored.
+    private static boolean notModified(String ifNoneMatch, String etag) {
+        for (String tag : ifNoneMatch.split(",")) {
+            String candidate = tag.trim();
+            if (candidate.startsWith("W/")) candidate = candidate.substring(2);
+            if (candidate.equals("*") || candidate.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    // Absent or "*" accepts any version. A tag this server could not have issued matches nothing.
+    private static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) return null;
+
+        String tag = ifMatch.trim();
+        if (tag.length() < 2 || !tag.startsWith("\"") || !tag.endsWith("\"")) return -1L;
+        try {
+            return Long.parseLong(tag.substring(1, tag.length() - 1));
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    // A stale If-Match is a failed precondition; without one, the row changed between our
+    // read and write.
+    private static HttpStatus conflictStatus(String ifMatch) {
+        return ifMatch != null ? HttpStatus.PRECONDITION_FAILED : HttpStatus.CONFLICT;
     }
 
 
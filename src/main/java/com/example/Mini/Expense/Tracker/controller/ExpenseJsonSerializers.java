@@ -0,0 +1,199 @@
+package com.example.Mini.Expense.Tracker.controller;
+
+import com.example.Mini.Expense.Tracker.model.CategorySumDto;
+import com.example.Mini.Expense.Tracker.model.ExpenseCategory;
+import com.example.Mini.Expense.Tracker.model.ExpenseDto;
+import com.example.Mini.Expense.Tracker.model.HistogramDto;
+import com.example.Mini.Expense.Tracker.model.Money;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import org.springframework.boot.jackson.JsonComponent;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Hand-written serializers for the dtos that make up list responses, used by the
+ * {@code ObjectMapper} Spring Boot builds and therefore by every endpoint that returns them.
+ *
+ * Field names and category names are encoded once, as {@link SerializedString}s that keep
+ * their quoted UTF-8 bytes, and copied into the output as is. Dates are formatted into a
+ * reused char buffer instead of through a formatter. Nothing is looked up through reflection
+ * per element. The output is byte for byte what the default bean serializer writes, except
+ * for {@link HistogramDto}, whose totals are kept in cents and written out as amounts.
+ */
+@JsonComponent
+public class ExpenseJsonSerializers {
+
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString DESCRIPTION = new SerializedString("description");
+    private static final SerializedString AMOUNT = new SerializedString("amount");
+    private static final SerializedString CATEGORY = new SerializedString("category");
+    private static final SerializedString DATE = new SerializedString("date");
+    private static final SerializedString USER_ID = new SerializedString("userId");
+    private static final SerializedString SUM = new SerializedString("sum");
+    private static final SerializedString BUCKET = new SerializedString("bucket");
+    private static final SerializedString FROM = new SerializedString("from");
+    private static final SerializedString TO = new SerializedString("to");
+    private static final SerializedString START = new SerializedString("start");
+    private static final SerializedString BUCKETS = new SerializedString("buckets");
+    private static final SerializedString CATEGORIES = new SerializedString("categories");
+    private static final SerializedString TOTALS = new SerializedString("totals");
+
+    private static final SerializedString[] CATEGORY_VALUES = new SerializedString[ExpenseCategory.values().length];
+    private static final Map<String, SerializedString> CATEGORY_VALUES_BY_NAME = new HashMap<>();
+
+    static {
+        for (ExpenseCategory category : ExpenseCategory.values()) {
+            CATEGORY_VALUES[category.ordinal()] = new SerializedString(category.name());
+            CATEGORY_VALUES_BY_NAME.put(category.name(), CATEGORY_VALUES[category.ordinal()]);
+        }
+    }
+
+    // One per thread, as generators are; a response is written by a single thread.
+    private static final ThreadLocal<char[]> DATE_BUFFER = ThreadLocal.withInitial(() -> new char[10]);
+
+
+    public static class ExpenseDtoSerializer extends JsonSerializer<ExpenseDto> {
+
+        @Override
+        public void serialize(ExpenseDto dto, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartObject(dto);
+            generator.writeFieldName(ID);
+            generator.writeNumber(dto.id);
+            generator.writeFieldName(DESCRIPTION);
+            generator.writeString(dto.description);
+            generator.writeFieldName(AMOUNT);
+            generator.writeNumber(dto.amount);
+            generator.writeFieldName(CATEGORY);
+            if (dto.category == null) {
+                generator.writeNull();
+            } else {
+                generator.writeString(CATEGORY_VALUES[dto.category.ordinal()]);
+            }
+            generator.writeFieldName(DATE);
+            writeDate(generator, dto.date);
+            generator.writeFieldName(USER_ID);
+            generator.writeNumber(dto.userId);
+            generator.writeEndObject();
+        }
+
+        @Override
+        public Class<ExpenseDto> handledType() {
+            return ExpenseDto.class;
+        }
+    }
+
+    public static class CategorySumDtoSerializer extends JsonSerializer<CategorySumDto> {
+
+        @Override
+        public void serialize(CategorySumDto dto, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartObject(dto);
+            generator.writeFieldName(CATEGORY);
+            SerializableString category = dto.getCategory() == null ? null : CATEGORY_VALUES_BY_NAME.get(dto.getCategory());
+            if (category != null) {
+                generator.writeString(category);
+            } else {
+                generator.writeString(dto.getCategory());
+            }
+            generator.writeFieldName(SUM);
+            generator.writeNumber(dto.getSum());
+            generator.writeEndObject();
+        }
+
+        @Override
+        public Class<CategorySumDto> handledType() {
+            return CategorySumDto.class;
+        }
+    }
+
+    /**
+     * Columns rather than one object per bucket: the category names once, then a plain array
+     * of totals per category. Whole amounts, and the many empty buckets, are written without
+     * decimals.
+     */
+    public static class HistogramDtoSerializer extends JsonSerializer<HistogramDto> {
+
+        @Override
+        public void serialize(HistogramDto dto, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartObject(dto);
+            generator.writeFieldName(BUCKET);
+            generator.writeString(dto.getBucket());
+            generator.writeFieldName(FROM);
+            writeDate(generator, dto.getFrom());
+            generator.writeFieldName(TO);
+            writeDate(generator, dto.getTo());
+            generator.writeFieldName(START);
+            writeDate(generator, dto.getStart());
+            generator.writeFieldName(BUCKETS);
+            generator.writeNumber(dto.getBuckets());
+
+            generator.writeFieldName(CATEGORIES);
+            generator.writeStartArray();
+            for (String category : dto.getCategories()) {
+                SerializableString encoded = CATEGORY_VALUES_BY_NAME.get(category);
+                if (encoded != null) {
+                    generator.writeString(encoded);
+                } else {
+                    generator.writeString(category);
+                }
+            }
+            generator.writeEndArray();
+
+            generator.writeFieldName(TOTALS);
+            generator.writeStartArray();
+            for (long[] totals : dto.getTotals()) {
+                generator.writeStartArray();
+                for (long cents : totals) {
+                    if (cents % 100 == 0) {
+                        generator.writeNumber(cents / 100);
+                    } else {
+                        generator.writeNumber(Money.toBigDecimal(cents));
+                    }
+                }
+                generator.writeEndArray();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+
+        @Override
+        public Class<HistogramDto> handledType() {
+            return HistogramDto.class;
+        }
+    }
+
+
+    // ISO yyyy-MM-dd, as LocalDate.toString() writes it for four-digit years.
+    private static void writeDate(JsonGenerator generator, LocalDate date) throws IOException {
+        if (date == null) {
+            generator.writeNull();
+            return;
+        }
+
+        int year = date.getYear();
+        if (year < 0 || year > 9999) {
+            generator.writeString(date.toString());
+            return;
+        }
+
+        char[] buffer = DATE_BUFFER.get();
+        buffer[0] = (char) ('0' + year / 1000);
+        buffer[1] = (char) ('0' + year / 100 % 10);
+        buffer[2] = (char) ('0' + year / 10 % 10);
+        buffer[3] = (char) ('0' + year % 10);
+        buffer[4] = '-';
+        buffer[5] = (char) ('0' + date.getMonthValue() / 10);
+        buffer[6] = (char) ('0' + date.getMonthValue() % 10);
+        buffer[7] = '-';
+        buffer[8] = (char) ('0' + date.getDayOfMonth() / 10);
+        buffer[9] = (char) ('0' + date.getDayOfMonth() % 10);
+        generator.writeString(buffer, 0, buffer.length);
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.Mini.Expense.Tracker.controller;
+
+import java.util.Locale;
+
+
+/**
+ * Body formats offered by {@code GET /expenses/export}.
+ */
+public enum ExportFormat {
+
+    CSV(CsvWriter.MEDIA_TYPE, "csv"),
+    NDJSON(NdjsonWriter.MEDIA_TYPE, "ndjson");
+
+    private final String mediaType;
+    private final String extension;
+
+    ExportFormat(String mediaType, String extension) {
+        this.mediaType = mediaType;
+        this.extension = extension;
+    }
+
+    public String mediaType() {
+        return mediaType;
+    }
+
+    public String extension() {
+        return extension;
+    }
+
+    /**
+     * @throws IllegalArgumentException for anything but csv or ndjson, in any case
+     */
+    public static ExportFormat parse(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
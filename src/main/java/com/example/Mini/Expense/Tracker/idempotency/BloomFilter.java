@@ -0,0 +1,100 @@
+package com.example.Mini.Expense.Tracker.idempotency;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Bloom filter over strings: {@link #mightContain} never misses a string that was
+ * {@link #put}, and wrongly reports one that was not with the probability it was sized for.
+ *
+ * Sized with the usual m = -n ln p / (ln 2)^2 bits and k = (m / n) ln 2 probes for n expected
+ * items at false positive rate p. Probe positions are h1 + i * h2 from two 64-bit hashes of
+ * the string (Kirsch and Mitzenmacher), which is as good as k independent hashes.
+ *
+ * Thread safe without locks: bits are only ever set, with compare-and-set on their word.
+ */
+public final class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bits;
+    private final int probes;
+    private final LongAdder bitsSet = new LongAdder();
+
+    public BloomFilter(long expectedItems, double falsePositiveRate) {
+        if (expectedItems < 1) throw new IllegalArgumentException("Expected items must be positive");
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1");
+        }
+
+        long wanted = (long) Math.ceil(-expectedItems * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        long wordCount = Math.max(1, (wanted + 63) / 64);
+        if (wordCount > Integer.MAX_VALUE) throw new IllegalArgumentException("Bloom filter too large");
+
+        this.words = new AtomicLongArray((int) wordCount);
+        this.bits = wordCount * 64;
+        this.probes = Math.max(1, (int) Math.round((double) bits / expectedItems * Math.log(2)));
+    }
+
+    public void put(String item) {
+        long h1 = hash(item, 0x9E3779B97F4A7C15L);
+        long h2 = hash(item, 0xC2B2AE3D27D4EB4FL) | 1;
+
+        for (int i = 0; i < probes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bits);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+
+            long current;
+            do {
+                current = words.get(word);
+                if ((current & mask) != 0) break;
+            } while (!words.compareAndSet(word, current, current | mask));
+            if ((current & mask) == 0) bitsSet.increment();
+        }
+    }
+
+    public boolean mightContain(String item) {
+        long h1 = hash(item, 0x9E3779B97F4A7C15L);
+        long h2 = hash(item, 0xC2B2AE3D27D4EB4FL) | 1;
+
+        for (int i = 0; i < probes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bits);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    public long bits() {
+        return bits;
+    }
+
+    public int probes() {
+        return probes;
+    }
+
+    /**
+     * False positive rate at the current fill: the chance that all probes of a new string land
+     * on bits already set. Grows past the configured rate once more items are put than the
+     * filter was sized for.
+     */
+    public double expectedFalsePositiveRate() {
+        return Math.pow((double) bitsSet.sum() / bits, probes);
+    }
+
+
+    // 64-bit FNV-1a over the UTF-16 chars, seeded, then the murmur3 finalizer to spread the bits.
+    private static long hash(String item, long seed) {
+        long hash = 0xCBF29CE484222325L ^ seed;
+        for (int i = 0; i < item.length(); i++) {
+            hash ^= item.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
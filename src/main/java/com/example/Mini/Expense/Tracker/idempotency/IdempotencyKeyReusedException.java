@@ -0,0 +1,13 @@
+package com.example.Mini.Expense.Tracker.idempotency;
+
+
+/**
+ * An {@code Idempotency-Key} that already created an expense was sent again with a different
+ * request body.
+ */
+public class IdempotencyKeyReusedException extends RuntimeException {
+
+    public IdempotencyKeyReusedException(long expenseId) {
+        super("Idempotency key already created expense " + expenseId + " from a different request");
+    }
+}
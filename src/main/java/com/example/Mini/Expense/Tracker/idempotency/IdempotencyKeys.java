@@ -0,0 +1,252 @@
+package com.example.Mini.Expense.Tracker.idempotency;
+
+import com.example.Mini.Expense.Tracker.model.ExpenseDto;
+import com.example.Mini.Expense.Tracker.model.ExpenseIdempotencyKey;
+import com.example.Mini.Expense.Tracker.model.Money;
+import com.example.Mini.Expense.Tracker.repository.ExpenseIdempotencyKeyRepository;
+import com.example.Mini.Expense.Tracker.service.ExpenseService;
+import com.example.Mini.Expense.Tracker.sharding.ShardRouter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.servlet.resource.NoResourceFoundException;
+
+import java.util.Objects;
+import java.util.Optional;
+
+
+/**
+ * {@code Idempotency-Key} handling for {@code POST /expenses}: a request whose key already
+ * created an expense gets the response the first request got instead of inserting another.
+ * The same key with a different body is refused.
+ *
+ * Keys belong to the user who sent them, so two users may use the same one. They live in
+ * expense_idempotency_keys on the user's shard, written with a copy of the expense they created
+ * in the same transaction, so a replay neither reads the expense nor sees later changes. To keep
+ * the lookup off the insert path, a {@link BloomFilter} of every (user, key) is checked first:
+ * when it has never seen one, which is the case for nearly every new request, the expense is
+ * inserted straight away. Only keys the filter may have seen, retries and the occasional
+ * false positive, are looked up. The most recent keys are also cached with their response,
+ * so a quick retry of the same request is answered without the lookup.
+ *
+ * The table's primary key stays the final word: a request racing another with the same key,
+ * or one whose key was recorded by another instance, fails its insert, rolls back and is
+ * answered as a replay.
+ *
+ * The filter is rebuilt from the tables of every shard at startup, sized for twice the stored
+ * keys or {@code expense.idempotency.expected-keys}, whichever is larger.
+ */
+@Slf4j
+@Component
+public class IdempotencyKeys {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final int MAX_KEY_LENGTH = 64;
+
+    private static final int LOAD_FETCH_SIZE = 1000;
+
+    private final ExpenseService expenseService;
+    private final ExpenseIdempotencyKeyRepository keyRepository;
+    private final ShardRouter shardRouter;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final long expectedKeys;
+    private final double falsePositiveRate;
+    private final Cache<String, ExpenseDto> recent;
+
+    private final Counter cached;
+    private final Counter absent;
+    private final Counter stored;
+    private final Counter falsePositives;
+
+    private volatile BloomFilter filter;
+
+    /**
+     * @param expense the expense the key created, as the first request returned it
+     * @param replayed whether the key had already been used
+     */
+    public record Outcome(ExpenseDto expense, boolean replayed) {
+    }
+
+
+    public IdempotencyKeys(ExpenseService expenseService, ExpenseIdempotencyKeyRepository keyRepository,
+                           ShardRouter shardRouter, JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                           MeterRegistry meterRegistry,
+                           @Value("${expense.idempotency.expected-keys:1000000}") long expectedKeys,
+                           @Value("${expense.idempotency.false-positive-rate:0.01}") double falsePositiveRate,
+                           @Value("${expense.idempotency.recent-keys:10000}") long recentKeys) {
+        this.expenseService = expenseService;
+        this.keyRepository = keyRepository;
+        this.shardRouter = shardRouter;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionManager = transactionManager;
+        this.expectedKeys = expectedKeys;
+        this.falsePositiveRate = falsePositiveRate;
+        this.recent = Caffeine.newBuilder().maximumSize(recentKeys).build();
+        this.filter = new BloomFilter(expectedKeys, falsePositiveRate);
+
+        this.cached = lookups(meterRegistry, "cached", "Keys found in the recent keys cache");
+        this.absent = lookups(meterRegistry, "absent", "New keys the Bloom filter let through without a lookup");
+        this.stored = lookups(meterRegistry, "stored", "Keys looked up and found: replays");
+        this.falsePositives = lookups(meterRegistry, "false_positive", "Keys looked up and not found");
+
+        Gauge.builder("expense.idempotency.bloom.false.positive.rate", this, IdempotencyKeys::observedFalsePositiveRate)
+                .description("Share of new keys the Bloom filter sent to a lookup")
+                .register(meterRegistry);
+        Gauge.builder("expense.idempotency.bloom.expected.false.positive.rate", this,
+                        keys -> keys.filter.expectedFalsePositiveRate())
+                .description("False positive rate the Bloom filter's fill predicts")
+                .register(meterRegistry);
+    }
+
+    private static Counter lookups(MeterRegistry meterRegistry, String outcome, String description) {
+        return Counter.builder("expense.idempotency.lookups")
+                .tag("outcome", outcome)
+                .description(description)
+                .register(meterRegistry);
+    }
+
+
+    /**
+     * Replaces the filter with one built from every stored key. Keys recorded during the scan
+     * may be missed; their retries fall back on the primary key.
+     */
+    @PostConstruct
+    public void load() {
+        long started = System.nanoTime();
+        long rows = shardRouter.scatter(shard ->
+                jdbcTemplate.queryForObject("SELECT COUNT(*) FROM expense_idempotency_keys", Long.class))
+                .stream().mapToLong(Long::longValue).sum();
+        BloomFilter loaded = new BloomFilter(Math.max(expectedKeys, 2 * rows), falsePositiveRate);
+
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        // Postgres only honours the fetch size inside a transaction.
+        shardRouter.forEachShard(shard -> readOnly.executeWithoutResult(status -> {
+            JdbcTemplate cursor = new JdbcTemplate(jdbcTemplate.getDataSource());
+            cursor.setFetchSize(LOAD_FETCH_SIZE);
+            cursor.query("SELECT user_id, idempotency_key FROM expense_idempotency_keys", rs -> {
+                loaded.put(scoped(rs.getLong(1), rs.getString(2)));
+            });
+        }));
+
+        filter = loaded;
+        recent.invalidateAll();
+        log.info("Loaded {} idempotency keys into a {} KiB Bloom filter in {} ms", rows, loaded.bits() / 8192,
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * Inserts the expense unless its owner's key already created one, in which case the
+     * response of that first request is returned instead.
+     *
+     * @throws IdempotencyKeyReusedException if the key was used for a request with another body
+     * @throws NoResourceFoundException if the key was recorded before responses were kept and
+     * its expense has since been deleted
+     */
+    public Outcome create(ExpenseDto dto, String key) throws NoResourceFoundException {
+        long userId = dto.getUserId();
+        ExpenseDto original = find(userId, key);
+        if (original != null) return replay(dto, original);
+
+        try {
+            ExpenseDto created = expenseService.save(dto, key);
+            remember(userId, key, created);
+            return new Outcome(created, false);
+        } catch (DataIntegrityViolationException e) {
+            // Someone else recorded the key first; this insert was rolled back.
+            Optional<ExpenseIdempotencyKey> winner = lookUp(userId, key);
+            if (winner.isEmpty()) throw e;
+            ExpenseDto response = response(winner.get());
+            remember(userId, key, response);
+            return replay(dto, response);
+        }
+    }
+
+    /**
+     * @return the expense the user's key created, as the first request returned it, or null if
+     * the key has not been used
+     * @throws NoResourceFoundException if the key was recorded before responses were kept and
+     * its expense has since been deleted
+     */
+    public ExpenseDto find(long userId, String key) throws NoResourceFoundException {
+        String scoped = scoped(userId, key);
+        ExpenseDto response = recent.getIfPresent(scoped);
+        if (response != null) {
+            cached.increment();
+            return response;
+        }
+
+        if (!filter.mightContain(scoped)) {
+            absent.increment();
+            return null;
+        }
+
+        Optional<ExpenseIdempotencyKey> found = lookUp(userId, key);
+        if (found.isEmpty()) {
+            falsePositives.increment();
+            return null;
+        }
+        stored.increment();
+        response = response(found.get());
+        recent.put(scoped, response);
+        return response;
+    }
+
+    public static boolean isValid(String key) {
+        return !key.isBlank() && key.length() <= MAX_KEY_LENGTH;
+    }
+
+    double observedFalsePositiveRate() {
+        double positives = falsePositives.count();
+        double total = positives + absent.count();
+        return total == 0 ? 0 : positives / total;
+    }
+
+
+    private Optional<ExpenseIdempotencyKey> lookUp(long userId, String key) {
+        return shardRouter.onShard(shardRouter.shardOf(userId),
+                () -> keyRepository.findById(new ExpenseIdempotencyKey.Key(userId, key)));
+    }
+
+    private static ExpenseDto response(ExpenseIdempotencyKey stored) throws NoResourceFoundException {
+        if (stored.getDescription() == null) {
+            throw new NoResourceFoundException(HttpMethod.POST, "The expense created with this idempotency key " +
+                    "has been deleted: " + stored.getExpenseId());
+        }
+        return new ExpenseDto(stored.getExpenseId(), stored.getDescription(), stored.getAmount(),
+                stored.getCategory(), stored.getDate(), stored.getVersion(), stored.getUserId());
+    }
+
+    private static Outcome replay(ExpenseDto request, ExpenseDto original) {
+        // The response is the request plus an id, with the amount rounded the way it was stored.
+        boolean same = Objects.equals(request.getDescription(), original.getDescription())
+                && request.getAmount() != null && Money.round(request.getAmount()).compareTo(original.getAmount()) == 0
+                && request.getCategory() == original.getCategory()
+                && Objects.equals(request.getDate(), original.getDate());
+        if (!same) throw new IdempotencyKeyReusedException(original.getId());
+        return new Outcome(original, true);
+    }
+
+    private void remember(long userId, String key, ExpenseDto response) {
+        String scoped = scoped(userId, key);
+        filter.put(scoped);
+        recent.put(scoped, response);
+    }
+
+    // A user id never contains a colon, so the first one tells the two apart.
+    private static String scoped(long userId, String key) {
+        return userId + ":" + key;
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.Mini.Expense.Tracker.ingest;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+
+/**
+ * Bounded, lock-free queue for many producers and a single consumer.
+ *
+ * Each slot carries a sequence number that says whose turn it is: a producer may fill slot
+ * {@code p & mask} when its sequence equals {@code p}, and the consumer may empty it when the
+ * sequence is {@code p + 1}. Producers claim positions with one CAS on the tail; the consumer
+ * owns the head and never contends. A full queue is reported to the producer instead of
+ * blocking it.
+ */
+class MpscRingBuffer<E> {
+
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    MpscRingBuffer(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) throw new IllegalArgumentException("Capacity must be 1 to 2^30");
+
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.elements = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) sequences.set(i, i);
+    }
+
+    /**
+     * @return the position the element was stored at, or -1 if the queue is full
+     */
+    long offer(E element) {
+        while (true) {
+            long position = tail.get();
+            int slot = (int) position & mask;
+            long difference = sequences.get(slot) - position;
+
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.setPlain(slot, element);
+                    sequences.setRelease(slot, position + 1);
+                    return position;
+                }
+            } else if (difference < 0) {
+                // The consumer has not emptied this slot since the last lap.
+                return -1;
+            }
+            // Another producer claimed this position first; try the next one.
+        }
+    }
+
+    /**
+     * Moves up to {@code max} elements into {@code target} in the order they were offered.
+     * Must only be called from the consumer thread.
+     *
+     * @return how many elements were moved
+     */
+    int drainTo(List<? super E> target, int max) {
+        long position = head;
+        int drained = 0;
+
+        while (drained < max) {
+            int slot = (int) position & mask;
+            // A claimed slot whose producer has not stored yet ends the drain.
+            if (sequences.getAcquire(slot) != position + 1) break;
+
+            target.add(elements.getPlain(slot));
+            elements.setPlain(slot, null);
+            sequences.setRelease(slot, position + mask + 1);
+            position++;
+            drained++;
+        }
+
+        head = position;
+        return drained;
+    }
+
+    /**
+     * @return positions below this one have been drained
+     */
+    long head() {
+        return head;
+    }
+
+    /**
+     * @return positions below this one have been claimed
+     */
+    long tail() {
+        return tail.get();
+    }
+
+    int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,315 @@
+package com.example.Mini.Expense.Tracker.ingest;
+
+import com.example.Mini.Expense.Tracker.model.ExpenseDto;
+import com.example.Mini.Expense.Tracker.model.IngestStatusDto;
+import com.example.Mini.Expense.Tracker.model.Money;
+import com.example.Mini.Expense.Tracker.service.ExpenseService;
+import com.example.Mini.Expense.Tracker.sharding.ShardRouter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * Write-behind path for {@code POST /expenses}: request threads put validated expenses into a
+ * bounded {@link MpscRingBuffer} and return, and one writer thread inserts them.
+ *
+ * The writer takes whatever has queued up, up to {@code expense.ingest.batch-size}, and
+ * inserts it with {@link ExpenseService#saveAll} in one transaction. It never waits for a
+ * group to fill: under light load a group is a single expense, under a burst everything that
+ * arrived during the previous commit goes into the next one. If a group fails, its expenses
+ * are retried one transaction each, so one bad row does not fail its neighbours. A
+ * transaction only writes to one shard, so with several shards a group is split by shard first.
+ *
+ * Each accepted expense gets a tracking id; its outcome is kept for
+ * {@code expense.ingest.status-ttl}. Callers that ask for a durable ack get a future that
+ * completes once their group has committed.
+ *
+ * On shutdown the queue stops accepting and the writer commits everything already queued.
+ * The lifecycle phase is below the web server's, so in-flight requests have finished by then.
+ *
+ * Enabled with {@code expense.ingest.mode=async}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "expense.ingest.mode", havingValue = "async")
+public class WriteBehindQueue implements SmartLifecycle {
+
+    // Starts before and stops after the web server, which uses DEFAULT_PHASE - 2048 and above.
+    public static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final ExpenseService expenseService;
+    private final ShardRouter shardRouter;
+    private final MpscRingBuffer<Pending> buffer;
+    private final int batchSize;
+    private final Duration ackTimeout;
+    private final Duration shutdownTimeout;
+
+    // Positions are only unique within one run of the application.
+    private final long epoch = System.currentTimeMillis();
+    private final Cache<Long, IngestStatusDto> outcomes;
+
+    private final Counter rejected;
+    private final Counter failed;
+    private final DistributionSummary groupSizes;
+
+    private volatile boolean accepting;
+    private volatile boolean running;
+    private volatile boolean idle;
+    // Positions below this one have an outcome.
+    private volatile long completedThrough;
+    private Thread writer;
+
+    public WriteBehindQueue(ExpenseService expenseService, ShardRouter shardRouter, MeterRegistry meterRegistry,
+                            @Value("${expense.ingest.queue-capacity:8192}") int capacity,
+                            @Value("${expense.ingest.batch-size:500}") int batchSize,
+                            @Value("${expense.ingest.ack-timeout:10s}") Duration ackTimeout,
+                            @Value("${expense.ingest.status-ttl:10m}") Duration statusTtl,
+                            @Value("${expense.ingest.status-maximum-size:100000}") long statusMaximumSize,
+                            @Value("${expense.ingest.shutdown-timeout:30s}") Duration shutdownTimeout) {
+        if (batchSize < 1 || batchSize > ExpenseService.MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("expense.ingest.batch-size must be between 1 and "
+                    + ExpenseService.MAX_BATCH_SIZE);
+        }
+        this.expenseService = expenseService;
+        this.shardRouter = shardRouter;
+        this.buffer = new MpscRingBuffer<>(capacity);
+        this.batchSize = batchSize;
+        this.ackTimeout = ackTimeout;
+        this.shutdownTimeout = shutdownTimeout;
+        this.outcomes = Caffeine.newBuilder()
+                .maximumSize(statusMaximumSize)
+                .expireAfterWrite(statusTtl)
+                .build();
+
+        Gauge.builder("expense.ingest.queue.size", buffer, MpscRingBuffer::size)
+                .description("Expenses accepted but not yet taken by the writer")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("expense.ingest.rejected")
+                .description("Expenses turned away because the queue was full or stopping")
+                .register(meterRegistry);
+        this.failed = Counter.builder("expense.ingest.failed")
+                .description("Queued expenses that could not be inserted")
+                .register(meterRegistry);
+        this.groupSizes = DistributionSummary.builder("expense.ingest.group.size")
+                .description("Expenses inserted per transaction")
+                .register(meterRegistry);
+    }
+
+
+    /**
+     * @param durable whether the returned ticket should carry a future for the commit
+     * @return the ticket, or null if the queue is full or shutting down
+     */
+    public Ticket offer(ExpenseDto dto, boolean durable) {
+        if (!accepting) {
+            rejected.increment();
+            return null;
+        }
+
+        Pending pending = new Pending(dto, durable ? new CompletableFuture<>() : null);
+        long position = buffer.offer(pending);
+        if (position < 0) {
+            rejected.increment();
+            return null;
+        }
+        if (idle) LockSupport.unpark(writer);
+
+        return new Ticket(trackingId(position), pending.committed);
+    }
+
+    /**
+     * @return the outcome so far, or null for an id this run did not issue or has forgotten
+     */
+    public IngestStatusDto status(String trackingId) {
+        long position = position(trackingId);
+        if (position < 0 || position >= buffer.tail()) return null;
+
+        if (position >= completedThrough) {
+            return new IngestStatusDto(trackingId, IngestStatusDto.State.PENDING, null, null);
+        }
+        return outcomes.getIfPresent(position);
+    }
+
+    public Duration ackTimeout() {
+        return ackTimeout;
+    }
+
+
+    @Override
+    public void start() {
+        running = true;
+        accepting = true;
+        writer = new Thread(this::drain, "expense-write-behind");
+        writer.start();
+    }
+
+    @Override
+    public void stop() {
+        accepting = false;
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(shutdownTimeout.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            log.warn("Write-behind queue still had {} expenses after {}", buffer.size(), shutdownTimeout);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+
+    private void drain() {
+        List<Pending> group = new ArrayList<>(batchSize);
+        long position = 0;
+
+        while (true) {
+            if (buffer.drainTo(group, batchSize) > 0) {
+                commit(group, position);
+                position += group.size();
+                // Status lookups see the outcome before a durable caller is answered.
+                completedThrough = position;
+                for (Pending pending : group) pending.acknowledge();
+                group.clear();
+                continue;
+            }
+
+            // A position can be claimed but not yet filled, so stop only once the two meet.
+            if (!running) {
+                if (buffer.tail() == buffer.head()) break;
+                Thread.onSpinWait();
+                continue;
+            }
+
+            idle = true;
+            // Checked after raising the flag: a producer that claims later sees it and unparks.
+            if (running && buffer.tail() == buffer.head()) LockSupport.parkNanos(IDLE_PARK_NANOS);
+            idle = false;
+        }
+        log.info("Write-behind queue flushed {} expenses in total", position);
+    }
+
+    private void commit(List<Pending> group, long firstPosition) {
+        List<List<Integer>> byShard = new ArrayList<>();
+        for (int shard = 0; shard < shardRouter.shards(); shard++) byShard.add(new ArrayList<>());
+        for (int i = 0; i < group.size(); i++) byShard.get(shardRouter.shardOf(group.get(i).dto.userId)).add(i);
+
+        for (List<Integer> members : byShard) {
+            if (!members.isEmpty()) commit(group, members, firstPosition);
+        }
+    }
+
+    // Inserts the given members of the group, all on one shard, in one transaction.
+    private void commit(List<Pending> group, List<Integer> members, long firstPosition) {
+        List<ExpenseDto> dtos = new ArrayList<>(members.size());
+        for (int i : members) dtos.add(group.get(i).dto);
+
+        try {
+            List<Long> ids = expenseService.saveAll(dtos);
+            for (int j = 0; j < members.size(); j++) {
+                int i = members.get(j);
+                committed(group.get(i), firstPosition + i, ids.get(j));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Group of {} expenses failed, inserting them one by one", members.size(), e);
+            for (int i : members) {
+                Pending pending = group.get(i);
+                try {
+                    committed(pending, firstPosition + i, expenseService.save(pending.dto).getId());
+                } catch (RuntimeException rowFailure) {
+                    failed(pending, firstPosition + i, rowFailure);
+                }
+            }
+        }
+        groupSizes.record(members.size());
+    }
+
+    private void committed(Pending pending, long position, long id) {
+        outcomes.put(position, new IngestStatusDto(trackingId(position), IngestStatusDto.State.COMMITTED, id, null));
+        pending.id = id;
+    }
+
+    private void failed(Pending pending, long position, RuntimeException e) {
+        failed.increment();
+        String reason = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+        outcomes.put(position, new IngestStatusDto(trackingId(position), IngestStatusDto.State.FAILED, null, reason));
+        pending.failure = e;
+    }
+
+    private String trackingId(long position) {
+        return epoch + "-" + position;
+    }
+
+    private long position(String trackingId) {
+        int separator = trackingId.lastIndexOf('-');
+        if (separator < 0 || !trackingId.substring(0, separator).equals(Long.toString(epoch))) return -1;
+        try {
+            return Long.parseLong(trackingId.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+
+    /**
+     * @param committed completes with the stored expense, or null unless a durable ack was asked for
+     */
+    public record Ticket(String trackingId, CompletableFuture<ExpenseDto> committed) {
+    }
+
+    private static final class Pending {
+
+        final ExpenseDto dto;
+        final CompletableFuture<ExpenseDto> committed;
+
+        // Outcome, set by the writer.
+        long id;
+        RuntimeException failure;
+
+        Pending(ExpenseDto dto, CompletableFuture<ExpenseDto> committed) {
+            this.dto = dto;
+            this.committed = committed;
+        }
+
+        void acknowledge() {
+            if (committed == null) return;
+
+            if (failure != null) {
+                committed.completeExceptionally(failure);
+            } else {
+                // A new row starts at version 0.
+                committed.complete(new ExpenseDto(id, dto.description, Money.round(dto.amount), dto.category,
+                        dto.date, 0, dto.userId));
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.Mini.Expense.Tracker.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Records how many rows each repository method returns, as the
+ * {@code spring.data.repository.results} distribution. It is tagged by repository and method
+ * like Spring Boot's {@code spring.data.repository.invocations} timer, so slow queries can be
+ * told apart from queries that simply return a lot.
+ *
+ * Only collection results are recorded; a Stream's size is not known when the method returns.
+ */
+@Configuration(proxyBeanMethods = false)
+public class RepositoryResultMetrics {
+
+    public static final String METRIC_NAME = "spring.data.repository.results";
+
+    @Bean
+    static BeanPostProcessor repositoryResultMetricsPostProcessor(ObjectProvider<MeterRegistry> registry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                // Before initialization: the repository proxy is created in afterPropertiesSet.
+                if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+                    factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+                            (proxyFactory, information) -> proxyFactory.addAdvice(
+                                    new ResultSizeInterceptor(registry, information.getRepositoryInterface()))));
+                }
+                return bean;
+            }
+        };
+    }
+
+
+    private static class ResultSizeInterceptor implements MethodInterceptor {
+
+        private final ObjectProvider<MeterRegistry> registry;
+        private final String repository;
+        private final Map<Method, DistributionSummary> summaries = new ConcurrentHashMap<>();
+
+        ResultSizeInterceptor(ObjectProvider<MeterRegistry> registry, Class<?> repositoryInterface) {
+            this.registry = registry;
+            this.repository = repositoryInterface.getSimpleName();
+        }
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            Object result = invocation.proceed();
+
+            if (result instanceof Collection<?> rows) {
+                summaries.computeIfAbsent(invocation.getMethod(), method -> DistributionSummary.builder(METRIC_NAME)
+                                .baseUnit("rows")
+                                .tag("repository", repository)
+                                .tag("method", method.getName())
+                                .register(registry.getObject()))
+                        .record(rows.size());
+            }
+            return result;
+        }
+    }
+}
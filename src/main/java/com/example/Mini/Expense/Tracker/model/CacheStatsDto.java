@@ -0,0 +1,32 @@
+package com.example.Mini.Expense.Tracker.model;
+
+import lombok.Getter;
+
+
+@Getter
+public class CacheStatsDto {
+
+    private long size;
+    private long maximumSize;
+
+    private long hitCount;
+    private long missCount;
+    private double hitRate;
+
+    // Entries dropped by the size bound or the TTL.
+    private long evictionCount;
+
+    // Entries dropped by the write path.
+    private long invalidationCount;
+
+    public CacheStatsDto(long size, long maximumSize, long hitCount, long missCount, double hitRate,
+                         long evictionCount, long invalidationCount) {
+        this.size = size;
+        this.maximumSize = maximumSize;
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.hitRate = hitRate;
+        this.evictionCount = evictionCount;
+        this.invalidationCount = invalidationCount;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.Mini.Expense.Tracker.model;
+
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+
+@Getter
+public class CategoryStatsDto {
+
+    private String category;
+    private long count;
+
+    // min and max are exact; the percentiles come from a sketch.
+    private BigDecimal min;
+    private BigDecimal p50;
+    private BigDecimal p90;
+    private BigDecimal p99;
+    private BigDecimal max;
+
+    // The true rank of each percentile is within rankError * count of the requested rank,
+    // with 99% confidence.
+    private double rankError;
+
+    private List<FrequentDescriptionDto> topDescriptions;
+
+    // No description count is more than this above the true count.
+    private long descriptionCountError;
+
+    public CategoryStatsDto(String category, long count, BigDecimal min, BigDecimal p50, BigDecimal p90,
+                            BigDecimal p99, BigDecimal max, double rankError,
+                            List<FrequentDescriptionDto> topDescriptions, long descriptionCountError) {
+        this.category = category;
+        this.count = count;
+        this.min = min;
+        this.p50 = p50;
+        this.p90 = p90;
+        this.p99 = p99;
+        this.max = max;
+        this.rankError = rankError;
+        this.topDescriptions = topDescriptions;
+        this.descriptionCountError = descriptionCountError;
+    }
+}
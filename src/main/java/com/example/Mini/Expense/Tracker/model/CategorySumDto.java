@@ -15,4 +15,9 @@ public class CategorySumDto {
         this.category = category;
         this.sum = sum;
     }
+
+    // For JPQL projections over the rollup, whose totals are in cents.
+    public CategorySumDto(ExpenseCategory category, long totalCents) {
+        this(category.name(), Money.toBigDecimal(totalCents));
+    }
 }
@@ -4,13 +4,20 @@ package com.example.Mini.Expense.Tracker.model;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Min;
 import lombok.*;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 
 
 
+// Updates only set the columns that changed, so the statement is as small as the change.
 @Entity
+@SqlResultSetMapping(name = Expense.CATEGORY_SUM_MAPPING, classes = @ConstructorResult(
+        targetClass = CategorySumDto.class,
+        columns = {@ColumnResult(name = "category", type = String.class),
+                @ColumnResult(name = "total", type = BigDecimal.class)}))
+@DynamicUpdate
 @Data
 @Table(name="expenses")
 @AllArgsConstructor
@@ -20,8 +27,17 @@ import java.time.LocalDate;
 @Setter
 public class Expense {
 
+    // Maps (category, total) rows of native aggregates onto CategorySumDto.
+    public static final String CATEGORY_SUM_MAPPING = "CategorySumDto";
+
+    // Owner of expenses written before there were owners, and of requests that name none.
+    public static final long DEFAULT_USER_ID = 0;
+
+    // Pooled sequence rather than IDENTITY: ids are known before the INSERT, which lets
+    // Hibernate batch inserts. allocationSize must match the sequence increment in V4.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "expenses_seq")
+    @SequenceGenerator(name = "expenses_seq", sequenceName = "expenses_seq", allocationSize = 50)
     private long id;
 
     @Column(nullable = false, length = 100)
@@ -37,6 +53,22 @@ public class Expense {
     @Column(nullable=false)
     private LocalDate date;
 
+    @Version
+    @Column(nullable = false)
+    private long version;
+
+    // Decides the shard the row lives on, so it is never changed after the insert.
+    @Column(name = "user_id", nullable = false, updatable = false)
+    private long userId;
+
+    public Expense(long id, String description, BigDecimal amount, ExpenseCategory category, LocalDate date) {
+        this.id = id;
+        this.description = description;
+        this.amount = amount;
+        this.category = category;
+        this.date = date;
+    }
+
     public Expense(String description, BigDecimal amount, ExpenseCategory category, LocalDate date) {
 
 
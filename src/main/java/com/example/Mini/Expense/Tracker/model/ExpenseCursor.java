@@ -0,0 +1,46 @@
+package com.example.Mini.Expense.Tracker.model;
+
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+
+/**
+ * Keyset position in the (date, id) ordering of expenses. Encoded as an opaque url-safe
+ * token so clients only ever hand back what a previous page gave them.
+ */
+@Getter
+public class ExpenseCursor {
+
+    private final LocalDate date;
+    private final long id;
+
+    public ExpenseCursor(LocalDate date, long id) {
+        this.date = date;
+        this.id = id;
+    }
+
+    public static ExpenseCursor after(ExpenseDto dto) {
+        return new ExpenseCursor(dto.getDate(), dto.getId());
+    }
+
+    public String encode() {
+        String raw = date + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ExpenseCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+
+            return new ExpenseCursor(LocalDate.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid page cursor: " + token, e);
+        }
+    }
+}
@@ -1,5 +1,10 @@
 package com.example.Mini.Expense.Tracker.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import lombok.*;
 
 import java.math.BigDecimal;
@@ -7,18 +12,51 @@ import java.time.LocalDate;
 
 @Data
 @RequiredArgsConstructor
-@AllArgsConstructor
 public class ExpenseDto {
 
     public long id;
 
+    // The same rules as the entity's columns, checked before anything is written.
+    @NotBlank
+    @Size(max = 100)
     public String description;
 
+    @NotNull
+    @Min(1)
     public BigDecimal amount;
 
+    @NotNull
     public ExpenseCategory category;
+
+    @NotNull
     public LocalDate date;
 
+    public long userId;
+
+    // Travels in the ETag header rather than the body.
+    @JsonIgnore
+    public long version;
+
+    public ExpenseDto(long id, String description, BigDecimal amount, ExpenseCategory category, LocalDate date) {
+        this.id = id;
+        this.description = description;
+        this.amount = amount;
+        this.category = category;
+        this.date = date;
+    }
+
+    public ExpenseDto(long id, String description, BigDecimal amount, ExpenseCategory category, LocalDate date,
+                      long version) {
+        this(id, description, amount, category, date);
+        this.version = version;
+    }
+
+    public ExpenseDto(long id, String description, BigDecimal amount, ExpenseCategory category, LocalDate date,
+                      long version, long userId) {
+        this(id, description, amount, category, date, version);
+        this.userId = userId;
+    }
+
 
 //    public ExpenseDto (long id, String desc, BigDecimal amount,
 //                                 ExpenseCategory category, LocalDate date) {
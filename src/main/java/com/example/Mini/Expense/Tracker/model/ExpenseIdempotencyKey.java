@@ -0,0 +1,57 @@
+package com.example.Mini.Expense.Tracker.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+
+
+@Entity
+@Table(name = "expense_idempotency_keys")
+@IdClass(ExpenseIdempotencyKey.Key.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExpenseIdempotencyKey {
+
+    @Id
+    @Column(name = "user_id")
+    private long userId;
+
+    @Id
+    @Column(name = "idempotency_key", length = 64)
+    private String key;
+
+    @Column(name = "expense_id", nullable = false)
+    private long expenseId;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    // The expense as the first request returned it. Empty for keys recorded before responses
+    // were kept whose expense had already been deleted.
+    @Column(length = 100)
+    private String description;
+
+    @Column(scale = 2)
+    private BigDecimal amount;
+
+    @Enumerated(EnumType.STRING)
+    private ExpenseCategory category;
+
+    private LocalDate date;
+
+    private Long version;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private long userId;
+        private String key;
+    }
+}
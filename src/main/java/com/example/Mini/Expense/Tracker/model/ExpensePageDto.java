@@ -0,0 +1,20 @@
+package com.example.Mini.Expense.Tracker.model;
+
+import lombok.Getter;
+
+import java.util.List;
+
+
+@Getter
+public class ExpensePageDto {
+
+    private List<ExpenseDto> items;
+
+    // Opaque keyset cursor for the following page, null once the range is exhausted.
+    private String next;
+
+    public ExpensePageDto(List<ExpenseDto> items, String next) {
+        this.items = items;
+        this.next = next;
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.Mini.Expense.Tracker.model;
+
+import lombok.Getter;
+
+
+@Getter
+public class FrequentDescriptionDto {
+
+    // Trimmed and lower-cased, so "Lunch" and "lunch " are counted together.
+    private String description;
+
+    // At least the true count, and at most maxOverestimate above it.
+    private long count;
+    private long maxOverestimate;
+
+    public FrequentDescriptionDto(String description, long count, long maxOverestimate) {
+        this.description = description;
+        this.count = count;
+        this.maxOverestimate = maxOverestimate;
+    }
+}
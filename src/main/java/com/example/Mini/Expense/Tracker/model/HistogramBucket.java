@@ -0,0 +1,39 @@
+package com.example.Mini.Expense.Tracker.model;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Locale;
+
+
+/**
+ * Bucket length of a {@code GET /expenses/histogram} series. Weeks start on Monday.
+ */
+public enum HistogramBucket {
+
+    DAY(1), WEEK(7);
+
+    private final int days;
+
+    HistogramBucket(int days) {
+        this.days = days;
+    }
+
+    public int days() {
+        return days;
+    }
+
+    /**
+     * @return the first day of the bucket the date falls in
+     */
+    public LocalDate start(LocalDate date) {
+        return this == WEEK ? date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)) : date;
+    }
+
+    /**
+     * @throws IllegalArgumentException for anything but day or week, in any case
+     */
+    public static HistogramBucket parse(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
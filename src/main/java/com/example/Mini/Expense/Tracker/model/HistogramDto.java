@@ -0,0 +1,40 @@
+package com.example.Mini.Expense.Tracker.model;
+
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.List;
+
+
+/**
+ * Spending per bucket as parallel columns: totals[i][b] is what categories[i] spent in the
+ * bucket starting {@code start} plus b bucket lengths. Buckets without expenses are 0.
+ */
+@Getter
+public class HistogramDto {
+
+    private String bucket;
+
+    // The requested range; the first and last bucket may reach outside it but only count days inside.
+    private LocalDate from;
+    private LocalDate to;
+
+    private LocalDate start;
+    private int buckets;
+
+    private List<String> categories;
+
+    // In cents, one row per category; written out as amounts by ExpenseJsonSerializers.
+    private long[][] totals;
+
+    public HistogramDto(String bucket, LocalDate from, LocalDate to, LocalDate start, int buckets,
+                        List<String> categories, long[][] totals) {
+        this.bucket = bucket;
+        this.from = from;
+        this.to = to;
+        this.start = start;
+        this.buckets = buckets;
+        this.categories = categories;
+        this.totals = totals;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.Mini.Expense.Tracker.model;
+
+import lombok.Getter;
+
+import java.util.List;
+
+
+@Getter
+public class ImportResultDto {
+
+    private String importId;
+
+    // Records already committed by earlier runs of the same import and skipped by this one.
+    private long resumedAfter;
+
+    private long imported;
+    private long rejected;
+
+    // Across every run of this import.
+    private long totalImported;
+    private long totalRejected;
+
+    private boolean completed;
+
+    private long elapsedMillis;
+    private double rowsPerSecond;
+
+    // The first rejections of this run, capped at ExpenseImportService.MAX_REPORTED_REJECTIONS.
+    private List<RejectedRowDto> rejectedRows;
+
+    public ImportResultDto(String importId, long resumedAfter, long imported, long rejected, long totalImported,
+                           long totalRejected, boolean completed, long elapsedMillis, double rowsPerSecond,
+                           List<RejectedRowDto> rejectedRows) {
+        this.importId = importId;
+        this.resumedAfter = resumedAfter;
+        this.imported = imported;
+        this.rejected = rejected;
+        this.totalImported = totalImported;
+        this.totalRejected = totalRejected;
+        this.completed = completed;
+        this.elapsedMillis = elapsedMillis;
+        this.rowsPerSecond = rowsPerSecond;
+        this.rejectedRows = rejectedRows;
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.Mini.Expense.Tracker.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+
+
+@Getter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class IngestStatusDto {
+
+    public enum State { PENDING, COMMITTED, FAILED }
+
+    private String trackingId;
+    private State state;
+
+    // Set once committed.
+    private Long expenseId;
+
+    // Set when failed.
+    private String error;
+
+    public IngestStatusDto(String trackingId, State state, Long expenseId, String error) {
+        this.trackingId = trackingId;
+        this.state = state;
+        this.expenseId = expenseId;
+        this.error = error;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.Mini.Expense.Tracker.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+
+/**
+ * Fixed-point money as a count of cents in a {@code long}.
+ *
+ * Amounts are stored with two decimals (NUMERIC(10, 2) per entry, NUMERIC(14, 2) per rollup
+ * cell), so cents represent every stored value exactly. Aggregation works on cents and only
+ * converts back to {@link BigDecimal} where a value leaves the service.
+ */
+public final class Money {
+
+    public static final int SCALE = 2;
+
+    private Money() {
+    }
+
+    /**
+     * @throws ArithmeticException if the amount has fractions of a cent or does not fit a long
+     */
+    public static long toCents(BigDecimal amount) {
+        return amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    /**
+     * The amount as the columns store it, rounded half up to whole cents, or null for null.
+     * Requests are rounded with this before they become entities, so what the write path
+     * passes on is what was written.
+     */
+    public static BigDecimal round(BigDecimal amount) {
+        return amount == null ? null : amount.setScale(SCALE, RoundingMode.HALF_UP);
+    }
+
+    public static BigDecimal toBigDecimal(long cents) {
+        return BigDecimal.valueOf(cents, SCALE);
+    }
+}
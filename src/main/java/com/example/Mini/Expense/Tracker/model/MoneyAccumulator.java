@@ -0,0 +1,38 @@
+package com.example.Mini.Expense.Tracker.model;
+
+import java.math.BigDecimal;
+
+
+/**
+ * Mutable running total in cents. Adding never allocates, and an overflow throws
+ * {@link ArithmeticException} instead of wrapping around.
+ */
+public final class MoneyAccumulator {
+
+    private long cents;
+    private long count;
+
+    public MoneyAccumulator add(long amountCents) {
+        cents = Math.addExact(cents, amountCents);
+        count++;
+        return this;
+    }
+
+    public MoneyAccumulator subtract(long amountCents) {
+        cents = Math.subtractExact(cents, amountCents);
+        count--;
+        return this;
+    }
+
+    public long cents() {
+        return cents;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return Money.toBigDecimal(cents);
+    }
+}
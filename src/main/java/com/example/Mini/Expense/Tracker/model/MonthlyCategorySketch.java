@@ -0,0 +1,36 @@
+package com.example.Mini.Expense.Tracker.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+
+/**
+ * Encoded amount and description sketches of one month and category. count and total are
+ * what the sketches had seen when they were written, so they can be checked against
+ * monthly_category_totals before being trusted.
+ */
+@Entity
+@Table(name = "monthly_category_sketches")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class MonthlyCategorySketch {
+
+    @EmbeddedId
+    private MonthlyCategoryTotalId id;
+
+    @Column(name = "entry_count", nullable = false)
+    private long count;
+
+    // In cents; see MoneyCentsConverter.
+    @Column(nullable = false, precision = 14, scale = 2)
+    @Convert(converter = MoneyCentsConverter.class)
+    private long total;
+
+    @Column(nullable = false)
+    private byte[] amounts;
+
+    @Column(nullable = false)
+    private byte[] descriptions;
+}
@@ -0,0 +1,25 @@
+package com.example.Mini.Expense.Tracker.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+
+@Entity
+@Table(name = "monthly_category_totals")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class MonthlyCategoryTotal {
+
+    @EmbeddedId
+    private MonthlyCategoryTotalId id;
+
+    // In cents; see MoneyCentsConverter.
+    @Column(nullable = false, precision = 14, scale = 2)
+    @Convert(converter = MoneyCentsConverter.class)
+    private long total;
+
+    @Column(name = "entry_count", nullable = false)
+    private long count;
+}
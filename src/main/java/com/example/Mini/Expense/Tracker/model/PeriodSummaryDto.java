@@ -0,0 +1,26 @@
+package com.example.Mini.Expense.Tracker.model;
+
+import lombok.Getter;
+
+import java.time.YearMonth;
+import java.util.List;
+
+
+@Getter
+public class PeriodSummaryDto {
+
+    private String period;
+
+    // The months of the period inside the requested range; the first and last period may be partial.
+    private YearMonth from;
+    private YearMonth to;
+
+    private List<CategorySumDto> categories;
+
+    public PeriodSummaryDto(String period, YearMonth from, YearMonth to, List<CategorySumDto> categories) {
+        this.period = period;
+        this.from = from;
+        this.to = to;
+        this.categories = categories;
+    }
+}
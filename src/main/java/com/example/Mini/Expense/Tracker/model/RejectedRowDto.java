@@ -0,0 +1,22 @@
+package com.example.Mini.Expense.Tracker.model;
+
+import lombok.Getter;
+
+
+@Getter
+public class RejectedRowDto {
+
+    // 1-based position among the data records, i.e. not counting the header.
+    private long record;
+
+    // Line of the file on which the record starts.
+    private long line;
+
+    private String reason;
+
+    public RejectedRowDto(long record, long line, String reason) {
+        this.record = record;
+        this.line = line;
+        this.reason = reason;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.Mini.Expense.Tracker.model;
+
+import java.time.YearMonth;
+import java.util.Locale;
+
+
+/**
+ * Period length of a {@code GET /expenses/summary/range} series.
+ */
+public enum SummaryGranularity {
+
+    MONTH, QUARTER, YEAR;
+
+    /**
+     * @return the label of the period the month falls in: 2025-06, 2025-Q2 or 2025
+     */
+    public String period(YearMonth month) {
+        return switch (this) {
+            case MONTH -> month.toString();
+            case QUARTER -> month.getYear() + "-Q" + ((month.getMonthValue() + 2) / 3);
+            case YEAR -> Integer.toString(month.getYear());
+        };
+    }
+
+    /**
+     * @throws IllegalArgumentException for anything but month, quarter or year, in any case
+     */
+    public static SummaryGranularity parse(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
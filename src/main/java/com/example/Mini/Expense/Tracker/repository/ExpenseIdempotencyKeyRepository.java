@@ -0,0 +1,30 @@
+package com.example.Mini.Expense.Tracker.repository;
+
+import com.example.Mini.Expense.Tracker.model.ExpenseIdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+
+
+@Repository
+public interface ExpenseIdempotencyKeyRepository extends JpaRepository<ExpenseIdempotencyKey, ExpenseIdempotencyKey.Key> {
+
+    // A plain INSERT: save() would merge and read the row first. A key the user has already
+    // taken fails with a DataIntegrityViolationException.
+    @Modifying
+    @Query(value = "INSERT INTO expense_idempotency_keys (user_id, idempotency_key, expense_id, created_at, " +
+            "description, amount, category, date, version) " +
+            "VALUES (:userId, :key, :expenseId, :createdAt, :description, :amount, :category, :date, :version)",
+            nativeQuery = true)
+    void insert(@Param("userId") long userId, @Param("key") String key, @Param("expenseId") long expenseId,
+                @Param("createdAt") Instant createdAt, @Param("description") String description,
+                @Param("amount") BigDecimal amount, @Param("category") String category,
+                @Param("date") LocalDate date, @Param("version") long version);
+}
@@ -3,36 +3,138 @@ package com.example.Mini.Expense.Tracker.repository;
 import com.example.Mini.Expense.Tracker.model.CategorySumDto;
 import com.example.Mini.Expense.Tracker.model.Expense;
 import com.example.Mini.Expense.Tracker.model.ExpenseCategory;
+import com.example.Mini.Expense.Tracker.model.ExpenseDto;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.NativeQuery;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.Objects;
+import java.util.stream.Stream;
 
 
 @Repository
 public interface ExpenseRepository extends JpaRepository<Expense, Long> {
 
-    @Query(value="SELECT * FROM Expenses WHERE category = :categoryName"+
-                    " AND date BETWEEN :from AND :to",
-                    nativeQuery = true
-    )
-    List<Expense> filteredSearch(@Param("from") LocalDate from,
-                                          @Param("to") LocalDate to,
-                                          @Param("categoryName") String categoryName);
+    String FILTERED_SEARCH_QUERY = "SELECT * FROM Expenses WHERE user_id = :userId AND category = :categoryName" +
+            " AND date BETWEEN :from AND :to";
 
+    // Half-open date range instead of EXTRACT(YEAR/MONTH FROM date) so the predicate stays
+    // sargable and can be served by idx_expenses_date_category. On Postgres it also limits the
+    // scan to the month's partition.
+    String CATEGORY_SUM_QUERY = "SELECT category, SUM(amount) as total " +
+            "FROM expenses " +
+            "WHERE date >= :from AND date < :to " +
+            "GROUP BY category";
+
+    // Rows strictly after the (afterDate, afterId) keyset position. User and category are pinned,
+    // so ordering by them too is a no-op that lets H2 read idx_expenses_user_category_date_id in order.
+    String FILTERED_SEARCH_PAGE_QUERY = FILTERED_SEARCH_QUERY +
+            " AND (date, id) > (:afterDate, :afterId)" +
+            " ORDER BY user_id, category, date, id LIMIT :limit";
+
+    // Plain columns rather than entities, so nothing is tracked while a large range is read.
+    String EXPORT_QUERY = "SELECT id, description, amount, category, date FROM Expenses" +
+            " WHERE user_id = :userId AND date >= :from AND date <= :to AND category IN (:categoryNames)" +
+            " ORDER BY date, id";
+
+    // One row per day and category rather than per expense; the buckets are folded from these.
+    String DAILY_CATEGORY_TOTALS_QUERY = "SELECT date, category, SUM(amount) FROM expenses" +
+            " WHERE date >= :from AND date <= :to AND category IN (:categoryNames)" +
+            " GROUP BY date, category";
+
+    int STREAM_FETCH_SIZE = 500;
+
+    int EXPORT_FETCH_SIZE = 1000;
+
+    // Same predicate as FILTERED_SEARCH_QUERY, selected straight into dtos: nothing enters the
+    // persistence context, so there are no entity instances or dirty-checking snapshots to build.
+    // The bare date range is what lets Postgres skip the partitions of other months.
+    @Transactional(readOnly = true)
+    @Query("SELECT new com.example.Mini.Expense.Tracker.model.ExpenseDto(" +
+            "e.id, e.description, e.amount, e.category, e.date, e.version, e.userId) " +
+            "FROM Expense e WHERE e.userId = :userId AND e.category = :category AND e.date BETWEEN :from AND :to")
+    List<ExpenseDto> filteredSearch(@Param("userId") long userId,
+                                    @Param("from") LocalDate from,
+                                    @Param("to") LocalDate to,
+                                    @Param("category") ExpenseCategory category);
+
+    // Primary key lookups for the page the search index picked. The date range is the span of
+    // those rows, so Postgres only probes the partitions they can be in. Native rather than JPQL:
+    // Hibernate translates a JPQL query with a list parameter again on every call, which cost
+    // more than the lookups themselves.
+    @Transactional(readOnly = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query(value = "SELECT * FROM expenses WHERE id IN (:ids) AND date BETWEEN :from AND :to", nativeQuery = true)
+    List<Expense> findAllByIds(@Param("ids") Collection<Long> ids,
+                               @Param("from") LocalDate from,
+                               @Param("to") LocalDate to);
 
+    // Loaded read-only, so Hibernate keeps no snapshots for dirty checking.
+    @Transactional(readOnly = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query(value = FILTERED_SEARCH_PAGE_QUERY, nativeQuery = true)
+    List<Expense> filteredSearchPage(@Param("userId") long userId,
+                                     @Param("from") LocalDate from,
+                                     @Param("to") LocalDate to,
+                                     @Param("categoryName") String categoryName,
+                                     @Param("afterDate") LocalDate afterDate,
+                                     @Param("afterId") long afterId,
+                                     @Param("limit") int limit);
 
-    @Query(value = "SELECT category, SUM(amount) as total " +
+    // Forward-only cursor; the caller must consume it inside a transaction and close it.
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(value = FILTERED_SEARCH_QUERY + " ORDER BY user_id, category, date, id", nativeQuery = true)
+    Stream<Expense> streamFilteredSearch(@Param("userId") long userId,
+                                         @Param("from") LocalDate from,
+                                         @Param("to") LocalDate to,
+                                         @Param("categoryName") String categoryName);
+
+
+
+    // (id, description, amount, category, date) over a forward-only cursor; same contract as above.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + EXPORT_FETCH_SIZE))
+    @Query(value = EXPORT_QUERY, nativeQuery = true)
+    Stream<Object[]> streamExport(@Param("userId") long userId,
+                                  @Param("from") LocalDate from,
+                                  @Param("to") LocalDate to,
+                                  @Param("categoryNames") Collection<String> categoryNames);
+
+    @Transactional(readOnly = true)
+    @NativeQuery(value = CATEGORY_SUM_QUERY, sqlResultSetMapping = Expense.CATEGORY_SUM_MAPPING)
+    List<CategorySumDto> categorySum(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    // (date, category, total) for every day and category with expenses in [from, to].
+    @Transactional(readOnly = true)
+    @Query(value = DAILY_CATEGORY_TOTALS_QUERY, nativeQuery = true)
+    List<Object[]> dailyCategoryTotals(@Param("from") LocalDate from,
+                                       @Param("to") LocalDate to,
+                                       @Param("categoryNames") Collection<String> categoryNames);
+
+    // (year, month, category, total, count) for every populated cell, straight from the raw rows.
+    @Query(value = "SELECT CAST(EXTRACT(YEAR FROM date) AS INT), CAST(EXTRACT(MONTH FROM date) AS INT), " +
+            "category, SUM(amount), COUNT(*) " +
             "FROM expenses " +
-            "WHERE EXTRACT(YEAR FROM date) = :year AND EXTRACT(MONTH FROM date) = :month " +
-            "GROUP BY category", nativeQuery = true
-    )
-    List<Object[]> categorySum(@Param("year") int year, @Param("month") int month);
+            "GROUP BY CAST(EXTRACT(YEAR FROM date) AS INT), CAST(EXTRACT(MONTH FROM date) AS INT), category",
+            nativeQuery = true)
+    List<Object[]> monthlyCategoryTotals();
+
+    default List<CategorySumDto> categorySum(int year, int month) {
+        if (month < 1 || month > 12) return List.of();
+
+        LocalDate start = LocalDate.of(year, month, 1);
+        return categorySum(start, start.plusMonths(1));
+    }
 
 
 }
@@ -0,0 +1,30 @@
+package com.example.Mini.Expense.Tracker.repository;
+
+import com.example.Mini.Expense.Tracker.model.ImportCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+
+
+@Repository
+public interface ImportCheckpointRepository extends JpaRepository<ImportCheckpoint, String> {
+
+    // Compare-and-set on recordsDone: returns 0 if another run moved the checkpoint first.
+    // Clears the persistence context, which may hold the checkpoint under open-in-view.
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE ImportCheckpoint c SET c.recordsDone = :recordsDone, " +
+            "c.rowsImported = c.rowsImported + :imported, c.rowsRejected = c.rowsRejected + :rejected, " +
+            "c.completed = :completed, c.updatedAt = :updatedAt " +
+            "WHERE c.importId = :importId AND c.recordsDone = :expectedRecordsDone AND c.completed = false")
+    int advance(@Param("importId") String importId,
+                @Param("expectedRecordsDone") long expectedRecordsDone,
+                @Param("recordsDone") long recordsDone,
+                @Param("imported") long imported,
+                @Param("rejected") long rejected,
+                @Param("completed") boolean completed,
+                @Param("updatedAt") Instant updatedAt);
+}
@@ -0,0 +1,26 @@
+package com.example.Mini.Expense.Tracker.repository;
+
+import com.example.Mini.Expense.Tracker.model.MonthlyCategorySketch;
+import com.example.Mini.Expense.Tracker.model.MonthlyCategoryTotalId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+
+@Repository
+public interface MonthlyCategorySketchRepository extends JpaRepository<MonthlyCategorySketch, MonthlyCategoryTotalId> {
+
+    @Transactional(readOnly = true)
+    @Query("SELECT s FROM MonthlyCategorySketch s WHERE s.id.year = :year AND s.id.month = :month")
+    List<MonthlyCategorySketch> findMonth(@Param("year") int year, @Param("month") int month);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM MonthlyCategorySketch s WHERE s.id.year = :year AND s.id.month = :month")
+    int deleteMonth(@Param("year") int year, @Param("month") int month);
+}
@@ -0,0 +1,41 @@
+package com.example.Mini.Expense.Tracker.repository;
+
+import com.example.Mini.Expense.Tracker.model.CategorySumDto;
+import com.example.Mini.Expense.Tracker.model.MonthlyCategoryTotal;
+import com.example.Mini.Expense.Tracker.model.MonthlyCategoryTotalId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+
+@Repository
+public interface MonthlyCategoryTotalRepository extends JpaRepository<MonthlyCategoryTotal, MonthlyCategoryTotalId> {
+
+    // Cells whose entries have all been deleted are kept with a zero count until the next rebuild.
+    // Projected straight into the response shape, so no entities are loaded.
+    @Transactional(readOnly = true)
+    @Query("SELECT new com.example.Mini.Expense.Tracker.model.CategorySumDto(t.id.category, t.total) " +
+            "FROM MonthlyCategoryTotal t " +
+            "WHERE t.id.year = :year AND t.id.month = :month AND t.count > 0 " +
+            "ORDER BY t.id.category")
+    List<CategorySumDto> findMonthSums(@Param("year") int year, @Param("month") int month);
+
+    @Transactional(readOnly = true)
+    @Query("SELECT t FROM MonthlyCategoryTotal t WHERE t.id.year = :year AND t.id.month = :month")
+    List<MonthlyCategoryTotal> findMonth(@Param("year") int year, @Param("month") int month);
+
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO monthly_category_totals (period_year, period_month, category, total, entry_count) " +
+            "SELECT CAST(EXTRACT(YEAR FROM date) AS INT), CAST(EXTRACT(MONTH FROM date) AS INT), category, " +
+            "SUM(amount), COUNT(*) " +
+            "FROM expenses " +
+            "GROUP BY CAST(EXTRACT(YEAR FROM date) AS INT), CAST(EXTRACT(MONTH FROM date) AS INT), category",
+            nativeQuery = true)
+    int insertFromExpenses();
+}
@@ -0,0 +1,75 @@
+package com.example.Mini.Expense.Tracker.runner;
+
+import com.example.Mini.Expense.Tracker.model.Expense;
+import com.example.Mini.Expense.Tracker.model.ImportResultDto;
+import com.example.Mini.Expense.Tracker.service.ExpenseImportService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+
+/**
+ * One-shot CSV import, e.g.
+ * <pre>java -jar app.jar --import=expenses-2019.csv --spring.main.web-application-type=none</pre>
+ *
+ * The import id defaults to the file name, so running the same command again after a crash
+ * resumes after the last committed chunk; {@code --import-id} and {@code --import-chunk-size}
+ * override it and the chunk size. Rows belong to {@code --import-user}, by default user 0.
+ * The application exits afterwards with status 1 if any row was rejected.
+ */
+@Slf4j
+@Component
+public class ImportCommandRunner implements ApplicationRunner {
+
+    static final String OPTION = "import";
+    static final String ID_OPTION = "import-id";
+    static final String CHUNK_SIZE_OPTION = "import-chunk-size";
+    static final String USER_OPTION = "import-user";
+
+    @Autowired
+    private ExpenseImportService importService;
+
+    @Autowired
+    private ApplicationContext context;
+
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        if (!args.containsOption(OPTION)) return;
+
+        Path file = Path.of(args.getOptionValues(OPTION).get(0));
+        String importId = args.containsOption(ID_OPTION)
+                ? args.getOptionValues(ID_OPTION).get(0)
+                : file.getFileName().toString();
+        Integer chunkSize = args.containsOption(CHUNK_SIZE_OPTION)
+                ? Integer.valueOf(args.getOptionValues(CHUNK_SIZE_OPTION).get(0))
+                : null;
+        long userId = args.containsOption(USER_OPTION)
+                ? Long.parseLong(args.getOptionValues(USER_OPTION).get(0))
+                : Expense.DEFAULT_USER_ID;
+
+        ImportResultDto result;
+        try (InputStream in = Files.newInputStream(file)) {
+            result = importService.importCsv(importId, userId, in, chunkSize);
+        }
+
+        log.info("Imported {} rows from {} at {} rows/s; {} rows in total over all runs",
+                result.getImported(), file, Math.round(result.getRowsPerSecond()), result.getTotalImported());
+        if (result.getRejected() > 0) {
+            log.warn("Rejected {} rows", result.getRejected());
+            result.getRejectedRows().forEach(row ->
+                    log.warn("  record {} (line {}): {}", row.getRecord(), row.getLine(), row.getReason()));
+        }
+
+        System.exit(SpringApplication.exit(context, () -> result.getRejected() == 0 ? 0 : 1));
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.Mini.Expense.Tracker.runner;
+
+import com.example.Mini.Expense.Tracker.service.MonthlyRollupService;
+import com.example.Mini.Expense.Tracker.service.RollupDrift;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+
+/**
+ * One-shot maintenance of the monthly rollup, e.g.
+ * <pre>java -jar app.jar --rollup=verify</pre>
+ *
+ * {@code verify} reports cells that drifted from the raw rows, {@code rebuild} recomputes the
+ * rollup and then verifies it. The application exits afterwards with status 1 if drift
+ * remains, so the command can gate a deployment or a cron job.
+ */
+@Slf4j
+@Component
+public class RollupCommandRunner implements ApplicationRunner {
+
+    static final String OPTION = "rollup";
+
+    @Autowired
+    private MonthlyRollupService rollupService;
+
+    @Autowired
+    private ApplicationContext context;
+
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!args.containsOption(OPTION)) return;
+
+        String command = args.getOptionValues(OPTION).get(0);
+        switch (command) {
+            case "rebuild" -> {
+                int cells = rollupService.rebuild();
+                log.info("Rebuilt monthly_category_totals: {} cells", cells);
+            }
+            case "verify" -> { }
+            default -> throw new IllegalArgumentException("Unknown rollup command '" + command +
+                    "', expected rebuild or verify");
+        }
+
+        List<RollupDrift> drift = rollupService.verify();
+        if (drift.isEmpty()) {
+            log.info("monthly_category_totals matches the expenses table");
+        } else {
+            log.warn("monthly_category_totals has drifted in {} cells", drift.size());
+            drift.forEach(cell -> log.warn("  {}", cell));
+        }
+
+        System.exit(SpringApplication.exit(context, () -> drift.isEmpty() ? 0 : 1));
+    }
+}
@@ -0,0 +1,409 @@
+package com.example.Mini.Expense.Tracker.search;
+
+import com.example.Mini.Expense.Tracker.model.ExpenseCategory;
+import com.example.Mini.Expense.Tracker.model.ExpenseDto;
+import com.example.Mini.Expense.Tracker.service.ExpenseChangedEvent;
+import com.example.Mini.Expense.Tracker.sharding.ShardRouter;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+
+/**
+ * In-process inverted index over expense descriptions, for {@code GET /expenses/search}.
+ *
+ * Descriptions are split into lower-case words without accents. Every indexed expense is a
+ * document number, and each word maps to a {@link PostingList} of the documents containing
+ * it. The words are kept sorted, so a query word matches every indexed word it is a prefix
+ * of. The owner, date and category of each document sit in primitive arrays next to the
+ * postings, so filters are applied without touching the database; only the final page of ids
+ * is read from the table.
+ *
+ * Like the columnar store, the index covers every shard, is loaded once at startup and then follows committed
+ * writes through {@link ExpenseChangedEvent}. Listeners of concurrent commits can run in any
+ * order, so every document keeps the version it was indexed at and an older event is ignored;
+ * deleted ids keep a tombstone with their last version, so a late update cannot bring them
+ * back. A changed or deleted expense only clears its document's live bit; once dead documents
+ * outnumber live ones the index is renumbered.
+ */
+@Slf4j
+@Component
+public class ExpenseSearchIndex {
+
+    public static final int MAX_QUERY_WORDS = 8;
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int LOAD_FETCH_SIZE = 1000;
+    private static final int MIN_COMPACTION_DOCS = 1024;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final NavigableMap<String, PostingList> postings = new TreeMap<>();
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private long[] userIds = new long[INITIAL_CAPACITY];
+    private int[] epochDays = new int[INITIAL_CAPACITY];
+    private byte[] categories = new byte[INITIAL_CAPACITY];
+    private long[] versions = new long[INITIAL_CAPACITY];
+    private long[] live = new long[INITIAL_CAPACITY >>> 6];
+    private int docs;
+    private int liveDocs;
+
+    private final Map<Long, Integer> docById = new HashMap<>();
+
+    // Ids are never reused, so tombstones stay until restart.
+    private final Map<Long, Long> deletedVersions = new HashMap<>();
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+
+    /**
+     * Expenses matching every word of the query, newest first.
+     *
+     * @param ids at most the requested number of expense ids, ordered by date and id descending
+     * @param first the earliest date among them, or null if there are none
+     * @param last the latest date among them, or null if there are none
+     */
+    public record Hits(long[] ids, LocalDate first, LocalDate last) {
+    }
+
+
+    /**
+     * Replaces the contents with a fresh scan of the table. The write lock is held for the
+     * whole scan, so commits that land meanwhile are applied right after it.
+     */
+    @PostConstruct
+    public void load() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        lock.writeLock().lock();
+        try {
+            long started = System.nanoTime();
+            clear();
+
+            // Postgres only honours the fetch size inside a transaction.
+            shardRouter.forEachShard(shard -> readOnly.executeWithoutResult(status -> {
+                JdbcTemplate cursor = new JdbcTemplate(jdbcTemplate.getDataSource());
+                cursor.setFetchSize(LOAD_FETCH_SIZE);
+                cursor.query("SELECT id, user_id, description, category, date, version FROM expenses", rs -> {
+                    addDocument(rs.getLong(1), rs.getLong(2), rs.getString(3), ExpenseCategory.valueOf(rs.getString(4)),
+                            rs.getDate(5).toLocalDate(), rs.getLong(6));
+                });
+            }));
+
+            log.info("Indexed {} expense descriptions ({} words, {} posting bytes) in {} ms", liveDocs,
+                    postings.size(), postingBytes(), (System.nanoTime() - started) / 1_000_000);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onExpenseChanged(ExpenseChangedEvent event) {
+        if (event.getCurrent() != null) {
+            upsert(event.getCurrent());
+        } else {
+            remove(event.getPrevious().getId(), event.getPrevious().getVersion());
+        }
+    }
+
+    /**
+     * Indexes the expense unless the index already has a newer version of it, or it was deleted.
+     */
+    public void upsert(ExpenseDto expense) {
+        lock.writeLock().lock();
+        try {
+            addDocument(expense.getId(), expense.getUserId(), expense.getDescription(), expense.getCategory(),
+                    expense.getDate(), expense.getVersion());
+            compactIfSparse();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the expense deleted at the given version, unless the index has a newer one.
+     */
+    public void remove(long id, long version) {
+        lock.writeLock().lock();
+        try {
+            deletedVersions.merge(id, version, Math::max);
+
+            Integer doc = docById.get(id);
+            if (doc == null || versions[doc] > version) return;
+            docById.remove(id);
+
+            kill(doc);
+            compactIfSparse();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveDocs;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param userId the owner whose expenses are searched
+     * @param from earliest date to include, or null for no lower bound
+     * @param to latest date to include, or null for no upper bound
+     * @param category the only category to include, or null for all
+     * @throws IllegalArgumentException if the query has no words or more than
+     * {@link #MAX_QUERY_WORDS}
+     */
+    public Hits search(String query, long userId, LocalDate from, LocalDate to, ExpenseCategory category,
+                       int limit) {
+        List<String> words = tokenize(query == null ? "" : query);
+        if (words.isEmpty() || words.size() > MAX_QUERY_WORDS) {
+            throw new IllegalArgumentException("A search needs 1 to " + MAX_QUERY_WORDS + " words");
+        }
+        int fromDay = from == null ? Integer.MIN_VALUE : (int) from.toEpochDay();
+        int toDay = to == null ? Integer.MAX_VALUE : (int) to.toEpochDay();
+
+        lock.readLock().lock();
+        try {
+            long[] matches = null;
+            for (String word : words) {
+                long[] documents = documentsWithPrefix(word);
+                if (matches == null) {
+                    matches = documents;
+                } else {
+                    for (int i = 0; i < matches.length; i++) matches[i] &= documents[i];
+                }
+            }
+
+            // (epoch day, id) packed into one sortable long; ids stay well below 2^40. Only the
+            // newest `limit` are kept, in a min-heap whose root is the oldest of them.
+            int size = Math.max(0, limit);
+            long[] newest = new long[size];
+            int found = 0;
+            for (int block = 0; block < matches.length && size > 0; block++) {
+                long bits = matches[block] & live[block];
+                while (bits != 0) {
+                    int doc = (block << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+
+                    int day = epochDays[doc];
+                    if (day < fromDay || day > toDay) continue;
+                    if (category != null && categories[doc] != category.ordinal()) continue;
+                    if (userIds[doc] != userId) continue;
+
+                    long key = ((long) day << 40) | ids[doc];
+                    if (found < size) {
+                        siftUp(newest, found++, key);
+                    } else if (key > newest[0]) {
+                        siftDown(newest, size, key);
+                    }
+                }
+            }
+
+            Arrays.sort(newest, 0, found);
+            long[] hits = new long[found];
+            for (int i = 0; i < found; i++) {
+                hits[i] = newest[found - 1 - i] & ((1L << 40) - 1);
+            }
+            return found == 0 ? new Hits(hits, null, null)
+                    : new Hits(hits, LocalDate.ofEpochDay(newest[0] >> 40),
+                            LocalDate.ofEpochDay(newest[found - 1] >> 40));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Whether every word of the query starts some word of the description, which is what
+     * {@link #search} matches on.
+     */
+    public static boolean matches(String query, String description) {
+        List<String> words = tokenize(description == null ? "" : description);
+        for (String prefix : tokenize(query == null ? "" : query)) {
+            boolean found = false;
+            for (String word : words) {
+                if (word.startsWith(prefix)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Lower-case words of letters and digits, with accents removed, each listed once.
+     */
+    static List<String> tokenize(String text) {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+
+        Set<String> words = new LinkedHashSet<>();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) continue;
+
+            if (Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(c));
+            } else if (!word.isEmpty()) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        if (!word.isEmpty()) words.add(word.toString());
+        return new ArrayList<>(words);
+    }
+
+
+    private static void siftUp(long[] heap, int position, long key) {
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (heap[parent] <= key) break;
+            heap[position] = heap[parent];
+            position = parent;
+        }
+        heap[position] = key;
+    }
+
+    // Replaces the root of a full heap.
+    private static void siftDown(long[] heap, int size, long key) {
+        int position = 0;
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) break;
+            if (child + 1 < size && heap[child + 1] < heap[child]) child++;
+            if (heap[child] >= key) break;
+            heap[position] = heap[child];
+            position = child;
+        }
+        heap[position] = key;
+    }
+
+    private long[] documentsWithPrefix(String prefix) {
+        long[] documents = new long[live.length];
+        for (Map.Entry<String, PostingList> entry : postings.tailMap(prefix, true).entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) break;
+            entry.getValue().addTo(documents);
+        }
+        return documents;
+    }
+
+    private void addDocument(long id, long userId, String description, ExpenseCategory category, LocalDate date,
+                             long version) {
+        Long deleted = deletedVersions.get(id);
+        if (deleted != null && version <= deleted) return;
+
+        Integer existing = docById.get(id);
+        if (existing != null) {
+            if (versions[existing] > version) return;
+            kill(existing);
+        }
+
+        if (docs == ids.length) grow();
+        int doc = docs++;
+        ids[doc] = id;
+        userIds[doc] = userId;
+        epochDays[doc] = (int) date.toEpochDay();
+        categories[doc] = (byte) category.ordinal();
+        versions[doc] = version;
+        live[doc >>> 6] |= 1L << doc;
+        liveDocs++;
+        docById.put(id, doc);
+
+        for (String word : tokenize(description == null ? "" : description)) {
+            postings.computeIfAbsent(word, key -> new PostingList()).add(doc);
+        }
+    }
+
+    private void kill(int doc) {
+        live[doc >>> 6] &= ~(1L << doc);
+        liveDocs--;
+    }
+
+    /**
+     * Renumbers the live documents from zero and drops the dead ones from every posting list,
+     * once updates and deletes have left more dead documents than live ones.
+     */
+    private void compactIfSparse() {
+        int dead = docs - liveDocs;
+        if (dead < MIN_COMPACTION_DOCS || dead <= liveDocs) return;
+
+        int[] newDocs = new int[docs];
+        int next = 0;
+        for (int doc = 0; doc < docs; doc++) {
+            if ((live[doc >>> 6] & (1L << doc)) == 0) {
+                newDocs[doc] = -1;
+                continue;
+            }
+            newDocs[doc] = next;
+            ids[next] = ids[doc];
+            userIds[next] = userIds[doc];
+            epochDays[next] = epochDays[doc];
+            categories[next] = categories[doc];
+            versions[next] = versions[doc];
+            docById.put(ids[next], next);
+            next++;
+        }
+
+        Arrays.fill(live, 0);
+        for (int doc = 0; doc < next; doc++) live[doc >>> 6] |= 1L << doc;
+        docs = next;
+
+        Iterator<Map.Entry<String, PostingList>> entries = postings.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, PostingList> entry = entries.next();
+            PostingList remapped = entry.getValue().remap(newDocs);
+            if (remapped == null) {
+                entries.remove();
+            } else {
+                entry.setValue(remapped);
+            }
+        }
+    }
+
+    private void clear() {
+        postings.clear();
+        docById.clear();
+        Arrays.fill(live, 0);
+        docs = 0;
+        liveDocs = 0;
+    }
+
+    private long postingBytes() {
+        long bytes = 0;
+        for (PostingList list : postings.values()) bytes += list.byteSize();
+        return bytes;
+    }
+
+    private void grow() {
+        int capacity = ids.length + (ids.length >> 1);
+        ids = Arrays.copyOf(ids, capacity);
+        userIds = Arrays.copyOf(userIds, capacity);
+        epochDays = Arrays.copyOf(epochDays, capacity);
+        categories = Arrays.copyOf(categories, capacity);
+        versions = Arrays.copyOf(versions, capacity);
+        live = Arrays.copyOf(live, (capacity + 63) >>> 6);
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.Mini.Expense.Tracker.search;
+
+import java.util.Arrays;
+
+
+/**
+ * The documents containing one term, as strictly increasing document numbers stored as
+ * variable-length gaps: seven bits per byte, high bit set on every byte but the last. Gaps
+ * between neighbouring documents are small, so most entries take one or two bytes instead
+ * of four.
+ *
+ * Documents are only ever appended, in increasing order; removal happens by rebuilding the
+ * list through {@link #remap}.
+ */
+final class PostingList {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private byte[] bytes = new byte[INITIAL_CAPACITY];
+    private int length;
+    private int size;
+    private int last = -1;
+
+    void add(int doc) {
+        if (doc <= last) {
+            throw new IllegalArgumentException("Document " + doc + " is not after " + last);
+        }
+
+        int gap = doc - last;
+        if (length + 5 > bytes.length) bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + 5));
+        while ((gap & ~0x7F) != 0) {
+            bytes[length++] = (byte) ((gap & 0x7F) | 0x80);
+            gap >>>= 7;
+        }
+        bytes[length++] = (byte) gap;
+
+        last = doc;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int byteSize() {
+        return length;
+    }
+
+    int[] toArray() {
+        int[] docs = new int[size];
+        int doc = -1;
+        int position = 0;
+        for (int i = 0; i < size; i++) {
+            int gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                gap |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            doc += gap;
+            docs[i] = doc;
+        }
+        return docs;
+    }
+
+    /**
+     * Sets the bit of every document in the list.
+     */
+    void addTo(long[] bits) {
+        int doc = -1;
+        int position = 0;
+        for (int i = 0; i < size; i++) {
+            int gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                gap |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            doc += gap;
+            bits[doc >>> 6] |= 1L << doc;
+        }
+    }
+
+    /**
+     * @param newDocs the new number of every document, or -1 for documents to drop; must keep
+     * the surviving documents in the same order
+     * @return the renumbered list, or null if no document survives
+     */
+    PostingList remap(int[] newDocs) {
+        PostingList remapped = new PostingList();
+        for (int doc : toArray()) {
+            if (newDocs[doc] >= 0) remapped.add(newDocs[doc]);
+        }
+        if (remapped.size == 0) return null;
+
+        remapped.bytes = Arrays.copyOf(remapped.bytes, remapped.length);
+        return remapped;
+    }
+}
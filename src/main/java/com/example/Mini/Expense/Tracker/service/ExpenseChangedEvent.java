@@ -0,0 +1,34 @@
+package com.example.Mini.Expense.Tracker.service;
+
+import com.example.Mini.Expense.Tracker.model.ExpenseDto;
+import lombok.Getter;
+
+
+/**
+ * Published by {@link ExpenseService} for every write, inside the writing transaction.
+ * {@code previous} is the row before the change and {@code current} after it; either is
+ * null for a create or a delete respectively.
+ */
+@Getter
+public class ExpenseChangedEvent {
+
+    private final ExpenseDto previous;
+    private final ExpenseDto current;
+
+    private ExpenseChangedEvent(ExpenseDto previous, ExpenseDto current) {
+        this.previous = previous;
+        this.current = current;
+    }
+
+    public static ExpenseChangedEvent created(ExpenseDto current) {
+        return new ExpenseChangedEvent(null, current);
+    }
+
+    public static ExpenseChangedEvent updated(ExpenseDto previous, ExpenseDto current) {
+        return new ExpenseChangedEvent(previous, current);
+    }
+
+    public static ExpenseChangedEvent deleted(ExpenseDto previous) {
+        return new ExpenseChangedEvent(previous, null);
+    }
+}
@@ -0,0 +1,318 @@
+package com.example.Mini.Expense.Tracker.service;
+
+import com.example.Mini.Expense.Tracker.model.Expense;
+import com.example.Mini.Expense.Tracker.model.ExpenseCategory;
+import com.example.Mini.Expense.Tracker.model.ExpenseDto;
+import com.example.Mini.Expense.Tracker.model.ImportCheckpoint;
+import com.example.Mini.Expense.Tracker.model.ImportResultDto;
+import com.example.Mini.Expense.Tracker.model.RejectedRowDto;
+import com.example.Mini.Expense.Tracker.repository.ImportCheckpointRepository;
+import com.example.Mini.Expense.Tracker.sharding.ShardRouter;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+
+/**
+ * Bulk loads expenses from CSV in the layout written by {@code GET /expenses/export}; the id
+ * column is optional and ignored, columns are matched by header name.
+ *
+ * Records are parsed one at a time and checked against the same rules as the entity with
+ * plain code instead of a Bean Validation pass per row. Valid rows are inserted in chunks,
+ * one JDBC batch and one short transaction per chunk, so an import running next to the API
+ * holds locks only briefly. Ids come from the entity's own pooled generator, and every row
+ * is published as an {@link ExpenseChangedEvent}, so the rollup, the summary cache and the
+ * columnar store see imported rows exactly like created ones.
+ *
+ * Each chunk advances the import's row in {@code import_checkpoints} in the same transaction.
+ * Running the same import id again skips what has already been committed, so an import that
+ * died halfway is resumed by simply sending the same file again.
+ *
+ * All rows of an import belong to one user and go to that user's shard, together with the
+ * checkpoint; an import is resumed by sending it again for the same user.
+ */
+@Slf4j
+@Service
+public class ExpenseImportService {
+
+    public static final int MAX_CHUNK_SIZE = 10_000;
+    public static final int MAX_IMPORT_ID_LENGTH = 64;
+    public static final int MAX_REPORTED_REJECTIONS = 100;
+
+    // Mirrors the constraints on Expense and the expenses columns.
+    private static final int MAX_DESCRIPTION_LENGTH = 100;
+    private static final BigDecimal MIN_AMOUNT = BigDecimal.ONE;
+    private static final BigDecimal MAX_AMOUNT = new BigDecimal("99999999.99");
+
+    private static final String INSERT_QUERY = "INSERT INTO expenses (id, description, amount, category, date, user_id, version) " +
+            "VALUES (?, ?, ?, ?, ?, ?, 0)";
+
+    @Value("${expense.import.chunk-size:1000}")
+    private int defaultChunkSize;
+
+    @Autowired
+    private ImportCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+
+    /**
+     * @param userId owner of every imported row
+     * @param chunkSize records per transaction, or null for {@code expense.import.chunk-size}
+     * @throws IllegalArgumentException for a bad import id, chunk size or header, or a quoted
+     * field that is never closed. Chunks before the bad record stay committed.
+     * @throws IllegalStateException if another run of the same import committed a chunk first
+     */
+    public ImportResultDto importCsv(String importId, long userId, InputStream inputStream, Integer chunkSize)
+            throws IOException {
+        if (importId == null || importId.isBlank() || importId.length() > MAX_IMPORT_ID_LENGTH) {
+            throw new IllegalArgumentException("Import id must be 1 to " + MAX_IMPORT_ID_LENGTH + " characters");
+        }
+        int size = chunkSize != null ? chunkSize : defaultChunkSize;
+        if (size < 1 || size > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Chunk size must be between 1 and " + MAX_CHUNK_SIZE);
+        }
+
+        long started = System.nanoTime();
+        int shard = shardRouter.shardOf(userId);
+        ImportCheckpoint checkpoint = shardRouter.onShard(shard, () -> startOrResume(importId));
+        Run run = new Run(importId, userId, checkpoint.getRecordsDone(), size);
+
+        if (!checkpoint.isCompleted()) {
+            try (CsvReader reader = new CsvReader(inputStream)) {
+                read(reader, run);
+            }
+            checkpoint = shardRouter.onShard(shard, () -> checkpointRepository.findById(importId).orElseThrow());
+        }
+
+        long elapsedNanos = System.nanoTime() - started;
+        long elapsedMillis = elapsedNanos / 1_000_000;
+        double rowsPerSecond = elapsedNanos > 0 ? run.imported * 1e9 / elapsedNanos : 0;
+
+        log.info("Import {}: {} rows imported, {} rejected in {} ms ({} rows/s), resumed after {} records",
+                importId, run.imported, run.rejected, elapsedMillis, Math.round(rowsPerSecond), run.resumedAfter);
+
+        return new ImportResultDto(importId, run.resumedAfter, run.imported, run.rejected,
+                checkpoint.getRowsImported(), checkpoint.getRowsRejected(), checkpoint.isCompleted(),
+                elapsedMillis, rowsPerSecond, run.rejectedRows);
+    }
+
+    private ImportCheckpoint startOrResume(String importId) {
+        return checkpointRepository.findById(importId).orElseGet(() -> {
+            try {
+                return checkpointRepository.saveAndFlush(new ImportCheckpoint(importId, 0, 0, 0, false, Instant.now()));
+            } catch (DataIntegrityViolationException e) {
+                // Another run created it in the meantime.
+                return checkpointRepository.findById(importId).orElseThrow();
+            }
+        });
+    }
+
+    private void read(CsvReader reader, Run run) throws IOException {
+        Columns columns = Columns.of(reader.next());
+
+        long record = 0;
+        List<String> fields;
+        while ((fields = reader.next()) != null) {
+            if (fields.size() == 1 && fields.get(0).isEmpty()) continue;
+
+            record++;
+            if (record <= run.resumedAfter) continue;
+
+            ExpenseDto row = new ExpenseDto();
+            row.setUserId(run.userId);
+            String reason = columns.parse(fields, row);
+            if (reason == null) {
+                run.chunk.add(row);
+            } else {
+                run.reject(record, reader.recordLine(), reason);
+            }
+
+            if (record - run.committedRecords == run.chunkSize) commit(run, record, false);
+        }
+        // A shorter file than the one that was interrupted must not move the checkpoint back.
+        commit(run, Math.max(record, run.committedRecords), true);
+    }
+
+    private void commit(Run run, long record, boolean completed) {
+        long imported = run.chunk.size();
+        long rejected = run.chunkRejected;
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            shardRouter.route(run.userId);
+            BeforeExecutionGenerator generator = idGenerator();
+            SharedSessionContractImplementor session = entityManager.unwrap(SharedSessionContractImplementor.class);
+            for (ExpenseDto row : run.chunk) {
+                row.setId(((Number) generator.generate(session, null, null, EventType.INSERT)).longValue());
+            }
+
+            jdbcTemplate.batchUpdate(INSERT_QUERY, run.chunk, run.chunk.size(), (statement, row) -> {
+                statement.setLong(1, row.getId());
+                statement.setString(2, row.getDescription());
+                statement.setBigDecimal(3, row.getAmount());
+                statement.setString(4, row.getCategory().name());
+                statement.setDate(5, Date.valueOf(row.getDate()));
+                statement.setLong(6, row.getUserId());
+            });
+            for (ExpenseDto row : run.chunk) {
+                eventPublisher.publishEvent(ExpenseChangedEvent.created(row));
+            }
+
+            int advanced = checkpointRepository.advance(run.importId, run.committedRecords, record,
+                    imported, rejected, completed, Instant.now());
+            if (advanced != 1) {
+                throw new IllegalStateException("Import " + run.importId + " was advanced by another run");
+            }
+        });
+
+        run.imported += imported;
+        run.committedRecords = record;
+        run.chunkRejected = 0;
+        run.chunk.clear();
+    }
+
+    private BeforeExecutionGenerator idGenerator() {
+        return (BeforeExecutionGenerator) entityManager.getEntityManagerFactory()
+                .unwrap(SessionFactoryImplementor.class)
+                .getMappingMetamodel()
+                .getEntityDescriptor(Expense.class)
+                .getGenerator();
+    }
+
+
+    private static final class Run {
+
+        final String importId;
+        final long userId;
+        final long resumedAfter;
+        final int chunkSize;
+        final List<ExpenseDto> chunk;
+
+        long committedRecords;
+        long chunkRejected;
+        long imported;
+        long rejected;
+        final List<RejectedRowDto> rejectedRows = new ArrayList<>();
+
+        Run(String importId, long userId, long resumedAfter, int chunkSize) {
+            this.importId = importId;
+            this.userId = userId;
+            this.resumedAfter = resumedAfter;
+            this.committedRecords = resumedAfter;
+            this.chunkSize = chunkSize;
+            this.chunk = new ArrayList<>(chunkSize);
+        }
+
+        void reject(long record, long line, String reason) {
+            chunkRejected++;
+            rejected++;
+            if (rejectedRows.size() < MAX_REPORTED_REJECTIONS) {
+                rejectedRows.add(new RejectedRowDto(record, line, reason));
+            }
+        }
+    }
+
+    private record Columns(int description, int amount, int category, int date, int count) {
+
+        static Columns of(List<String> header) {
+            if (header == null) throw new IllegalArgumentException("The file is empty");
+
+            int description = -1, amount = -1, category = -1, date = -1;
+            for (int i = 0; i < header.size(); i++) {
+                // Spreadsheet exports often start with a byte order mark.
+                String name = header.get(i).replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT);
+                switch (name) {
+                    case "description" -> description = i;
+                    case "amount" -> amount = i;
+                    case "category" -> category = i;
+                    case "date" -> date = i;
+                    default -> { }
+                }
+            }
+            if (description < 0 || amount < 0 || category < 0 || date < 0) {
+                throw new IllegalArgumentException("Header must name description, amount, category and date columns");
+            }
+            return new Columns(description, amount, category, date, header.size());
+        }
+
+        // Fills the row and returns null, or returns why the record is rejected.
+        String parse(List<String> fields, ExpenseDto row) {
+            if (fields.size() < count) return "Expected " + count + " fields but found " + fields.size();
+
+            String description = fields.get(this.description).trim();
+            if (description.isEmpty()) return "Description is empty";
+            if (description.length() > MAX_DESCRIPTION_LENGTH) {
+                return "Description is longer than " + MAX_DESCRIPTION_LENGTH + " characters";
+            }
+
+            BigDecimal amount;
+            try {
+                amount = new BigDecimal(fields.get(this.amount).trim());
+            } catch (NumberFormatException e) {
+                return "Amount '" + fields.get(this.amount) + "' is not a number";
+            }
+            if (amount.compareTo(MIN_AMOUNT) < 0 || amount.compareTo(MAX_AMOUNT) > 0) {
+                return "Amount " + amount.toPlainString() + " is outside " + MIN_AMOUNT + " to " + MAX_AMOUNT;
+            }
+            if (amount.stripTrailingZeros().scale() > 2) {
+                return "Amount " + amount.toPlainString() + " has more than two decimals";
+            }
+
+            ExpenseCategory category;
+            try {
+                category = ExpenseCategory.valueOf(fields.get(this.category).trim());
+            } catch (IllegalArgumentException e) {
+                return "Unknown category '" + fields.get(this.category) + "'";
+            }
+
+            LocalDate date;
+            try {
+                date = LocalDate.parse(fields.get(this.date).trim());
+            } catch (DateTimeParseException e) {
+                return "Date '" + fields.get(this.date) + "' is not yyyy-MM-dd";
+            }
+
+            row.setDescription(description);
+            row.setAmount(amount);
+            row.setCategory(category);
+            row.setDate(date);
+            return null;
+        }
+    }
+}
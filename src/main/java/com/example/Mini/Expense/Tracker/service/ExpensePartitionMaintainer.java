@@ -0,0 +1,77 @@
+package com.example.Mini.Expense.Tracker.service;
+
+import com.example.Mini.Expense.Tracker.sharding.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Date;
+import java.time.YearMonth;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Creates the monthly partitions of expenses ahead of time on Postgres, where V8 partitions
+ * the table by month. Without this, rows for a month nobody created a partition for land in
+ * expenses_default, which every query has to read.
+ *
+ * Runs at startup and then daily, covering the current month and the next
+ * {@code expense.partitions.months-ahead}. Creating a partition that exists is a no-op, so
+ * any number of instances can run it. Every shard gets the same partitions. Does nothing on
+ * other databases.
+ */
+@Slf4j
+@Component
+public class ExpensePartitionMaintainer {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Value("${expense.partitions.months-ahead:3}")
+    private int monthsAhead;
+
+    private volatile Boolean partitioned;
+
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${expense.partitions.cron:0 0 3 * * *}")
+    public void createUpcomingPartitions() {
+        int created = createPartitions(YearMonth.now(), monthsAhead);
+        if (created > 0) log.info("Created {} expenses partitions", created);
+    }
+
+    /**
+     * @return how many of the partitions for {@code from} and the following months were created,
+     * over all shards
+     */
+    public int createPartitions(YearMonth from, int monthsAhead) {
+        if (!isPartitioned()) return 0;
+
+        AtomicInteger created = new AtomicInteger();
+        shardRouter.forEachShard(shard -> {
+            for (int i = 0; i <= monthsAhead; i++) {
+                Boolean result = jdbcTemplate.queryForObject("SELECT expenses_create_partition(?)", Boolean.class,
+                        Date.valueOf(from.plusMonths(i).atDay(1)));
+                if (Boolean.TRUE.equals(result)) created.incrementAndGet();
+            }
+        });
+        return created.get();
+    }
+
+    private boolean isPartitioned() {
+        if (partitioned == null) {
+            partitioned = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                    connection.getMetaData().getDatabaseProductName().equals("PostgreSQL"));
+        }
+        return partitioned;
+    }
+}
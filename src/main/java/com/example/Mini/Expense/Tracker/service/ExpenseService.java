@@ -1,44 +1,195 @@
 package com.example.Mini.Expense.Tracker.service;
 
 
+import com.example.Mini.Expense.Tracker.analytics.ColumnarExpenseStore;
+import com.example.Mini.Expense.Tracker.model.CacheStatsDto;
 import com.example.Mini.Expense.Tracker.model.CategorySumDto;
 import com.example.Mini.Expense.Tracker.model.Expense;
 import com.example.Mini.Expense.Tracker.model.ExpenseCategory;
+import com.example.Mini.Expense.Tracker.model.ExpenseCursor;
 import com.example.Mini.Expense.Tracker.model.ExpenseDto;
+import com.example.Mini.Expense.Tracker.model.ExpensePageDto;
+import com.example.Mini.Expense.Tracker.model.HistogramBucket;
+import com.example.Mini.Expense.Tracker.model.HistogramDto;
+import com.example.Mini.Expense.Tracker.model.Money;
+import com.example.Mini.Expense.Tracker.repository.ExpenseIdempotencyKeyRepository;
 import com.example.Mini.Expense.Tracker.repository.ExpenseRepository;
+import com.example.Mini.Expense.Tracker.search.ExpenseSearchIndex;
+import com.example.Mini.Expense.Tracker.sharding.ShardRouter;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpMethod;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.servlet.resource.NoResourceFoundException;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.*;
-
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Reads and writes of expenses. Every expense belongs to a user; reads and writes by id or of
+ * a listing are confined to one user, and run on that user's shard. Summaries and histograms
+ * cover every user and are gathered from all shards. The overloads without a user act for
+ * {@link Expense#DEFAULT_USER_ID}.
+ */
 @Service
 public class ExpenseService {
 
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    public static final int MAX_BATCH_SIZE = 10_000;
+
+    // Ten years of days.
+    public static final int MAX_HISTOGRAM_BUCKETS = 3660;
+
+    private static final ExpenseCategory[] CATEGORIES = ExpenseCategory.values();
+
+    // The order the monthly summaries list categories in.
+    private static final ExpenseCategory[] CATEGORIES_BY_NAME = Arrays.stream(CATEGORIES)
+            .sorted(Comparator.comparing(ExpenseCategory::name)).toArray(ExpenseCategory[]::new);
+
+    // Matches hibernate.jdbc.batch_size so every flush sends exactly one JDBC batch.
+    private static final int INSERT_CHUNK_SIZE = 50;
 
     @Autowired
     private ExpenseRepository repository;
 
+    @Autowired
+    private ExpenseIdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private MonthlyRollupService rollupService;
+
+    @Autowired
+    private SummaryCache summaryCache;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private VersionStamps versionStamps;
+
+    @Autowired
+    private ExpenseSearchIndex searchIndex;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    // Present only with expense.analytics.engine=columnar.
+    @Autowired(required = false)
+    private ColumnarExpenseStore columnarStore;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
 //    public ExpenseService(ExpenseRepository reposiotry) {
 //        this.repository = reposiotry;
 //    }
 
+    @Transactional
     public ExpenseDto save(@Valid ExpenseDto dto) {
+        return save(dto, null);
+    }
 
-        repository.save(new Expense(dto.description, dto.amount, dto.category, dto.date));
+    /**
+     * Inserts the expense and, if given, records the idempotency key that created it in the same
+     * transaction, together with the expense as returned here.
+     *
+     * @throws org.springframework.dao.DataIntegrityViolationException if the key is already
+     * recorded; nothing is inserted then
+     */
+    @Transactional
+    public ExpenseDto save(@Valid ExpenseDto dto, String idempotencyKey) {
+        shardRouter.route(dto.userId);
+
+        Expense saved = repository.save(newExpense(dto));
+        ExpenseDto created = mapDto(saved);
+        if (idempotencyKey != null) {
+            idempotencyKeyRepository.insert(dto.userId, idempotencyKey, created.id, Instant.now(), created.description,
+                    created.amount, created.category == null ? null : created.category.name(), created.date, created.version);
+        }
+
+        eventPublisher.publishEvent(ExpenseChangedEvent.created(created));
+
+        return created;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the expenses belong to users on different shards; one
+     * transaction only writes to one
+     */
+    @Transactional
+    public List<Long> saveAll(List<ExpenseDto> dtos) {
+        if (dtos.isEmpty()) return List.of();
+
+        int shard = shardRouter.shardOf(dtos.get(0).userId);
+        for (ExpenseDto dto : dtos) {
+            if (shardRouter.shardOf(dto.userId) != shard) {
+                throw new IllegalArgumentException("Expenses of users on different shards cannot be saved together");
+            }
+        }
+        shardRouter.route(dtos.get(0).userId);
+
+        List<Long> ids = new ArrayList<>(dtos.size());
+        List<Expense> chunk = new ArrayList<>(INSERT_CHUNK_SIZE);
+
+        for (ExpenseDto dto : dtos) {
+            chunk.add(newExpense(dto));
+
+            if (chunk.size() == INSERT_CHUNK_SIZE) insertChunk(chunk, ids);
+        }
+        if (!chunk.isEmpty()) insertChunk(chunk, ids);
+
+        return ids;
+    }
 
-        return dto;
+    private static Expense newExpense(ExpenseDto dto) {
+        Expense expense = new Expense(dto.description, Money.round(dto.amount), dto.category, dto.date);
+        expense.setUserId(dto.userId);
+        return expense;
     }
 
+    private void insertChunk(List<Expense> chunk, List<Long> ids) {
+        for (Expense expense : repository.saveAll(chunk)) {
+            ids.add(expense.getId());
+            eventPublisher.publishEvent(ExpenseChangedEvent.created(mapDto(expense)));
+        }
+
+        // Send the batch now and drop the managed copies so large loads don't pile up
+        // in the persistence context.
+        entityManager.flush();
+        entityManager.clear();
+        chunk.clear();
+    }
+
+    @Transactional(readOnly = true)
     public ExpenseDto find(long id) throws NoResourceFoundException {
+        return find(id, Expense.DEFAULT_USER_ID);
+    }
 
-        Optional<Expense> expenseOptional = repository.findById(id);
+    /**
+     * @throws NoResourceFoundException if there is no such expense or it belongs to another user
+     */
+    @Transactional(readOnly = true)
+    public ExpenseDto find(long id, long userId) throws NoResourceFoundException {
+        shardRouter.route(userId);
 
-        if(expenseOptional.isPresent()) return mapDto(expenseOptional.get());
+        Optional<Expense> expenseOptional = repository.findById(id).filter(expense -> expense.getUserId() == userId);
+
+        if(expenseOptional.isPresent()) {
+            ExpenseDto dto = mapDto(expenseOptional.get());
+            versionStamps.recordRow(userId, dto.getId(), dto.getVersion());
+            return dto;
+        }
 
         else throw new NoResourceFoundException(HttpMethod.GET, "Unable to find expense. " +
                 "No expense record found matching the given id: "+ id);
@@ -46,18 +197,57 @@ public class ExpenseService {
                 //(ExpenseDto) repository.findById(id).orElse(new Expense());
     }
 
+    /**
+     * @return the version of the expense as of its last committed write or read, without a
+     * query, or null if that is not known
+     */
+    public Long knownVersion(long id, long userId) {
+        return versionStamps.rowVersion(userId, id);
+    }
+
+    /**
+     * Changes whenever a write to the month commits, and at the latest after
+     * {@code expense.etag-cache.ttl}. Take it before reading the summary.
+     */
+    public String summaryStamp(int year, int month) {
+        return versionStamps.monthStamp(YearMonth.of(year, month));
+    }
+
     public ExpenseDto mapDto(Expense expense) {
 
         return new ExpenseDto(expense.getId(), expense.getDescription(), expense.getAmount(),
-                            expense.getCategory(), expense.getDate());
+                            expense.getCategory(), expense.getDate(), expense.getVersion(), expense.getUserId());
     }
 
 
+    @Transactional
     public void delete(long id) throws NoResourceFoundException {
-        Optional<Expense> expenseOptional = repository.findById(id);
+        delete(id, Expense.DEFAULT_USER_ID, null);
+    }
+
+    @Transactional
+    public void delete(long id, Long expectedVersion) throws NoResourceFoundException {
+        delete(id, Expense.DEFAULT_USER_ID, expectedVersion);
+    }
+
+    /**
+     * Deletes in two statements: the SELECT that provides the old values for the rollup and
+     * the summary cache, and a DELETE guarded by the row version.
+     *
+     * @param expectedVersion version the caller last saw, or null to delete whatever is there
+     * @throws OptimisticLockingFailureException if the row has moved past expectedVersion
+     */
+    @Transactional
+    public void delete(long id, long userId, Long expectedVersion) throws NoResourceFoundException {
+        shardRouter.route(userId);
+        Optional<Expense> expenseOptional = repository.findById(id).filter(expense -> expense.getUserId() == userId);
 
         if(expenseOptional.isPresent()) {
-            repository.deleteById(id);
+            Expense expense = expenseOptional.get();
+            checkVersion(expense, expectedVersion);
+
+            repository.delete(expense);
+            eventPublisher.publishEvent(ExpenseChangedEvent.deleted(mapDto(expense)));
 
         }
 
@@ -66,18 +256,47 @@ public class ExpenseService {
 
     }
 
+    @Transactional
     public ExpenseDto updateExpense(ExpenseDto expenseDto, long id) throws NoResourceFoundException {
-        Optional<Expense> expenseOptional =  repository.findById(id);
+        return updateExpense(expenseDto, id, Expense.DEFAULT_USER_ID, null);
+    }
+
+    @Transactional
+    public ExpenseDto updateExpense(ExpenseDto expenseDto, long id, Long expectedVersion)
+            throws NoResourceFoundException {
+        return updateExpense(expenseDto, id, Expense.DEFAULT_USER_ID, expectedVersion);
+    }
+
+    /**
+     * Updates in at most two statements: the SELECT that provides the old values for the
+     * rollup and the summary cache, and an UPDATE of only the changed columns, guarded by the
+     * row version. Nothing is written when nothing changed. The owner stays as it is.
+     *
+     * @param expectedVersion version the caller last saw, or null to overwrite whatever is there
+     * @return the stored expense, including its new version
+     * @throws OptimisticLockingFailureException if the row has moved past expectedVersion
+     */
+    @Transactional
+    public ExpenseDto updateExpense(ExpenseDto expenseDto, long id, long userId, Long expectedVersion)
+            throws NoResourceFoundException {
+        shardRouter.route(userId);
+        Optional<Expense> expenseOptional =  repository.findById(id).filter(expense -> expense.getUserId() == userId);
 
         if(expenseOptional.isPresent()) {
             Expense expenseToUpdate = expenseOptional.get();
+            checkVersion(expenseToUpdate, expectedVersion);
+            ExpenseDto previous = mapDto(expenseToUpdate);
 
             expenseToUpdate.setDescription(expenseDto.description);
-            expenseToUpdate.setAmount(expenseDto.amount);
+            expenseToUpdate.setAmount(Money.round(expenseDto.amount));
             expenseToUpdate.setCategory(expenseDto.category);
             expenseToUpdate.setDate(expenseDto.date);
-            repository.save(expenseToUpdate);
-            return expenseDto;
+
+            // Flush now so the returned version is the one just written.
+            Expense updated = repository.saveAndFlush(expenseToUpdate);
+            ExpenseDto current = mapDto(updated);
+            eventPublisher.publishEvent(ExpenseChangedEvent.updated(previous, current));
+            return current;
         }
 
         else throw new NoResourceFoundException(HttpMethod.PUT, "Unable to update expense. " +
@@ -86,29 +305,199 @@ public class ExpenseService {
 
     }
 
-    public List<ExpenseDto> filteredSearch(LocalDate from, LocalDate to, ExpenseCategory category) {
+    private void checkVersion(Expense expense, Long expectedVersion) {
+        if (expectedVersion != null && expense.getVersion() != expectedVersion) {
+            throw new OptimisticLockingFailureException("Expense " + expense.getId() + " is at version "
+                    + expense.getVersion() + ", not " + expectedVersion);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public List<ExpenseDto> filteredSearch(long userId, LocalDate from, LocalDate to, ExpenseCategory category) {
+
+        if (columnarStore != null) return columnarStore.filteredSearch(userId, from, to, category);
+
+        shardRouter.route(userId);
+        return repository.filteredSearch(userId, from, to, category);
+    }
+
+    @Transactional(readOnly = true)
+    public ExpensePageDto filteredSearchPage(long userId, LocalDate from, LocalDate to, ExpenseCategory category,
+                                             int limit, String cursor) {
+        shardRouter.route(userId);
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        // The first page starts before any id on the `from` date; ids are always positive.
+        ExpenseCursor position = cursor == null ? new ExpenseCursor(from, 0) : ExpenseCursor.decode(cursor);
+
+        // One extra row tells us whether another page exists without a COUNT query.
+        List<Expense> expenses = repository.filteredSearchPage(userId, from, to, category.name(),
+                position.getDate(), position.getId(), pageSize + 1);
+
+        List<ExpenseDto> items = new ArrayList<>(Math.min(expenses.size(), pageSize));
+        for (int i = 0; i < expenses.size() && i < pageSize; i++) {
+            items.add(mapDto(expenses.get(i)));
+        }
+
+        String next = expenses.size() > pageSize ? ExpenseCursor.after(items.get(pageSize - 1)).encode() : null;
+        return new ExpensePageDto(items, next);
+    }
+
+    /**
+     * Expenses whose description contains a word starting with each word of the query, newest
+     * first. The index picks the page; the rows themselves are read by primary key.
+     *
+     * @param from earliest date to include, or null for no lower bound
+     * @param to latest date to include, or null for no upper bound
+     * @param category the only category to include, or null for all
+     * @throws IllegalArgumentException for a query without words or with too many, or
+     * {@code from} after {@code to}
+     */
+    @Transactional(readOnly = true)
+    public List<ExpenseDto> search(String query, long userId, LocalDate from, LocalDate to, ExpenseCategory category,
+                                   int limit) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        ExpenseSearchIndex.Hits hits = searchIndex.search(query, userId, from, to, category, pageSize);
+        if (hits.ids().length == 0) return List.of();
+
+        List<Long> ids = new ArrayList<>(hits.ids().length);
+        for (long id : hits.ids()) ids.add(id);
+
+        shardRouter.route(userId);
+        Map<Long, ExpenseDto> found = new HashMap<>();
+        for (Expense expense : repository.findAllByIds(ids, hits.first(), hits.last())) {
+            found.put(expense.getId(), mapDto(expense));
+        }
 
-        List<Expense> filteredExpenses = repository.filteredSearch(from, to, category.name());
+        // Back into the index's order. Rows deleted or changed since the index was read, or
+        // changed behind the application's back, are left out rather than returned as hits.
+        List<ExpenseDto> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            ExpenseDto dto = found.get(id);
+            if (dto != null && dto.getUserId() == userId && (category == null || dto.getCategory() == category)
+                    && ExpenseSearchIndex.matches(query, dto.getDescription())) {
+                result.add(dto);
+            }
+        }
+        return result;
+    }
 
+    @Transactional(readOnly = true)
+    public void streamFilteredSearch(long userId, LocalDate from, LocalDate to, ExpenseCategory category,
+                                     Consumer<ExpenseDto> consumer) {
+        shardRouter.route(userId);
+
+        try (Stream<Expense> expenses = repository.streamFilteredSearch(userId, from, to, category.name())) {
+            expenses.forEach(expense -> {
+                consumer.accept(mapDto(expense));
+                // Keep the persistence context from growing with the result set.
+                entityManager.detach(expense);
+            });
+        }
+    }
 
-        List<ExpenseDto> filteredExpensesDto = new ArrayList<>();
-        for(Expense expense : filteredExpenses) {
-            filteredExpensesDto.add(mapDto(expense));
+    /**
+     * Hands every expense of the user dated within [from, to] in one of {@code categories} (all
+     * when empty) to the consumer in (date, id) order. The same dto instance is refilled for
+     * each row, so the consumer must write it out rather than keep it.
+     */
+    @Transactional(readOnly = true)
+    public void export(long userId, LocalDate from, LocalDate to, Set<ExpenseCategory> categories,
+                       Consumer<ExpenseDto> consumer) {
+        shardRouter.route(userId);
+        List<String> categoryNames = (categories == null || categories.isEmpty()
+                ? EnumSet.allOf(ExpenseCategory.class) : categories)
+                .stream().map(ExpenseCategory::name).toList();
+
+        ExpenseDto row = new ExpenseDto();
+        row.setUserId(userId);
+        try (Stream<Object[]> rows = repository.streamExport(userId, from, to, categoryNames)) {
+            rows.forEach(columns -> {
+                row.setId(((Number) columns[0]).longValue());
+                row.setDescription((String) columns[1]);
+                row.setAmount((BigDecimal) columns[2]);
+                row.setCategory(ExpenseCategory.valueOf((String) columns[3]));
+                row.setDate(toLocalDate(columns[4]));
+                consumer.accept(row);
+            });
         }
+    }
 
-        return filteredExpensesDto;
+    private static LocalDate toLocalDate(Object value) {
+        return value instanceof java.sql.Date date ? date.toLocalDate() : (LocalDate) value;
     }
 
     public List<CategorySumDto> categorySum(int year, int month) {
-        //return repository.categorySum(year, month);
-        List<Object[]> results = repository.categorySum(year, month);
-        List<CategorySumDto> dtos = new ArrayList<>();
-        for (Object[] row : results) {
-            String category = (String) row[0];
-            BigDecimal total = (BigDecimal) row[1];
-            dtos.add(new CategorySumDto(category, total));
-        }
-        return dtos;
+        if (month < 1 || month > 12) return List.of();
+
+        // A scan of the in-memory columns is cheaper than a cache entry to keep coherent.
+        if (columnarStore != null) return columnarStore.categorySum(year, month);
+
+        // Served from monthly_category_totals, which the write path keeps current.
+        YearMonth period = YearMonth.of(year, month);
+        return summaryCache.get(period, versionStamps.monthStamp(period), () -> rollupService.categorySum(year, month));
+    }
+
+    /**
+     * Spending per day or week over [from, to], per category, from one grouped query per shard
+     * or, with the columnar engine, one pass over the in-memory columns. Totals are summed into
+     * a dense array indexed by category and bucket offset, so empty buckets cost nothing to find.
+     *
+     * @param category the only category to report, or null for every category with expenses
+     * @throws IllegalArgumentException if from is after to or the range needs more than
+     * {@link #MAX_HISTOGRAM_BUCKETS} buckets
+     */
+    public HistogramDto histogram(LocalDate from, LocalDate to, HistogramBucket bucket, ExpenseCategory category) {
+        if (from.isAfter(to)) throw new IllegalArgumentException("from must not be after to");
+
+        LocalDate start = bucket.start(from);
+        long span = to.toEpochDay() - start.toEpochDay();
+        if (span / bucket.days() + 1 > MAX_HISTOGRAM_BUCKETS) {
+            throw new IllegalArgumentException("Range needs more than " + MAX_HISTOGRAM_BUCKETS + " buckets");
+        }
+        int buckets = (int) (span / bucket.days()) + 1;
+
+        long[] totals;
+        if (columnarStore != null) {
+            totals = columnarStore.histogram(from, to, start, bucket.days(), buckets, category);
+        } else {
+            totals = new long[CATEGORIES.length * buckets];
+            List<String> categoryNames = category == null
+                    ? Arrays.stream(CATEGORIES).map(ExpenseCategory::name).toList()
+                    : List.of(category.name());
+            List<List<Object[]>> shardTotals = shardRouter.scatter(shard ->
+                    repository.dailyCategoryTotals(from, to, categoryNames));
+            for (Object[] row : shardTotals.stream().flatMap(List::stream).toList()) {
+                int offset = (int) ((toLocalDate(row[0]).toEpochDay() - start.toEpochDay()) / bucket.days());
+                int cell = ExpenseCategory.valueOf((String) row[1]).ordinal() * buckets + offset;
+                totals[cell] = Math.addExact(totals[cell], Money.toCents((BigDecimal) row[2]));
+            }
+        }
+
+        List<String> names = new ArrayList<>();
+        List<long[]> rows = new ArrayList<>();
+        for (ExpenseCategory candidate : CATEGORIES_BY_NAME) {
+            int first = candidate.ordinal() * buckets;
+            boolean spent = false;
+            for (int i = first; i < first + buckets && !spent; i++) spent = totals[i] != 0;
+
+            // A requested category is reported even when empty, so the shape is predictable.
+            if (candidate == category || category == null && spent) {
+                names.add(candidate.name());
+                rows.add(Arrays.copyOfRange(totals, first, first + buckets));
+            }
+        }
+
+        return new HistogramDto(bucket.name().toLowerCase(Locale.ROOT), from, to, start, buckets,
+                names, rows.toArray(long[][]::new));
+    }
+
+    public CacheStatsDto summaryCacheStats() {
+        return summaryCache.stats();
     }
 
 
@@ -0,0 +1,241 @@
+package com.example.Mini.Expense.Tracker.service;
+
+import com.example.Mini.Expense.Tracker.model.CategorySumDto;
+import com.example.Mini.Expense.Tracker.model.ExpenseCategory;
+import com.example.Mini.Expense.Tracker.model.ExpenseDto;
+import com.example.Mini.Expense.Tracker.model.Money;
+import com.example.Mini.Expense.Tracker.model.MoneyAccumulator;
+import com.example.Mini.Expense.Tracker.model.MonthlyCategoryTotal;
+import com.example.Mini.Expense.Tracker.model.MonthlyCategoryTotalId;
+import com.example.Mini.Expense.Tracker.repository.ExpenseRepository;
+import com.example.Mini.Expense.Tracker.repository.MonthlyCategoryTotalRepository;
+import com.example.Mini.Expense.Tracker.sharding.ShardRouter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+
+/**
+ * Keeps monthly_category_totals in step with the expenses table.
+ *
+ * Every change is turned into (total, count) deltas for the cells it leaves and enters.
+ * Deltas are summed in cents per transaction and written just before commit, so a batch
+ * touching one month costs a single upsert per category, and an update that stays in its
+ * cell and keeps its amount costs nothing. The upsert adds to the cell or creates it in one
+ * statement, so transactions writing the first expenses of a new cell at the same time all
+ * commit.
+ *
+ * Each shard keeps the totals of its own expenses, written in the transaction that changed
+ * them. A month's summary adds up the shards' totals.
+ */
+@Service
+public class MonthlyRollupService {
+
+    private static final String POSTGRES_UPSERT = "INSERT INTO monthly_category_totals " +
+            "(period_year, period_month, category, total, entry_count) VALUES (?, ?, ?, ?, ?) " +
+            "ON CONFLICT (period_year, period_month, category) DO UPDATE SET " +
+            "total = monthly_category_totals.total + EXCLUDED.total, " +
+            "entry_count = monthly_category_totals.entry_count + EXCLUDED.entry_count";
+
+    // H2 looks for the cell before it waits on a concurrent insert of it, so the second of two
+    // first writes fails with a duplicate key once the first commits, and is run again.
+    private static final String H2_UPSERT = "MERGE INTO monthly_category_totals t " +
+            "USING (VALUES (CAST(? AS INT), CAST(? AS INT), CAST(? AS VARCHAR(10)), " +
+            "CAST(? AS NUMERIC(14, 2)), CAST(? AS BIGINT))) " +
+            "AS d (period_year, period_month, category, total, entry_count) " +
+            "ON t.period_year = d.period_year AND t.period_month = d.period_month AND t.category = d.category " +
+            "WHEN MATCHED THEN UPDATE SET total = t.total + d.total, entry_count = t.entry_count + d.entry_count " +
+            "WHEN NOT MATCHED THEN INSERT (period_year, period_month, category, total, entry_count) " +
+            "VALUES (d.period_year, d.period_month, d.category, d.total, d.entry_count)";
+
+    @Autowired
+    private MonthlyCategoryTotalRepository totalRepository;
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Through JDBC rather than the repository: a failed statement there marks the whole
+    // transaction for rollback, which would rule out the retry on H2.
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private volatile Boolean postgres;
+
+
+    @EventListener
+    public void onExpenseChanged(ExpenseChangedEvent event) {
+        Map<MonthlyCategoryTotalId, MoneyAccumulator> deltas = pendingDeltas();
+
+        if (event.getPrevious() != null) accumulate(deltas, event.getPrevious(), -1);
+        if (event.getCurrent() != null) accumulate(deltas, event.getCurrent(), 1);
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) apply(deltas);
+    }
+
+    /**
+     * Ordered by category name. Read from every shard at once.
+     */
+    public List<CategorySumDto> categorySum(int year, int month) {
+        List<List<CategorySumDto>> shardSums = shardRouter.scatter(shard -> totalRepository.findMonthSums(year, month));
+        if (shardSums.size() == 1) return shardSums.get(0);
+
+        Map<String, MoneyAccumulator> sums = new TreeMap<>();
+        for (List<CategorySumDto> dtos : shardSums) {
+            for (CategorySumDto dto : dtos) {
+                sums.computeIfAbsent(dto.getCategory(), category -> new MoneyAccumulator())
+                        .add(Money.toCents(dto.getSum()));
+            }
+        }
+
+        List<CategorySumDto> merged = new ArrayList<>(sums.size());
+        sums.forEach((category, sum) -> merged.add(new CategorySumDto(category, sum.toBigDecimal())));
+        return merged;
+    }
+
+    /**
+     * Recomputes the whole rollup from the raw rows, one shard and transaction at a time.
+     * Writes committed while this runs are not guaranteed to be reflected; run
+     * {@link #verify()} afterwards on a live system.
+     *
+     * @return the cells written, over all shards
+     */
+    public int rebuild() {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        int[] cells = new int[1];
+        shardRouter.forEachShard(shard -> transaction.executeWithoutResult(status -> {
+            totalRepository.deleteAllInBatch();
+            cells[0] += totalRepository.insertFromExpenses();
+
+            eventPublisher.publishEvent(new RollupRebuiltEvent());
+        }));
+        return cells[0];
+    }
+
+    /**
+     * Compares every rollup cell against an aggregate of the raw rows and returns the cells
+     * that disagree, shard by shard. Cells with a zero count are treated as absent.
+     */
+    public List<RollupDrift> verify() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        List<RollupDrift> drift = new ArrayList<>();
+        shardRouter.forEachShard(shard -> readOnly.executeWithoutResult(status -> drift.addAll(verifyShard())));
+        return drift;
+    }
+
+    private List<RollupDrift> verifyShard() {
+        Map<MonthlyCategoryTotalId, MonthlyCategoryTotal> rollup = new HashMap<>();
+        for (MonthlyCategoryTotal total : totalRepository.findAll()) {
+            if (total.getCount() != 0) rollup.put(total.getId(), total);
+        }
+
+        List<RollupDrift> drift = new ArrayList<>();
+        for (Object[] row : expenseRepository.monthlyCategoryTotals()) {
+            MonthlyCategoryTotalId id = new MonthlyCategoryTotalId(((Number) row[0]).intValue(),
+                    ((Number) row[1]).intValue(), ExpenseCategory.valueOf((String) row[2]));
+            long expectedTotal = Money.toCents((BigDecimal) row[3]);
+            long expectedCount = ((Number) row[4]).longValue();
+
+            MonthlyCategoryTotal actual = rollup.remove(id);
+            if (actual == null) {
+                drift.add(new RollupDrift(id.getYear(), id.getMonth(), id.getCategory(),
+                        Money.toBigDecimal(expectedTotal), expectedCount, BigDecimal.ZERO, 0));
+            } else if (actual.getTotal() != expectedTotal || actual.getCount() != expectedCount) {
+                drift.add(new RollupDrift(id.getYear(), id.getMonth(), id.getCategory(),
+                        Money.toBigDecimal(expectedTotal), expectedCount,
+                        Money.toBigDecimal(actual.getTotal()), actual.getCount()));
+            }
+        }
+
+        // Whatever is left has no raw rows behind it at all.
+        for (MonthlyCategoryTotal orphan : rollup.values()) {
+            MonthlyCategoryTotalId id = orphan.getId();
+            drift.add(new RollupDrift(id.getYear(), id.getMonth(), id.getCategory(),
+                    BigDecimal.ZERO, 0, Money.toBigDecimal(orphan.getTotal()), orphan.getCount()));
+        }
+        return drift;
+    }
+
+
+    private void accumulate(Map<MonthlyCategoryTotalId, MoneyAccumulator> deltas, ExpenseDto expense, int sign) {
+        MonthlyCategoryTotalId id = new MonthlyCategoryTotalId(expense.getDate().getYear(),
+                expense.getDate().getMonthValue(), expense.getCategory());
+
+        MoneyAccumulator delta = deltas.computeIfAbsent(id, key -> new MoneyAccumulator());
+        long cents = Money.toCents(expense.getAmount());
+        if (sign > 0) delta.add(cents);
+        else delta.subtract(cents);
+    }
+
+    private Map<MonthlyCategoryTotalId, MoneyAccumulator> pendingDeltas() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return new LinkedHashMap<>();
+
+        @SuppressWarnings("unchecked")
+        Map<MonthlyCategoryTotalId, MoneyAccumulator> deltas =
+                (Map<MonthlyCategoryTotalId, MoneyAccumulator>) TransactionSynchronizationManager.getResource(this);
+
+        if (deltas == null) {
+            Map<MonthlyCategoryTotalId, MoneyAccumulator> pending = new LinkedHashMap<>();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    apply(pending);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(MonthlyRollupService.this);
+                }
+            });
+            deltas = pending;
+        }
+        return deltas;
+    }
+
+    private void apply(Map<MonthlyCategoryTotalId, MoneyAccumulator> deltas) {
+        for (Map.Entry<MonthlyCategoryTotalId, MoneyAccumulator> entry : deltas.entrySet()) {
+            MonthlyCategoryTotalId id = entry.getKey();
+            MoneyAccumulator delta = entry.getValue();
+
+            if (delta.count() == 0 && delta.cents() == 0) continue;
+
+            Object[] args = {id.getYear(), id.getMonth(), id.getCategory().name(), delta.toBigDecimal(), delta.count()};
+            try {
+                jdbcTemplate.update(upsert(), args);
+            } catch (DuplicateKeyException e) {
+                jdbcTemplate.update(upsert(), args);
+            }
+        }
+        deltas.clear();
+    }
+
+    private String upsert() {
+        if (postgres == null) {
+            postgres = Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                    connection.getMetaData().getDatabaseProductName().equals("PostgreSQL")));
+        }
+        return postgres ? POSTGRES_UPSERT : H2_UPSERT;
+    }
+}
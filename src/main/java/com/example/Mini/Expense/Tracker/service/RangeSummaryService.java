@@ -0,0 +1,149 @@
+package com.example.Mini.Expense.Tracker.service;
+
+import com.example.Mini.Expense.Tracker.model.CategorySumDto;
+import com.example.Mini.Expense.Tracker.model.ExpenseCategory;
+import com.example.Mini.Expense.Tracker.model.Money;
+import com.example.Mini.Expense.Tracker.model.MoneyAccumulator;
+import com.example.Mini.Expense.Tracker.model.PeriodSummaryDto;
+import com.example.Mini.Expense.Tracker.model.SummaryGranularity;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+/**
+ * Category sums over a range of months, grouped into months, quarters or years.
+ *
+ * The range is split into one partition per month. Partitions are summed in parallel on a
+ * dedicated fork-join pool through {@link ExpenseService#categorySum}, so every month comes
+ * from the summary cache when it is there and from the rollup or the columnar store when it
+ * is not, and is cached for the next caller either way. The pool's parallelism caps how many
+ * months are read at once, and with it how many connections one range request can hold.
+ *
+ * Merging into periods runs on the calling thread once all months are in. It is a few
+ * additions per category and month.
+ */
+@Service
+public class RangeSummaryService {
+
+    public static final int MAX_RANGE_MONTHS = 240;
+
+    private static final ExpenseCategory[] CATEGORIES = ExpenseCategory.values();
+
+    private final ExpenseService expenseService;
+    private final ForkJoinPool pool;
+
+    public RangeSummaryService(ExpenseService expenseService,
+                               @Value("${expense.summary-range.parallelism:4}") int parallelism) {
+        this.expenseService = expenseService;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+
+    /**
+     * @return one entry per period overlapping [from, to], in order, including periods
+     * without expenses
+     * @throws IllegalArgumentException if from is after to or the range is longer than
+     * {@link #MAX_RANGE_MONTHS} months
+     */
+    public List<PeriodSummaryDto> categorySumRange(YearMonth from, YearMonth to, SummaryGranularity granularity) {
+        if (from.isAfter(to)) throw new IllegalArgumentException("from " + from + " is after to " + to);
+
+        // Checked as a long: the span of YearMonth's full range does not fit in an int.
+        long span = ChronoUnit.MONTHS.between(from, to) + 1;
+        if (span > MAX_RANGE_MONTHS) {
+            throw new IllegalArgumentException("Range is longer than " + MAX_RANGE_MONTHS + " months");
+        }
+        int months = (int) span;
+
+        // Each partition writes only its own slot; join() publishes them to this thread.
+        @SuppressWarnings("unchecked")
+        List<CategorySumDto>[] monthSums = new List[months];
+        pool.invoke(new MonthPartition(from, monthSums, 0, months));
+
+        return merge(from, monthSums, granularity);
+    }
+
+    private static List<PeriodSummaryDto> merge(YearMonth from, List<CategorySumDto>[] monthSums,
+                                                SummaryGranularity granularity) {
+        List<PeriodSummaryDto> periods = new ArrayList<>();
+        MoneyAccumulator[] sums = newSums();
+
+        YearMonth periodStart = from;
+        for (int i = 0; i < monthSums.length; i++) {
+            YearMonth month = from.plusMonths(i);
+            for (CategorySumDto dto : monthSums[i]) {
+                int category = ExpenseCategory.valueOf(dto.getCategory()).ordinal();
+                sums[category].add(Money.toCents(dto.getSum()));
+            }
+
+            boolean last = i == monthSums.length - 1;
+            String period = granularity.period(month);
+            if (last || !granularity.period(month.plusMonths(1)).equals(period)) {
+                periods.add(new PeriodSummaryDto(period, periodStart, month, categorySums(sums)));
+                periodStart = month.plusMonths(1);
+                sums = newSums();
+            }
+        }
+        return periods;
+    }
+
+    // Ordered by category name, like the single-month summary.
+    private static List<CategorySumDto> categorySums(MoneyAccumulator[] sums) {
+        List<CategorySumDto> categorySums = new ArrayList<>();
+        for (ExpenseCategory category : CATEGORIES) {
+            MoneyAccumulator sum = sums[category.ordinal()];
+            if (sum.count() > 0) categorySums.add(new CategorySumDto(category, sum.cents()));
+        }
+        categorySums.sort(Comparator.comparing(CategorySumDto::getCategory));
+        return categorySums;
+    }
+
+    private static MoneyAccumulator[] newSums() {
+        MoneyAccumulator[] sums = new MoneyAccumulator[CATEGORIES.length];
+        for (int i = 0; i < sums.length; i++) sums[i] = new MoneyAccumulator();
+        return sums;
+    }
+
+
+    // Halves its range of months until a single month is left, then reads that month.
+    private final class MonthPartition extends RecursiveAction {
+
+        private final YearMonth from;
+        private final List<CategorySumDto>[] monthSums;
+        private final int start;
+        private final int end;
+
+        MonthPartition(YearMonth from, List<CategorySumDto>[] monthSums, int start, int end) {
+            this.from = from;
+            this.monthSums = monthSums;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start == 1) {
+                YearMonth month = from.plusMonths(start);
+                monthSums[start] = expenseService.categorySum(month.getYear(), month.getMonthValue());
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new MonthPartition(from, monthSums, start, middle),
+                    new MonthPartition(from, monthSums, middle, end));
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.Mini.Expense.Tracker.service;
+
+import com.example.Mini.Expense.Tracker.model.ExpenseCategory;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+
+
+/**
+ * A (year, month, category) cell where monthly_category_totals disagrees with the raw rows.
+ */
+@Getter
+public class RollupDrift {
+
+    private final int year;
+    private final int month;
+    private final ExpenseCategory category;
+
+    private final BigDecimal expectedTotal;
+    private final long expectedCount;
+
+    private final BigDecimal actualTotal;
+    private final long actualCount;
+
+    public RollupDrift(int year, int month, ExpenseCategory category,
+                       BigDecimal expectedTotal, long expectedCount,
+                       BigDecimal actualTotal, long actualCount) {
+        this.year = year;
+        this.month = month;
+        this.category = category;
+        this.expectedTotal = expectedTotal;
+        this.expectedCount = expectedCount;
+        this.actualTotal = actualTotal;
+        this.actualCount = actualCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d-%02d %s: expected %s (%d entries), rollup has %s (%d entries)",
+                year, month, category, expectedTotal, expectedCount, actualTotal, actualCount);
+    }
+}
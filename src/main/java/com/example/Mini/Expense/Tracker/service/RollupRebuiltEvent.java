@@ -0,0 +1,9 @@
+package com.example.Mini.Expense.Tracker.service;
+
+
+/**
+ * Published by {@link MonthlyRollupService#rebuild()} inside the rebuilding transaction;
+ * every month may have changed.
+ */
+public class RollupRebuiltEvent {
+}
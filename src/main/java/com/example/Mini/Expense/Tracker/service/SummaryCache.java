@@ -0,0 +1,111 @@
+package com.example.Mini.Expense.Tracker.service;
+
+import com.example.Mini.Expense.Tracker.model.CacheStatsDto;
+import com.example.Mini.Expense.Tracker.model.CategorySumDto;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+
+/**
+ * Size- and TTL-bounded cache of monthly summaries keyed by (year, month) and the month's
+ * {@link VersionStamps} stamp.
+ *
+ * Writes evict exactly the months they touched once their transaction has committed, before
+ * the month's stamp moves. An invalidation that races a load of the same month drops the
+ * pending entry, so a summary read before the commit is never left behind. Keying on the
+ * stamp means a summary is only ever served under the stamp it was loaded for: when the
+ * stamp moves or expires, the next read loads afresh.
+ *
+ * Concurrent misses for a month share one load. The load runs on the calling thread outside
+ * the cache's internal locks, and other callers wait on a future, so a virtual thread blocked
+ * on JDBC here never pins its carrier.
+ */
+@Component
+public class SummaryCache {
+
+    private final AsyncCache<Key, List<CategorySumDto>> cache;
+    private final long maximumSize;
+    private final LongAdder invalidations = new LongAdder();
+
+    public SummaryCache(@Value("${expense.summary-cache.maximum-size:240}") long maximumSize,
+                        @Value("${expense.summary-cache.ttl:10m}") Duration ttl) {
+        this.maximumSize = maximumSize;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+    }
+
+    /**
+     * @param stamp the month's stamp, taken before the call
+     */
+    public List<CategorySumDto> get(YearMonth month, String stamp, Supplier<List<CategorySumDto>> loader) {
+        CompletableFuture<List<CategorySumDto>> created = new CompletableFuture<>();
+        CompletableFuture<List<CategorySumDto>> cached = cache.get(new Key(month, stamp), (key, executor) -> created);
+
+        if (cached == created) {
+            try {
+                created.complete(List.copyOf(loader.get()));
+            } catch (RuntimeException | Error e) {
+                // Failed futures are removed by the cache, so the next call retries.
+                created.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        try {
+            return cached.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    public void invalidate(YearMonth month) {
+        cache.synchronous().asMap().keySet().removeIf(key -> key.month().equals(month));
+        invalidations.increment();
+    }
+
+    @Order(VersionStamps.BEFORE_STAMPS)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onExpenseChanged(ExpenseChangedEvent event) {
+        YearMonth previous = event.getPrevious() == null ? null : YearMonth.from(event.getPrevious().getDate());
+        YearMonth current = event.getCurrent() == null ? null : YearMonth.from(event.getCurrent().getDate());
+
+        if (previous != null) invalidate(previous);
+        if (current != null && !current.equals(previous)) invalidate(current);
+    }
+
+    @Order(VersionStamps.BEFORE_STAMPS)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRollupRebuilt(RollupRebuiltEvent event) {
+        invalidations.add(cache.synchronous().estimatedSize());
+        cache.synchronous().invalidateAll();
+    }
+
+    public CacheStatsDto stats() {
+        // Evictions run asynchronously; settle them so size and eviction counts are current.
+        cache.synchronous().cleanUp();
+
+        CacheStats stats = cache.synchronous().stats();
+        return new CacheStatsDto(cache.synchronous().estimatedSize(), maximumSize, stats.hitCount(), stats.missCount(),
+                stats.hitRate(), stats.evictionCount(), invalidations.sum());
+    }
+
+    private record Key(YearMonth month, String stamp) {
+    }
+}
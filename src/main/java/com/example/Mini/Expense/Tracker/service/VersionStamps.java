@@ -0,0 +1,121 @@
+package com.example.Mini.Expense.Tracker.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Cheap version stamps for conditional GETs: the last known row version per expense, kept
+ * under its owner so a stamp never answers for another user, and a change counter per month
+ * for summaries.
+ *
+ * Both move only after a write has committed, and callers take a stamp before reading the
+ * data it describes. A response can therefore carry a stamp older than its data, which costs
+ * one extra full response later, but never a newer one, which would let a client keep stale
+ * data behind a 304.
+ *
+ * The write listeners run after every listener that changes what a stamp describes, such as
+ * {@link SummaryCache}, which are ordered at {@link #BEFORE_STAMPS}. A stamp handed out after
+ * the bump therefore never meets a body from before the commit.
+ *
+ * Row versions live in a size-bounded cache and only ever grow, so a read that loses a race
+ * with a write cannot put an older version back. Deleted ids keep a tombstone until evicted.
+ * Month stamps are drawn from one sequence and carry the boot epoch, so a stamp is never
+ * handed out twice.
+ *
+ * Stamps only see writes committed through this instance. Both kinds expire after
+ * {@code expense.etag-cache.ttl}, which bounds how long another instance's write can be
+ * answered with a 304; summaries cached under a month stamp expire with it.
+ */
+@Component
+public class VersionStamps {
+
+    /**
+     * Order of the listeners that must act on a write before its stamps move.
+     */
+    public static final int BEFORE_STAMPS = Ordered.LOWEST_PRECEDENCE - 1;
+
+    private static final long DELETED = Long.MAX_VALUE;
+
+    private final Cache<Row, Long> rowVersions;
+    private final Cache<YearMonth, Long> monthStamps;
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile long epoch = System.currentTimeMillis();
+
+    @Autowired
+    public VersionStamps(@Value("${expense.etag-cache.maximum-size:10000}") long maximumSize,
+                         @Value("${expense.etag-cache.ttl:10m}") Duration ttl) {
+        this(maximumSize, ttl, Ticker.systemTicker());
+    }
+
+    VersionStamps(long maximumSize, Duration ttl, Ticker ticker) {
+        this.rowVersions = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .ticker(ticker)
+                .build();
+        this.monthStamps = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .ticker(ticker)
+                .build();
+    }
+
+    /**
+     * @return the current version of the expense, or null if it is not cached or was deleted
+     */
+    public Long rowVersion(long userId, long id) {
+        Long version = rowVersions.getIfPresent(new Row(userId, id));
+        return version == null || version == DELETED ? null : version;
+    }
+
+    public void recordRow(long userId, long id, long version) {
+        rowVersions.asMap().merge(new Row(userId, id), version, Math::max);
+    }
+
+    public String monthStamp(YearMonth month) {
+        return epoch + "-" + monthStamps.get(month, key -> sequence.incrementAndGet());
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onExpenseChanged(ExpenseChangedEvent event) {
+        YearMonth previous = event.getPrevious() == null ? null : YearMonth.from(event.getPrevious().getDate());
+        YearMonth current = event.getCurrent() == null ? null : YearMonth.from(event.getCurrent().getDate());
+
+        if (previous != null) bump(previous);
+        if (current != null && !current.equals(previous)) bump(current);
+
+        // Creates are left for the first GET to record, so bulk loads don't flush the cache.
+        if (event.getCurrent() == null) {
+            recordRow(event.getPrevious().getUserId(), event.getPrevious().getId(), DELETED);
+        } else if (event.getPrevious() != null) {
+            recordRow(event.getCurrent().getUserId(), event.getCurrent().getId(), event.getCurrent().getVersion());
+        }
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRollupRebuilt(RollupRebuiltEvent event) {
+        // Any month may have changed; a new epoch retires every stamp handed out so far.
+        epoch = Math.max(System.currentTimeMillis(), epoch + 1);
+    }
+
+    private void bump(YearMonth month) {
+        monthStamps.put(month, sequence.incrementAndGet());
+    }
+
+    private record Row(long userId, long id) {
+    }
+}
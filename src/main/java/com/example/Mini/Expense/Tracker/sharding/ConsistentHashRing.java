@@ -0,0 +1,68 @@
+package com.example.Mini.Expense.Tracker.sharding;
+
+import java.util.Arrays;
+
+
+/**
+ * Consistent hash ring of shards (Karger et al., 1997): each shard owns {@code virtualNodes}
+ * points on a 64-bit ring, and a key belongs to the shard of the first point at or after the
+ * key's hash, wrapping around at the end.
+ *
+ * Points are a hash of (shard, virtual node), so every instance builds the same ring without
+ * coordination. Growing from n to n + 1 shards only moves the keys that land on the new
+ * shard's points, about 1 / (n + 1) of them, and the many virtual nodes keep the shards'
+ * shares within a few percent of even. Immutable and thread safe.
+ */
+public final class ConsistentHashRing {
+
+    // Scatters the (shard, node) inputs, so small user ids don't sit exactly on shard 0's points.
+    private static final long POINT_SEED = 0x9E3779B97F4A7C15L;
+
+    private final long[] points;
+    private final int[] owners;
+    private final int shards;
+
+    public ConsistentHashRing(int shards, int virtualNodes) {
+        if (shards < 1) throw new IllegalArgumentException("A ring needs at least one shard");
+        if (virtualNodes < 1) throw new IllegalArgumentException("Virtual nodes must be positive");
+
+        // (point, shard) pairs sorted by point; ties, if two points ever collide, by shard.
+        long[][] ring = new long[shards * virtualNodes][];
+        for (int shard = 0; shard < shards; shard++) {
+            for (int node = 0; node < virtualNodes; node++) {
+                long point = mix((((long) shard << 32) | node) * POINT_SEED);
+                ring[shard * virtualNodes + node] = new long[]{point, shard};
+            }
+        }
+        Arrays.sort(ring, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+
+        this.points = new long[ring.length];
+        this.owners = new int[ring.length];
+        for (int i = 0; i < ring.length; i++) {
+            points[i] = ring[i][0];
+            owners[i] = (int) ring[i][1];
+        }
+        this.shards = shards;
+    }
+
+    public int shards() {
+        return shards;
+    }
+
+    public int shardOf(long key) {
+        int i = Arrays.binarySearch(points, mix(key));
+        if (i < 0) i = -i - 1;
+        return owners[i == points.length ? 0 : i];
+    }
+
+
+    // The murmur3 64-bit finalizer: consecutive user ids end up spread over the whole ring.
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
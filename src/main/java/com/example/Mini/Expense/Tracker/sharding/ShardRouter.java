@@ -0,0 +1,183 @@
+package com.example.Mini.Expense.Tracker.sharding;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+
+/**
+ * Decides which shard the expenses of a user live on, and which shard the current thread's
+ * statements go to.
+ *
+ * A user belongs to a shard by {@link ConsistentHashRing} of the user id over the
+ * {@code expense.sharding.urls} datasources. Work for one user routes the transaction it runs
+ * in with {@link #route}; the shard stays with the transaction until it completes. Work that
+ * opens transactions of its own, or needs no transaction, runs inside {@link #onShard}.
+ * {@link ShardRoutingDataSource} reads the choice when the transaction takes its connection,
+ * and without one statements go to the first shard.
+ *
+ * Queries across users run on every shard at once through {@link #scatter} and are merged by
+ * the caller. With a single shard, which is the default, routing does nothing and a scatter
+ * runs its one query on the calling thread.
+ */
+@Component
+public class ShardRouter {
+
+    // Each shard hands out ids from its own range of 2^36, and ids must stay below 2^40.
+    public static final int MAX_SHARDS = 16;
+
+    private final ConsistentHashRing ring;
+    private final ExecutorService pool;
+    private final ThreadLocal<Integer> pinned = new ThreadLocal<>();
+
+    @Autowired
+    public ShardRouter(@Value("${expense.sharding.urls:}") List<String> urls,
+                       @Value("${expense.sharding.virtual-nodes:160}") int virtualNodes) {
+        this(Math.max(1, urls.size()), virtualNodes);
+    }
+
+    ShardRouter(int shards, int virtualNodes) {
+        if (shards > MAX_SHARDS) throw new IllegalArgumentException("At most " + MAX_SHARDS + " shards are supported");
+
+        this.ring = new ConsistentHashRing(shards, virtualNodes);
+        if (shards > 1) {
+            AtomicInteger threads = new AtomicInteger();
+            this.pool = Executors.newFixedThreadPool(shards, task -> {
+                Thread thread = new Thread(task, "expense-shard-scatter-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.pool = null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) pool.shutdownNow();
+    }
+
+
+    public int shards() {
+        return ring.shards();
+    }
+
+    public int shardOf(long userId) {
+        return ring.shards() == 1 ? 0 : ring.shardOf(userId);
+    }
+
+    /**
+     * Sends the rest of the current transaction to the user's shard. Call it before the
+     * transaction's first statement: the connection is taken then and kept until the end.
+     *
+     * @throws IllegalStateException without a transaction, or if the transaction is already
+     * on another shard
+     */
+    public void route(long userId) {
+        if (ring.shards() == 1) return;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Routing to a shard needs a transaction");
+        }
+
+        int shard = ring.shardOf(userId);
+        Integer current = currentShard();
+        if (current != null && current != shard) {
+            throw new IllegalStateException("The transaction is on shard " + current + ", not " + shard);
+        }
+        if (TransactionSynchronizationManager.hasResource(this)) return;
+
+        TransactionSynchronizationManager.bindResource(this, shard);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(ShardRouter.this);
+            }
+        });
+    }
+
+    /**
+     * Runs the work with every statement it issues, including those of transactions it starts,
+     * on the given shard.
+     */
+    public <T> T onShard(int shard, Supplier<T> work) {
+        if (ring.shards() == 1) return work.get();
+        if (shard < 0 || shard >= ring.shards()) throw new IllegalArgumentException("No shard " + shard);
+
+        Integer previous = pinned.get();
+        pinned.set(shard);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) pinned.remove();
+            else pinned.set(previous);
+        }
+    }
+
+    /**
+     * Runs the work on each shard in turn, on the calling thread. For loads and maintenance,
+     * where running them one after another keeps the load on the databases down.
+     */
+    public void forEachShard(IntConsumer work) {
+        for (int shard = 0; shard < ring.shards(); shard++) {
+            int current = shard;
+            onShard(shard, () -> {
+                work.accept(current);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Runs the query on every shard in parallel and waits for all of them. A query that fails
+     * fails the whole call: a merge of the other shards would look complete but be wrong.
+     *
+     * @return the results by shard
+     */
+    public <T> List<T> scatter(IntFunction<T> query) {
+        if (ring.shards() == 1) return List.of(query.apply(0));
+
+        List<Future<T>> futures = new ArrayList<>(ring.shards());
+        for (int shard = 0; shard < ring.shards(); shard++) {
+            int current = shard;
+            futures.add(pool.submit(() -> onShard(current, () -> query.apply(current))));
+        }
+
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> future : futures) results.add(future.get());
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error cause) throw cause;
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the shards", e);
+        }
+        return results;
+    }
+
+    /**
+     * @return the shard the current transaction was routed to or the thread is pinned to, or
+     * null for neither
+     */
+    Integer currentShard() {
+        Integer routed = (Integer) TransactionSynchronizationManager.getResource(this);
+        return routed != null ? routed : pinned.get();
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.Mini.Expense.Tracker.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Hands out connections of the shard {@link ShardRouter} chose for the current transaction or
+ * thread, and of the first shard when it chose none.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    private final ShardRouter router;
+    private final List<HikariDataSource> shards;
+
+    public ShardRoutingDataSource(ShardRouter router, List<HikariDataSource> shards) {
+        this.router = router;
+        this.shards = List.copyOf(shards);
+
+        Map<Object, Object> targets = new HashMap<>();
+        for (int i = 0; i < shards.size(); i++) targets.put(i, shards.get(i));
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(shards.get(0));
+        // A shard that is not configured is a bug, not a reason to write to the first one.
+        setLenientFallback(false);
+    }
+
+    public List<? extends DataSource> shards() {
+        return shards;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return router.currentShard();
+    }
+
+    @Override
+    public void close() {
+        shards.forEach(HikariDataSource::close);
+    }
+}
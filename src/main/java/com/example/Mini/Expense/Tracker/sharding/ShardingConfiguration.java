@@ -0,0 +1,110 @@
+package com.example.Mini.Expense.Tracker.sharding;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Expenses sharded by user over the databases in {@code expense.sharding.urls}, one JDBC url
+ * per shard, all sharing {@code spring.datasource.username} and {@code password}. Every shard
+ * gets a pool of its own with the {@code spring.datasource.hikari.*} settings. Without the
+ * property the application keeps Spring Boot's single datasource.
+ *
+ * Every shard is migrated by Flyway and holds the full schema, with the expenses of the users
+ * {@link ShardRouter} assigns to it and the summary tables for those expenses. Each shard also
+ * has its own expenses_seq; as Hibernate's pooled optimizer draws blocks from whichever shard
+ * the insert runs on, shard i's sequence is moved to start at i * 2^36 so ids never collide.
+ *
+ * Adding a shard moves about 1 / n of the users to it on the ring, but not their rows: that
+ * takes an offline copy, which this does not do.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "expense.sharding.urls")
+public class ShardingConfiguration {
+
+    private static final int ID_RANGE_BITS = 36;
+
+    /**
+     * The {@code spring.datasource.hikari.*} settings Spring Boot would have given its own
+     * pool, copied into every shard's.
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariConfig shardPoolTemplate() {
+        return new HikariConfig();
+    }
+
+    @Bean(destroyMethod = "close")
+    public ShardRoutingDataSource shardRoutingDataSource(ShardRouter router, MeterRegistry meterRegistry,
+                                                         HikariConfig shardPoolTemplate,
+                                                         @Value("${expense.sharding.urls}") List<String> urls,
+                                                         @Value("${spring.datasource.username:}") String username,
+                                                         @Value("${spring.datasource.password:}") String password) {
+        List<HikariDataSource> shards = new ArrayList<>(urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            HikariConfig config = new HikariConfig();
+            shardPoolTemplate.copyStateTo(config);
+            config.setJdbcUrl(urls.get(i).trim());
+            if (!username.isEmpty()) config.setUsername(username);
+            if (!password.isEmpty()) config.setPassword(password);
+            config.setPoolName("expense-shard-" + i);
+            config.setMetricRegistry(meterRegistry);
+            shards.add(new HikariDataSource(config));
+        }
+
+        ShardRoutingDataSource routing = new ShardRoutingDataSource(router, shards);
+        routing.afterPropertiesSet();
+        return routing;
+    }
+
+    /**
+     * The datasource everything else uses. Transactions take their connection when they begin,
+     * before the code in them has routed them; the proxy only takes it at the first statement.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+
+    @Bean
+    public FlywayMigrationStrategy shardMigrationStrategy(ShardRouter router, DataSource dataSource) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        return flyway -> router.forEachShard(shard -> {
+            flyway.migrate();
+            if (shard > 0) separateIds(jdbcTemplate, shard);
+        });
+    }
+
+    // Runs pinned to the shard. Moves the sequence forward only, so a restart changes nothing.
+    private static void separateIds(JdbcTemplate jdbcTemplate, int shard) {
+        boolean postgres = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                connection.getMetaData().getDatabaseProductName().equals("PostgreSQL"));
+        Long next = jdbcTemplate.queryForObject(postgres ? "SELECT nextval('expenses_seq')"
+                : "SELECT NEXT VALUE FOR expenses_seq", Long.class);
+
+        long base = (long) shard << ID_RANGE_BITS;
+        if (next < base) {
+            // One block past the base, as the pooled optimizer reads each value as a block's top.
+            jdbcTemplate.execute("ALTER SEQUENCE expenses_seq RESTART WITH " + (base + 50));
+            log.info("Shard {} hands out expense ids from {}", shard, base);
+        }
+    }
+}
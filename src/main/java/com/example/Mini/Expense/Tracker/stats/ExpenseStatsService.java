@@ -0,0 +1,390 @@
+package com.example.Mini.Expense.Tracker.stats;
+
+import com.example.Mini.Expense.Tracker.model.CategoryStatsDto;
+import com.example.Mini.Expense.Tracker.model.ExpenseCategory;
+import com.example.Mini.Expense.Tracker.model.ExpenseDto;
+import com.example.Mini.Expense.Tracker.model.FrequentDescriptionDto;
+import com.example.Mini.Expense.Tracker.model.Money;
+import com.example.Mini.Expense.Tracker.model.MonthlyCategorySketch;
+import com.example.Mini.Expense.Tracker.model.MonthlyCategoryTotal;
+import com.example.Mini.Expense.Tracker.model.MonthlyCategoryTotalId;
+import com.example.Mini.Expense.Tracker.repository.MonthlyCategorySketchRepository;
+import com.example.Mini.Expense.Tracker.repository.MonthlyCategoryTotalRepository;
+import com.example.Mini.Expense.Tracker.service.ExpenseChangedEvent;
+import com.example.Mini.Expense.Tracker.service.RangeSummaryService;
+import com.example.Mini.Expense.Tracker.service.RollupRebuiltEvent;
+import com.example.Mini.Expense.Tracker.sharding.ShardRouter;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Amount percentiles and most frequent descriptions per category over a range of months,
+ * from a {@link QuantileSketch} of amounts in cents and a {@link FrequentItemsSketch} of
+ * descriptions kept for every month and category. A range is answered by merging its months,
+ * so no raw rows are read once the months are in memory.
+ *
+ * Months are loaded on first use from monthly_category_sketches, where dirty months are
+ * written back every {@code expense.stats.flush-interval} and on shutdown. A loaded month is
+ * trusted only if its per-category count and total agree with monthly_category_totals, which
+ * the write path keeps exact; otherwise it is rebuilt from one scan of the month's rows.
+ *
+ * Creates are added to the sketches of a loaded month as they commit. Sketches cannot take a
+ * value back out, so an update or delete marks its months for a rebuild on the next read.
+ * Writes to months that are not loaded are left to the check on load, which catches every
+ * change of count or amount but not a change of description alone. A write that commits
+ * while its month is loaded may be counted twice; the next check on load corrects it.
+ *
+ * Loads and rebuilds read outside any lock, so writes are never held up by them. A rebuilt
+ * month is swapped in only under the month's monitor; if a write touched the month during
+ * the rebuild, the month stays stale and is rebuilt again on its next read.
+ *
+ * The sketches cover every user, so with several shards they are kept on the first one, and
+ * checked against the totals of all shards. A rebuild scans the shards one after another.
+ */
+@Slf4j
+@Service
+public class ExpenseStatsService {
+
+    public static final int MAX_RANGE_MONTHS = RangeSummaryService.MAX_RANGE_MONTHS;
+    public static final int MAX_TOP = 50;
+
+    private static final ExpenseCategory[] CATEGORIES = ExpenseCategory.values();
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99};
+    private static final int REBUILD_FETCH_SIZE = 1000;
+    private static final int SKETCH_SHARD = 0;
+
+    @Value("${expense.stats.quantile-k:" + QuantileSketch.DEFAULT_K + "}")
+    private int quantileK;
+
+    @Value("${expense.stats.description-counters:" + FrequentItemsSketch.DEFAULT_CAPACITY + "}")
+    private int descriptionCounters;
+
+    @Autowired
+    private MonthlyCategorySketchRepository sketchRepository;
+
+    @Autowired
+    private MonthlyCategoryTotalRepository totalRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    private final Map<YearMonth, Month> months = new ConcurrentHashMap<>();
+
+
+    /**
+     * The sketches of one month, one slot per category ordinal; empty categories are null.
+     * Guarded by its own monitor.
+     */
+    private final class Month {
+
+        final YearMonth period;
+        final QuantileSketch[] amounts = new QuantileSketch[CATEGORIES.length];
+        final FrequentItemsSketch[] descriptions = new FrequentItemsSketch[CATEGORIES.length];
+        final long[] totals = new long[CATEGORIES.length];
+        boolean stale;
+        boolean dirty;
+        // Writes seen since the month was loaded, so a rebuild can tell whether it missed any.
+        long writes;
+
+        Month(YearMonth period) {
+            this.period = period;
+        }
+
+        void add(ExpenseCategory category, long cents, String description) {
+            int slot = category.ordinal();
+            if (amounts[slot] == null) {
+                amounts[slot] = new QuantileSketch(quantileK);
+                descriptions[slot] = new FrequentItemsSketch(descriptionCounters);
+            }
+            amounts[slot].add(cents);
+            descriptions[slot].add(normalize(description));
+            totals[slot] += cents;
+            dirty = true;
+        }
+
+        void replaceWith(Month rebuilt) {
+            System.arraycopy(rebuilt.amounts, 0, amounts, 0, amounts.length);
+            System.arraycopy(rebuilt.descriptions, 0, descriptions, 0, descriptions.length);
+            System.arraycopy(rebuilt.totals, 0, totals, 0, totals.length);
+        }
+    }
+
+
+    /**
+     * @param category the only category to report, or null for every category with expenses
+     * @param top how many of the most frequent descriptions to list per category
+     * @return one entry per category with expenses in [from, to], ordered by category name
+     * @throws IllegalArgumentException if from is after to, the range is longer than
+     * {@link #MAX_RANGE_MONTHS} months or top is outside 0 to {@link #MAX_TOP}
+     */
+    public List<CategoryStatsDto> stats(YearMonth from, YearMonth to, ExpenseCategory category, int top) {
+        if (from.isAfter(to)) throw new IllegalArgumentException("from " + from + " is after to " + to);
+        if (ChronoUnit.MONTHS.between(from, to) + 1 > MAX_RANGE_MONTHS) {
+            throw new IllegalArgumentException("Range is longer than " + MAX_RANGE_MONTHS + " months");
+        }
+        if (top < 0 || top > MAX_TOP) throw new IllegalArgumentException("top must be between 0 and " + MAX_TOP);
+
+        QuantileSketch[] amounts = new QuantileSketch[CATEGORIES.length];
+        FrequentItemsSketch[] descriptions = new FrequentItemsSketch[CATEGORIES.length];
+
+        for (YearMonth period = from; !period.isAfter(to); period = period.plusMonths(1)) {
+            Month month = month(period);
+            long writes;
+            synchronized (month) {
+                writes = month.writes;
+                if (!month.stale) {
+                    merge(month, category, amounts, descriptions);
+                    continue;
+                }
+            }
+
+            // Merged before it is swapped in, while no other thread can see its sketches.
+            Month rebuilt = rebuild(period);
+            merge(rebuilt, category, amounts, descriptions);
+            synchronized (month) {
+                month.replaceWith(rebuilt);
+                month.stale = month.writes != writes;
+                month.dirty = true;
+            }
+        }
+
+        List<CategoryStatsDto> stats = new ArrayList<>();
+        for (ExpenseCategory candidate : CATEGORIES) {
+            QuantileSketch sketch = amounts[candidate.ordinal()];
+            if (sketch == null || sketch.count() == 0) continue;
+
+            FrequentItemsSketch frequent = descriptions[candidate.ordinal()];
+            List<FrequentDescriptionDto> topDescriptions = new ArrayList<>();
+            for (FrequentItemsSketch.Item item : frequent.top(top)) {
+                topDescriptions.add(new FrequentDescriptionDto(item.item(), item.count(), item.error()));
+            }
+
+            long[] percentiles = sketch.quantiles(PERCENTILES);
+            stats.add(new CategoryStatsDto(candidate.name(), sketch.count(),
+                    Money.toBigDecimal(sketch.min()), Money.toBigDecimal(percentiles[0]),
+                    Money.toBigDecimal(percentiles[1]), Money.toBigDecimal(percentiles[2]),
+                    Money.toBigDecimal(sketch.max()), QuantileSketch.rankError(quantileK),
+                    topDescriptions, frequent.maxError()));
+        }
+        stats.sort(Comparator.comparing(CategoryStatsDto::getCategory));
+        return stats;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onExpenseChanged(ExpenseChangedEvent event) {
+        ExpenseDto previous = event.getPrevious();
+        ExpenseDto current = event.getCurrent();
+
+        if (previous == null) {
+            Month month = months.get(YearMonth.from(current.getDate()));
+            if (month == null) return;
+            synchronized (month) {
+                month.writes++;
+                if (!month.stale) month.add(current.getCategory(), Money.toCents(current.getAmount()),
+                        current.getDescription());
+            }
+            return;
+        }
+
+        if (current != null && sameSketchInput(previous, current)) return;
+        markStale(YearMonth.from(previous.getDate()));
+        if (current != null) markStale(YearMonth.from(current.getDate()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRollupRebuilt(RollupRebuiltEvent event) {
+        // The rows may have changed behind the write path.
+        evict();
+    }
+
+    /**
+     * Drops every month from memory, unflushed changes included, so each is loaded and
+     * checked against the rollup again on its next read.
+     */
+    public void evict() {
+        months.clear();
+    }
+
+    /**
+     * Writes every month changed since the last flush to monthly_category_sketches.
+     *
+     * @return the number of months written
+     */
+    @Scheduled(fixedDelayString = "${expense.stats.flush-interval:60s}",
+            initialDelayString = "${expense.stats.flush-interval:60s}")
+    public int flush() {
+        int written = 0;
+        for (Month month : months.values()) {
+            List<MonthlyCategorySketch> rows = new ArrayList<>();
+            synchronized (month) {
+                if (!month.dirty || month.stale) continue;
+
+                for (ExpenseCategory category : CATEGORIES) {
+                    int slot = category.ordinal();
+                    if (month.amounts[slot] == null || month.amounts[slot].count() == 0) continue;
+
+                    rows.add(new MonthlyCategorySketch(
+                            new MonthlyCategoryTotalId(month.period.getYear(), month.period.getMonthValue(), category),
+                            month.amounts[slot].count(), month.totals[slot],
+                            month.amounts[slot].toBytes(), month.descriptions[slot].toBytes()));
+                }
+                month.dirty = false;
+            }
+
+            try {
+                // Categories emptied since the last flush must not keep their old row.
+                shardRouter.onShard(SKETCH_SHARD, () ->
+                        new TransactionTemplate(transactionManager).execute(status -> {
+                            sketchRepository.deleteMonth(month.period.getYear(), month.period.getMonthValue());
+                            return sketchRepository.saveAll(rows);
+                        }));
+                written++;
+            } catch (RuntimeException e) {
+                log.warn("Could not write the expense sketches of {}", month.period, e);
+                synchronized (month) {
+                    month.dirty = true;
+                }
+            }
+        }
+        return written;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+
+    private Month month(YearMonth period) {
+        Month month = months.get(period);
+        if (month != null) return month;
+
+        // Loaded outside the map's bin lock; a month loaded by a concurrent read wins.
+        Month loaded = load(period);
+        Month raced = months.putIfAbsent(period, loaded);
+        return raced != null ? raced : loaded;
+    }
+
+    // Called with the month's monitor held, or on a month no other thread can see.
+    private void merge(Month month, ExpenseCategory category, QuantileSketch[] amounts,
+                       FrequentItemsSketch[] descriptions) {
+        for (ExpenseCategory candidate : CATEGORIES) {
+            int slot = candidate.ordinal();
+            if (category != null && candidate != category || month.amounts[slot] == null) continue;
+
+            if (amounts[slot] == null) {
+                amounts[slot] = new QuantileSketch(quantileK);
+                descriptions[slot] = new FrequentItemsSketch(descriptionCounters);
+            }
+            amounts[slot].merge(month.amounts[slot]);
+            descriptions[slot].merge(month.descriptions[slot]);
+        }
+    }
+
+    private Month load(YearMonth period) {
+        Month month = new Month(period);
+        long[] expectedCounts = new long[CATEGORIES.length];
+        long[] expectedTotals = new long[CATEGORIES.length];
+        List<List<MonthlyCategoryTotal>> shardTotals = shardRouter.scatter(shard ->
+                totalRepository.findMonth(period.getYear(), period.getMonthValue()));
+        for (MonthlyCategoryTotal total : shardTotals.stream().flatMap(List::stream).toList()) {
+            expectedCounts[total.getId().getCategory().ordinal()] += total.getCount();
+            expectedTotals[total.getId().getCategory().ordinal()] += total.getTotal();
+        }
+
+        List<MonthlyCategorySketch> stored = shardRouter.onShard(SKETCH_SHARD, () ->
+                sketchRepository.findMonth(period.getYear(), period.getMonthValue()));
+        long[] counts = new long[CATEGORIES.length];
+        for (MonthlyCategorySketch row : stored) {
+            int slot = row.getId().getCategory().ordinal();
+            try {
+                QuantileSketch amounts = QuantileSketch.fromBytes(row.getAmounts());
+                FrequentItemsSketch descriptions = FrequentItemsSketch.fromBytes(row.getDescriptions());
+                if (amounts.k() != quantileK || descriptions.capacity() != descriptionCounters
+                        || amounts.count() != row.getCount()) {
+                    month.stale = true;
+                    continue;
+                }
+                month.amounts[slot] = amounts;
+                month.descriptions[slot] = descriptions;
+                month.totals[slot] = row.getTotal();
+                counts[slot] = row.getCount();
+            } catch (IllegalArgumentException e) {
+                log.warn("Ignoring unreadable expense sketch for {} {}", period, row.getId().getCategory(), e);
+                month.stale = true;
+            }
+        }
+
+        for (int slot = 0; slot < CATEGORIES.length; slot++) {
+            if (counts[slot] != expectedCounts[slot] || month.totals[slot] != expectedTotals[slot]) {
+                month.stale = true;
+            }
+        }
+        return month;
+    }
+
+    // Scans the month's rows into a new Month; writes to the loaded one go on meanwhile.
+    private Month rebuild(YearMonth period) {
+        long started = System.nanoTime();
+        Month month = new Month(period);
+
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        // Postgres only honours the fetch size inside a transaction.
+        shardRouter.forEachShard(shard -> readOnly.executeWithoutResult(status -> {
+            JdbcTemplate cursor = new JdbcTemplate(jdbcTemplate.getDataSource());
+            cursor.setFetchSize(REBUILD_FETCH_SIZE);
+            cursor.query("SELECT category, amount, description FROM expenses WHERE date >= ? AND date < ?",
+                    rs -> {
+                        month.add(ExpenseCategory.valueOf(rs.getString(1)), Money.toCents(rs.getBigDecimal(2)),
+                                rs.getString(3));
+                    },
+                    Date.valueOf(month.period.atDay(1)), Date.valueOf(month.period.plusMonths(1).atDay(1)));
+        }));
+
+        log.debug("Rebuilt the expense sketches of {} in {} ms", month.period,
+                (System.nanoTime() - started) / 1_000_000);
+        return month;
+    }
+
+    private void markStale(YearMonth period) {
+        Month month = months.get(period);
+        if (month == null) return;
+        synchronized (month) {
+            month.writes++;
+            month.stale = true;
+        }
+    }
+
+    private static boolean sameSketchInput(ExpenseDto previous, ExpenseDto current) {
+        return YearMonth.from(previous.getDate()).equals(YearMonth.from(current.getDate()))
+                && previous.getCategory() == current.getCategory()
+                && previous.getAmount().compareTo(current.getAmount()) == 0
+                && normalize(previous.getDescription()).equals(normalize(current.getDescription()));
+    }
+
+    private static String normalize(String description) {
+        return description == null ? "" : description.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+}
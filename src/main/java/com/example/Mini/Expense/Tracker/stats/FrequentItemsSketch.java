@@ -0,0 +1,180 @@
+package com.example.Mini.Expense.Tracker.stats;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Space-Saving heavy hitters (Metwally, Agrawal and El Abbadi, 2005) over strings.
+ *
+ * At most {@code capacity} items are counted. An item that arrives when every counter is taken
+ * replaces the item with the smallest count and inherits that count as its possible
+ * overestimate. Every reported count is therefore at least the true count and at most
+ * {@link #maxError()} (count / capacity) above it, and every item seen more often than that
+ * is guaranteed to be among those kept.
+ *
+ * Merging adds counts item by item and keeps the largest. An item a full sketch does not hold
+ * may still have been seen up to that sketch's smallest count times, so that is added to its
+ * count and its error. Reported counts stay upper bounds, at most (count / capacity) above
+ * the true count for the combined count. Not thread safe.
+ */
+public final class FrequentItemsSketch {
+
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private static final int FORMAT = 1;
+
+    private final int capacity;
+    private final Map<String, Counter> counters = new HashMap<>();
+    private long count;
+
+    /**
+     * @param item the item as counted
+     * @param count upper bound of how often it was seen
+     * @param error how far count may be above the true count
+     */
+    public record Item(String item, long count, long error) {
+    }
+
+    private static final class Counter {
+        long count;
+        long error;
+
+        Counter(long count, long error) {
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+
+    public FrequentItemsSketch(int capacity) {
+        if (capacity < 1 || capacity > 65_535) throw new IllegalArgumentException("Capacity must be between 1 and 65535");
+        this.capacity = capacity;
+    }
+
+    public void add(String item) {
+        count++;
+
+        Counter counter = counters.get(item);
+        if (counter != null) {
+            counter.count++;
+        } else if (counters.size() < capacity) {
+            counters.put(item, new Counter(1, 0));
+        } else {
+            String smallest = smallest();
+            Counter evicted = counters.remove(smallest);
+            counters.put(item, new Counter(evicted.count + 1, evicted.count));
+        }
+    }
+
+    public void merge(FrequentItemsSketch other) {
+        if (other.count == 0) return;
+
+        long missingHere = isFull() ? counters.get(smallest()).count : 0;
+        long missingThere = other.isFull() ? other.counters.get(other.smallest()).count : 0;
+
+        Map<String, Counter> merged = new HashMap<>();
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            Counter there = other.counters.get(entry.getKey());
+            Counter mine = entry.getValue();
+            merged.put(entry.getKey(), there != null
+                    ? new Counter(mine.count + there.count, mine.error + there.error)
+                    : new Counter(mine.count + missingThere, mine.error + missingThere));
+        }
+        for (Map.Entry<String, Counter> entry : other.counters.entrySet()) {
+            if (counters.containsKey(entry.getKey())) continue;
+            Counter there = entry.getValue();
+            merged.put(entry.getKey(), new Counter(there.count + missingHere, there.error + missingHere));
+        }
+
+        counters.clear();
+        merged.entrySet().stream()
+                .sorted(Map.Entry.<String, Counter>comparingByValue(Comparator.comparingLong(c -> -c.count))
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(capacity)
+                .forEach(entry -> counters.put(entry.getKey(), entry.getValue()));
+        count += other.count;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Largest possible overestimate of any reported count.
+     */
+    public long maxError() {
+        return count / capacity;
+    }
+
+    /**
+     * @return up to {@code limit} items by descending count, ties by item
+     */
+    public List<Item> top(int limit) {
+        List<Item> items = new ArrayList<>(counters.size());
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            items.add(new Item(entry.getKey(), entry.getValue().count, entry.getValue().error));
+        }
+        items.sort(Comparator.comparingLong(Item::count).reversed().thenComparing(Item::item));
+        return items.size() > limit ? new ArrayList<>(items.subList(0, Math.max(0, limit))) : items;
+    }
+
+    /**
+     * Format, capacity, count, then every item with its count and error.
+     */
+    public byte[] toBytes() {
+        SketchCodec.Writer writer = new SketchCodec.Writer()
+                .writeLong(FORMAT)
+                .writeLong(capacity)
+                .writeLong(count)
+                .writeLong(counters.size());
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            writer.writeString(entry.getKey())
+                    .writeLong(entry.getValue().count)
+                    .writeLong(entry.getValue().error);
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the bytes are not a sketch written by {@link #toBytes()}
+     */
+    public static FrequentItemsSketch fromBytes(byte[] bytes) {
+        SketchCodec.Reader reader = new SketchCodec.Reader(bytes);
+        if (reader.readLong() != FORMAT) throw new IllegalArgumentException("Unknown frequent items sketch format");
+
+        FrequentItemsSketch sketch = new FrequentItemsSketch(reader.readInt());
+        sketch.count = reader.readLong();
+        int size = reader.readInt();
+        if (size > sketch.capacity) throw new IllegalArgumentException("Corrupt frequent items sketch");
+        for (int i = 0; i < size; i++) {
+            sketch.counters.put(reader.readString(), new Counter(reader.readLong(), reader.readLong()));
+        }
+        return sketch;
+    }
+
+
+    private boolean isFull() {
+        return counters.size() == capacity;
+    }
+
+    // A linear scan; capacities are small and this only runs when an unseen item arrives.
+    private String smallest() {
+        String smallest = null;
+        long smallestCount = Long.MAX_VALUE;
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            if (entry.getValue().count < smallestCount) {
+                smallest = entry.getKey();
+                smallestCount = entry.getValue().count;
+            }
+        }
+        return smallest;
+    }
+}
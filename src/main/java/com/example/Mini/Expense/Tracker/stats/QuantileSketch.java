@@ -0,0 +1,270 @@
+package com.example.Mini.Expense.Tracker.stats;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+
+/**
+ * KLL quantile sketch over longs (Karnin, Lang and Liberty, 2016).
+ *
+ * Values are kept in levels; an item on level h stands for 2^h of the values added. When
+ * the sketch is over capacity, the lowest full level is sorted and every other item, starting
+ * at a random offset, is promoted one level up, which keeps the total weight exact while
+ * halving the items. Level h holds about k * (2/3)^(top - h) items, so the sketch stays at
+ * roughly 3k items however many values it has seen, and two sketches with the same k merge
+ * by simply pooling their levels.
+ *
+ * A returned quantile's true rank is within {@link #rankError(int)} * count of the requested
+ * rank with 99% confidence. Below about k values nothing is compacted and quantiles are exact.
+ * Not thread safe.
+ */
+public final class QuantileSketch {
+
+    public static final int DEFAULT_K = 200;
+
+    private static final int MIN_LEVEL_CAPACITY = 8;
+    private static final double CAPACITY_DECAY = 2.0 / 3.0;
+    private static final int FORMAT = 1;
+
+    private final int k;
+    private long[][] levels = {new long[MIN_LEVEL_CAPACITY]};
+    private int[] sizes = {0};
+    private int retained;
+    private long count;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    public QuantileSketch(int k) {
+        if (k < MIN_LEVEL_CAPACITY || k > 65_535) {
+            throw new IllegalArgumentException("k must be between " + MIN_LEVEL_CAPACITY + " and 65535");
+        }
+        this.k = k;
+    }
+
+    /**
+     * Normalized rank error at 99% confidence, from the error table published for the
+     * Apache DataSketches KLL implementation: about 1.3% for the default k of 200.
+     */
+    public static double rankError(int k) {
+        return 2.296 / Math.pow(k, 0.9723);
+    }
+
+    public void add(long value) {
+        append(0, value);
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        compress();
+    }
+
+    /**
+     * Adds everything the other sketch has seen, as if its values had been added here.
+     */
+    public void merge(QuantileSketch other) {
+        if (other.k != k) throw new IllegalArgumentException("Cannot merge sketches with k " + k + " and " + other.k);
+        if (other.count == 0) return;
+
+        for (int h = 0; h < other.levels.length; h++) {
+            for (int i = 0; i < other.sizes[h]; i++) append(h, other.levels[h][i]);
+        }
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        compress();
+    }
+
+    public int k() {
+        return k;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public long min() {
+        return min;
+    }
+
+    public long max() {
+        return max;
+    }
+
+    /**
+     * Items currently held, which bounds the memory and the encoded size.
+     */
+    public int retained() {
+        return retained;
+    }
+
+    /**
+     * @param fractions ranks between 0 and 1, in ascending order
+     * @return for each fraction q, the smallest value whose rank is at least q * count; the
+     * minimum for 0 and the maximum for 1
+     * @throws IllegalStateException if nothing was added
+     */
+    public long[] quantiles(double... fractions) {
+        if (count == 0) throw new IllegalStateException("The sketch is empty");
+
+        // Each level sorted on its own, then merged by value with the level's weight.
+        long[][] sorted = new long[levels.length][];
+        for (int h = 0; h < levels.length; h++) {
+            sorted[h] = Arrays.copyOf(levels[h], sizes[h]);
+            Arrays.sort(sorted[h]);
+        }
+        int[] cursors = new int[levels.length];
+
+        long[] result = new long[fractions.length];
+        long cumulative = 0;
+        long value = min;
+        for (int i = 0; i < fractions.length; i++) {
+            if (i > 0 && fractions[i] < fractions[i - 1]) {
+                throw new IllegalArgumentException("Fractions must be in ascending order");
+            }
+            if (fractions[i] <= 0) {
+                result[i] = min;
+                continue;
+            }
+            if (fractions[i] >= 1) {
+                result[i] = max;
+                continue;
+            }
+
+            long target = (long) Math.ceil(fractions[i] * count);
+            while (cumulative < target) {
+                int lowest = -1;
+                for (int h = 0; h < sorted.length; h++) {
+                    if (cursors[h] < sorted[h].length
+                            && (lowest < 0 || sorted[h][cursors[h]] < sorted[lowest][cursors[lowest]])) {
+                        lowest = h;
+                    }
+                }
+                value = sorted[lowest][cursors[lowest]++];
+                cumulative += 1L << lowest;
+            }
+            result[i] = value;
+        }
+        return result;
+    }
+
+    public long quantile(double fraction) {
+        return quantiles(fraction)[0];
+    }
+
+    /**
+     * Format, k, count, min, max, then each level's items sorted and delta encoded; a few
+     * hundred items of one or two bytes each for the default k.
+     */
+    public byte[] toBytes() {
+        SketchCodec.Writer writer = new SketchCodec.Writer()
+                .writeLong(FORMAT)
+                .writeLong(k)
+                .writeLong(count)
+                .writeSignedLong(min)
+                .writeSignedLong(max)
+                .writeLong(levels.length);
+
+        for (int h = 0; h < levels.length; h++) {
+            // Order within a level carries no meaning, so sorting in place is safe.
+            Arrays.sort(levels[h], 0, sizes[h]);
+            writer.writeLong(sizes[h]);
+            long previous = 0;
+            for (int i = 0; i < sizes[h]; i++) {
+                if (i == 0) writer.writeSignedLong(levels[h][i]);
+                else writer.writeLong(levels[h][i] - previous);
+                previous = levels[h][i];
+            }
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the bytes are not a sketch written by {@link #toBytes()}
+     */
+    public static QuantileSketch fromBytes(byte[] bytes) {
+        SketchCodec.Reader reader = new SketchCodec.Reader(bytes);
+        if (reader.readLong() != FORMAT) throw new IllegalArgumentException("Unknown quantile sketch format");
+
+        QuantileSketch sketch = new QuantileSketch(reader.readInt());
+        sketch.count = reader.readLong();
+        sketch.min = reader.readSignedLong();
+        sketch.max = reader.readSignedLong();
+
+        int levelCount = reader.readInt();
+        if (levelCount < 1 || levelCount > 64) throw new IllegalArgumentException("Corrupt quantile sketch");
+        sketch.levels = new long[levelCount][];
+        sketch.sizes = new int[levelCount];
+
+        long weight = 0;
+        for (int h = 0; h < levelCount; h++) {
+            int size = reader.readInt();
+            if (size > bytes.length) throw new IllegalArgumentException("Corrupt quantile sketch");
+            long[] level = new long[Math.max(size, MIN_LEVEL_CAPACITY)];
+            long previous = 0;
+            for (int i = 0; i < size; i++) {
+                level[i] = i == 0 ? reader.readSignedLong() : previous + reader.readLong();
+                previous = level[i];
+            }
+            sketch.levels[h] = level;
+            sketch.sizes[h] = size;
+            sketch.retained += size;
+            weight += (long) size << h;
+        }
+        if (weight != sketch.count) throw new IllegalArgumentException("Corrupt quantile sketch");
+        return sketch;
+    }
+
+
+    private int levelCapacity(int level) {
+        int depth = levels.length - 1 - level;
+        return Math.max(MIN_LEVEL_CAPACITY, (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)));
+    }
+
+    private int capacity() {
+        int capacity = 0;
+        for (int h = 0; h < levels.length; h++) capacity += levelCapacity(h);
+        return capacity;
+    }
+
+    private void compress() {
+        while (retained > capacity()) {
+            int level = 0;
+            while (sizes[level] < levelCapacity(level)) level++;
+            compact(level);
+        }
+    }
+
+    private void compact(int level) {
+        if (level == levels.length - 1) {
+            levels = Arrays.copyOf(levels, levels.length + 1);
+            levels[level + 1] = new long[MIN_LEVEL_CAPACITY];
+            sizes = Arrays.copyOf(sizes, sizes.length + 1);
+        }
+
+        long[] items = levels[level];
+        int size = sizes[level];
+        Arrays.sort(items, 0, size);
+
+        // An odd item out stays behind, so no weight is lost.
+        int odd = size & 1;
+        int offset = ThreadLocalRandom.current().nextBoolean() ? 1 : 0;
+        for (int i = offset; i < size - odd; i += 2) append(level + 1, items[i]);
+        retained -= size - odd;
+
+        if (odd == 1) items[0] = items[size - 1];
+        sizes[level] = odd;
+    }
+
+    private void append(int level, long value) {
+        // A merged sketch may be several levels deeper than this one.
+        while (level >= levels.length) {
+            levels = Arrays.copyOf(levels, levels.length + 1);
+            levels[levels.length - 1] = new long[MIN_LEVEL_CAPACITY];
+            sizes = Arrays.copyOf(sizes, sizes.length + 1);
+        }
+        if (sizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], levels[level].length * 2);
+        }
+        levels[level][sizes[level]++] = value;
+        retained++;
+    }
+}
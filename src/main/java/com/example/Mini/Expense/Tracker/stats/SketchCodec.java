@@ -0,0 +1,98 @@
+package com.example.Mini.Expense.Tracker.stats;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+
+/**
+ * Variable-length encoding for the persisted sketches: integers take seven bits per byte,
+ * high bit set on every byte but the last, and signed values are zig-zag mapped first so
+ * small negative numbers stay short.
+ */
+final class SketchCodec {
+
+    private SketchCodec() {
+    }
+
+
+    static final class Writer {
+
+        private byte[] bytes = new byte[64];
+        private int length;
+
+        Writer writeLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+            return this;
+        }
+
+        Writer writeSignedLong(long value) {
+            return writeLong((value << 1) ^ (value >> 63));
+        }
+
+        Writer writeString(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeLong(utf8.length);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, bytes, length, utf8.length);
+            length += utf8.length;
+            return this;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, length);
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > bytes.length) bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+        }
+    }
+
+    static final class Reader {
+
+        private final byte[] bytes;
+        private int position;
+
+        Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        long readLong() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (position == bytes.length || shift > 63) {
+                    throw new IllegalArgumentException("Truncated or corrupt sketch");
+                }
+                b = bytes[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+
+        long readSignedLong() {
+            long value = readLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        int readInt() {
+            long value = readLong();
+            if (value < 0 || value > Integer.MAX_VALUE) throw new IllegalArgumentException("Corrupt sketch");
+            return (int) value;
+        }
+
+        String readString() {
+            int length = readInt();
+            if (length > bytes.length - position) throw new IllegalArgumentException("Truncated sketch");
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+-- Idempotency-Key of each POST /expenses that sent one, written in the same transaction as the
+-- expense it created. A table of its own rather than a column on expenses: on Postgres every
+-- unique index of the partitioned expenses table must include date, so it could not stop the
+-- same key from being used again on another day.
+CREATE TABLE expense_idempotency_keys (
+    idempotency_key VARCHAR(64) PRIMARY KEY,
+    expense_id BIGINT NOT NULL,
+    created_at TIMESTAMP NOT NULL
+);
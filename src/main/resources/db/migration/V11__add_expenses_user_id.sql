@@ -0,0 +1,28 @@
+-- Every expense belongs to a user. Rows written before owners existed belong to user 0, the
+-- owner requests get when they name none.
+ALTER TABLE expenses ADD COLUMN user_id BIGINT NOT NULL DEFAULT 0;
+
+-- Listings pin a user and a category and walk (date, id), so the keyset index leads with the
+-- user. It serves everything idx_expenses_category_date_id did for a single user; summaries
+-- across users keep idx_expenses_date_category.
+CREATE INDEX idx_expenses_user_category_date_id ON expenses (user_id, category, date, id);
+
+DROP INDEX idx_expenses_category_date_id;
+
+-- Idempotency keys are scoped to the user who sent them, so two users can never replay each
+-- other's expense. The primary key changes, which neither database can do in place portably,
+-- so the table is copied.
+CREATE TABLE expense_idempotency_keys_by_user (
+    user_id BIGINT NOT NULL,
+    idempotency_key VARCHAR(64) NOT NULL,
+    expense_id BIGINT NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    CONSTRAINT pk_expense_idempotency_keys PRIMARY KEY (user_id, idempotency_key)
+);
+
+INSERT INTO expense_idempotency_keys_by_user (user_id, idempotency_key, expense_id, created_at)
+SELECT 0, idempotency_key, expense_id, created_at FROM expense_idempotency_keys;
+
+DROP TABLE expense_idempotency_keys;
+
+ALTER TABLE expense_idempotency_keys_by_user RENAME TO expense_idempotency_keys;
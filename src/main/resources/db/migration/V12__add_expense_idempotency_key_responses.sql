@@ -0,0 +1,17 @@
+-- The expense each key created, as it was returned, so a replay answers with the original
+-- response rather than the expense's current state and a retry with a different body can be
+-- told apart from a true retry.
+ALTER TABLE expense_idempotency_keys ADD COLUMN description VARCHAR(100);
+ALTER TABLE expense_idempotency_keys ADD COLUMN amount NUMERIC(10, 2);
+ALTER TABLE expense_idempotency_keys ADD COLUMN category VARCHAR(10);
+ALTER TABLE expense_idempotency_keys ADD COLUMN date DATE;
+ALTER TABLE expense_idempotency_keys ADD COLUMN version BIGINT;
+
+-- Keys recorded before this only have the expense as it is now. Keys whose expense is gone
+-- stay empty and are answered with 404 as before.
+UPDATE expense_idempotency_keys k SET
+    description = (SELECT e.description FROM expenses e WHERE e.id = k.expense_id AND e.user_id = k.user_id),
+    amount = (SELECT e.amount FROM expenses e WHERE e.id = k.expense_id AND e.user_id = k.user_id),
+    category = (SELECT e.category FROM expenses e WHERE e.id = k.expense_id AND e.user_id = k.user_id),
+    date = (SELECT e.date FROM expenses e WHERE e.id = k.expense_id AND e.user_id = k.user_id),
+    version = (SELECT e.version FROM expenses e WHERE e.id = k.expense_id AND e.user_id = k.user_id);
@@ -0,0 +1,5 @@
+-- Monthly summaries filter on a date range and group by category.
+CREATE INDEX idx_expenses_date_category ON expenses (date, category);
+
+-- Filtered search pins a single category and then walks a date range.
+CREATE INDEX idx_expenses_category_date ON expenses (category, date);
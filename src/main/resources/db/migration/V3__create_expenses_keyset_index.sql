@@ -0,0 +1,6 @@
+-- Keyset pagination walks (date, id) within a category, so id joins the index to let the
+-- row-value predicate and ORDER BY date, id be answered without a sort.
+-- It also serves everything idx_expenses_category_date did.
+CREATE INDEX idx_expenses_category_date_id ON expenses (category, date, id);
+
+DROP INDEX idx_expenses_category_date;
@@ -0,0 +1,16 @@
+-- Rollup of expenses per calendar month and category, maintained by the write path so
+-- monthly summaries never have to aggregate raw rows.
+CREATE TABLE monthly_category_totals (
+    period_year INT NOT NULL,
+    period_month INT NOT NULL,
+    category VARCHAR(10) NOT NULL,
+    total NUMERIC(14, 2) NOT NULL,
+    entry_count BIGINT NOT NULL,
+    PRIMARY KEY (period_year, period_month, category)
+);
+
+INSERT INTO monthly_category_totals (period_year, period_month, category, total, entry_count)
+SELECT CAST(EXTRACT(YEAR FROM date) AS INT), CAST(EXTRACT(MONTH FROM date) AS INT), category,
+       SUM(amount), COUNT(*)
+FROM expenses
+GROUP BY CAST(EXTRACT(YEAR FROM date) AS INT), CAST(EXTRACT(MONTH FROM date) AS INT), category;
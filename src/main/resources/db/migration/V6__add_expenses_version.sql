@@ -0,0 +1,3 @@
+-- Row version for optimistic locking. Every UPDATE and DELETE issued by the application
+-- checks it, and clients can send it back in If-Match.
+ALTER TABLE expenses ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
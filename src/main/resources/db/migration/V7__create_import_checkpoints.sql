@@ -0,0 +1,10 @@
+-- Progress of each CSV import, advanced in the same transaction as the chunk it covers, so
+-- an interrupted import resumes after the last chunk that committed.
+CREATE TABLE import_checkpoints (
+    import_id VARCHAR(64) PRIMARY KEY,
+    records_done BIGINT NOT NULL,
+    rows_imported BIGINT NOT NULL,
+    rows_rejected BIGINT NOT NULL,
+    completed BOOLEAN NOT NULL,
+    updated_at TIMESTAMP NOT NULL
+);
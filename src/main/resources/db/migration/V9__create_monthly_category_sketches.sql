@@ -0,0 +1,13 @@
+-- Amount quantile and frequent description sketches per calendar month and category, written
+-- periodically from memory. entry_count and total are compared with monthly_category_totals
+-- when a month is read back; a sketch that disagrees missed writes and is rebuilt from expenses.
+CREATE TABLE monthly_category_sketches (
+    period_year INT NOT NULL,
+    period_month INT NOT NULL,
+    category VARCHAR(10) NOT NULL,
+    entry_count BIGINT NOT NULL,
+    total NUMERIC(14, 2) NOT NULL,
+    amounts BYTEA NOT NULL,
+    descriptions BYTEA NOT NULL,
+    PRIMARY KEY (period_year, period_month, category)
+);
@@ -0,0 +1,108 @@
+package com.example.Mini.Expense.Tracker.analytics;
+
+import com.example.Mini.Expense.Tracker.model.ExpenseCategory;
+import com.example.Mini.Expense.Tracker.model.ExpenseDto;
+import com.example.Mini.Expense.Tracker.service.ExpenseService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Runs the REST endpoints against the default H2 database with the columnar engine selected.
+ */
+@SpringBootTest(properties = "expense.analytics.engine=columnar")
+@AutoConfigureMockMvc
+public class ColumnarEngineTest {
+
+    @Autowired
+    private ExpenseService expenseService;
+
+    @Autowired
+    private ColumnarExpenseStore store;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("TRUNCATE TABLE expenses");
+        jdbcTemplate.execute("TRUNCATE TABLE monthly_category_totals");
+        store.load();
+    }
+
+
+    @Test
+    void testWritesAreVisibleToFilterAndSummary() throws Exception {
+        List<Long> ids = expenseService.saveAll(List.of(
+                new ExpenseDto(0L, "Lunch", new BigDecimal("12.50"), ExpenseCategory.FOOD, LocalDate.of(2025, 1, 20)),
+                new ExpenseDto(0L, "Dinner", new BigDecimal("23.30"), ExpenseCategory.FOOD, LocalDate.of(2025, 1, 5))));
+
+        mockMvc.perform(get("/expenses")
+                        .param("from", "2025-01-01")
+                        .param("to", "2025-01-31")
+                        .param("category", "FOOD"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].description").value("Dinner"))
+                .andExpect(jsonPath("$[0].amount").value(23.30));
+
+        mockMvc.perform(get("/expenses/summary")
+                        .param("year", "2025")
+                        .param("month", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].category").value("FOOD"))
+                .andExpect(jsonPath("$[0].sum").value(35.80));
+
+        mockMvc.perform(get("/expenses/histogram")
+                        .param("from", "2025-01-01")
+                        .param("to", "2025-01-31")
+                        .param("bucket", "week"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.categories[0]").value("FOOD"))
+                .andExpect(jsonPath("$.totals[0][0]").value(23.30))
+                .andExpect(jsonPath("$.totals[0][3]").value(12.50));
+
+        mockMvc.perform(delete("/expenses/" + ids.get(1)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/expenses/summary")
+                        .param("year", "2025")
+                        .param("month", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].sum").value(12.50));
+    }
+
+    @Test
+    void testLoadPicksUpExistingRows() {
+        jdbcTemplate.update("INSERT INTO expenses (id, description, amount, category, date) VALUES (?, ?, ?, ?, ?)",
+                9001L, "Taxi", new BigDecimal("40.00"), "TRAVEL", LocalDate.of(2025, 3, 2));
+
+        assertTrue(expenseService.filteredSearch(0L, LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 31),
+                ExpenseCategory.TRAVEL).isEmpty());
+
+        store.load();
+
+        List<ExpenseDto> actual = expenseService.filteredSearch(0L, LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 31),
+                ExpenseCategory.TRAVEL);
+        assertEquals(1, actual.size());
+        assertEquals("Taxi", actual.get(0).getDescription());
+        assertEquals(new BigDecimal("40.00"), actual.get(0).getAmount());
+    }
+
+}
@@ -0,0 +1,181 @@
+package com.example.Mini.Expense.Tracker.analytics;
+
+
+import com.example.Mini.Expense.Tracker.model.CategorySumDto;
+import com.example.Mini.Expense.Tracker.model.ExpenseCategory;
+import com.example.Mini.Expense.Tracker.model.ExpenseDto;
+import com.example.Mini.Expense.Tracker.service.ExpenseChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ColumnarExpenseStoreTest {
+
+    private ColumnarExpenseStore store;
+
+
+    @BeforeEach
+    void setup() {
+        store = new ColumnarExpenseStore();
+
+        store.upsert(new ExpenseDto(1L, "Lunch", new BigDecimal("12.50"), ExpenseCategory.FOOD,
+                LocalDate.of(2025, 1, 20)));
+        store.upsert(new ExpenseDto(2L, "Dinner", new BigDecimal("23.30"), ExpenseCategory.FOOD,
+                LocalDate.of(2025, 1, 5)));
+        store.upsert(new ExpenseDto(3L, "Bus", new BigDecimal("2.00"), ExpenseCategory.TRAVEL,
+                LocalDate.of(2025, 1, 31)));
+        store.upsert(new ExpenseDto(4L, "Lunch", new BigDecimal("9.99"), ExpenseCategory.FOOD,
+                LocalDate.of(2025, 2, 1)));
+    }
+
+
+    @Test
+    void testFilteredSearch_OrderedByDateAndId() {
+        List<ExpenseDto> actual = store.filteredSearch(0L, LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 31),
+                ExpenseCategory.FOOD);
+
+        assertEquals(2, actual.size());
+        assertEquals(2L, actual.get(0).getId());
+        assertEquals("Dinner", actual.get(0).getDescription());
+        assertEquals(new BigDecimal("23.30"), actual.get(0).getAmount());
+        assertEquals(LocalDate.of(2025, 1, 5), actual.get(0).getDate());
+        assertEquals(1L, actual.get(1).getId());
+    }
+
+    @Test
+    void testFilteredSearch_OnlyOwnExpenses() {
+        store.upsert(new ExpenseDto(5L, "Lunch", new BigDecimal("8.00"), ExpenseCategory.FOOD,
+                LocalDate.of(2025, 1, 10), 0, 7L));
+
+        List<ExpenseDto> actual = store.filteredSearch(7L, LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 31),
+                ExpenseCategory.FOOD);
+        assertEquals(1, actual.size());
+        assertEquals(5L, actual.get(0).getId());
+        assertEquals(7L, actual.get(0).getUserId());
+
+        assertEquals(2, store.filteredSearch(0L, LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 31),
+                ExpenseCategory.FOOD).size());
+        assertEquals(new BigDecimal("43.80"), store.categorySum(2025, 1).get(0).getSum());
+    }
+
+    @Test
+    void testFilteredSearch_BoundsAreInclusive() {
+        List<ExpenseDto> actual = store.filteredSearch(0L, LocalDate.of(2025, 1, 31), LocalDate.of(2025, 2, 1),
+                ExpenseCategory.FOOD);
+
+        assertEquals(1, actual.size());
+        assertEquals(4L, actual.get(0).getId());
+    }
+
+    @Test
+    void testCategorySum() {
+        List<CategorySumDto> actual = store.categorySum(2025, 1);
+
+        assertEquals(2, actual.size());
+        assertEquals("FOOD", actual.get(0).getCategory());
+        assertEquals(new BigDecimal("35.80"), actual.get(0).getSum());
+        assertEquals("TRAVEL", actual.get(1).getCategory());
+        assertEquals(new BigDecimal("2.00"), actual.get(1).getSum());
+    }
+
+    @Test
+    void testUpdateMovesRow() {
+        ExpenseDto previous = new ExpenseDto(2L, "Dinner", new BigDecimal("23.30"), ExpenseCategory.FOOD,
+                LocalDate.of(2025, 1, 5));
+        ExpenseDto moved = new ExpenseDto(2L, "Dinner", new BigDecimal("30.00"), ExpenseCategory.MISC,
+                LocalDate.of(2025, 2, 3));
+
+        store.onExpenseChanged(ExpenseChangedEvent.updated(previous, moved));
+
+        assertEquals(4, store.size());
+        assertEquals(new BigDecimal("12.50"), store.categorySum(2025, 1).get(0).getSum());
+        assertEquals("MISC", store.categorySum(2025, 2).get(1).getCategory());
+    }
+
+    @Test
+    void testDeleteKeepsOtherRowsAddressable() {
+        store.onExpenseChanged(ExpenseChangedEvent.deleted(
+                new ExpenseDto(1L, "Lunch", new BigDecimal("12.50"), ExpenseCategory.FOOD,
+                        LocalDate.of(2025, 1, 20))));
+
+        assertEquals(3, store.size());
+
+        // Row 4 was moved into the freed slot.
+        List<ExpenseDto> actual = store.filteredSearch(0L, LocalDate.of(2025, 1, 1), LocalDate.of(2025, 12, 31),
+                ExpenseCategory.FOOD);
+        assertEquals(2, actual.size());
+        assertEquals(2L, actual.get(0).getId());
+        assertEquals(4L, actual.get(1).getId());
+        assertEquals("Lunch", actual.get(1).getDescription());
+    }
+
+    @Test
+    void testOlderEventIsIgnored() {
+        ExpenseDto dinner = new ExpenseDto(2L, "Dinner", new BigDecimal("23.30"), ExpenseCategory.FOOD,
+                LocalDate.of(2025, 1, 5), 0);
+        ExpenseDto second = new ExpenseDto(2L, "Dinner", new BigDecimal("25.00"), ExpenseCategory.FOOD,
+                LocalDate.of(2025, 1, 5), 1);
+        ExpenseDto third = new ExpenseDto(2L, "Dinner", new BigDecimal("30.00"), ExpenseCategory.FOOD,
+                LocalDate.of(2025, 1, 5), 2);
+
+        // Listeners of two commits ran in the opposite order.
+        store.onExpenseChanged(ExpenseChangedEvent.updated(second, third));
+        store.onExpenseChanged(ExpenseChangedEvent.updated(dinner, second));
+
+        assertEquals(new BigDecimal("42.50"), store.categorySum(2025, 1).get(0).getSum());
+    }
+
+    @Test
+    void testUpdateAfterDeleteLeavesNoGhostRow() {
+        ExpenseDto lunch = new ExpenseDto(1L, "Lunch", new BigDecimal("12.50"), ExpenseCategory.FOOD,
+                LocalDate.of(2025, 1, 20), 0);
+        ExpenseDto updated = new ExpenseDto(1L, "Lunch", new BigDecimal("14.00"), ExpenseCategory.FOOD,
+                LocalDate.of(2025, 1, 20), 1);
+
+        // The update committed first, but its listener ran after the delete's.
+        store.onExpenseChanged(ExpenseChangedEvent.deleted(updated));
+        store.onExpenseChanged(ExpenseChangedEvent.updated(lunch, updated));
+
+        assertEquals(3, store.size());
+        assertEquals(new BigDecimal("23.30"), store.categorySum(2025, 1).get(0).getSum());
+        assertEquals(1, store.filteredSearch(0L, LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 31),
+                ExpenseCategory.FOOD).size());
+    }
+
+    @Test
+    void testGrowsPastInitialCapacity() {
+        for (long id = 100; id < 3100; id++) {
+            store.upsert(new ExpenseDto(id, "Coffee", new BigDecimal("1.25"), ExpenseCategory.FOOD,
+                    LocalDate.of(2025, 3, 1)));
+        }
+
+        assertEquals(3004, store.size());
+        assertEquals(new BigDecimal("3750.00"), store.categorySum(2025, 3).get(0).getSum());
+    }
+
+
+    @Test
+    void testHistogram() {
+        store.upsert(new ExpenseDto(5L, "Bus", new BigDecimal("1.00"), ExpenseCategory.TRAVEL,
+                LocalDate.of(2024, 12, 31)));
+
+        // Days 2025-01-05 to 2025-01-31 in weeks from Monday 2024-12-30; the bus on the 31st is outside.
+        long[] totals = store.histogram(LocalDate.of(2025, 1, 5), LocalDate.of(2025, 1, 31),
+                LocalDate.of(2024, 12, 30), 7, 5, null);
+
+        int food = ExpenseCategory.FOOD.ordinal() * 5;
+        int travel = ExpenseCategory.TRAVEL.ordinal() * 5;
+        assertArrayEquals(new long[]{2330, 0, 0, 1250, 0}, Arrays.copyOfRange(totals, food, food + 5));
+        assertArrayEquals(new long[]{0, 0, 0, 0, 200}, Arrays.copyOfRange(totals, travel, travel + 5));
+
+        totals = store.histogram(LocalDate.of(2025, 1, 5), LocalDate.of(2025, 1, 31),
+                LocalDate.of(2024, 12, 30), 7, 5, ExpenseCategory.TRAVEL);
+        assertArrayEquals(new long[5], Arrays.copyOfRange(totals, food, food + 5));
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.Mini.Expense.Tracker.controller;
+
+import com.example.Mini.Expense.Tracker.model.ExpenseCategory;
+import com.example.Mini.Expense.Tracker.model.ExpenseDto;
+import com.example.Mini.Expense.Tracker.service.ExpenseService;
+import com.example.Mini.Expense.Tracker.service.SummaryCache;
+import com.example.Mini.Expense.Tracker.service.VersionStamps;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Polls with If-None-Match and counts the SQL they cost.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.example.Mini.Expense.Tracker.controller.StatementCounter")
+@AutoConfigureMockMvc
+public class ConditionalGetTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ExpenseService expenseService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoSpyBean
+    private SummaryCache summaryCache;
+
+    @MockitoSpyBean
+    private VersionStamps versionStamps;
+
+    private long id;
+
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("TRUNCATE TABLE expenses");
+        jdbcTemplate.execute("TRUNCATE TABLE monthly_category_totals");
+
+        id = expenseService.save(new ExpenseDto(0L, "Lunch", new BigDecimal("12.50"), ExpenseCategory.FOOD,
+                LocalDate.of(2024, 5, 10))).getId();
+    }
+
+
+    @Test
+    void testUnchangedExpenseCostsNoQuery() throws Exception {
+        String etag = mockMvc.perform(get("/expenses/{id}", id))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        StatementCounter.reset();
+
+        mockMvc.perform(get("/expenses/{id}", id).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().string(""));
+
+        assertEquals(0, StatementCounter.statements().size(), StatementCounter.statements().toString());
+    }
+
+    @Test
+    void testChangedExpenseIsSentAgain() throws Exception {
+        mockMvc.perform(get("/expenses/{id}", id)).andExpect(header().string(HttpHeaders.ETAG, "\"0\""));
+
+        mockMvc.perform(put("/expenses/{id}", id)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"description\":\"Lunch\",\"amount\":15.00,\"category\":\"FOOD\",\"date\":\"2024-05-10\"}"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/expenses/{id}", id).header(HttpHeaders.IF_NONE_MATCH, "\"0\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
+                .andExpect(jsonPath("$.amount").value(15.00));
+    }
+
+    @Test
+    void testDeletedExpenseIsNotAnsweredFromTheCache() throws Exception {
+        mockMvc.perform(get("/expenses/{id}", id)).andExpect(status().isOk());
+        mockMvc.perform(delete("/expenses/{id}", id)).andExpect(status().isOk());
+
+        mockMvc.perform(get("/expenses/{id}", id).header(HttpHeaders.IF_NONE_MATCH, "\"0\""))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testUnchangedSummaryCostsNoQuery() throws Exception {
+        String etag = mockMvc.perform(get("/expenses/summary").param("year", "2024").param("month", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].sum").value(12.50))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        StatementCounter.reset();
+
+        mockMvc.perform(get("/expenses/summary").param("year", "2024").param("month", "5")
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        assertEquals(0, StatementCounter.statements().size(), StatementCounter.statements().toString());
+
+        // Another month's write leaves the tag alone, a write to May changes it.
+        expenseService.save(new ExpenseDto(0L, "Taxi", new BigDecimal("20.00"), ExpenseCategory.TRAVEL,
+                LocalDate.of(2024, 6, 1)));
+        mockMvc.perform(get("/expenses/summary").param("year", "2024").param("month", "5")
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        expenseService.save(new ExpenseDto(0L, "Dinner", new BigDecimal("20.00"), ExpenseCategory.FOOD,
+                LocalDate.of(2024, 5, 11)));
+        String changed = mockMvc.perform(get("/expenses/summary").param("year", "2024").param("month", "5")
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].sum").value(32.50))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(etag, changed);
+    }
+
+    @Test
+    void testSummaryIsEvictedBeforeItsStampMoves() {
+        clearInvocations(summaryCache, versionStamps);
+
+        expenseService.save(new ExpenseDto(0L, "Dinner", new BigDecimal("20.00"), ExpenseCategory.FOOD,
+                LocalDate.of(2024, 5, 11)));
+
+        // The other way round, a poll in between could tag the old summary with the new stamp.
+        InOrder order = inOrder(summaryCache, versionStamps);
+        order.verify(summaryCache).onExpenseChanged(any());
+        order.verify(versionStamps).onExpenseChanged(any());
+    }
+}
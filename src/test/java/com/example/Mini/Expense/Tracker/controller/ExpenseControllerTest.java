@@ -1,10 +1,25 @@
 package com.example.Mini.Expense.Tracker.controller;
 
 
+import com.example.Mini.Expense.Tracker.idempotency.IdempotencyKeyReusedException;
+import com.example.Mini.Expense.Tracker.idempotency.IdempotencyKeys;
+import com.example.Mini.Expense.Tracker.model.CacheStatsDto;
+import com.example.Mini.Expense.Tracker.model.CategoryStatsDto;
 import com.example.Mini.Expense.Tracker.model.CategorySumDto;
 import com.example.Mini.Expense.Tracker.model.ExpenseCategory;
 import com.example.Mini.Expense.Tracker.model.ExpenseDto;
+import com.example.Mini.Expense.Tracker.model.ExpensePageDto;
+import com.example.Mini.Expense.Tracker.model.FrequentDescriptionDto;
+import com.example.Mini.Expense.Tracker.model.HistogramBucket;
+import com.example.Mini.Expense.Tracker.model.HistogramDto;
+import com.example.Mini.Expense.Tracker.model.ImportResultDto;
+import com.example.Mini.Expense.Tracker.model.PeriodSummaryDto;
+import com.example.Mini.Expense.Tracker.model.RejectedRowDto;
+import com.example.Mini.Expense.Tracker.model.SummaryGranularity;
+import com.example.Mini.Expense.Tracker.service.ExpenseImportService;
 import com.example.Mini.Expense.Tracker.service.ExpenseService;
+import com.example.Mini.Expense.Tracker.service.RangeSummaryService;
+import com.example.Mini.Expense.Tracker.stats.ExpenseStatsService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
@@ -12,18 +27,29 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.web.servlet.resource.NoResourceFoundException;
 
+import java.io.ByteArrayInputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -37,6 +63,18 @@ public class ExpenseControllerTest {
     @MockitoBean
     private ExpenseService expenseService;
 
+    @MockitoBean
+    private ExpenseImportService importService;
+
+    @MockitoBean
+    private RangeSummaryService rangeSummaryService;
+
+    @MockitoBean
+    private ExpenseStatsService statsService;
+
+    @MockitoBean
+    private IdempotencyKeys idempotencyKeys;
+
     private ObjectMapper objectMapper;
 
     private ExpenseDto expenseDto;
@@ -71,27 +109,130 @@ public class ExpenseControllerTest {
         verify(expenseService, times(1)).save(any(ExpenseDto.class));
     }
 
+    @Test
+    void testCreateExpense_IdempotencyKey() throws Exception {
+        when(idempotencyKeys.create(any(ExpenseDto.class), eq("order-42")))
+                .thenReturn(new IdempotencyKeys.Outcome(expenseDto, false))
+                .thenReturn(new IdempotencyKeys.Outcome(expenseDto, true));
+
+        for (String replayed : List.of("false", "true")) {
+            mockMvc.perform(post("/expenses")
+                            .header("Idempotency-Key", "order-42")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(expenseDto)))
+                    .andExpect(status().isCreated())
+                    .andExpect(header().string("Idempotent-Replayed", replayed))
+                    .andExpect(jsonPath("$.id").value(1));
+        }
+
+        verify(expenseService, never()).save(any(ExpenseDto.class));
+    }
+
+    @Test
+    void testCreateExpense_IdempotencyKeyReusedWithAnotherBody() throws Exception {
+        when(idempotencyKeys.create(any(ExpenseDto.class), eq("order-42")))
+                .thenThrow(new IdempotencyKeyReusedException(1L));
+
+        mockMvc.perform(post("/expenses")
+                        .header("Idempotency-Key", "order-42")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(expenseDto)))
+                .andExpect(status().isUnprocessableEntity());
+    }
+
+    @Test
+    void testCreateExpense_InvalidIdempotencyKey() throws Exception {
+        for (String key : List.of(" ", "k".repeat(65))) {
+            mockMvc.perform(post("/expenses")
+                            .header("Idempotency-Key", key)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(expenseDto)))
+                    .andExpect(status().isBadRequest());
+        }
+
+        verify(idempotencyKeys, never()).create(any(), any());
+    }
+
+    @Test
+    void testCreateExpensesBatch() throws Exception {
+        ExpenseDto second = new ExpenseDto(0L, "Taxi", new BigDecimal("18.50"),
+                                            ExpenseCategory.TRAVEL, LocalDate.of(2024, 02, 20));
+
+        when(expenseService.saveAll(anyList())).thenReturn(Arrays.asList(51L, 52L));
+
+        mockMvc.perform(post("/expenses/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Arrays.asList(expenseDto, second))))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0]").value(51))
+                .andExpect(jsonPath("$[1]").value(52));
+
+        verify(expenseService, times(1)).saveAll(anyList());
+    }
+
+    @Test
+    void testCreateExpensesBatch_Empty() throws Exception {
+        mockMvc.perform(post("/expenses/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isBadRequest());
+
+        verify(expenseService, never()).saveAll(anyList());
+    }
+
+    @Test
+    void testCreateExpensesBatch_InvalidElement() throws Exception {
+        String batch = "[" + objectMapper.writeValueAsString(expenseDto)
+                + ",{\"description\":\"Taxi\",\"category\":\"TRAVEL\",\"date\":\"2024-02-20\"}]";
+
+        mockMvc.perform(post("/expenses/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(batch))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.index").value(1))
+                .andExpect(jsonPath("$.detail").value("Expense 1 amount must not be null"));
+
+        mockMvc.perform(post("/expenses/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[null]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.index").value(0));
+
+        verify(expenseService, never()).saveAll(anyList());
+    }
+
+    @Test
+    void testCreateExpensesBatch_UsersOnDifferentShards() throws Exception {
+        when(expenseService.saveAll(anyList())).thenThrow(new IllegalArgumentException("different shards"));
+
+        mockMvc.perform(post("/expenses/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Arrays.asList(expenseDto, expenseDto))))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void testFindExpensesById_Found() throws Exception {
-        when(expenseService.find(1L)).thenReturn(expenseDto);
+        when(expenseService.find(1L, 0L)).thenReturn(expenseDto);
 
         mockMvc.perform(get("/expenses/{id}", 1L))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.id").value(1L))
                 .andExpect(jsonPath("$.description").value("Travelling"));
 
-        verify(expenseService, times(1)).find(1L);
+        verify(expenseService, times(1)).find(1L, 0L);
     }
 
 
     @Test
     void testFindExpenseById_NotFound() throws Exception {
-        when(expenseService.find(2L)).thenThrow(new NoResourceFoundException(HttpMethod.GET, null));
+        when(expenseService.find(2L, 0L)).thenThrow(new NoResourceFoundException(HttpMethod.GET, null));
 
         mockMvc.perform(get("/expenses/{id}", 2L))
                 .andExpect(status().isNotFound());
 
-        verify(expenseService, times(1)).find(2L);
+        verify(expenseService, times(1)).find(2L, 0L);
     }
 
     @Test
@@ -100,7 +241,7 @@ public class ExpenseControllerTest {
                                         ExpenseCategory.TRAVEL,
                                         LocalDate.of(2024, 02, 14));
 
-        when(expenseService.updateExpense(any(ExpenseDto.class), eq(1L))).thenReturn(dtoUpdate);
+        when(expenseService.updateExpense(any(ExpenseDto.class), eq(1L), eq(0L), isNull())).thenReturn(dtoUpdate);
 
 
         mockMvc.perform(put("/expenses/{id}", 1L)
@@ -109,7 +250,7 @@ public class ExpenseControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(content().string("Expense entry updated"));
 
-        verify(expenseService, times(1)).updateExpense(any(ExpenseDto.class), eq(1L));
+        verify(expenseService, times(1)).updateExpense(any(ExpenseDto.class), eq(1L), eq(0L), isNull());
     }
 
     @Test
@@ -118,7 +259,7 @@ public class ExpenseControllerTest {
                                             new BigDecimal(20.85), ExpenseCategory.GROCERY,
                                             LocalDate.of(2024, 11, 23));
 
-        when(expenseService.updateExpense(any(ExpenseDto.class), eq(2L))).thenThrow(new NoResourceFoundException(HttpMethod.PUT, null));
+        when(expenseService.updateExpense(any(ExpenseDto.class), eq(2L), eq(0L), isNull())).thenThrow(new NoResourceFoundException(HttpMethod.PUT, null));
 
 
         mockMvc.perform(put("/expenses/{oid}", 2L)
@@ -126,32 +267,92 @@ public class ExpenseControllerTest {
                         .content(objectMapper.writeValueAsString(dtoUpdate)))
                 .andExpect(status().isNotFound());
 
-        verify(expenseService, times(1)).updateExpense(any(ExpenseDto.class), eq(2L));
+        verify(expenseService, times(1)).updateExpense(any(ExpenseDto.class), eq(2L), eq(0L), isNull());
+
+    }
+
+
+    @Test
+    void testUpdateExpenseById_Invalid() throws Exception {
+        List<String> bodies = List.of(
+                "{\"description\":\"Visiting\",\"amount\":0,\"category\":\"TRAVEL\",\"date\":\"2024-02-14\"}",
+                "{\"description\":\"Visiting\",\"amount\":-5.00,\"category\":\"TRAVEL\",\"date\":\"2024-02-14\"}",
+                "{\"description\":\"\",\"amount\":60.35,\"category\":\"TRAVEL\",\"date\":\"2024-02-14\"}",
+                "{\"description\":\"" + "x".repeat(101) + "\",\"amount\":60.35,\"category\":\"TRAVEL\",\"date\":\"2024-02-14\"}",
+                "{\"description\":\"Visiting\",\"category\":\"TRAVEL\",\"date\":\"2024-02-14\"}",
+                "{\"description\":\"Visiting\",\"amount\":60.35,\"date\":\"2024-02-14\"}",
+                "{\"description\":\"Visiting\",\"amount\":60.35,\"category\":\"TRAVEL\"}");
+
+        for (String body : bodies) {
+            mockMvc.perform(put("/expenses/{id}", 1L)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(body))
+                    .andExpect(status().isBadRequest());
+        }
+
+        verify(expenseService, never()).updateExpense(any(ExpenseDto.class), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    void testUpdateExpenseById_IfMatch() throws Exception {
+        ExpenseDto dtoUpdate = new ExpenseDto(1L, "Visiting", new BigDecimal(60.35),
+                                        ExpenseCategory.TRAVEL,
+                                        LocalDate.of(2024, 02, 14), 4L);
+
+        when(expenseService.updateExpense(any(ExpenseDto.class), eq(1L), eq(0L), eq(3L))).thenReturn(dtoUpdate);
+
+        mockMvc.perform(put("/expenses/{id}", 1L)
+                        .header(HttpHeaders.IF_MATCH, "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(dtoUpdate)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4\""));
+    }
+
+    @Test
+    void testUpdateExpenseById_StaleIfMatch() throws Exception {
+        when(expenseService.updateExpense(any(ExpenseDto.class), eq(1L), eq(0L), eq(2L)))
+                .thenThrow(new OptimisticLockingFailureException("Expense 1 is at version 3, not 2"));
 
+        mockMvc.perform(put("/expenses/{id}", 1L)
+                        .header(HttpHeaders.IF_MATCH, "\"2\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(expenseDto)))
+                .andExpect(status().isPreconditionFailed());
     }
 
+    @Test
+    void testUpdateExpenseById_ConcurrentWrite() throws Exception {
+        when(expenseService.updateExpense(any(ExpenseDto.class), eq(1L), eq(0L), isNull()))
+                .thenThrow(new OptimisticLockingFailureException("Row was updated by another transaction"));
+
+        mockMvc.perform(put("/expenses/{id}", 1L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(expenseDto)))
+                .andExpect(status().isConflict());
+    }
 
     @Test
     void testDeleteExpenseById_Found() throws Exception {
-        doNothing().when(expenseService).delete(1l);
+        doNothing().when(expenseService).delete(1L, 0L, null);
 
         mockMvc.perform(delete("/expenses/{id}", 1L))
                 .andExpect(status().isOk())
                 .andExpect(content().string("Expense entry deleted"));
 
 
-        verify(expenseService, times(1)).delete(1L);
+        verify(expenseService, times(1)).delete(1L, 0L, null);
     }
 
     @Test
     void testDeleteExpenseById_NotFound() throws Exception {
-        doThrow(new NoResourceFoundException(HttpMethod.DELETE, null)).when(expenseService).delete(2L);
+        doThrow(new NoResourceFoundException(HttpMethod.DELETE, null)).when(expenseService).delete(2L, 0L, null);
 
         mockMvc.perform(delete("/expenses/{id}", 2L))
                 .andExpect(status().isNotFound());
 
 
-        verify(expenseService, times(1)).delete(2L);
+        verify(expenseService, times(1)).delete(2L, 0L, null);
     }
 
 
@@ -166,13 +367,14 @@ public class ExpenseControllerTest {
                                             ExpenseCategory.MISC,
                                             LocalDate.of(2024, 03, 17)));
 
-        when(expenseService.filteredSearch(from, to, category)).thenReturn(list);
+        when(expenseService.filteredSearch(7L, from, to, category)).thenReturn(list);
 
 
         mockMvc.perform(get("/expenses")
                         .param("from", from.toString())
                         .param("to", to.toString())
-                        .param("category", category.name()))
+                        .param("category", category.name())
+                        .param("userId", "7"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.length()").value(2))
                 .andExpect(jsonPath("$[0].description").value("Travelling"))
@@ -180,7 +382,247 @@ public class ExpenseControllerTest {
                 .andExpect(jsonPath("$[0].amount").value(250.75))
                 .andExpect(jsonPath("$[1].amount").value(125.99));
 
-        verify(expenseService, times(1)).filteredSearch(from, to, category);
+        verify(expenseService, times(1)).filteredSearch(7L, from, to, category);
+    }
+
+    @Test
+    void testGetFilteredExpensesPage() throws Exception {
+        LocalDate from =  LocalDate.of(2024, 02, 01);
+        LocalDate to = LocalDate.of(2024, 02, 29);
+        ExpenseCategory category = ExpenseCategory.TRAVEL;
+
+        when(expenseService.filteredSearchPage(0L, from, to, category, 1, null))
+                .thenReturn(new ExpensePageDto(List.of(expenseDto), "next-cursor"));
+
+        mockMvc.perform(get("/expenses/page")
+                        .param("from", from.toString())
+                        .param("to", to.toString())
+                        .param("category", category.name())
+                        .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.items[0].description").value("Travelling"))
+                .andExpect(jsonPath("$.next").value("next-cursor"));
+
+        verify(expenseService, times(1)).filteredSearchPage(0L, from, to, category, 1, null);
+    }
+
+    @Test
+    void testGetFilteredExpensesPage_InvalidCursor() throws Exception {
+        LocalDate from =  LocalDate.of(2024, 02, 01);
+        LocalDate to = LocalDate.of(2024, 02, 29);
+        ExpenseCategory category = ExpenseCategory.TRAVEL;
+
+        when(expenseService.filteredSearchPage(0L, from, to, category, 100, "bogus"))
+                .thenThrow(new IllegalArgumentException("Invalid page cursor: bogus"));
+
+        mockMvc.perform(get("/expenses/page")
+                        .param("from", from.toString())
+                        .param("to", to.toString())
+                        .param("category", category.name())
+                        .param("cursor", "bogus"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testSearchExpenses() throws Exception {
+        LocalDate from = LocalDate.of(2024, 02, 01);
+
+        when(expenseService.search("travel", 0L, from, null, null, 100)).thenReturn(List.of(expenseDto));
+
+        mockMvc.perform(get("/expenses/search")
+                        .param("q", "travel")
+                        .param("from", from.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].description").value("Travelling"));
+
+        verify(expenseService, times(1)).search("travel", 0L, from, null, null, 100);
+    }
+
+    @Test
+    void testSearchExpenses_BadRequest() throws Exception {
+        when(expenseService.search(" ", 0L, null, null, ExpenseCategory.FOOD, 100))
+                .thenThrow(new IllegalArgumentException("A search needs 1 to 8 words"));
+
+        mockMvc.perform(get("/expenses/search")
+                        .param("q", " ")
+                        .param("category", "FOOD"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/expenses/search"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testStreamFilteredExpenses() throws Exception {
+        LocalDate from =  LocalDate.of(2024, 02, 01);
+        LocalDate to = LocalDate.of(2024, 02, 29);
+        ExpenseCategory category = ExpenseCategory.TRAVEL;
+
+        ExpenseDto second = new ExpenseDto(2L, "Taxi", new BigDecimal("18.50"),
+                                            ExpenseCategory.TRAVEL, LocalDate.of(2024, 02, 20));
+
+        doAnswer(invocation -> {
+            Consumer<ExpenseDto> consumer = invocation.getArgument(4);
+            consumer.accept(expenseDto);
+            consumer.accept(second);
+            return null;
+        }).when(expenseService).streamFilteredSearch(eq(0L), eq(from), eq(to), eq(category), any());
+
+        MvcResult result = mockMvc.perform(get("/expenses/stream")
+                        .param("from", from.toString())
+                        .param("to", to.toString())
+                        .param("category", category.name()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String[] lines = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString().split("\n");
+
+        assertEquals(2, lines.length);
+        assertEquals("Travelling", objectMapper.readValue(lines[0], ExpenseDto.class).getDescription());
+        assertEquals("Taxi", objectMapper.readValue(lines[1], ExpenseDto.class).getDescription());
+    }
+
+    @Test
+    void testExportCsv() throws Exception {
+        LocalDate from = LocalDate.of(2024, 02, 01);
+        LocalDate to = LocalDate.of(2024, 02, 29);
+
+        ExpenseDto quoted = new ExpenseDto(2L, "Taxi, \"late\"", new BigDecimal("18.50"),
+                                            ExpenseCategory.TRAVEL, LocalDate.of(2024, 02, 20));
+
+        doAnswer(invocation -> {
+            Consumer<ExpenseDto> consumer = invocation.getArgument(4);
+            consumer.accept(quoted);
+            return null;
+        }).when(expenseService).export(eq(0L), eq(from), eq(to), eq(Set.of(ExpenseCategory.TRAVEL)), any());
+
+        MvcResult result = mockMvc.perform(get("/expenses/export")
+                        .param("from", from.toString())
+                        .param("to", to.toString())
+                        .param("category", "TRAVEL"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/csv"))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"expenses-2024-02-01-2024-02-29.csv\""))
+                .andReturn().getResponse().getContentAsString();
+
+        assertEquals("id,description,amount,category,date\r\n"
+                + "2,\"Taxi, \"\"late\"\"\",18.50,TRAVEL,2024-02-20\r\n", body);
+    }
+
+    @Test
+    void testExportNdjsonGzip() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<ExpenseDto> consumer = invocation.getArgument(4);
+            consumer.accept(expenseDto);
+            return null;
+        }).when(expenseService).export(anyLong(), any(), any(), isNull(), any());
+
+        MvcResult result = mockMvc.perform(get("/expenses/export")
+                        .param("from", "2024-02-01")
+                        .param("to", "2024-02-29")
+                        .param("format", "ndjson")
+                        .param("gzip", "true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        byte[] compressed = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/gzip"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        String body;
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        assertEquals("Travelling", objectMapper.readValue(body.trim(), ExpenseDto.class).getDescription());
+    }
+
+    @Test
+    void testExport_BadRequest() throws Exception {
+        mockMvc.perform(get("/expenses/export")
+                        .param("from", "2024-02-01")
+                        .param("to", "2024-02-29")
+                        .param("format", "xml"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/expenses/export")
+                        .param("from", "2024-03-01")
+                        .param("to", "2024-02-29"))
+                .andExpect(status().isBadRequest());
+
+        verify(expenseService, never()).export(anyLong(), any(), any(), any(), any());
+    }
+
+    @Test
+    void testImportExpenses() throws Exception {
+        ImportResultDto importResult = new ImportResultDto("may", 0, 1, 1, 1, 1, true, 5, 200.0,
+                List.of(new RejectedRowDto(2, 3, "Unknown category 'FUN'")));
+        when(importService.importCsv(eq("may"), eq(0L), any(), eq(500))).thenReturn(importResult);
+
+        mockMvc.perform(post("/expenses/import")
+                        .param("importId", "may")
+                        .param("chunkSize", "500")
+                        .contentType("text/csv")
+                        .content("description,amount,category,date\r\nLunch,12.50,FOOD,2024-05-10\r\n"
+                                + "Cinema,9.00,FUN,2024-05-14\r\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.rejectedRows[0].line").value(3))
+                .andExpect(jsonPath("$.rejectedRows[0].reason").value("Unknown category 'FUN'"));
+    }
+
+    @Test
+    void testImportExpenses_BadFileAndConcurrentRun() throws Exception {
+        when(importService.importCsv(eq("bad"), eq(0L), any(), isNull()))
+                .thenThrow(new IllegalArgumentException("Header must name description, amount, category and date columns"));
+        when(importService.importCsv(eq("busy"), eq(0L), any(), isNull()))
+                .thenThrow(new IllegalStateException("Import busy was advanced by another run"));
+
+        mockMvc.perform(post("/expenses/import")
+                        .param("importId", "bad")
+                        .contentType("text/csv")
+                        .content("when,what\r\n"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(post("/expenses/import")
+                        .param("importId", "busy")
+                        .contentType("text/csv")
+                        .content("description,amount,category,date\r\n"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void testGetExpense_NotModifiedWithoutQuery() throws Exception {
+        when(expenseService.knownVersion(1L, 0L)).thenReturn(3L);
+
+        mockMvc.perform(get("/expenses/1").header(HttpHeaders.IF_NONE_MATCH, "W/\"2\", \"3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""));
+
+        verify(expenseService, never()).find(anyLong(), anyLong());
+    }
+
+    @Test
+    void testGetCategorySum_NotModifiedWithoutQuery() throws Exception {
+        when(expenseService.summaryStamp(2024, 2)).thenReturn("1700000000000-4");
+
+        mockMvc.perform(get("/expenses/summary")
+                        .param("year", "2024")
+                        .param("month", "2")
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"1700000000000-4\""))
+                .andExpect(status().isNotModified());
+
+        verify(expenseService, never()).categorySum(anyInt(), anyInt());
     }
 
     @Test
@@ -216,5 +658,130 @@ public class ExpenseControllerTest {
 
     }
 
-}
+    @Test
+    void testGetCategorySumRange() throws Exception {
+        when(rangeSummaryService.categorySumRange(YearMonth.of(2024, 1), YearMonth.of(2024, 6), SummaryGranularity.QUARTER))
+                .thenReturn(List.of(
+                        new PeriodSummaryDto("2024-Q1", YearMonth.of(2024, 1), YearMonth.of(2024, 3),
+                                List.of(new CategorySumDto("FOOD", new BigDecimal("35.80")))),
+                        new PeriodSummaryDto("2024-Q2", YearMonth.of(2024, 4), YearMonth.of(2024, 6), List.of())));
+
+        mockMvc.perform(get("/expenses/summary/range")
+                        .param("from", "2024-01")
+                        .param("to", "2024-06")
+                        .param("granularity", "quarter"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].period").value("2024-Q1"))
+                .andExpect(jsonPath("$[0].from").value("2024-01"))
+                .andExpect(jsonPath("$[0].to").value("2024-03"))
+                .andExpect(jsonPath("$[0].categories[0].sum").value(35.80))
+                .andExpect(jsonPath("$[1].categories.length()").value(0));
+    }
+
+    @Test
+    void testGetHistogram() throws Exception {
+        LocalDate from = LocalDate.of(2025, 1, 1);
+        LocalDate to = LocalDate.of(2025, 1, 14);
+        when(expenseService.histogram(from, to, HistogramBucket.WEEK, ExpenseCategory.FOOD)).thenReturn(
+                new HistogramDto("week", from, to, LocalDate.of(2024, 12, 30), 3, List.of("FOOD"),
+                        new long[][]{{0, 1225, 775}}));
+
+        mockMvc.perform(get("/expenses/histogram")
+                        .param("from", "2025-01-01")
+                        .param("to", "2025-01-14")
+                        .param("bucket", "Week")
+                        .param("category", "FOOD"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.start").value("2024-12-30"))
+                .andExpect(jsonPath("$.buckets").value(3))
+                .andExpect(jsonPath("$.categories[0]").value("FOOD"))
+                .andExpect(jsonPath("$.totals[0][1]").value(12.25));
+    }
+
+    @Test
+    void testGetHistogram_BadRequest() throws Exception {
+        mockMvc.perform(get("/expenses/histogram")
+                        .param("from", "2025-01-01")
+                        .param("to", "2025-01-14")
+                        .param("bucket", "month"))
+                .andExpect(status().isBadRequest());
+
+        when(expenseService.histogram(LocalDate.of(2025, 1, 14), LocalDate.of(2025, 1, 1), HistogramBucket.DAY, null))
+                .thenThrow(new IllegalArgumentException("from must not be after to"));
+        mockMvc.perform(get("/expenses/histogram")
+                        .param("from", "2025-01-14")
+                        .param("to", "2025-01-01"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testGetStats() throws Exception {
+        CategoryStatsDto food = new CategoryStatsDto("FOOD", 120L, new BigDecimal("1.50"), new BigDecimal("12.00"),
+                new BigDecimal("40.00"), new BigDecimal("95.25"), new BigDecimal("120.00"), 0.013,
+                List.of(new FrequentDescriptionDto("lunch", 30L, 0L)), 1L);
+        when(statsService.stats(YearMonth.of(2024, 1), YearMonth.of(2024, 3), null, 10)).thenReturn(List.of(food));
+
+        mockMvc.perform(get("/expenses/stats")
+                        .param("from", "2024-01")
+                        .param("to", "2024-03"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].category").value("FOOD"))
+                .andExpect(jsonPath("$[0].count").value(120))
+                .andExpect(jsonPath("$[0].p90").value(40.00))
+                .andExpect(jsonPath("$[0].rankError").value(0.013))
+                .andExpect(jsonPath("$[0].topDescriptions[0].description").value("lunch"))
+                .andExpect(jsonPath("$[0].topDescriptions[0].count").value(30));
+    }
+
+    @Test
+    void testGetStats_BadRequest() throws Exception {
+        when(statsService.stats(YearMonth.of(2024, 3), YearMonth.of(2024, 1), ExpenseCategory.FOOD, 5))
+                .thenThrow(new IllegalArgumentException("from 2024-03 is after to 2024-01"));
+
+        mockMvc.perform(get("/expenses/stats")
+                        .param("from", "2024-03")
+                        .param("to", "2024-01")
+                        .param("category", "FOOD")
+                        .param("top", "5"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/expenses/stats")
+                        .param("from", "2024-01"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testGetCategorySumRange_BadRequest() throws Exception {
+        mockMvc.perform(get("/expenses/summary/range")
+                        .param("from", "2024-01")
+                        .param("to", "2024-06")
+                        .param("granularity", "week"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/expenses/summary/range")
+                        .param("from", "2024-13")
+                        .param("to", "2024-06"))
+                .andExpect(status().isBadRequest());
+
+        when(rangeSummaryService.categorySumRange(any(), any(), any()))
+                .thenThrow(new IllegalArgumentException("from 2024-06 is after to 2024-01"));
+        mockMvc.perform(get("/expenses/summary/range")
+                        .param("from", "2024-06")
+                        .param("to", "2024-01"))
+                .andExpect(status().isBadRequest());
+    }
 
+    @Test
+    void testGetSummaryCacheStats() throws Exception {
+        when(expenseService.summaryCacheStats()).thenReturn(new CacheStatsDto(3, 240, 9, 3, 0.75, 0, 1));
+
+        mockMvc.perform(get("/expenses/summary/cache"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.size").value(3))
+                .andExpect(jsonPath("$.hitCount").value(9))
+                .andExpect(jsonPath("$.missCount").value(3))
+                .andExpect(jsonPath("$.hitRate").value(0.75))
+                .andExpect(jsonPath("$.invalidationCount").value(1));
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.example.Mini.Expense.Tracker.controller;
+
+import com.example.Mini.Expense.Tracker.model.CategorySumDto;
+import com.example.Mini.Expense.Tracker.model.ExpenseCategory;
+import com.example.Mini.Expense.Tracker.model.ExpenseDto;
+import com.example.Mini.Expense.Tracker.model.HistogramDto;
+import com.example.Mini.Expense.Tracker.model.PeriodSummaryDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.json.JsonTest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the application's ObjectMapper, which picks up {@link ExpenseJsonSerializers},
+ * against one configured like Spring Boot's but using the default bean serializers.
+ */
+@JsonTest
+public class ExpenseJsonSerializersTest {
+
+    // Spring Boot writes dates as ISO strings rather than arrays.
+    private final ObjectMapper defaultMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    @Autowired
+    private ObjectMapper preEncodedMapper;
+
+    private void assertSameJson(Object value) throws Exception {
+        String expected = defaultMapper.writeValueAsString(value);
+        assertEquals(expected, preEncodedMapper.writeValueAsString(value));
+        // Through the byte path as well, which is what the message converter uses.
+        assertArrayEquals(defaultMapper.writeValueAsBytes(value), preEncodedMapper.writeValueAsBytes(value));
+    }
+
+
+    @Test
+    void testExpensesMatchTheDefaultSerializer() throws Exception {
+        assertSameJson(List.of(
+                new ExpenseDto(1L, "Lunch", new BigDecimal("12.50"), ExpenseCategory.FOOD, LocalDate.of(2025, 1, 5), 3),
+                new ExpenseDto(Long.MAX_VALUE, "Taxi, \"late\" é€\n", new BigDecimal("99999999.99"),
+                        ExpenseCategory.ACADEMIC, LocalDate.of(1999, 12, 31)),
+                new ExpenseDto(3L, "Old", new BigDecimal("1"), ExpenseCategory.MISC, LocalDate.of(12, 3, 4)),
+                new ExpenseDto(4L, "Far", new BigDecimal("1E+2"), ExpenseCategory.TRAVEL, LocalDate.of(10000, 1, 1)),
+                new ExpenseDto()));
+    }
+
+    @Test
+    void testSummariesMatchTheDefaultSerializer() throws Exception {
+        assertSameJson(List.of(
+                new CategorySumDto("FOOD", new BigDecimal("35.80")),
+                new CategorySumDto("UNKNOWN", new BigDecimal("0.00")),
+                new CategorySumDto(null, null)));
+        assertSameJson(List.of(new PeriodSummaryDto("2025-Q1", YearMonth.of(2025, 1), YearMonth.of(2025, 3),
+                List.of(new CategorySumDto(ExpenseCategory.GROCERY, 1234)))));
+    }
+
+    @Test
+    void testHistogramIsWrittenAsColumns() throws Exception {
+        HistogramDto histogram = new HistogramDto("day", LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 3),
+                LocalDate.of(2025, 1, 1), 3, List.of("FOOD", "TRAVEL"),
+                new long[][]{{1250, 0, 300}, {5, -199, 100000000}});
+
+        assertEquals("{\"bucket\":\"day\",\"from\":\"2025-01-01\",\"to\":\"2025-01-03\",\"start\":\"2025-01-01\","
+                        + "\"buckets\":3,\"categories\":[\"FOOD\",\"TRAVEL\"],"
+                        + "\"totals\":[[12.50,0,3],[0.05,-1.99,1000000]]}",
+                preEncodedMapper.writeValueAsString(histogram));
+    }
+
+    @Test
+    void testApplicationMapperUsesThem() throws Exception {
+        assertInstanceOf(ExpenseJsonSerializers.ExpenseDtoSerializer.class,
+                preEncodedMapper.getSerializerProviderInstance().findValueSerializer(ExpenseDto.class));
+        assertInstanceOf(ExpenseJsonSerializers.CategorySumDtoSerializer.class,
+                preEncodedMapper.getSerializerProviderInstance().findValueSerializer(CategorySumDto.class));
+        assertInstanceOf(ExpenseJsonSerializers.HistogramDtoSerializer.class,
+                preEncodedMapper.getSerializerProviderInstance().findValueSerializer(HistogramDto.class));
+    }
+}
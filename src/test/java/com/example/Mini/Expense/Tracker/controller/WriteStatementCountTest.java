@@ -0,0 +1,187 @@
+package com.example.Mini.Expense.Tracker.controller;
+
+import com.example.Mini.Expense.Tracker.model.ExpenseCategory;
+import com.example.Mini.Expense.Tracker.model.ExpenseDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mockingDetails;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Pins the exact SQL each write endpoint sends. Fetching the next block of ids from
+ * expenses_seq happens once per 50 inserts and is left out of the counts. The rollup upsert
+ * goes through JdbcTemplate rather than Hibernate, so it is read off a spy.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.example.Mini.Expense.Tracker.controller.StatementCounter")
+@AutoConfigureMockMvc
+public class WriteStatementCountTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @MockitoSpyBean
+    private JdbcTemplate jdbcTemplate;
+
+    private long id;
+
+
+    @BeforeEach
+    void setUp() throws Exception {
+        jdbcTemplate.execute("TRUNCATE TABLE expenses");
+        jdbcTemplate.execute("TRUNCATE TABLE monthly_category_totals");
+
+        // Also creates the rollup cell, so later writes to this month only update it.
+        id = create(new ExpenseDto(0L, "Lunch", new BigDecimal("12.50"), ExpenseCategory.FOOD,
+                LocalDate.of(2024, 5, 10)));
+        StatementCounter.reset();
+        clearInvocations(jdbcTemplate);
+    }
+
+    private long create(ExpenseDto dto) throws Exception {
+        MvcResult result = mockMvc.perform(post("/expenses")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(dto)))
+                .andExpect(status().isCreated())
+                .andReturn();
+        return objectMapper.readTree(result.getResponse().getContentAsString()).get("id").asLong();
+    }
+
+    private void update(long id, ExpenseDto dto) throws Exception {
+        mockMvc.perform(put("/expenses/{id}", id)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(dto)))
+                .andExpect(status().isOk());
+    }
+
+    // Rollup updates may be sent before the entity flush, so only the set of statements is pinned.
+    private void assertStatements(String... prefixes) {
+        List<String> sql = statements();
+        assertEquals(prefixes.length, sql.size(), sql.toString());
+        for (String prefix : prefixes) {
+            assertTrue(sql.stream().anyMatch(statement -> statement.startsWith(prefix)), prefix + " in " + sql);
+        }
+    }
+
+    private List<String> statements() {
+        Stream<String> rollup = mockingDetails(jdbcTemplate).getInvocations().stream()
+                .filter(invocation -> invocation.getMethod().getName().equals("update")
+                        && invocation.getMethod().getParameterTypes()[1] == Object[].class)
+                .map(invocation -> invocation.getArgument(0));
+        return Stream.concat(StatementCounter.statements().stream(), rollup)
+                .map(String::toLowerCase)
+                .filter(sql -> !sql.contains("expenses_seq"))
+                .toList();
+    }
+
+
+    @Test
+    void testCreate() throws Exception {
+        long created = create(new ExpenseDto(0L, "Dinner", new BigDecimal("23.30"), ExpenseCategory.FOOD,
+                LocalDate.of(2024, 5, 11)));
+
+        assertNotEquals(0L, created);
+        assertStatements("insert into expenses", "merge into monthly_category_totals");
+    }
+
+    @Test
+    void testGet() throws Exception {
+        mockMvc.perform(get("/expenses/{id}", id))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0\""));
+
+        assertStatements("select");
+    }
+
+    @Test
+    void testUpdateAmount_OnlyChangedColumns() throws Exception {
+        update(id, new ExpenseDto(id, "Lunch", new BigDecimal("15.00"), ExpenseCategory.FOOD,
+                LocalDate.of(2024, 5, 10)));
+
+        assertStatements("select", "update expenses set amount=?,version=? where id=? and version=?",
+                "merge into monthly_category_totals");
+    }
+
+    @Test
+    void testUpdateDescription_SkipsRollup() throws Exception {
+        update(id, new ExpenseDto(id, "Team lunch", new BigDecimal("12.50"), ExpenseCategory.FOOD,
+                LocalDate.of(2024, 5, 10)));
+
+        assertStatements("select", "update expenses set description=?,version=? where id=? and version=?");
+    }
+
+    @Test
+    void testUpdateUnchanged_WritesNothing() throws Exception {
+        update(id, new ExpenseDto(id, "Lunch", new BigDecimal("12.5"), ExpenseCategory.FOOD,
+                LocalDate.of(2024, 5, 10)));
+
+        assertStatements("select");
+    }
+
+    @Test
+    void testUpdate_StaleIfMatchWritesNothing() throws Exception {
+        mockMvc.perform(put("/expenses/{id}", id)
+                        .header(HttpHeaders.IF_MATCH, "\"7\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new ExpenseDto(id, "Lunch",
+                                new BigDecimal("99.00"), ExpenseCategory.FOOD, LocalDate.of(2024, 5, 10)))))
+                .andExpect(status().isPreconditionFailed());
+
+        assertStatements("select");
+    }
+
+    @Test
+    void testUpdate_IfMatchAdvancesVersion() throws Exception {
+        mockMvc.perform(put("/expenses/{id}", id)
+                        .header(HttpHeaders.IF_MATCH, "\"0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new ExpenseDto(id, "Lunch",
+                                new BigDecimal("99.00"), ExpenseCategory.FOOD, LocalDate.of(2024, 5, 10)))))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""));
+
+        mockMvc.perform(delete("/expenses/{id}", id)
+                        .header(HttpHeaders.IF_MATCH, "\"0\""))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void testDelete() throws Exception {
+        mockMvc.perform(delete("/expenses/{id}", id))
+                .andExpect(status().isOk());
+
+        assertStatements("select", "delete from expenses where id=? and version=?",
+                "merge into monthly_category_totals");
+    }
+
+    @Test
+    void testDeleteMissing() throws Exception {
+        mockMvc.perform(delete("/expenses/{id}", id + 1000))
+                .andExpect(status().isNotFound());
+
+        assertStatements("select");
+    }
+
+}
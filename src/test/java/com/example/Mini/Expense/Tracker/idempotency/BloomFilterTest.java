@@ -0,0 +1,44 @@
+package com.example.Mini.Expense.Tracker.idempotency;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BloomFilterTest {
+
+    @Test
+    void testNoFalseNegativesAndRateNearTarget() {
+        BloomFilter filter = new BloomFilter(100_000, 0.01);
+        assertEquals(7, filter.probes());
+        assertEquals(958_528, filter.bits());
+
+        for (int i = 0; i < 100_000; i++) filter.put("retry-" + i);
+        for (int i = 0; i < 100_000; i++) assertTrue(filter.mightContain("retry-" + i));
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(UUID.randomUUID().toString())) falsePositives++;
+        }
+        assertTrue(falsePositives > 500 && falsePositives < 1500, falsePositives + " false positives");
+        assertEquals(0.01, filter.expectedFalsePositiveRate(), 0.003);
+    }
+
+    @Test
+    void testOverfilledFilterReportsItsRate() {
+        BloomFilter filter = new BloomFilter(1000, 0.01);
+        assertEquals(0, filter.expectedFalsePositiveRate());
+
+        for (int i = 0; i < 5000; i++) filter.put(Integer.toString(i));
+
+        assertTrue(filter.expectedFalsePositiveRate() > 0.3, "rate " + filter.expectedFalsePositiveRate());
+    }
+
+    @Test
+    void testInvalidSizing() {
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(10, 0));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(10, 1));
+    }
+}
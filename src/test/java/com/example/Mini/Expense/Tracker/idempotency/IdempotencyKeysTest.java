@@ -0,0 +1,184 @@
+package com.example.Mini.Expense.Tracker.idempotency;
+
+import com.example.Mini.Expense.Tracker.model.ExpenseCategory;
+import com.example.Mini.Expense.Tracker.model.ExpenseDto;
+import com.example.Mini.Expense.Tracker.model.ExpenseIdempotencyKey;
+import com.example.Mini.Expense.Tracker.repository.ExpenseIdempotencyKeyRepository;
+import com.example.Mini.Expense.Tracker.service.ExpenseService;
+import com.example.Mini.Expense.Tracker.sharding.ShardRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class IdempotencyKeysTest {
+
+    @Mock
+    private ExpenseService expenseService;
+
+    @Mock
+    private ExpenseIdempotencyKeyRepository keyRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private IdempotencyKeys keys;
+
+    private ExpenseDto expenseDto;
+
+    private ExpenseDto created;
+
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        keys = new IdempotencyKeys(expenseService, keyRepository, new ShardRouter(List.of(), 160), jdbcTemplate,
+                transactionManager, meterRegistry, 1000, 0.01, 100);
+
+        expenseDto = new ExpenseDto(0L, "Taxi", new BigDecimal("18.50"), ExpenseCategory.TRAVEL,
+                LocalDate.of(2025, 1, 20));
+        created = new ExpenseDto(7L, "Taxi", new BigDecimal("18.50"), ExpenseCategory.TRAVEL,
+                LocalDate.of(2025, 1, 20), 0L);
+    }
+
+
+    @Test
+    void testNewKeySkipsTheLookup() throws Exception {
+        when(expenseService.save(expenseDto, "k-1")).thenReturn(created);
+
+        IdempotencyKeys.Outcome outcome = keys.create(expenseDto, "k-1");
+
+        assertSame(created, outcome.expense());
+        assertFalse(outcome.replayed());
+        verifyNoInteractions(keyRepository);
+        assertEquals(1, lookups("absent"));
+    }
+
+    @Test
+    void testRetryIsAnsweredFromTheRecentKeys() throws Exception {
+        when(expenseService.save(expenseDto, "k-1")).thenReturn(created);
+
+        keys.create(expenseDto, "k-1");
+        IdempotencyKeys.Outcome outcome = keys.create(expenseDto, "k-1");
+
+        assertTrue(outcome.replayed());
+        assertSame(created, outcome.expense());
+        verify(expenseService, times(1)).save(any(), anyString());
+        verifyNoMoreInteractions(expenseService);
+        verifyNoInteractions(keyRepository);
+        assertEquals(1, lookups("cached"));
+    }
+
+    @Test
+    void testRetryWithAnotherBodyIsRefused() {
+        when(expenseService.save(expenseDto, "k-1")).thenReturn(created);
+        ExpenseDto changed = new ExpenseDto(0L, "Taxi", new BigDecimal("19.50"), ExpenseCategory.TRAVEL,
+                LocalDate.of(2025, 1, 20));
+
+        assertDoesNotThrow(() -> keys.create(expenseDto, "k-1"));
+
+        assertThrows(IdempotencyKeyReusedException.class, () -> keys.create(changed, "k-1"));
+        verify(expenseService, times(1)).save(any(), anyString());
+    }
+
+    @Test
+    void testReplayReturnsTheStoredResponse() throws Exception {
+        // Recorded by another instance; the expense may have been changed or deleted since.
+        when(keyRepository.findById(new ExpenseIdempotencyKey.Key(0L, "k-4"))).thenReturn(Optional.of(
+                new ExpenseIdempotencyKey(0L, "k-4", 7L, Instant.now(), "Taxi", new BigDecimal("18.50"),
+                        ExpenseCategory.TRAVEL, LocalDate.of(2025, 1, 20), 0L)));
+        when(expenseService.save(expenseDto, "k-4")).thenThrow(new DataIntegrityViolationException("duplicate key"));
+
+        IdempotencyKeys.Outcome outcome = keys.create(expenseDto, "k-4");
+
+        assertTrue(outcome.replayed());
+        assertEquals(created, outcome.expense());
+        verify(expenseService, never()).find(anyLong(), anyLong());
+    }
+
+    @Test
+    void testKeysAreScopedToTheirUser() throws Exception {
+        ExpenseDto otherUsers = new ExpenseDto(0L, "Taxi", new BigDecimal("18.50"), ExpenseCategory.TRAVEL,
+                LocalDate.of(2025, 1, 20), 0L, 9L);
+        when(expenseService.save(any(), eq("k-1"))).thenReturn(created);
+
+        keys.create(expenseDto, "k-1");
+        IdempotencyKeys.Outcome outcome = keys.create(otherUsers, "k-1");
+
+        assertFalse(outcome.replayed());
+        verify(expenseService, times(2)).save(any(), eq("k-1"));
+    }
+
+    @Test
+    void testFalsePositivesAreLookedUpAndCounted() throws Exception {
+        // Five times what the filter was sized for, so a good share of new keys look familiar.
+        when(expenseService.save(any(), anyString())).thenReturn(created);
+        for (int i = 0; i < 5000; i++) keys.create(expenseDto, "k-" + i);
+
+        for (int i = 0; i < 100; i++) assertNull(keys.find(0L, "new-" + i));
+
+        double falsePositives = lookups("false_positive");
+        assertTrue(falsePositives > 10, falsePositives + " false positives");
+        assertEquals(falsePositives + lookups("absent") - 5000, 100);
+        verify(keyRepository, times((int) falsePositives)).findById(any());
+        assertEquals(falsePositives / (falsePositives + lookups("absent")),
+                meterRegistry.get("expense.idempotency.bloom.false.positive.rate").gauge().value());
+        assertTrue(meterRegistry.get("expense.idempotency.bloom.expected.false.positive.rate").gauge().value() > 0.1);
+    }
+
+    @Test
+    void testConcurrentInsertWithTheSameKeyIsReplayed() throws Exception {
+        when(expenseService.save(expenseDto, "k-2")).thenThrow(new DataIntegrityViolationException("duplicate key"));
+        when(keyRepository.findById(new ExpenseIdempotencyKey.Key(0L, "k-2"))).thenReturn(Optional.of(
+                new ExpenseIdempotencyKey(0L, "k-2", 7L, Instant.now(), "Taxi", new BigDecimal("18.50"),
+                        ExpenseCategory.TRAVEL, LocalDate.of(2025, 1, 20), 0L)));
+
+        IdempotencyKeys.Outcome outcome = keys.create(expenseDto, "k-2");
+
+        assertTrue(outcome.replayed());
+        assertEquals(created, outcome.expense());
+        assertEquals(7L, keys.find(0L, "k-2").getId());
+    }
+
+    @Test
+    void testOtherIntegrityViolationsPropagate() {
+        when(expenseService.save(expenseDto, "k-3")).thenThrow(new DataIntegrityViolationException("amount"));
+        when(keyRepository.findById(new ExpenseIdempotencyKey.Key(0L, "k-3"))).thenReturn(Optional.empty());
+
+        assertThrows(DataIntegrityViolationException.class, () -> keys.create(expenseDto, "k-3"));
+    }
+
+    @Test
+    void testKeyValidation() {
+        assertTrue(IdempotencyKeys.isValid("3f1c2a9e-5b7d-4c1e-9a2b-6d8e0f1a2b3c"));
+        assertFalse(IdempotencyKeys.isValid(" "));
+        assertFalse(IdempotencyKeys.isValid("x".repeat(IdempotencyKeys.MAX_KEY_LENGTH + 1)));
+    }
+
+
+    private double lookups(String outcome) {
+        return meterRegistry.get("expense.idempotency.lookups").tag("outcome", outcome).counter().count();
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.Mini.Expense.Tracker.ingest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MpscRingBufferTest {
+
+    @Test
+    void testCapacityIsRoundedUpToAPowerOfTwo() {
+        assertEquals(1, new MpscRingBuffer<>(1).capacity());
+        assertEquals(8, new MpscRingBuffer<>(5).capacity());
+        assertEquals(8, new MpscRingBuffer<>(8).capacity());
+        assertThrows(IllegalArgumentException.class, () -> new MpscRingBuffer<>(0));
+    }
+
+    @Test
+    void testFullQueueRefusesUntilDrained() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(4);
+        for (int i = 0; i < 4; i++) assertEquals(i, buffer.offer(i));
+
+        assertEquals(-1, buffer.offer(4));
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(3, buffer.drainTo(drained, 3));
+        assertEquals(List.of(0, 1, 2), drained);
+        assertEquals(4, buffer.offer(4));
+        assertEquals(5, buffer.offer(5));
+        assertEquals(6, buffer.offer(6));
+        assertEquals(-1, buffer.offer(7));
+
+        drained.clear();
+        assertEquals(4, buffer.drainTo(drained, 10));
+        assertEquals(List.of(3, 4, 5, 6), drained);
+        assertEquals(0, buffer.size());
+        assertEquals(7, buffer.head());
+    }
+
+    @Test
+    void testConcurrentProducersLoseNothing() throws Exception {
+        int producers = 8, perProducer = 50_000;
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(1024);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch start = new CountDownLatch(1);
+
+        for (int p = 0; p < producers; p++) {
+            int first = p * perProducer;
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = first; i < first + perProducer; i++) {
+                    while (buffer.offer(i) < 0) Thread.onSpinWait();
+                }
+            });
+        }
+        start.countDown();
+
+        Set<Integer> seen = new HashSet<>();
+        int[] lastByProducer = new int[producers];
+        java.util.Arrays.fill(lastByProducer, -1);
+        List<Integer> drained = new ArrayList<>();
+        while (seen.size() < producers * perProducer) {
+            drained.clear();
+            buffer.drainTo(drained, 256);
+            for (int value : drained) {
+                assertTrue(seen.add(value), "Duplicate " + value);
+                // Each producer's elements come out in the order it offered them.
+                int producer = value / perProducer;
+                assertTrue(value > lastByProducer[producer]);
+                lastByProducer[producer] = value;
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(0, buffer.size());
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.Mini.Expense.Tracker.ingest;
+
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Runs POST /expenses against the default H2 database with the write-behind queue enabled.
+ */
+@SpringBootTest(properties = "expense.ingest.mode=async")
+@AutoConfigureMockMvc
+public class WriteBehindIngestTest {
+
+    private static final String LUNCH = "{\"description\":\"Lunch\",\"amount\":12.50,\"category\":\"FOOD\",\"date\":\"2024-05-10\"}";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("TRUNCATE TABLE expenses");
+        jdbcTemplate.execute("TRUNCATE TABLE monthly_category_totals");
+    }
+
+
+    @Test
+    void testAcceptedExpenseIsCommittedBehindTheResponse() throws Exception {
+        String body = awaitOutcome(mockMvc.perform(post("/expenses").contentType(MediaType.APPLICATION_JSON).content(LUNCH))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.trackingId").exists())
+                .andReturn().getResponse().getHeader(HttpHeaders.LOCATION));
+        assertEquals("COMMITTED", JsonPath.read(body, "$.state"));
+
+        Number id = JsonPath.read(body, "$.expenseId");
+        mockMvc.perform(get("/expenses/{id}", id.longValue()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.description").value("Lunch"));
+        mockMvc.perform(get("/expenses/summary").param("year", "2024").param("month", "5"))
+                .andExpect(jsonPath("$[0].sum").value(12.50));
+    }
+
+    @Test
+    void testInvalidExpenseFailsBehindTheResponse() throws Exception {
+        // Passes the request's checks but does not fit the amount column.
+        String body = awaitOutcome(mockMvc.perform(post("/expenses").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"description\":\"Refund\",\"amount\":123456789012.00,\"category\":\"FOOD\",\"date\":\"2024-05-10\"}"))
+                .andExpect(status().isAccepted())
+                .andReturn().getResponse().getHeader(HttpHeaders.LOCATION));
+
+        assertEquals("FAILED", JsonPath.read(body, "$.state"));
+        assertNotNull(JsonPath.read(body, "$.error"));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM expenses", Integer.class));
+    }
+
+    @Test
+    void testDurableAckWaitsForTheCommit() throws Exception {
+        String body = mockMvc.perform(post("/expenses").param("durable", "true")
+                        .contentType(MediaType.APPLICATION_JSON).content(LUNCH))
+                .andExpect(status().isCreated())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"0\""))
+                .andReturn().getResponse().getContentAsString();
+
+        Number id = JsonPath.read(body, "$.id");
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM expenses WHERE id = ?", Integer.class,
+                id.longValue()));
+    }
+
+    @Test
+    void testUnknownTrackingId() throws Exception {
+        mockMvc.perform(get("/expenses/ingest/{trackingId}", "1-0")).andExpect(status().isNotFound());
+    }
+
+
+    private String awaitOutcome(String location) throws Exception {
+        for (int i = 0; i < 100; i++) {
+            String body = mockMvc.perform(get(location)).andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            if (!JsonPath.read(body, "$.state").equals("PENDING")) return body;
+            Thread.sleep(50);
+        }
+        return fail("Still pending: " + location);
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.Mini.Expense.Tracker.ingest;
+
+import com.example.Mini.Expense.Tracker.model.ExpenseCategory;
+import com.example.Mini.Expense.Tracker.model.ExpenseDto;
+import com.example.Mini.Expense.Tracker.model.IngestStatusDto;
+import com.example.Mini.Expense.Tracker.service.ExpenseService;
+import com.example.Mini.Expense.Tracker.sharding.ShardRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class WriteBehindQueueTest {
+
+    private final ExpenseService expenseService = mock(ExpenseService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong ids = new AtomicLong(100);
+    private ShardRouter shardRouter = new ShardRouter(List.of(), 160);
+
+    private WriteBehindQueue queue;
+
+
+    private WriteBehindQueue queue(int capacity, int batchSize) {
+        queue = new WriteBehindQueue(expenseService, shardRouter, meterRegistry, capacity, batchSize, Duration.ofSeconds(5),
+                Duration.ofMinutes(1), 1000, Duration.ofSeconds(10));
+        return queue;
+    }
+
+    private static ExpenseDto expense(String description) {
+        return expense(description, 0L);
+    }
+
+    private static ExpenseDto expense(String description, long userId) {
+        return new ExpenseDto(0L, description, new BigDecimal("12.50"), ExpenseCategory.FOOD, LocalDate.of(2024, 5, 10),
+                0L, userId);
+    }
+
+    private void assignIds() {
+        when(expenseService.saveAll(anyList())).thenAnswer(invocation -> {
+            List<?> dtos = invocation.getArgument(0);
+            return LongStream.range(0, dtos.size()).map(i -> ids.incrementAndGet()).boxed().toList();
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (queue != null && queue.isRunning()) queue.stop();
+        shardRouter.shutdown();
+    }
+
+
+    @Test
+    void testQueuedExpensesAreCommittedInGroups() throws Exception {
+        CountDownLatch firstGroupStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(expenseService.saveAll(anyList())).thenAnswer(invocation -> {
+            firstGroupStarted.countDown();
+            release.await();
+            List<?> dtos = invocation.getArgument(0);
+            return LongStream.range(0, dtos.size()).map(i -> ids.incrementAndGet()).boxed().toList();
+        });
+        queue(64, 10).start();
+
+        WriteBehindQueue.Ticket first = queue.offer(expense("first"), false);
+        assertTrue(firstGroupStarted.await(5, TimeUnit.SECONDS));
+        // Everything that arrives while a group commits goes into the next group.
+        for (int i = 0; i < 25; i++) queue.offer(expense("burst " + i), false);
+        WriteBehindQueue.Ticket last = queue.offer(expense("last"), true);
+
+        assertEquals(IngestStatusDto.State.PENDING, queue.status(first.trackingId()).getState());
+        release.countDown();
+
+        ExpenseDto committed = last.committed().get(5, TimeUnit.SECONDS);
+        assertEquals("last", committed.getDescription());
+        assertEquals(127L, committed.getId());
+        assertEquals(101L, queue.status(first.trackingId()).getExpenseId());
+        assertEquals(IngestStatusDto.State.COMMITTED, queue.status(last.trackingId()).getState());
+
+        // 1 + 10 + 10 + 6: the burst is split by the batch size.
+        verify(expenseService, times(4)).saveAll(anyList());
+        assertEquals(4, meterRegistry.get("expense.ingest.group.size").summary().count());
+        assertNull(first.committed());
+    }
+
+    @Test
+    void testGroupsAreSplitByShard() throws Exception {
+        shardRouter = new ShardRouter(List.of("shard-0", "shard-1"), 160);
+        long otherUser = LongStream.range(1, 100)
+                .filter(userId -> shardRouter.shardOf(userId) != shardRouter.shardOf(0))
+                .findFirst().orElseThrow();
+
+        List<Set<Integer>> shardsPerGroup = new CopyOnWriteArrayList<>();
+        CountDownLatch firstGroupStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(expenseService.saveAll(anyList())).thenAnswer(invocation -> {
+            List<ExpenseDto> dtos = invocation.getArgument(0);
+            shardsPerGroup.add(dtos.stream().map(dto -> shardRouter.shardOf(dto.userId)).collect(Collectors.toSet()));
+            firstGroupStarted.countDown();
+            release.await();
+            return LongStream.range(0, dtos.size()).map(i -> ids.incrementAndGet()).boxed().toList();
+        });
+        queue(64, 10).start();
+
+        queue.offer(expense("first"), false);
+        assertTrue(firstGroupStarted.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 6; i++) queue.offer(expense("burst " + i, i % 2 == 0 ? 0 : otherUser), false);
+        release.countDown();
+        queue.stop();
+
+        // The burst is one group, committed as one batch per shard.
+        assertEquals(3, shardsPerGroup.size());
+        assertTrue(shardsPerGroup.stream().allMatch(shards -> shards.size() == 1));
+        assertEquals(3, meterRegistry.get("expense.ingest.group.size").summary().count());
+    }
+
+    @Test
+    void testFullQueueIsReported() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(expenseService.saveAll(anyList())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return List.of(1L);
+        }).thenAnswer(invocation -> {
+            List<?> dtos = invocation.getArgument(0);
+            return LongStream.range(0, dtos.size()).map(i -> ids.incrementAndGet()).boxed().toList();
+        });
+        queue(4, 10).start();
+
+        assertNotNull(queue.offer(expense("blocking"), false));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 4; i++) assertNotNull(queue.offer(expense("queued " + i), false));
+
+        assertNull(queue.offer(expense("one too many"), false));
+        assertEquals(1.0, meterRegistry.get("expense.ingest.rejected").counter().count());
+        assertEquals(4.0, meterRegistry.get("expense.ingest.queue.size").gauge().value());
+
+        release.countDown();
+    }
+
+    @Test
+    void testFailedGroupIsRetriedRowByRow() throws Exception {
+        when(expenseService.saveAll(anyList())).thenThrow(new DataIntegrityViolationException("check constraint"));
+        when(expenseService.save(any())).thenAnswer(invocation -> {
+            ExpenseDto dto = invocation.getArgument(0);
+            if (dto.getDescription().equals("bad")) throw new DataIntegrityViolationException("check constraint");
+            return new ExpenseDto(ids.incrementAndGet(), dto.description, dto.amount, dto.category, dto.date);
+        });
+        queue(16, 10).start();
+
+        WriteBehindQueue.Ticket good = queue.offer(expense("good"), false);
+        WriteBehindQueue.Ticket bad = queue.offer(expense("bad"), true);
+
+        assertThrows(ExecutionException.class, () -> bad.committed().get(5, TimeUnit.SECONDS));
+        IngestStatusDto failed = queue.status(bad.trackingId());
+        assertEquals(IngestStatusDto.State.FAILED, failed.getState());
+        assertEquals("check constraint", failed.getError());
+        assertEquals(IngestStatusDto.State.COMMITTED, queue.status(good.trackingId()).getState());
+        assertEquals(1.0, meterRegistry.get("expense.ingest.failed").counter().count());
+    }
+
+    @Test
+    void testStopCommitsEverythingQueued() {
+        assignIds();
+        queue(1024, 50).start();
+
+        List<WriteBehindQueue.Ticket> tickets = LongStream.range(0, 500)
+                .mapToObj(i -> queue.offer(expense("expense " + i), false))
+                .toList();
+        queue.stop();
+
+        assertFalse(queue.isRunning());
+        assertNull(queue.offer(expense("too late"), false));
+        for (WriteBehindQueue.Ticket ticket : tickets) {
+            assertEquals(IngestStatusDto.State.COMMITTED, queue.status(ticket.trackingId()).getState());
+        }
+    }
+
+    @Test
+    void testUnknownTrackingIds() {
+        assignIds();
+        queue(16, 10).start();
+        String issued = queue.offer(expense("one"), false).trackingId();
+        String epoch = issued.substring(0, issued.indexOf('-'));
+
+        assertNull(queue.status(epoch + "-5"));
+        assertNull(queue.status("1-0"));
+        assertNull(queue.status("not-a-number"));
+        assertNull(queue.status("nonsense"));
+    }
+}
@@ -1,11 +1,17 @@
 package com.example.Mini.Expense.Tracker.integrationTesting;
 
+import com.example.Mini.Expense.Tracker.idempotency.IdempotencyKeys;
+import com.example.Mini.Expense.Tracker.model.CategorySumDto;
 import com.example.Mini.Expense.Tracker.model.Expense;
 import com.example.Mini.Expense.Tracker.model.ExpenseCategory;
 import com.example.Mini.Expense.Tracker.model.ExpenseDto;
 import com.example.Mini.Expense.Tracker.repository.ExpenseRepository;
+import com.example.Mini.Expense.Tracker.search.ExpenseSearchIndex;
 import com.example.Mini.Expense.Tracker.service.ExpenseService;
+import com.example.Mini.Expense.Tracker.service.MonthlyRollupService;
+import com.example.Mini.Expense.Tracker.stats.ExpenseStatsService;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
@@ -23,6 +29,12 @@ import org.springframework.boot.testcontainers.service.connection.ServiceConnect
 import org.springframework.http.MediaType;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.junit.jupiter.Container;
@@ -31,6 +43,9 @@ import org.testcontainers.junit.jupiter.Testcontainers;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -53,6 +68,24 @@ public class IntegrationTest {
     @Autowired
     private ExpenseRepository repo;
 
+    @Autowired
+    private MonthlyRollupService rollupService;
+
+    @Autowired
+    private ExpenseSearchIndex searchIndex;
+
+    @Autowired
+    private ExpenseStatsService statsService;
+
+    @Autowired
+    private IdempotencyKeys idempotencyKeys;
+
+    @Autowired
+    private ExpenseService expenseService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
 
     private ExpenseDto expenseDto;
 
@@ -81,6 +114,13 @@ public class IntegrationTest {
         RestAssured.baseURI = "http://localhost:" + port;
         repo.deleteAllInBatch();
         jdbcTemplate.execute("TRUNCATE TABLE expenses RESTART IDENTITY");
+        jdbcTemplate.execute("TRUNCATE TABLE monthly_category_totals");
+        jdbcTemplate.execute("TRUNCATE TABLE monthly_category_sketches");
+        jdbcTemplate.execute("TRUNCATE TABLE expense_idempotency_keys");
+        // The truncates bypass the write path, so the index is rebuilt from the empty table.
+        searchIndex.load();
+        statsService.evict();
+        idempotencyKeys.load();
 
         expenseDto = new ExpenseDto(1L, "Travelling",
                 new BigDecimal(250.75), ExpenseCategory.TRAVEL,
@@ -103,31 +143,49 @@ public class IntegrationTest {
                 .andExpect(jsonPath("$.amount").value(250.75));
 
         List<Expense> list =  repo.findAll();
+        assertEquals(1, list.size());
         Expense expense = list.get(0);
         assertEquals("Travelling", expense.getDescription());
-        assertEquals(1L, expense.getId());
+        assertTrue(expense.getId() > 0);
         assertEquals(250.75, expense.getAmount().doubleValue());
         assertEquals("TRAVEL", expense.getCategory().name());
 
     }
 
+    @Test
+    void testCreateExpense_RoundsToCents() throws Exception {
+        mockMvc.perform(post("/expenses")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"description\":\"Coffee\",\"amount\":10.005,\"category\":\"FOOD\"," +
+                                "\"date\":\"2024-07-01\"}"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.amount").value(10.01));
+
+        mockMvc.perform(get("/expenses/summary").param("year", "2024").param("month", "7"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].sum").value(10.01));
+
+        assertEquals(new BigDecimal("10.01"), repo.findAll().get(0).getAmount());
+        assertTrue(rollupService.verify().isEmpty());
+    }
+
     @Test
     void testFindExpenseById_Exists() throws Exception {
-        repo.save(new Expense(expenseDto.getDescription(), expenseDto.getAmount(),
-                expenseDto.getCategory(), expenseDto.getDate()));
-        mockMvc.perform(MockMvcRequestBuilders.get("/expenses/{id}", 1L))
+        long id = repo.save(new Expense(expenseDto.getDescription(), expenseDto.getAmount(),
+                expenseDto.getCategory(), expenseDto.getDate())).getId();
+        mockMvc.perform(MockMvcRequestBuilders.get("/expenses/{id}", id))
                         //.contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.description").value("Travelling"))
                 .andExpect(jsonPath("$.amount").value(250.75));
 
-        Optional<Expense> expenseOptl = repo.findById(1L);
+        Optional<Expense> expenseOptl = repo.findById(id);
         Expense expense = expenseOptl.orElse(null);
 
         assertTrue(expenseOptl.isPresent());
 
         assertEquals("Travelling", expense.getDescription());
-        assertEquals(1L, expense.getId());
+        assertEquals(id, expense.getId());
         assertEquals(250.75, expense.getAmount().doubleValue());
         assertEquals("TRAVEL", expense.getCategory().name());
     }
@@ -143,19 +201,19 @@ public class IntegrationTest {
 
     @Test
     void testUpdateExpenseById_Exists() throws Exception {
-        repo.save(new Expense(expenseDto.getDescription(), expenseDto.getAmount(),
-                expenseDto.getCategory(), expenseDto.getDate()));
+        long id = repo.save(new Expense(expenseDto.getDescription(), expenseDto.getAmount(),
+                expenseDto.getCategory(), expenseDto.getDate())).getId();
 
-        ExpenseDto updatedDto = new ExpenseDto(expenseDto.getId(), "Updated description",
+        ExpenseDto updatedDto = new ExpenseDto(id, "Updated description",
                 new BigDecimal(270.75), ExpenseCategory.FOOD, LocalDate.of(2024, 03, 12));
 
-        mockMvc.perform(put("/expenses/{id}", 1L)
+        mockMvc.perform(put("/expenses/{id}", id)
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(updatedDto)))
                 .andExpect(status().isOk())
                 .andExpect(content().string("Expense entry updated"));
 
-        Optional<Expense> expenseOptl = repo.findById(expenseDto.getId());
+        Optional<Expense> expenseOptl = repo.findById(id);
         Expense updatedExpense = expenseOptl.orElse(null);
         assertTrue(expenseOptl.isPresent());
         assertNotNull(updatedExpense);
@@ -185,19 +243,19 @@ public class IntegrationTest {
 
     @Test
     void testDeleteExpenseById_Exists() throws Exception {
-        repo.save(new Expense(expenseDto.getDescription(), expenseDto.getAmount(),
-                expenseDto.getCategory(), expenseDto.getDate()));
+        long id = repo.save(new Expense(expenseDto.getDescription(), expenseDto.getAmount(),
+                expenseDto.getCategory(), expenseDto.getDate())).getId();
 
-        Optional<Expense> expenseOptl1= repo.findById(1L);
+        Optional<Expense> expenseOptl1= repo.findById(id);
         assertTrue(expenseOptl1.isPresent());
 
         assertNotNull(expenseOptl1.orElse(null));
 
-        mockMvc.perform(delete("/expenses/{id}", 1L))
+        mockMvc.perform(delete("/expenses/{id}", id))
                 .andExpect(status().isOk())
                 .andExpect(content().string("Expense entry deleted"));
 
-        Optional<Expense> expenseOptl2= repo.findById(1L);
+        Optional<Expense> expenseOptl2= repo.findById(id);
 
         assertNull(expenseOptl2.orElse(null));
     }
@@ -215,6 +273,30 @@ public class IntegrationTest {
     }
 
 
+    @Test
+    void testCreateExpensesBatch() throws Exception {
+        List<ExpenseDto> batch = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            batch.add(new ExpenseDto(0L, "Bulk " + i, new BigDecimal("1.25"),
+                    ExpenseCategory.GROCERY, LocalDate.of(2024, 03, 1 + i % 28)));
+        }
+
+        String body = mockMvc.perform(post("/expenses/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.length()").value(120))
+                .andReturn().getResponse().getContentAsString();
+
+        List<Long> ids = Arrays.asList(objectMapper.readValue(body, Long[].class));
+        assertEquals(120, new HashSet<>(ids).size());
+        assertEquals(120, repo.count());
+
+        Expense first = repo.findById(ids.get(0)).orElse(null);
+        assertNotNull(first);
+        assertEquals("Bulk 0", first.getDescription());
+    }
+
     @Test
     void testFilteredExpenses() throws Exception {
         LocalDate from =  LocalDate.of(2024, 03, 01);
@@ -255,7 +337,7 @@ public class IntegrationTest {
                 .andExpect(jsonPath("$[0].date").value(LocalDate.of(2024, 03, 8).toString()))
                 .andExpect(jsonPath("$[1].date").value(LocalDate.of(2024, 03, 21).toString()));
 
-        List<Expense> repoResult = repo.filteredSearch(from, to, category.name());
+        List<ExpenseDto> repoResult = repo.filteredSearch(0L, from, to, category);
 
         assertTrue(repoResult.size()==2);
         assertEquals("Lunch", repoResult.get(0).getDescription());
@@ -299,11 +381,131 @@ public class IntegrationTest {
                         .param("category", category.name()))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.length()").value(0));
-        List<Expense> repoResult = repo.filteredSearch(from, to, category.name());
+        List<ExpenseDto> repoResult = repo.filteredSearch(0L, from, to, category);
 
         assertTrue(repoResult.isEmpty());
     }
 
+    @Test
+    void testFilteredExpensesPage_WalksAllPages() throws Exception {
+        LocalDate from =  LocalDate.of(2024, 03, 01);
+        LocalDate to = LocalDate.of(2024, 03, 31);
+
+        repo.saveAll(Arrays.asList(
+                new Expense("Dinner", new BigDecimal("12.99"), ExpenseCategory.FOOD, LocalDate.of(2024, 03, 21)),
+                new Expense("Lunch", new BigDecimal("5.99"), ExpenseCategory.FOOD, LocalDate.of(2024, 03, 8)),
+                new Expense("Coffee", new BigDecimal("2.50"), ExpenseCategory.FOOD, LocalDate.of(2024, 03, 8)),
+                new Expense("Snacks", new BigDecimal("3.10"), ExpenseCategory.FOOD, LocalDate.of(2024, 04, 2)),
+                new Expense("Bus", new BigDecimal("1.80"), ExpenseCategory.TRAVEL, LocalDate.of(2024, 03, 9))));
+
+        List<String> descriptions = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+
+        do {
+            MockHttpServletRequestBuilder request = get("/expenses/page")
+                    .param("from", from.toString())
+                    .param("to", to.toString())
+                    .param("category", ExpenseCategory.FOOD.name())
+                    .param("limit", "2");
+            if (cursor != null) request.param("cursor", cursor);
+
+            String body = mockMvc.perform(request)
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+
+            JsonNode page = objectMapper.readTree(body);
+            page.get("items").forEach(item -> descriptions.add(item.get("description").asText()));
+            cursor = page.get("next").isNull() ? null : page.get("next").asText();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(2, pages);
+        assertEquals(Arrays.asList("Lunch", "Coffee", "Dinner"), descriptions);
+    }
+
+    @Test
+    void testStreamFilteredExpenses() throws Exception {
+        repo.saveAll(Arrays.asList(
+                new Expense("Dinner", new BigDecimal("12.99"), ExpenseCategory.FOOD, LocalDate.of(2024, 03, 21)),
+                new Expense("Lunch", new BigDecimal("5.99"), ExpenseCategory.FOOD, LocalDate.of(2024, 03, 8)),
+                new Expense("Bus", new BigDecimal("1.80"), ExpenseCategory.TRAVEL, LocalDate.of(2024, 03, 9))));
+
+        MvcResult result = mockMvc.perform(get("/expenses/stream")
+                        .param("from", "2024-03-01")
+                        .param("to", "2024-03-31")
+                        .param("category", ExpenseCategory.FOOD.name()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String[] lines = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString().split("\n");
+
+        assertEquals(2, lines.length);
+        assertEquals("Lunch", objectMapper.readTree(lines[0]).get("description").asText());
+        assertEquals("Dinner", objectMapper.readTree(lines[1]).get("description").asText());
+    }
+
+    @Test
+    void testExportCsv_CategorySubset() throws Exception {
+        repo.saveAll(Arrays.asList(
+                new Expense("Dinner, with \"friends\"", new BigDecimal("12.99"), ExpenseCategory.FOOD, LocalDate.of(2024, 03, 21)),
+                new Expense("Lunch", new BigDecimal("5.99"), ExpenseCategory.FOOD, LocalDate.of(2024, 03, 8)),
+                new Expense("Bus", new BigDecimal("1.80"), ExpenseCategory.TRAVEL, LocalDate.of(2024, 03, 9)),
+                new Expense("Cinema", new BigDecimal("9.00"), ExpenseCategory.MISC, LocalDate.of(2024, 03, 9)),
+                new Expense("Hotel", new BigDecimal("80.00"), ExpenseCategory.TRAVEL, LocalDate.of(2024, 04, 2))));
+
+        MvcResult result = mockMvc.perform(get("/expenses/export")
+                        .param("from", "2024-03-01")
+                        .param("to", "2024-03-31")
+                        .param("category", "FOOD", "TRAVEL"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String[] lines = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString().split("\r\n");
+
+        assertEquals(4, lines.length);
+        assertEquals("id,description,amount,category,date", lines[0]);
+        assertTrue(lines[1].endsWith(",Lunch,5.99,FOOD,2024-03-08"), lines[1]);
+        assertTrue(lines[2].endsWith(",Bus,1.80,TRAVEL,2024-03-09"), lines[2]);
+        assertTrue(lines[3].endsWith(",\"Dinner, with \"\"friends\"\"\",12.99,FOOD,2024-03-21"), lines[3]);
+    }
+
+    @Test
+    void testImportCsv_SharesIdsWithTheApi() throws Exception {
+        jdbcTemplate.execute("TRUNCATE TABLE import_checkpoints");
+
+        mockMvc.perform(post("/expenses/import")
+                        .param("importId", "march")
+                        .param("chunkSize", "2")
+                        .contentType("text/csv")
+                        .content("description,amount,category,date\r\n" +
+                                "Dinner,12.99,FOOD,2024-03-21\r\n" +
+                                "Lunch,5.99,FOOD,2024-03-08\r\n" +
+                                "Bus,1.80,TRAVEL,2024-03-09\r\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(3))
+                .andExpect(jsonPath("$.completed").value(true));
+
+        // Ids handed to the import came from the same pooled generator as the API's.
+        mockMvc.perform(post("/expenses")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new ExpenseDto(0L, "Taxi",
+                                new BigDecimal("20.00"), ExpenseCategory.TRAVEL, LocalDate.of(2024, 03, 10)))))
+                .andExpect(status().isCreated());
+
+        assertEquals(4, repo.count());
+        mockMvc.perform(get("/expenses/summary")
+                        .param("year", "2024")
+                        .param("month", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].category").value("FOOD"))
+                .andExpect(jsonPath("$[0].sum").value(18.98));
+    }
+
     @Test
     void testCategorySum() throws Exception {
         int year = 2024;
@@ -332,6 +534,8 @@ public class IntegrationTest {
                 expenseDto.getCategory(), expenseDto.getDate()), exp1, exp2, exp3, exp4);
 
         repo.saveAll(toAdd);
+        // rows inserted through the repository bypass the write path that maintains the rollup
+        rollupService.rebuild();
 
         mockMvc.perform(get("/expenses/summary")
                         .param("year", String.valueOf(year))
@@ -343,14 +547,314 @@ public class IntegrationTest {
                 .andExpect(jsonPath("$[0].sum").value(163))
                 .andExpect(jsonPath("$[1].sum").value(3754));
 
-        List<Object[]> result = repo.categorySum(year, month);
+        List<CategorySumDto> result = repo.categorySum(year, month);
 
         assertTrue(result.size()==2);
-        assertEquals(ExpenseCategory.MISC.name(), (String) result.get(0)[0]);
-        assertEquals(ExpenseCategory.TRAVEL.name(), (String) result.get(1)[0]);
-        assertEquals(new BigDecimal("163.00"), result.get(0)[1]);
-        assertEquals(new BigDecimal("3754.00"), result.get(1)[1]);
+        assertEquals(ExpenseCategory.MISC.name(), result.get(0).getCategory());
+        assertEquals(ExpenseCategory.TRAVEL.name(), result.get(1).getCategory());
+        assertEquals(new BigDecimal("163.00"), result.get(0).getSum());
+        assertEquals(new BigDecimal("3754.00"), result.get(1).getSum());
+
+    }
+
+    @Test
+    void testSummaryRollupFollowsWrites() throws Exception {
+        ExpenseDto lunch = new ExpenseDto(0L, "Lunch", new BigDecimal("10.50"),
+                ExpenseCategory.FOOD, LocalDate.of(2024, 3, 8));
+        ExpenseDto taxi = new ExpenseDto(0L, "Taxi", new BigDecimal("20.00"),
+                ExpenseCategory.TRAVEL, LocalDate.of(2024, 3, 9));
+
+        mockMvc.perform(post("/expenses/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Arrays.asList(lunch, taxi, lunch))))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/expenses/summary").param("year", "2024").param("month", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].category").value("FOOD"))
+                .andExpect(jsonPath("$[0].sum").value(21.00))
+                .andExpect(jsonPath("$[1].category").value("TRAVEL"))
+                .andExpect(jsonPath("$[1].sum").value(20.00));
+
+        List<Expense> saved = repo.findAll();
+        Expense travel = saved.stream().filter(e -> e.getCategory() == ExpenseCategory.TRAVEL).findFirst().get();
+        Expense food = saved.stream().filter(e -> e.getCategory() == ExpenseCategory.FOOD).findFirst().get();
+
+        // move the taxi ride into April as MISC and drop one lunch
+        ExpenseDto moved = new ExpenseDto(travel.getId(), "Taxi", new BigDecimal("22.00"),
+                ExpenseCategory.MISC, LocalDate.of(2024, 4, 1));
+        mockMvc.perform(put("/expenses/{id}", travel.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(moved)))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/expenses/{id}", food.getId()))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/expenses/summary").param("year", "2024").param("month", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].category").value("FOOD"))
+                .andExpect(jsonPath("$[0].sum").value(10.50));
+
+        mockMvc.perform(get("/expenses/summary").param("year", "2024").param("month", "4"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].category").value("MISC"))
+                .andExpect(jsonPath("$[0].sum").value(22.00));
+
+        assertTrue(rollupService.verify().isEmpty());
+    }
+
+    @Test
+    void testSummaryRollupConcurrentFirstWrites() throws Exception {
+        CountDownLatch cellInserted = new CountDownLatch(1);
+        CountDownLatch secondWriting = new CountDownLatch(1);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        // The first write creates the month's FOOD cell and holds it uncommitted while the
+        // second writes into the same cell, which has to wait for it rather than fail.
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> transaction.executeWithoutResult(status -> {
+            expenseService.save(new ExpenseDto(0L, "Lunch", new BigDecimal("10.50"),
+                    ExpenseCategory.FOOD, LocalDate.of(2024, 9, 2)));
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    cellInserted.countDown();
+                    try {
+                        assertTrue(secondWriting.await(5, TimeUnit.SECONDS));
+                        Thread.sleep(200);
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+        }));
+
+        assertTrue(cellInserted.await(5, TimeUnit.SECONDS));
+        secondWriting.countDown();
+        expenseService.save(new ExpenseDto(0L, "Dinner", new BigDecimal("20.00"),
+                ExpenseCategory.FOOD, LocalDate.of(2024, 9, 3)));
+        first.get(10, TimeUnit.SECONDS);
+
+        mockMvc.perform(get("/expenses/summary").param("year", "2024").param("month", "9"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].category").value("FOOD"))
+                .andExpect(jsonPath("$[0].sum").value(30.50));
+
+        assertTrue(rollupService.verify().isEmpty());
+    }
+
+    @Test
+    void testSummaryRangeByQuarter() throws Exception {
+        ExpenseDto january = new ExpenseDto(0L, "Lunch", new BigDecimal("10.50"),
+                ExpenseCategory.FOOD, LocalDate.of(2024, 1, 8));
+        ExpenseDto march = new ExpenseDto(0L, "Dinner", new BigDecimal("20.00"),
+                ExpenseCategory.FOOD, LocalDate.of(2024, 3, 31));
+        ExpenseDto april = new ExpenseDto(0L, "Taxi", new BigDecimal("7.25"),
+                ExpenseCategory.TRAVEL, LocalDate.of(2024, 4, 1));
+
+        mockMvc.perform(post("/expenses/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Arrays.asList(january, march, april))))
+                .andExpect(status().isCreated());
+
+        // March is cached first; the range reuses it and reads the other months.
+        mockMvc.perform(get("/expenses/summary").param("year", "2024").param("month", "3"))
+                .andExpect(jsonPath("$[0].sum").value(20.00));
+
+        mockMvc.perform(get("/expenses/summary/range")
+                        .param("from", "2024-01")
+                        .param("to", "2024-12")
+                        .param("granularity", "quarter"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(4))
+                .andExpect(jsonPath("$[0].period").value("2024-Q1"))
+                .andExpect(jsonPath("$[0].categories.length()").value(1))
+                .andExpect(jsonPath("$[0].categories[0].category").value("FOOD"))
+                .andExpect(jsonPath("$[0].categories[0].sum").value(30.50))
+                .andExpect(jsonPath("$[1].categories[0].category").value("TRAVEL"))
+                .andExpect(jsonPath("$[1].categories[0].sum").value(7.25))
+                .andExpect(jsonPath("$[3].categories.length()").value(0));
+    }
+
+    @Test
+    void testSearch() throws Exception {
+        ExpenseDto ride = new ExpenseDto(0L, "Uber to the airport", new BigDecimal("31.20"),
+                ExpenseCategory.TRAVEL, LocalDate.of(2024, 5, 2));
+        ExpenseDto dinner = new ExpenseDto(0L, "UberEats dinner", new BigDecimal("18.00"),
+                ExpenseCategory.FOOD, LocalDate.of(2024, 5, 9));
+        ExpenseDto pharmacy = new ExpenseDto(0L, "Pharmacy", new BigDecimal("6.40"),
+                ExpenseCategory.MEDICAL, LocalDate.of(2024, 6, 1));
+
+        MvcResult created = mockMvc.perform(post("/expenses/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Arrays.asList(ride, dinner, pharmacy))))
+                .andExpect(status().isCreated())
+                .andReturn();
+        long rideId = objectMapper.readTree(created.getResponse().getContentAsString()).get(0).asLong();
+
+        mockMvc.perform(get("/expenses/search").param("q", "uber"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].description").value("UberEats dinner"))
+                .andExpect(jsonPath("$[1].description").value("Uber to the airport"));
+
+        mockMvc.perform(get("/expenses/search").param("q", "uber").param("category", "TRAVEL"))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].amount").value(31.20));
+
+        ride.setDescription("Taxi to the airport");
+        mockMvc.perform(put("/expenses/" + rideId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(ride)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/expenses/search").param("q", "uber").param("to", "2024-05-31"))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].description").value("UberEats dinner"));
+        mockMvc.perform(get("/expenses/search").param("q", "airp TAXI"))
+                .andExpect(jsonPath("$.length()").value(1));
+    }
+
+    @Test
+    void testHistogram() throws Exception {
+        mockMvc.perform(post("/expenses/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Arrays.asList(
+                                new ExpenseDto(0L, "Lunch", new BigDecimal("12.25"), ExpenseCategory.FOOD,
+                                        LocalDate.of(2024, 4, 29)),
+                                new ExpenseDto(0L, "Dinner", new BigDecimal("20.00"), ExpenseCategory.FOOD,
+                                        LocalDate.of(2024, 5, 5)),
+                                new ExpenseDto(0L, "Bus", new BigDecimal("2.50"), ExpenseCategory.TRAVEL,
+                                        LocalDate.of(2024, 5, 6)),
+                                new ExpenseDto(0L, "Train", new BigDecimal("9.10"), ExpenseCategory.TRAVEL,
+                                        LocalDate.of(2024, 5, 13))))))
+                .andExpect(status().isCreated());
+
+        // Weeks from Monday 2024-04-29; the lunch is before `from` and left out of the first week.
+        mockMvc.perform(get("/expenses/histogram")
+                        .param("from", "2024-05-01")
+                        .param("to", "2024-05-12")
+                        .param("bucket", "week"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.start").value("2024-04-29"))
+                .andExpect(jsonPath("$.buckets").value(2))
+                .andExpect(jsonPath("$.categories.length()").value(2))
+                .andExpect(jsonPath("$.totals[0][0]").value(20))
+                .andExpect(jsonPath("$.totals[1][1]").value(2.50));
+
+        mockMvc.perform(get("/expenses/histogram")
+                        .param("from", "2024-05-05")
+                        .param("to", "2024-05-13")
+                        .param("category", "TRAVEL"))
+                .andExpect(jsonPath("$.buckets").value(9))
+                .andExpect(jsonPath("$.categories[0]").value("TRAVEL"))
+                .andExpect(jsonPath("$.totals[0][1]").value(2.50))
+                .andExpect(jsonPath("$.totals[0][8]").value(9.10));
+    }
+
+    @Test
+    void testStats() throws Exception {
+        List<ExpenseDto> expenses = new ArrayList<>();
+        for (int i = 1; i <= 40; i++) {
+            expenses.add(new ExpenseDto(0L, i % 2 == 0 ? "Lunch" : "Coffee " + i, new BigDecimal(i + ".25"),
+                    ExpenseCategory.FOOD, LocalDate.of(2024, 5, 1 + i % 30)));
+        }
+        expenses.add(new ExpenseDto(0L, "Bus", new BigDecimal("2.50"), ExpenseCategory.TRAVEL,
+                LocalDate.of(2024, 6, 3)));
+        mockMvc.perform(post("/expenses/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(expenses)))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/expenses/stats").param("from", "2024-05").param("to", "2024-06").param("top", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].category").value("FOOD"))
+                .andExpect(jsonPath("$[0].count").value(40))
+                .andExpect(jsonPath("$[0].min").value(1.25))
+                .andExpect(jsonPath("$[0].p50").value(20.25))
+                .andExpect(jsonPath("$[0].max").value(40.25))
+                .andExpect(jsonPath("$[0].topDescriptions[0].description").value("lunch"))
+                .andExpect(jsonPath("$[0].topDescriptions[0].count").value(20))
+                .andExpect(jsonPath("$[1].category").value("TRAVEL"));
+
+        // The sketches survive a round trip through the table, BYTEA on Postgres included.
+        assertEquals(2, statsService.flush());
+        statsService.evict();
+        mockMvc.perform(get("/expenses/stats").param("from", "2024-05").param("to", "2024-05")
+                        .param("category", "FOOD"))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].p90").value(36.25));
+        assertEquals(0, statsService.flush());
+
+        mockMvc.perform(get("/expenses/stats").param("from", "2024-06").param("to", "2024-05"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testIdempotencyKey() throws Exception {
+        MockHttpServletRequestBuilder request = post("/expenses")
+                .header("Idempotency-Key", "order-42")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(expenseDto));
+
+        MvcResult first = mockMvc.perform(request)
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Idempotent-Replayed", "false"))
+                .andReturn();
+        long id = objectMapper.readTree(first.getResponse().getContentAsString()).get("id").asLong();
+
+        mockMvc.perform(request)
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(jsonPath("$.id").value(id));
+
+        // After a restart the key is only in the rebuilt filter and the table.
+        idempotencyKeys.load();
+        mockMvc.perform(request)
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(jsonPath("$.id").value(id));
+        assertEquals(1, repo.count());
+
+        // A replay is the first response, not the expense as it is now.
+        expenseService.updateExpense(new ExpenseDto(id, "Flight", new BigDecimal("300.00"), ExpenseCategory.TRAVEL,
+                LocalDate.of(2024, 2, 13)), id);
+        idempotencyKeys.load();
+        mockMvc.perform(request)
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(jsonPath("$.description").value("Travelling"))
+                .andExpect(jsonPath("$.amount").value(250.75));
+
+        mockMvc.perform(post("/expenses")
+                        .header("Idempotency-Key", "order-42")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new ExpenseDto(0L, "Travelling",
+                                new BigDecimal("99.00"), ExpenseCategory.TRAVEL, LocalDate.of(2024, 2, 13)))))
+                .andExpect(status().isUnprocessableEntity());
+
+        mockMvc.perform(post("/expenses")
+                        .header("Idempotency-Key", "order-43")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(expenseDto)))
+                .andExpect(header().string("Idempotent-Replayed", "false"));
+        assertEquals(2, repo.count());
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM expense_idempotency_keys", Long.class));
+    }
+
+    @Test
+    void testRollupVerifyAndRebuild() {
+        repo.saveAll(Arrays.asList(
+                new Expense("Lunch", new BigDecimal("5.99"), ExpenseCategory.FOOD, LocalDate.of(2024, 3, 8)),
+                new Expense("Bus", new BigDecimal("1.80"), ExpenseCategory.TRAVEL, LocalDate.of(2024, 3, 9))));
+
+        assertEquals(2, rollupService.verify().size());
 
+        assertEquals(2, rollupService.rebuild());
+        assertTrue(rollupService.verify().isEmpty());
     }
 
 }
@@ -0,0 +1,163 @@
+package com.example.Mini.Expense.Tracker.integrationTesting;
+
+import com.example.Mini.Expense.Tracker.repository.ExpenseRepository;
+import com.example.Mini.Expense.Tracker.service.ExpensePartitionMaintainer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Captures the Postgres plans of the native queries in {@link ExpenseRepository}.
+ * Sequential scans are disabled for the session, so a predicate that cannot be served by an
+ * index shows up either as a Seq Scan or as a full index walk with the date check in a Filter.
+ *
+ * expenses is partitioned by month here, with partitions for January to June 2024, so the
+ * plans also show which partitions a query reads.
+ */
+@SpringBootTest
+@Testcontainers
+public class PostgresQueryPlanTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ExpensePartitionMaintainer partitionMaintainer;
+
+    @BeforeAll
+    static void start() {
+        postgres.start();
+    }
+
+    @AfterAll
+    static void stop() {
+        postgres.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        partitionMaintainer.createPartitions(YearMonth.of(2024, 1), 5);
+    }
+
+    private String explain(String query, Object... params) {
+        String sql = "EXPLAIN " + query.replaceAll(":\\w+", "?");
+
+        return jdbcTemplate.execute((java.sql.Connection con) -> {
+            try (Statement statement = con.createStatement()) {
+                statement.execute("SET enable_seqscan = off");
+            }
+
+            List<String> plan = new ArrayList<>();
+            try (PreparedStatement ps = con.prepareStatement(sql)) {
+                for (int i = 0; i < params.length; i++) ps.setObject(i + 1, params[i]);
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) plan.add(rs.getString(1));
+                }
+            } finally {
+                try (Statement statement = con.createStatement()) {
+                    statement.execute("RESET enable_seqscan");
+                }
+            }
+            return String.join("\n", plan);
+        });
+    }
+
+    private void assertDateRangeIsIndexed(String plan) {
+        assertFalse(plan.contains("Seq Scan"), plan);
+        assertTrue(plan.lines().anyMatch(line -> line.contains("Index Cond") && line.contains("date >=")), plan);
+    }
+
+    // Only the named monthly partitions appear in the plan; the others and the default are pruned.
+    private void assertReadsOnly(String plan, String... partitions) {
+        List<String> read = plan.lines()
+                .map(line -> line.replaceAll(".* on (expenses_\\w+?)(_[a-z]+_.*_idx)? .*", "$1"))
+                .filter(line -> line.startsWith("expenses_"))
+                .distinct()
+                .toList();
+        assertEquals(List.of(partitions), read, plan);
+    }
+
+    @Test
+    void testCategorySumUsesIndexedDateRange() {
+        String plan = explain(ExpenseRepository.CATEGORY_SUM_QUERY,
+                Date.valueOf(LocalDate.of(2024, 3, 1)), Date.valueOf(LocalDate.of(2024, 4, 1)));
+
+        assertTrue(plan.contains("Index"), plan);
+        assertDateRangeIsIndexed(plan);
+    }
+
+    @Test
+    void testFilteredSearchUsesIndexedDateRange() {
+        String plan = explain(ExpenseRepository.FILTERED_SEARCH_QUERY,
+                0L, "FOOD", Date.valueOf(LocalDate.of(2024, 3, 1)), Date.valueOf(LocalDate.of(2024, 3, 31)));
+
+        assertTrue(plan.contains("Index"), plan);
+        assertDateRangeIsIndexed(plan);
+    }
+
+    @Test
+    void testCategorySumReadsOnlyItsMonth() {
+        String plan = explain(ExpenseRepository.CATEGORY_SUM_QUERY,
+                Date.valueOf(LocalDate.of(2024, 3, 1)), Date.valueOf(LocalDate.of(2024, 4, 1)));
+
+        assertReadsOnly(plan, "expenses_2024_03");
+    }
+
+    @Test
+    void testFilteredSearchReadsOnlyTheMonthsInRange() {
+        String plan = explain(ExpenseRepository.FILTERED_SEARCH_QUERY,
+                0L, "FOOD", Date.valueOf(LocalDate.of(2024, 2, 10)), Date.valueOf(LocalDate.of(2024, 4, 5)));
+
+        assertReadsOnly(plan, "expenses_2024_02", "expenses_2024_03", "expenses_2024_04");
+    }
+
+    @Test
+    void testMonthWithoutPartitionFallsBackToDefault() {
+        String plan = explain(ExpenseRepository.CATEGORY_SUM_QUERY,
+                Date.valueOf(LocalDate.of(2019, 3, 1)), Date.valueOf(LocalDate.of(2019, 4, 1)));
+
+        assertReadsOnly(plan, "expenses_default");
+    }
+
+    @Test
+    void testNewPartitionTakesOverRowsFromDefault() {
+        jdbcTemplate.update("INSERT INTO expenses (id, description, amount, category, date) " +
+                "VALUES (nextval('expenses_seq'), 'Lunch', 12.50, 'FOOD', DATE '2019-03-15')");
+
+        assertEquals(1, partitionMaintainer.createPartitions(YearMonth.of(2019, 3), 0));
+        assertEquals(0, partitionMaintainer.createPartitions(YearMonth.of(2019, 3), 0));
+
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM expenses_2019_03", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM expenses_default WHERE date = DATE '2019-03-15'", Integer.class));
+        assertReadsOnly(explain(ExpenseRepository.CATEGORY_SUM_QUERY,
+                Date.valueOf(LocalDate.of(2019, 3, 1)), Date.valueOf(LocalDate.of(2019, 4, 1))), "expenses_2019_03");
+
+        jdbcTemplate.execute("DROP TABLE expenses_2019_03");
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.example.Mini.Expense.Tracker.metrics;
+
+import com.example.Mini.Expense.Tracker.model.ExpenseCategory;
+import com.example.Mini.Expense.Tracker.model.ExpenseDto;
+import com.example.Mini.Expense.Tracker.service.ExpenseService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+public class MetricsTest {
+
+    @Autowired
+    private ExpenseService expenseService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+
+    @Test
+    void testPrometheusScrape() throws Exception {
+        expenseService.saveAll(List.of(
+                new ExpenseDto(0L, "Lunch", new BigDecimal("12.50"), ExpenseCategory.FOOD, LocalDate.of(2023, 7, 2)),
+                new ExpenseDto(0L, "Dinner", new BigDecimal("23.30"), ExpenseCategory.FOOD, LocalDate.of(2023, 7, 3))));
+
+        mockMvc.perform(get("/expenses")
+                        .param("from", "2023-07-01")
+                        .param("to", "2023-07-31")
+                        .param("category", "FOOD"))
+                .andExpect(status().isOk());
+
+        String scrape = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertTrue(scrape.lines().anyMatch(line -> line.startsWith("http_server_requests_seconds_bucket")
+                && line.contains("uri=\"/expenses\"")), "endpoint histogram");
+        assertTrue(scrape.lines().anyMatch(line -> line.startsWith("spring_data_repository_invocations_seconds_bucket")
+                && line.contains("method=\"filteredSearch\"")), "repository histogram");
+        assertTrue(scrape.lines().anyMatch(line -> line.startsWith("spring_data_repository_results_rows_bucket")
+                && line.contains("method=\"filteredSearch\"")), "result size histogram");
+        assertTrue(scrape.contains("hikaricp_connections_active"), "pool metrics");
+    }
+
+}
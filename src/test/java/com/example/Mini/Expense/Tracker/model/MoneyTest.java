@@ -0,0 +1,51 @@
+package com.example.Mini.Expense.Tracker.model;
+
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MoneyTest {
+
+
+    @Test
+    void testRoundTrip() {
+        assertEquals(2530L, Money.toCents(new BigDecimal("25.3")));
+        assertEquals(-1L, Money.toCents(new BigDecimal("-0.01")));
+        assertEquals(new BigDecimal("25.30"), Money.toBigDecimal(2530L));
+    }
+
+    @Test
+    void testRejectsFractionsOfACent() {
+        assertThrows(ArithmeticException.class, () -> Money.toCents(new BigDecimal("1.005")));
+    }
+
+    @Test
+    void testRoundsRequestsToCents() {
+        assertEquals(new BigDecimal("10.01"), Money.round(new BigDecimal("10.005")));
+        assertEquals(new BigDecimal("0.30"), Money.round(new BigDecimal("0.30000000000000004")));
+        assertEquals(new BigDecimal("-10.01"), Money.round(new BigDecimal("-10.005")));
+        assertEquals(new BigDecimal("12.50"), Money.round(new BigDecimal("12.5")));
+        assertNull(Money.round(null));
+    }
+
+    @Test
+    void testAccumulator() {
+        MoneyAccumulator total = new MoneyAccumulator().add(1250).add(2330).subtract(1250);
+
+        assertEquals(2330L, total.cents());
+        assertEquals(1, total.count());
+        assertEquals(new BigDecimal("23.30"), total.toBigDecimal());
+    }
+
+    @Test
+    void testAccumulatorOverflowThrows() {
+        MoneyAccumulator total = new MoneyAccumulator().add(Long.MAX_VALUE);
+
+        assertThrows(ArithmeticException.class, () -> total.add(1));
+        assertEquals(Long.MAX_VALUE, total.cents());
+    }
+
+}
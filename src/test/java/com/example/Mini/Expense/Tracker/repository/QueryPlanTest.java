@@ -0,0 +1,104 @@
+package com.example.Mini.Expense.Tracker.repository;
+
+import com.example.Mini.Expense.Tracker.controller.StatementCounter;
+import com.example.Mini.Expense.Tracker.model.ExpenseCategory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Captures the H2 plans of the queries in {@link ExpenseRepository} so that a predicate which
+ * can no longer use the V2 and V11 indexes fails the build. JPQL queries are planned from the
+ * SQL Hibernate generated for them.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.example.Mini.Expense.Tracker.controller.StatementCounter")
+public class QueryPlanTest {
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    private String explain(String query, MapSqlParameterSource params) {
+        List<String> plan = jdbcTemplate.queryForList("EXPLAIN " + query, params, String.class);
+        return String.join("\n", plan).toUpperCase();
+    }
+
+    @Test
+    void testCategorySumUsesDateIndex() {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", LocalDate.of(2024, 3, 1))
+                .addValue("to", LocalDate.of(2024, 4, 1));
+
+        String plan = explain(ExpenseRepository.CATEGORY_SUM_QUERY, params);
+
+        assertTrue(plan.contains("IDX_EXPENSES_DATE_CATEGORY"), plan);
+        assertFalse(plan.contains("TABLE SCAN"), plan);
+    }
+
+    private String explainGenerated(String sql, Object... params) {
+        List<String> plan = jdbcTemplate.getJdbcOperations().queryForList("EXPLAIN " + sql, String.class, params);
+        return String.join("\n", plan).toUpperCase();
+    }
+
+    @Test
+    void testFilteredSearchUsesUserCategoryIndex() {
+        StatementCounter.reset();
+        expenseRepository.filteredSearch(0L, LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 31),
+                ExpenseCategory.FOOD);
+        List<String> statements = StatementCounter.statements();
+        assertEquals(1, statements.size(), statements.toString());
+
+        // Bound in the order of the JPQL predicate: user, category, from, to.
+        String plan = explainGenerated(statements.get(0), 0L, "FOOD", LocalDate.of(2024, 3, 1),
+                LocalDate.of(2024, 3, 31));
+
+        assertTrue(plan.contains("IDX_EXPENSES_USER_CATEGORY_DATE_ID"), plan);
+        assertFalse(plan.contains("TABLE SCAN"), plan);
+    }
+
+    @Test
+    void testFilteredSearchPageUsesKeysetIndex() {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("userId", 0L)
+                .addValue("from", LocalDate.of(2024, 3, 1))
+                .addValue("to", LocalDate.of(2024, 3, 31))
+                .addValue("categoryName", "FOOD")
+                .addValue("afterDate", LocalDate.of(2024, 3, 10))
+                .addValue("afterId", 42L)
+                .addValue("limit", 100);
+
+        String plan = explain(ExpenseRepository.FILTERED_SEARCH_PAGE_QUERY, params);
+
+        assertTrue(plan.contains("IDX_EXPENSES_USER_CATEGORY_DATE_ID"), plan);
+        assertFalse(plan.contains("TABLE SCAN"), plan);
+        // ORDER BY user_id, category, date, id is satisfied by the index order
+        assertTrue(plan.contains("INDEX SORTED"), plan);
+    }
+
+    @Test
+    void testExportUsesAnIndex() {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("userId", 0L)
+                .addValue("from", LocalDate.of(2024, 3, 1))
+                .addValue("to", LocalDate.of(2024, 3, 31))
+                .addValue("categoryNames", List.of("FOOD", "TRAVEL"));
+
+        String plan = explain(ExpenseRepository.EXPORT_QUERY, params);
+
+        // Either the date or the user index serves it, depending on how many categories are asked for.
+        assertTrue(plan.contains("IDX_EXPENSES_DATE_CATEGORY") || plan.contains("IDX_EXPENSES_USER_CATEGORY_DATE_ID"),
+                plan);
+        assertFalse(plan.contains("TABLE SCAN"), plan);
+    }
+
+}
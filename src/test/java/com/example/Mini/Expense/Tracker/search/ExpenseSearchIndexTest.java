@@ -0,0 +1,155 @@
+package com.example.Mini.Expense.Tracker.search;
+
+import com.example.Mini.Expense.Tracker.model.ExpenseCategory;
+import com.example.Mini.Expense.Tracker.model.ExpenseDto;
+import com.example.Mini.Expense.Tracker.service.ExpenseChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExpenseSearchIndexTest {
+
+    private ExpenseSearchIndex index;
+
+
+    @BeforeEach
+    void setup() {
+        index = new ExpenseSearchIndex();
+
+        index.upsert(expense(1L, "Uber to the airport", ExpenseCategory.TRAVEL, LocalDate.of(2025, 1, 20)));
+        index.upsert(expense(2L, "UberEats dinner", ExpenseCategory.FOOD, LocalDate.of(2025, 1, 5)));
+        index.upsert(expense(3L, "Pharmacy: cough syrup", ExpenseCategory.MEDICAL, LocalDate.of(2025, 2, 1)));
+        index.upsert(expense(4L, "Café au lait", ExpenseCategory.FOOD, LocalDate.of(2025, 1, 20)));
+        index.upsert(expense(5L, "uber home", ExpenseCategory.TRAVEL, LocalDate.of(2025, 3, 2)));
+    }
+
+
+    @Test
+    void testTokenize() {
+        assertEquals(List.of("cafe", "au", "lait"), ExpenseSearchIndex.tokenize("Café au LAIT"));
+        assertEquals(List.of("bus", "2", "x"), ExpenseSearchIndex.tokenize("  Bus #2, bus x "));
+        assertEquals(List.of(), ExpenseSearchIndex.tokenize(" -- "));
+    }
+
+    @Test
+    void testPrefixMatchNewestFirst() {
+        assertArrayEquals(new long[]{5L, 1L, 2L}, search("ube", null, null, null, 10).ids());
+        assertArrayEquals(new long[]{4L}, search("CAFE", null, null, null, 10).ids());
+        assertArrayEquals(new long[]{3L}, search("cough pharm", null, null, null, 10).ids());
+        assertArrayEquals(new long[]{}, search("cough taxi", null, null, null, 10).ids());
+    }
+
+    @Test
+    void testFiltersAndLimit() {
+        ExpenseSearchIndex.Hits hits = search("uber", LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 31), null, 10);
+        assertArrayEquals(new long[]{1L, 2L}, hits.ids());
+        assertEquals(LocalDate.of(2025, 1, 5), hits.first());
+        assertEquals(LocalDate.of(2025, 1, 20), hits.last());
+
+        assertArrayEquals(new long[]{2L}, search("uber", null, null, ExpenseCategory.FOOD, 10).ids());
+
+        hits = search("uber", null, null, null, 1);
+        assertArrayEquals(new long[]{5L}, hits.ids());
+        assertEquals(LocalDate.of(2025, 3, 2), hits.first());
+
+        hits = search("taxi", null, null, null, 10);
+        assertNull(hits.first());
+        assertNull(hits.last());
+    }
+
+    @Test
+    void testOnlyOwnExpenses() {
+        index.upsert(new ExpenseDto(6L, "Uber to work", new BigDecimal("10.00"), ExpenseCategory.TRAVEL,
+                LocalDate.of(2025, 4, 1), 0, 7L));
+
+        assertArrayEquals(new long[]{6L}, index.search("uber", 7L, null, null, null, 10).ids());
+        assertArrayEquals(new long[]{5L, 1L, 2L}, search("uber", null, null, null, 10).ids());
+    }
+
+    @Test
+    void testUpdateAndDelete() {
+        ExpenseDto previous = expense(1L, "Uber to the airport", ExpenseCategory.TRAVEL, LocalDate.of(2025, 1, 20));
+        ExpenseDto renamed = expense(1L, "Taxi to the airport", ExpenseCategory.TRAVEL, LocalDate.of(2025, 1, 20));
+        index.onExpenseChanged(ExpenseChangedEvent.updated(previous, renamed));
+        index.onExpenseChanged(ExpenseChangedEvent.deleted(expense(5L, "uber home", ExpenseCategory.TRAVEL,
+                LocalDate.of(2025, 3, 2))));
+
+        assertEquals(4, index.size());
+        assertArrayEquals(new long[]{2L}, search("uber", null, null, null, 10).ids());
+        assertArrayEquals(new long[]{1L}, search("taxi airport", null, null, null, 10).ids());
+    }
+
+    @Test
+    void testOlderEventIsIgnored() {
+        ExpenseDto first = new ExpenseDto(1L, "Uber to the airport", new BigDecimal("10.00"), ExpenseCategory.TRAVEL,
+                LocalDate.of(2025, 1, 20), 0);
+        ExpenseDto second = new ExpenseDto(1L, "Taxi to the airport", new BigDecimal("10.00"), ExpenseCategory.TRAVEL,
+                LocalDate.of(2025, 1, 20), 1);
+        ExpenseDto third = new ExpenseDto(1L, "Bus to the airport", new BigDecimal("10.00"), ExpenseCategory.TRAVEL,
+                LocalDate.of(2025, 1, 20), 2);
+
+        // Listeners of two commits ran in the opposite order.
+        index.onExpenseChanged(ExpenseChangedEvent.updated(second, third));
+        index.onExpenseChanged(ExpenseChangedEvent.updated(first, second));
+
+        assertEquals(5, index.size());
+        assertArrayEquals(new long[]{1L}, search("bus", null, null, null, 10).ids());
+        assertArrayEquals(new long[]{}, search("taxi", null, null, null, 10).ids());
+    }
+
+    @Test
+    void testUpdateAfterDeleteLeavesNoGhostDocument() {
+        ExpenseDto first = new ExpenseDto(5L, "uber home", new BigDecimal("10.00"), ExpenseCategory.TRAVEL,
+                LocalDate.of(2025, 3, 2), 0);
+        ExpenseDto updated = new ExpenseDto(5L, "taxi home", new BigDecimal("10.00"), ExpenseCategory.TRAVEL,
+                LocalDate.of(2025, 3, 2), 1);
+
+        // The update committed first, but its listener ran after the delete's.
+        index.onExpenseChanged(ExpenseChangedEvent.deleted(updated));
+        index.onExpenseChanged(ExpenseChangedEvent.updated(first, updated));
+
+        assertEquals(4, index.size());
+        assertArrayEquals(new long[]{}, search("home", null, null, null, 10).ids());
+    }
+
+    @Test
+    void testCompactionKeepsResults() {
+        for (int round = 0; round < 3000; round++) {
+            index.upsert(expense(2L, "UberEats dinner " + round, ExpenseCategory.FOOD, LocalDate.of(2025, 1, 5)));
+        }
+        index.remove(4L, 0);
+
+        assertEquals(4, index.size());
+        assertArrayEquals(new long[]{5L, 1L, 2L}, search("uber", null, null, null, 10).ids());
+        assertArrayEquals(new long[]{2L}, search("dinner 2999", null, null, null, 10).ids());
+        assertArrayEquals(new long[]{}, search("dinner 1500", null, null, null, 10).ids());
+        assertArrayEquals(new long[]{}, search("cafe", null, null, null, 10).ids());
+    }
+
+    @Test
+    void testQueryNeedsWords() {
+        assertThrows(IllegalArgumentException.class, () -> search(" ,. ", null, null, null, 10));
+        assertThrows(IllegalArgumentException.class, () -> search("a b c d e f g h i", null, null, null, 10));
+    }
+
+    @Test
+    void testMatches() {
+        assertTrue(ExpenseSearchIndex.matches("air ube", "Uber to the airport"));
+        assertFalse(ExpenseSearchIndex.matches("airplane", "Uber to the airport"));
+    }
+
+
+    private ExpenseSearchIndex.Hits search(String query, LocalDate from, LocalDate to, ExpenseCategory category,
+                                           int limit) {
+        return index.search(query, 0L, from, to, category, limit);
+    }
+
+    private static ExpenseDto expense(long id, String description, ExpenseCategory category, LocalDate date) {
+        return new ExpenseDto(id, description, new BigDecimal("10.00"), category, date);
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.Mini.Expense.Tracker.search;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PostingListTest {
+
+    @Test
+    void testRoundTripAcrossGapSizes() {
+        int[] docs = {0, 1, 127, 128, 16_511, 16_512, 2_113_663, 2_113_664, Integer.MAX_VALUE};
+        PostingList list = new PostingList();
+        for (int doc : docs) list.add(doc);
+
+        assertEquals(docs.length, list.size());
+        assertArrayEquals(docs, list.toArray());
+
+        long[] bits = new long[(16_512 >>> 6) + 1];
+        PostingList small = new PostingList();
+        small.add(3);
+        small.add(64);
+        small.add(16_512);
+        small.addTo(bits);
+        assertEquals(1L << 3, bits[0]);
+        assertEquals(1L, bits[1]);
+        assertEquals(1L, bits[16_512 >>> 6]);
+    }
+
+    @Test
+    void testDenseDocumentsTakeOneBytePerEntry() {
+        PostingList list = new PostingList();
+        for (int doc = 0; doc < 10_000; doc += 3) list.add(doc);
+
+        assertEquals(3334, list.size());
+        assertEquals(3334, list.byteSize());
+    }
+
+    @Test
+    void testDocumentsMustIncrease() {
+        PostingList list = new PostingList();
+        list.add(5);
+
+        assertThrows(IllegalArgumentException.class, () -> list.add(5));
+        assertThrows(IllegalArgumentException.class, () -> list.add(4));
+    }
+
+    @Test
+    void testRemapDropsAndRenumbers() {
+        PostingList list = new PostingList();
+        list.add(1);
+        list.add(4);
+        list.add(6);
+
+        int[] newDocs = {0, -1, 1, 2, 3, -1, 4};
+        assertArrayEquals(new int[]{3, 4}, list.remap(newDocs).toArray());
+        assertNull(list.remap(new int[]{0, -1, 1, 2, -1, 3, -1}));
+    }
+}
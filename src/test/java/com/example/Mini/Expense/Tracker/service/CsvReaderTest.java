@@ -0,0 +1,69 @@
+package com.example.Mini.Expense.Tracker.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CsvReaderTest {
+
+    private static List<List<String>> readAll(String csv) throws IOException {
+        List<List<String>> records = new ArrayList<>();
+        try (CsvReader reader = new CsvReader(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)))) {
+            List<String> fields;
+            while ((fields = reader.next()) != null) records.add(List.copyOf(fields));
+        }
+        return records;
+    }
+
+
+    @Test
+    void testPlainRecords() throws IOException {
+        assertEquals(List.of(List.of("a", "b", "c"), List.of("1", "", "3")), readAll("a,b,c\r\n1,,3\r\n"));
+    }
+
+    @Test
+    void testLastRecordWithoutLineEnd() throws IOException {
+        assertEquals(List.of(List.of("a", "b"), List.of("1", "2")), readAll("a,b\n1,2"));
+    }
+
+    @Test
+    void testQuotedFields() throws IOException {
+        List<List<String>> records = readAll("\"Taxi, \"\"late\"\"\",\"two\nlines\",x\n");
+
+        assertEquals(List.of(List.of("Taxi, \"late\"", "two\nlines", "x")), records);
+    }
+
+    @Test
+    void testRecordLineCountsEmbeddedLineBreaks() throws IOException {
+        try (CsvReader reader = new CsvReader(new ByteArrayInputStream(
+                "h\n\"a\nb\"\nc\n".getBytes(StandardCharsets.UTF_8)))) {
+            reader.next();
+            assertEquals(1, reader.recordLine());
+            reader.next();
+            assertEquals(2, reader.recordLine());
+            assertEquals(List.of("c"), reader.next());
+            assertEquals(4, reader.recordLine());
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    void testRecordsLongerThanTheBuffer() throws IOException {
+        String description = "x".repeat(20_000);
+
+        assertEquals(List.of(List.of("1", description), List.of("2", "y")),
+                readAll("1,\"" + description + "\"\r\n2,y\r\n"));
+    }
+
+    @Test
+    void testUnterminatedQuote() {
+        assertThrows(IllegalArgumentException.class, () -> readAll("a,\"open\n1,2\n"));
+    }
+
+}
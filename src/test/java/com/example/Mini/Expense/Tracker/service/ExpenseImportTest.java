@@ -0,0 +1,146 @@
+package com.example.Mini.Expense.Tracker.service;
+
+import com.example.Mini.Expense.Tracker.model.CategorySumDto;
+import com.example.Mini.Expense.Tracker.model.ExpenseCategory;
+import com.example.Mini.Expense.Tracker.model.ImportResultDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs imports against the default H2 database through the real chunk transactions.
+ */
+@SpringBootTest
+public class ExpenseImportTest {
+
+    private static final String CSV = "id,description,amount,category,date\r\n" +
+            "1,Lunch,12.50,FOOD,2024-05-10\r\n" +
+            "2,\"Dinner, late\",23.30,FOOD,2024-05-11\r\n" +
+            "3,Bus,0.50,TRAVEL,2024-05-12\r\n" +
+            "4,Taxi,18.00,TRAVEL,2024-05-13\r\n" +
+            "5,Cinema,9.00,FUN,2024-05-14\r\n" +
+            "6,Hotel,80.00,TRAVEL,2024-05-15\r\n" +
+            "7,Groceries,45.25,GROCERY,2024-05-16\r\n";
+
+    @Autowired
+    private ExpenseImportService importService;
+
+    @Autowired
+    private ExpenseService expenseService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("TRUNCATE TABLE expenses");
+        jdbcTemplate.execute("TRUNCATE TABLE monthly_category_totals");
+        jdbcTemplate.execute("TRUNCATE TABLE import_checkpoints");
+    }
+
+    private static InputStream csv(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private long count() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM expenses", Long.class);
+    }
+
+
+    @Test
+    void testImportReportsRejectedRows() throws IOException {
+        ImportResultDto result = importService.importCsv("may", 0L, csv(CSV), 2);
+
+        assertTrue(result.isCompleted());
+        assertEquals(5, result.getImported());
+        assertEquals(2, result.getRejected());
+        assertEquals(3, result.getRejectedRows().get(0).getRecord());
+        assertEquals(4, result.getRejectedRows().get(0).getLine());
+        assertTrue(result.getRejectedRows().get(0).getReason().startsWith("Amount 0.50"));
+        assertEquals("Unknown category 'FUN'", result.getRejectedRows().get(1).getReason());
+        assertEquals(5, count());
+    }
+
+    @Test
+    void testImportedRowsReachTheSummary() throws IOException {
+        importService.importCsv("may", 0L, csv(CSV), 3);
+
+        List<CategorySumDto> summary = expenseService.categorySum(2024, 5);
+
+        assertEquals("FOOD", summary.get(0).getCategory());
+        assertEquals(0, new BigDecimal("35.80").compareTo(summary.get(0).getSum()));
+        assertEquals(2, expenseService.filteredSearch(0L, LocalDate.of(2024, 5, 1), LocalDate.of(2024, 5, 31),
+                ExpenseCategory.TRAVEL).size());
+    }
+
+    @Test
+    void testImportedRowsBelongToTheUser() throws IOException {
+        importService.importCsv("may", 9L, csv(CSV), null);
+
+        assertEquals(2, expenseService.filteredSearch(9L, LocalDate.of(2024, 5, 1), LocalDate.of(2024, 5, 31),
+                ExpenseCategory.TRAVEL).size());
+        assertTrue(expenseService.filteredSearch(0L, LocalDate.of(2024, 5, 1), LocalDate.of(2024, 5, 31),
+                ExpenseCategory.TRAVEL).isEmpty());
+    }
+
+    @Test
+    void testResumesAfterLastCommittedChunk() throws IOException {
+        byte[] bytes = CSV.getBytes(StandardCharsets.UTF_8);
+        // Dies partway through record 6, after the chunk of records 3 and 4 committed.
+        InputStream truncated = new FilterInputStream(new ByteArrayInputStream(bytes, 0, CSV.indexOf("6,Hotel") + 3)) {
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int read = super.read(buffer, offset, length);
+                if (read == -1) throw new IOException("Connection reset");
+                return read;
+            }
+        };
+
+        assertThrows(IOException.class, () -> importService.importCsv("may", 0L, truncated, 2));
+        assertEquals(3, count());
+
+        ImportResultDto resumed = importService.importCsv("may", 0L, csv(CSV), 2);
+
+        assertEquals(4, resumed.getResumedAfter());
+        assertEquals(2, resumed.getImported());
+        assertEquals(1, resumed.getRejected());
+        assertEquals(5, resumed.getTotalImported());
+        assertEquals(2, resumed.getTotalRejected());
+        assertEquals(5, count());
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM expenses WHERE description = 'Hotel'", Long.class));
+    }
+
+    @Test
+    void testCompletedImportIsNotRepeated() throws IOException {
+        importService.importCsv("may", 0L, csv(CSV), null);
+
+        ImportResultDto again = importService.importCsv("may", 0L, csv(CSV), null);
+
+        assertTrue(again.isCompleted());
+        assertEquals(0, again.getImported());
+        assertEquals(5, again.getTotalImported());
+        assertEquals(5, count());
+    }
+
+    @Test
+    void testBadHeader() {
+        assertThrows(IllegalArgumentException.class,
+                () -> importService.importCsv("bad", 0L, csv("when,what\r\n2024-05-10,Lunch\r\n"), null));
+    }
+
+}
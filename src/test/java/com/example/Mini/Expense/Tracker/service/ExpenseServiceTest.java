@@ -4,27 +4,44 @@ package com.example.Mini.Expense.Tracker.service;
 import com.example.Mini.Expense.Tracker.model.CategorySumDto;
 import com.example.Mini.Expense.Tracker.model.Expense;
 import com.example.Mini.Expense.Tracker.model.ExpenseCategory;
+import com.example.Mini.Expense.Tracker.model.ExpenseCursor;
 import com.example.Mini.Expense.Tracker.model.ExpenseDto;
+import com.example.Mini.Expense.Tracker.model.ExpensePageDto;
+import com.example.Mini.Expense.Tracker.model.HistogramBucket;
+import com.example.Mini.Expense.Tracker.model.HistogramDto;
+import com.example.Mini.Expense.Tracker.repository.ExpenseIdempotencyKeyRepository;
 import com.example.Mini.Expense.Tracker.repository.ExpenseRepository;
+import com.example.Mini.Expense.Tracker.search.ExpenseSearchIndex;
+import com.example.Mini.Expense.Tracker.sharding.ShardRouter;
+import jakarta.persistence.EntityManager;
 import jakarta.validation.constraints.Min;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpMethod;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.web.servlet.resource.NoResourceFoundException;
 
 import java.lang.reflect.Array;
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -34,6 +51,30 @@ public class ExpenseServiceTest {
     @Mock
     private ExpenseRepository repository;
 
+    @Mock
+    private ExpenseIdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private MonthlyRollupService rollupService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Spy
+    private SummaryCache summaryCache = new SummaryCache(100, Duration.ofMinutes(5));
+
+    @Spy
+    private VersionStamps versionStamps = new VersionStamps(100, Duration.ofMinutes(10));
+
+    @Spy
+    private ExpenseSearchIndex searchIndex = new ExpenseSearchIndex();
+
+    @Spy
+    private ShardRouter shardRouter = new ShardRouter(List.of(), 160);
+
     @InjectMocks
     private ExpenseService expenseService;
 
@@ -62,12 +103,72 @@ public class ExpenseServiceTest {
         ExpenseDto savedDto = expenseService.save(expenseDto);
 
         assertNotNull(savedDto);
+        assertEquals(1L, savedDto.getId());
         assertEquals(expenseDto.getDescription(), savedDto.getDescription());
         assertEquals(expenseDto.getAmount(), savedDto.getAmount());
         assertEquals(expenseDto.getCategory().name(), savedDto.getCategory().name());
         assertEquals(expenseDto.getDate(), savedDto.getDate());
 
         verify(repository, times(1)).save(any(Expense.class));
+
+        ArgumentCaptor<ExpenseChangedEvent> event = ArgumentCaptor.forClass(ExpenseChangedEvent.class);
+        verify(eventPublisher, times(1)).publishEvent(event.capture());
+        assertNull(event.getValue().getPrevious());
+        assertEquals(1L, event.getValue().getCurrent().getId());
+    }
+
+    @Test
+    void testCreateExpense_RoundsToCents() {
+        when(repository.save(any(Expense.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        ExpenseDto savedDto = expenseService.save(new ExpenseDto(0L, "Coffee", new BigDecimal("10.005"),
+                ExpenseCategory.FOOD, LocalDate.of(2025, 01, 15)));
+
+        assertEquals(new BigDecimal("10.01"), savedDto.getAmount());
+
+        ArgumentCaptor<ExpenseChangedEvent> event = ArgumentCaptor.forClass(ExpenseChangedEvent.class);
+        verify(eventPublisher, times(1)).publishEvent(event.capture());
+        assertEquals(new BigDecimal("10.01"), event.getValue().getCurrent().getAmount());
+    }
+
+    @Test
+    void testCreateExpense_RecordsIdempotencyKey() {
+        when(repository.save(any(Expense.class))).thenReturn(expense);
+
+        expenseService.save(expenseDto, "order-42");
+        expenseService.save(expenseDto);
+
+        verify(idempotencyKeyRepository, times(1)).insert(eq(0L), eq("order-42"), eq(1L), any(),
+                eq(expense.getDescription()), eq(expense.getAmount()), eq(expense.getCategory().name()),
+                eq(expense.getDate()), eq(0L));
+        verifyNoMoreInteractions(idempotencyKeyRepository);
+    }
+
+    @Test
+    void testSaveAll() {
+        List<ExpenseDto> dtos = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            dtos.add(new ExpenseDto(0L, "Item " + i, new BigDecimal(5), ExpenseCategory.GROCERY,
+                                    LocalDate.of(2025, 01, 10)));
+        }
+
+        long[] nextId = {100};
+        when(repository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Expense> chunk = new ArrayList<>(invocation.getArgument(0));
+            chunk.forEach(e -> e.setId(nextId[0]++));
+            return chunk;
+        });
+
+        List<Long> ids = expenseService.saveAll(dtos);
+
+        assertEquals(60, ids.size());
+        assertEquals(100L, ids.get(0));
+        assertEquals(159L, ids.get(59));
+
+        // one chunk of 50 and a remainder of 10, each flushed and cleared on its own
+        verify(repository, times(2)).saveAll(anyList());
+        verify(entityManager, times(2)).flush();
+        verify(entityManager, times(2)).clear();
     }
 
     @Test
@@ -107,7 +208,7 @@ public class ExpenseServiceTest {
                 LocalDate.of(2025, 01, 17));
 
         when(repository.findById(1L)).thenReturn(Optional.of(expense));
-        when(repository.save(any(Expense.class))).thenReturn(updatedExpense);
+        when(repository.saveAndFlush(any(Expense.class))).thenReturn(updatedExpense);
 
         ExpenseDto resultDto = expenseService.updateExpense(updatedExpenseDto, 1L);
 
@@ -119,7 +220,13 @@ public class ExpenseServiceTest {
         assertEquals(updatedExpenseDto.getDate(), resultDto.getDate());
 
         verify(repository, times(1)).findById(1L);
-        verify(repository, times(1)).save(any(Expense.class));
+        verify(repository, times(1)).saveAndFlush(any(Expense.class));
+
+        ArgumentCaptor<ExpenseChangedEvent> event = ArgumentCaptor.forClass(ExpenseChangedEvent.class);
+        verify(eventPublisher, times(1)).publishEvent(event.capture());
+        assertEquals(new BigDecimal(25), event.getValue().getPrevious().getAmount());
+        assertEquals(LocalDate.of(2025, 01, 15), event.getValue().getPrevious().getDate());
+        assertEquals(LocalDate.of(2025, 01, 17), event.getValue().getCurrent().getDate());
     }
 
 
@@ -138,14 +245,40 @@ public class ExpenseServiceTest {
     @Test
     void testDeleteExpenseById_Found() {
         when(repository.findById(1L)).thenReturn(Optional.of(expense));
-        doNothing().when(repository).deleteById(1L);
 
         assertDoesNotThrow(()-> expenseService.delete(1L));
 
-        verify(repository, times(1)).deleteById(1l);
+        verify(repository, times(1)).delete(expense);
+
+        ArgumentCaptor<ExpenseChangedEvent> event = ArgumentCaptor.forClass(ExpenseChangedEvent.class);
+        verify(eventPublisher, times(1)).publishEvent(event.capture());
+        assertEquals(1L, event.getValue().getPrevious().getId());
+        assertNull(event.getValue().getCurrent());
 
     }
 
+    @Test
+    void testUpdateExpenseById_VersionMismatch() {
+        expense.setVersion(3);
+        when(repository.findById(1L)).thenReturn(Optional.of(expense));
+
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> expenseService.updateExpense(expenseDto, 1L, 2L));
+
+        verify(repository, never()).saveAndFlush(any(Expense.class));
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    void testDeleteExpenseById_VersionMismatch() {
+        expense.setVersion(3);
+        when(repository.findById(1L)).thenReturn(Optional.of(expense));
+
+        assertThrows(OptimisticLockingFailureException.class, () -> expenseService.delete(1L, 2L));
+
+        verify(repository, never()).delete(any(Expense.class));
+    }
+
     @Test
     void testDeleteExpenseById_NotFound() {
         when(repository.findById(2L)).thenReturn(Optional.empty());
@@ -159,13 +292,13 @@ public class ExpenseServiceTest {
         LocalDate to = LocalDate.of(2025, 01, 31);
         ExpenseCategory category = ExpenseCategory.FOOD;
 
-        List<Expense> expenseList = Arrays.asList(expense, new Expense(2L, "Paid University fees",
+        List<ExpenseDto> expenseList = Arrays.asList(expenseDto, new ExpenseDto(2L, "Paid University fees",
                                                     new BigDecimal(800), ExpenseCategory.ACADEMIC,
                                                     LocalDate.of(2025, 01, 23)));
 
-        when(repository.filteredSearch(from, to, category.name())).thenReturn(expenseList);
+        when(repository.filteredSearch(0L, from, to, category)).thenReturn(expenseList);
 
-        List<ExpenseDto> resultList = expenseService.filteredSearch(from, to, category);
+        List<ExpenseDto> resultList = expenseService.filteredSearch(0L, from, to, category);
 
         assertNotNull(resultList);
         assertEquals(2, resultList.size());
@@ -175,7 +308,136 @@ public class ExpenseServiceTest {
         assertEquals(new BigDecimal(25), resultList.get(0).getAmount());
         assertEquals(LocalDate.of(2025, 01, 15), resultList.get(0).getDate());
 
-        verify(repository, times(1)).filteredSearch(from, to, category.name());
+        verify(repository, times(1)).filteredSearch(0L, from, to, category);
+    }
+
+
+    @Test
+    void testFilteredSearchPage_HasNext() {
+        LocalDate from = LocalDate.of(2025, 01, 01);
+        LocalDate to = LocalDate.of(2025, 01, 31);
+        ExpenseCategory category = ExpenseCategory.FOOD;
+
+        Expense second = new Expense(2L, "Burger", new BigDecimal(12), ExpenseCategory.FOOD,
+                                        LocalDate.of(2025, 01, 18));
+
+        when(repository.filteredSearchPage(0L, from, to, category.name(), from, 0L, 2))
+                .thenReturn(Arrays.asList(expense, second));
+
+        ExpensePageDto page = expenseService.filteredSearchPage(0L, from, to, category, 1, null);
+
+        assertEquals(1, page.getItems().size());
+        assertEquals(1L, page.getItems().get(0).getId());
+        assertNotNull(page.getNext());
+
+        ExpenseCursor next = ExpenseCursor.decode(page.getNext());
+        assertEquals(LocalDate.of(2025, 01, 15), next.getDate());
+        assertEquals(1L, next.getId());
+    }
+
+    @Test
+    void testFilteredSearchPage_LastPage() {
+        LocalDate from = LocalDate.of(2025, 01, 01);
+        LocalDate to = LocalDate.of(2025, 01, 31);
+        ExpenseCategory category = ExpenseCategory.FOOD;
+        String cursor = new ExpenseCursor(LocalDate.of(2025, 01, 10), 7L).encode();
+
+        when(repository.filteredSearchPage(0L, from, to, category.name(), LocalDate.of(2025, 01, 10), 7L, 11))
+                .thenReturn(List.of(expense));
+
+        ExpensePageDto page = expenseService.filteredSearchPage(0L, from, to, category, 10, cursor);
+
+        assertEquals(1, page.getItems().size());
+        assertNull(page.getNext());
+    }
+
+    @Test
+    void testFilteredSearchPage_InvalidCursor() {
+        LocalDate from = LocalDate.of(2025, 01, 01);
+        LocalDate to = LocalDate.of(2025, 01, 31);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> expenseService.filteredSearchPage(0L, from, to, ExpenseCategory.FOOD, 10, "not-a-cursor"));
+    }
+
+    @Test
+    void testSearch_KeepsIndexOrderAndDropsStaleRows() {
+        ExpenseDto burger = new ExpenseDto(2L, "Burger and coke", new BigDecimal(12), ExpenseCategory.FOOD,
+                LocalDate.of(2025, 01, 18));
+        Expense burgerRow = new Expense(2L, "Burger and coke", new BigDecimal(12), ExpenseCategory.FOOD,
+                LocalDate.of(2025, 01, 18));
+        Expense renamed = new Expense(3L, "Water", new BigDecimal(1), ExpenseCategory.FOOD,
+                LocalDate.of(2025, 01, 20));
+        searchIndex.upsert(expenseDto);
+        searchIndex.upsert(burger);
+        searchIndex.upsert(new ExpenseDto(3L, "Coke", new BigDecimal(1), ExpenseCategory.FOOD,
+                LocalDate.of(2025, 01, 20)));
+        searchIndex.upsert(new ExpenseDto(4L, "Coke", new BigDecimal(1), ExpenseCategory.FOOD,
+                LocalDate.of(2025, 01, 21)));
+
+        // Row 3 was renamed and row 4 deleted without the index hearing about it.
+        when(repository.findAllByIds(List.of(4L, 3L, 2L, 1L), LocalDate.of(2025, 01, 15), LocalDate.of(2025, 01, 21)))
+                .thenReturn(List.of(expense, renamed, burgerRow));
+
+        List<ExpenseDto> actual = expenseService.search("coke", 0L, null, null, null, 10);
+
+        assertEquals(List.of(2L, 1L), actual.stream().map(ExpenseDto::getId).toList());
+    }
+
+    @Test
+    void testSearch_RejectsBadInput() {
+        assertThrows(IllegalArgumentException.class,
+                () -> expenseService.search("  ", 0L, null, null, null, 10));
+        assertThrows(IllegalArgumentException.class,
+                () -> expenseService.search("coke", 0L, LocalDate.of(2025, 02, 01), LocalDate.of(2025, 01, 01), null, 10));
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void testStreamFilteredSearch() {
+        LocalDate from = LocalDate.of(2025, 01, 01);
+        LocalDate to = LocalDate.of(2025, 01, 31);
+        ExpenseCategory category = ExpenseCategory.FOOD;
+
+        when(repository.streamFilteredSearch(0L, from, to, category.name())).thenReturn(Stream.of(expense));
+
+        List<ExpenseDto> streamed = new ArrayList<>();
+        expenseService.streamFilteredSearch(0L, from, to, category, streamed::add);
+
+        assertEquals(1, streamed.size());
+        assertEquals("Pizza and coke", streamed.get(0).getDescription());
+        verify(entityManager, times(1)).detach(expense);
+    }
+
+
+    @Test
+    void testExport_AllCategoriesWhenNoneGiven() {
+        LocalDate from = LocalDate.of(2025, 01, 01);
+        LocalDate to = LocalDate.of(2025, 01, 31);
+        List<String> allCategories = Arrays.stream(ExpenseCategory.values()).map(Enum::name).toList();
+
+        when(repository.streamExport(0L, from, to, allCategories)).thenReturn(Stream.of(
+                new Object[]{1L, "Pizza and coke", new BigDecimal("25.00"), "FOOD", java.sql.Date.valueOf("2025-01-15")},
+                new Object[]{2L, "Bus", new BigDecimal("1.80"), "TRAVEL", LocalDate.of(2025, 01, 16)}));
+
+        List<String> exported = new ArrayList<>();
+        expenseService.export(0L, from, to, null, dto -> exported.add(dto.getId() + " " + dto.getDescription() + " "
+                + dto.getAmount() + " " + dto.getCategory() + " " + dto.getDate()));
+
+        assertEquals(List.of("1 Pizza and coke 25.00 FOOD 2025-01-15", "2 Bus 1.80 TRAVEL 2025-01-16"), exported);
+        verifyNoInteractions(entityManager);
+    }
+
+    @Test
+    void testExport_CategorySubset() {
+        LocalDate from = LocalDate.of(2025, 01, 01);
+        LocalDate to = LocalDate.of(2025, 01, 31);
+
+        when(repository.streamExport(0L, from, to, List.of("FOOD"))).thenReturn(Stream.empty());
+
+        expenseService.export(0L, from, to, Set.of(ExpenseCategory.FOOD), dto -> fail());
+
+        verify(repository, times(1)).streamExport(0L, from, to, List.of("FOOD"));
     }
 
 
@@ -190,11 +452,7 @@ public class ExpenseServiceTest {
 
         List<CategorySumDto> expectedList= Arrays.asList(sumDto1, sumDto2, sumDto3);
 
-        when(repository.categorySum(year, month)).thenReturn(Arrays.asList(
-                new Object[]{"FOOD", BigDecimal.valueOf(35.80)},
-                new  Object[]{"GROCERY", BigDecimal.valueOf(52.75)},
-                new Object[]{"MISC", BigDecimal.valueOf(190.50)}
-        ));
+        when(rollupService.categorySum(year, month)).thenReturn(expectedList);
 
         List<CategorySumDto> actual = expenseService.categorySum(year, month);
 
@@ -212,4 +470,75 @@ public class ExpenseServiceTest {
     }
 
 
+    @Test
+    void testCategorySum_ServedFromCache() {
+        List<CategorySumDto> sums = List.of(new CategorySumDto("FOOD", BigDecimal.valueOf(35.80)));
+        when(rollupService.categorySum(2024, 2)).thenReturn(sums);
+
+        expenseService.categorySum(2024, 2);
+        List<CategorySumDto> actual = expenseService.categorySum(2024, 2);
+
+        assertEquals(1, actual.size());
+        assertEquals("FOOD", actual.get(0).getCategory());
+        verify(rollupService, times(1)).categorySum(2024, 2);
+        assertEquals(1, expenseService.summaryCacheStats().getHitCount());
+    }
+
+    @Test
+    void testHistogram_WeeksFoldedFromDailyTotals() {
+        // 2025-01-01 is a Wednesday, so the first week starts on Monday 2024-12-30.
+        LocalDate from = LocalDate.of(2025, 01, 01);
+        LocalDate to = LocalDate.of(2025, 01, 14);
+        List<String> allCategories = Arrays.stream(ExpenseCategory.values()).map(Enum::name).toList();
+
+        when(repository.dailyCategoryTotals(from, to, allCategories)).thenReturn(List.of(
+                new Object[]{java.sql.Date.valueOf("2025-01-01"), "TRAVEL", new BigDecimal("2.50")},
+                new Object[]{java.sql.Date.valueOf("2025-01-05"), "TRAVEL", new BigDecimal("3.00")},
+                new Object[]{LocalDate.of(2025, 01, 06), "FOOD", new BigDecimal("12.25")},
+                new Object[]{LocalDate.of(2025, 01, 14), "FOOD", new BigDecimal("7.75")}));
+
+        HistogramDto histogram = expenseService.histogram(from, to, HistogramBucket.WEEK, null);
+
+        assertEquals("week", histogram.getBucket());
+        assertEquals(LocalDate.of(2024, 12, 30), histogram.getStart());
+        assertEquals(3, histogram.getBuckets());
+        assertEquals(List.of("FOOD", "TRAVEL"), histogram.getCategories());
+        assertArrayEquals(new long[]{0, 1225, 775}, histogram.getTotals()[0]);
+        assertArrayEquals(new long[]{550, 0, 0}, histogram.getTotals()[1]);
+    }
+
+    @Test
+    void testHistogram_RequestedCategoryAlwaysReported() {
+        LocalDate day = LocalDate.of(2025, 01, 01);
+        when(repository.dailyCategoryTotals(day, day.plusDays(2), List.of("MEDICAL"))).thenReturn(List.of());
+
+        HistogramDto histogram = expenseService.histogram(day, day.plusDays(2), HistogramBucket.DAY,
+                ExpenseCategory.MEDICAL);
+
+        assertEquals(day, histogram.getStart());
+        assertEquals(List.of("MEDICAL"), histogram.getCategories());
+        assertArrayEquals(new long[]{0, 0, 0}, histogram.getTotals()[0]);
+    }
+
+    @Test
+    void testHistogram_RejectsBadRange() {
+        LocalDate day = LocalDate.of(2025, 01, 01);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> expenseService.histogram(day, day.minusDays(1), HistogramBucket.DAY, null));
+        assertThrows(IllegalArgumentException.class, () -> expenseService.histogram(day,
+                day.plusDays(ExpenseService.MAX_HISTOGRAM_BUCKETS), HistogramBucket.DAY, null));
+        assertEquals(ExpenseService.MAX_HISTOGRAM_BUCKETS, expenseService.histogram(day,
+                day.plusDays(ExpenseService.MAX_HISTOGRAM_BUCKETS - 1), HistogramBucket.DAY, null).getBuckets());
+        verify(repository, times(1)).dailyCategoryTotals(any(), any(), anyList());
+    }
+
+    @Test
+    void testCategorySum_InvalidMonth() {
+        assertTrue(expenseService.categorySum(2024, 13).isEmpty());
+
+        verifyNoInteractions(rollupService);
+    }
+
+
 }
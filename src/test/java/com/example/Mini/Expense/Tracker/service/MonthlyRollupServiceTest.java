@@ -0,0 +1,172 @@
+package com.example.Mini.Expense.Tracker.service;
+
+
+import com.example.Mini.Expense.Tracker.model.CategorySumDto;
+import com.example.Mini.Expense.Tracker.model.ExpenseCategory;
+import com.example.Mini.Expense.Tracker.model.ExpenseDto;
+import com.example.Mini.Expense.Tracker.model.MonthlyCategoryTotal;
+import com.example.Mini.Expense.Tracker.model.MonthlyCategoryTotalId;
+import com.example.Mini.Expense.Tracker.repository.ExpenseRepository;
+import com.example.Mini.Expense.Tracker.repository.MonthlyCategoryTotalRepository;
+import com.example.Mini.Expense.Tracker.sharding.ShardRouter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class MonthlyRollupServiceTest {
+
+
+    @Mock
+    private MonthlyCategoryTotalRepository totalRepository;
+
+    @Mock
+    private ExpenseRepository expenseRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Spy
+    private ShardRouter shardRouter = new ShardRouter(List.of(), 160);
+
+    @InjectMocks
+    private MonthlyRollupService rollupService;
+
+    private ExpenseDto expenseDto;
+
+
+    @BeforeEach
+    void setup() {
+        expenseDto = new ExpenseDto(1L, "Pizza and coke",
+                new BigDecimal("25.00"), ExpenseCategory.FOOD,
+                LocalDate.of(2025, 01, 15));
+    }
+
+
+    @Test
+    void testCreated_UpsertsCell() {
+        rollupService.onExpenseChanged(ExpenseChangedEvent.created(expenseDto));
+
+        verify(jdbcTemplate, times(1)).update(startsWith("MERGE INTO monthly_category_totals"),
+                eq(2025), eq(1), eq("FOOD"), eq(new BigDecimal("25.00")), eq(1L));
+        verifyNoInteractions(totalRepository);
+    }
+
+    @Test
+    void testCreated_RetriesCellInsertedConcurrently() {
+        when(jdbcTemplate.update(anyString(), eq(2025), eq(1), eq("FOOD"), eq(new BigDecimal("25.00")), eq(1L)))
+                .thenThrow(new DuplicateKeyException("cell inserted by another transaction"))
+                .thenReturn(1);
+
+        rollupService.onExpenseChanged(ExpenseChangedEvent.created(expenseDto));
+
+        verify(jdbcTemplate, times(2)).update(anyString(),
+                eq(2025), eq(1), eq("FOOD"), eq(new BigDecimal("25.00")), eq(1L));
+    }
+
+    @Test
+    void testDeleted_SubtractsFromCell() {
+        rollupService.onExpenseChanged(ExpenseChangedEvent.deleted(expenseDto));
+
+        verify(jdbcTemplate, times(1)).update(anyString(),
+                eq(2025), eq(1), eq("FOOD"), eq(new BigDecimal("-25.00")), eq(-1L));
+    }
+
+    @Test
+    void testUpdated_MovesAcrossMonthAndCategory() {
+        ExpenseDto moved = new ExpenseDto(1L, "Pizza and coke", new BigDecimal("30.00"),
+                                            ExpenseCategory.MISC, LocalDate.of(2025, 02, 01));
+
+        rollupService.onExpenseChanged(ExpenseChangedEvent.updated(expenseDto, moved));
+
+        verify(jdbcTemplate, times(1)).update(anyString(),
+                eq(2025), eq(1), eq("FOOD"), eq(new BigDecimal("-25.00")), eq(-1L));
+        verify(jdbcTemplate, times(1)).update(anyString(),
+                eq(2025), eq(2), eq("MISC"), eq(new BigDecimal("30.00")), eq(1L));
+    }
+
+    @Test
+    void testUpdated_SameCellOnlyAppliesAmountDifference() {
+        ExpenseDto changed = new ExpenseDto(1L, "Pizza, pasta and coke", new BigDecimal("35.00"),
+                                            ExpenseCategory.FOOD, LocalDate.of(2025, 01, 17));
+
+        rollupService.onExpenseChanged(ExpenseChangedEvent.updated(expenseDto, changed));
+
+        verify(jdbcTemplate, times(1)).update(anyString(),
+                eq(2025), eq(1), eq("FOOD"), eq(new BigDecimal("10.00")), eq(0L));
+    }
+
+    @Test
+    void testUpdated_DescriptionOnlyIsFree() {
+        ExpenseDto renamed = new ExpenseDto(1L, "Renamed", new BigDecimal("25.00"),
+                                            ExpenseCategory.FOOD, LocalDate.of(2025, 01, 20));
+
+        rollupService.onExpenseChanged(ExpenseChangedEvent.updated(expenseDto, renamed));
+
+        verifyNoInteractions(totalRepository, jdbcTemplate);
+    }
+
+    @Test
+    void testCategorySum() {
+        when(totalRepository.findMonthSums(2025, 1)).thenReturn(Arrays.asList(
+                new CategorySumDto(ExpenseCategory.FOOD, 3580L),
+                new CategorySumDto(ExpenseCategory.MISC, 19050L)));
+
+        List<CategorySumDto> actual = rollupService.categorySum(2025, 1);
+
+        assertEquals(2, actual.size());
+        assertEquals("FOOD", actual.get(0).getCategory());
+        assertEquals(new BigDecimal("35.80"), actual.get(0).getSum());
+        assertEquals("MISC", actual.get(1).getCategory());
+        assertEquals(new BigDecimal("190.50"), actual.get(1).getSum());
+    }
+
+    @Test
+    void testVerify_ReportsDrift() {
+        when(totalRepository.findAll()).thenReturn(Arrays.asList(
+                new MonthlyCategoryTotal(new MonthlyCategoryTotalId(2025, 1, ExpenseCategory.FOOD),
+                        3580L, 2),
+                new MonthlyCategoryTotal(new MonthlyCategoryTotalId(2025, 1, ExpenseCategory.MISC),
+                        1000L, 1),
+                new MonthlyCategoryTotal(new MonthlyCategoryTotalId(2025, 2, ExpenseCategory.TRAVEL),
+                        9900L, 1)));
+
+        when(expenseRepository.monthlyCategoryTotals()).thenReturn(Arrays.asList(
+                new Object[]{2025, 1, "FOOD", new BigDecimal("35.80"), 2L},
+                new Object[]{2025, 1, "MISC", new BigDecimal("12.00"), 1L},
+                new Object[]{2025, 3, "GROCERY", new BigDecimal("4.00"), 1L}));
+
+        List<RollupDrift> drift = rollupService.verify();
+
+        assertEquals(3, drift.size());
+        assertEquals(ExpenseCategory.MISC, drift.get(0).getCategory());
+        assertEquals(new BigDecimal("12.00"), drift.get(0).getExpectedTotal());
+        assertEquals(new BigDecimal("10.00"), drift.get(0).getActualTotal());
+
+        assertEquals(ExpenseCategory.GROCERY, drift.get(1).getCategory());
+        assertEquals(0, drift.get(1).getActualCount());
+
+        assertEquals(ExpenseCategory.TRAVEL, drift.get(2).getCategory());
+        assertEquals(0, drift.get(2).getExpectedCount());
+    }
+
+}
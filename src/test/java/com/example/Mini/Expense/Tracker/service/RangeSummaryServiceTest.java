@@ -0,0 +1,111 @@
+package com.example.Mini.Expense.Tracker.service;
+
+import com.example.Mini.Expense.Tracker.model.CategorySumDto;
+import com.example.Mini.Expense.Tracker.model.PeriodSummaryDto;
+import com.example.Mini.Expense.Tracker.model.SummaryGranularity;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Year;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+public class RangeSummaryServiceTest {
+
+    private final ExpenseService expenseService = mock(ExpenseService.class);
+    private final RangeSummaryService rangeSummaryService = new RangeSummaryService(expenseService, 4);
+
+    @AfterEach
+    void tearDown() {
+        rangeSummaryService.shutdown();
+    }
+
+    private static CategorySumDto sum(String category, String amount) {
+        return new CategorySumDto(category, new BigDecimal(amount));
+    }
+
+
+    @Test
+    void testQuartersMergeTheirMonths() {
+        when(expenseService.categorySum(anyInt(), anyInt())).thenReturn(List.of());
+        when(expenseService.categorySum(2024, 2)).thenReturn(List.of(sum("FOOD", "10.25"), sum("TRAVEL", "5.00")));
+        when(expenseService.categorySum(2024, 3)).thenReturn(List.of(sum("FOOD", "0.75")));
+        when(expenseService.categorySum(2024, 4)).thenReturn(List.of(sum("GROCERY", "40.00")));
+
+        List<PeriodSummaryDto> quarters = rangeSummaryService.categorySumRange(
+                YearMonth.of(2024, 2), YearMonth.of(2024, 8), SummaryGranularity.QUARTER);
+
+        assertEquals(List.of("2024-Q1", "2024-Q2", "2024-Q3"), quarters.stream().map(PeriodSummaryDto::getPeriod).toList());
+
+        // The first and last quarters only cover the months inside the range.
+        assertEquals(YearMonth.of(2024, 2), quarters.get(0).getFrom());
+        assertEquals(YearMonth.of(2024, 3), quarters.get(0).getTo());
+        assertEquals(YearMonth.of(2024, 7), quarters.get(2).getFrom());
+        assertEquals(YearMonth.of(2024, 8), quarters.get(2).getTo());
+
+        List<CategorySumDto> q1 = quarters.get(0).getCategories();
+        assertEquals(2, q1.size());
+        assertEquals("FOOD", q1.get(0).getCategory());
+        assertEquals(new BigDecimal("11.00"), q1.get(0).getSum());
+        assertEquals("TRAVEL", q1.get(1).getCategory());
+        assertEquals(new BigDecimal("5.00"), q1.get(1).getSum());
+
+        assertEquals(new BigDecimal("40.00"), quarters.get(1).getCategories().get(0).getSum());
+        assertTrue(quarters.get(2).getCategories().isEmpty());
+
+        // Every month is read exactly once.
+        verify(expenseService, times(7)).categorySum(anyInt(), anyInt());
+    }
+
+    @Test
+    void testYearsSpanningARangeAcrossNewYear() {
+        when(expenseService.categorySum(anyInt(), anyInt())).thenReturn(List.of(sum("FOOD", "1.00")));
+
+        List<PeriodSummaryDto> years = rangeSummaryService.categorySumRange(
+                YearMonth.of(2023, 11), YearMonth.of(2025, 1), SummaryGranularity.YEAR);
+
+        assertEquals(3, years.size());
+        assertEquals("2023", years.get(0).getPeriod());
+        assertEquals(new BigDecimal("2.00"), years.get(0).getCategories().get(0).getSum());
+        assertEquals(new BigDecimal("12.00"), years.get(1).getCategories().get(0).getSum());
+        assertEquals(new BigDecimal("1.00"), years.get(2).getCategories().get(0).getSum());
+    }
+
+    @Test
+    void testMonthlySeriesKeepsEmptyMonths() {
+        when(expenseService.categorySum(anyInt(), anyInt())).thenReturn(List.of());
+
+        List<PeriodSummaryDto> months = rangeSummaryService.categorySumRange(
+                YearMonth.of(2024, 12), YearMonth.of(2024, 12), SummaryGranularity.MONTH);
+
+        assertEquals(1, months.size());
+        assertEquals("2024-12", months.get(0).getPeriod());
+        assertTrue(months.get(0).getCategories().isEmpty());
+    }
+
+    @Test
+    void testInvalidRanges() {
+        assertThrows(IllegalArgumentException.class, () -> rangeSummaryService.categorySumRange(
+                YearMonth.of(2024, 5), YearMonth.of(2024, 4), SummaryGranularity.MONTH));
+        assertThrows(IllegalArgumentException.class, () -> rangeSummaryService.categorySumRange(
+                YearMonth.of(2000, 1), YearMonth.of(2020, 1), SummaryGranularity.YEAR));
+        // More months than an int holds.
+        assertThrows(IllegalArgumentException.class, () -> rangeSummaryService.categorySumRange(
+                YearMonth.of(1, 1), YearMonth.of(Year.MAX_VALUE, 1), SummaryGranularity.YEAR));
+        verifyNoInteractions(expenseService);
+    }
+
+    @Test
+    void testMergeOverflowThrows() {
+        when(expenseService.categorySum(anyInt(), anyInt()))
+                .thenReturn(List.of(sum("FOOD", new BigDecimal(Long.MAX_VALUE).movePointLeft(2).toPlainString())));
+
+        assertThrows(ArithmeticException.class, () -> rangeSummaryService.categorySumRange(
+                YearMonth.of(2024, 1), YearMonth.of(2024, 2), SummaryGranularity.YEAR));
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.Mini.Expense.Tracker.service;
+
+
+import com.example.Mini.Expense.Tracker.model.CacheStatsDto;
+import com.example.Mini.Expense.Tracker.model.CategorySumDto;
+import com.example.Mini.Expense.Tracker.model.ExpenseCategory;
+import com.example.Mini.Expense.Tracker.model.ExpenseDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SummaryCacheTest {
+
+    private SummaryCache summaryCache;
+
+    private AtomicInteger loads;
+
+
+    @BeforeEach
+    void setup() {
+        summaryCache = new SummaryCache(2, Duration.ofMinutes(5));
+        loads = new AtomicInteger();
+    }
+
+    private List<CategorySumDto> load(YearMonth month) {
+        return load(month, "1-1");
+    }
+
+    private List<CategorySumDto> load(YearMonth month, String stamp) {
+        return summaryCache.get(month, stamp, () -> {
+            loads.incrementAndGet();
+            return List.of(new CategorySumDto("FOOD", BigDecimal.valueOf(loads.get())));
+        });
+    }
+
+    private ExpenseDto expenseOn(LocalDate date) {
+        return new ExpenseDto(1L, "Lunch", new BigDecimal(10), ExpenseCategory.FOOD, date);
+    }
+
+
+    @Test
+    void testHitsAndMisses() {
+        load(YearMonth.of(2025, 1));
+        load(YearMonth.of(2025, 1));
+        load(YearMonth.of(2025, 2));
+
+        CacheStatsDto stats = summaryCache.stats();
+        assertEquals(2, loads.get());
+        assertEquals(1, stats.getHitCount());
+        assertEquals(2, stats.getMissCount());
+        assertEquals(2, stats.getSize());
+    }
+
+    @Test
+    void testCreateInvalidatesOnlyItsMonth() {
+        load(YearMonth.of(2025, 1));
+        load(YearMonth.of(2025, 2));
+
+        summaryCache.onExpenseChanged(ExpenseChangedEvent.created(expenseOn(LocalDate.of(2025, 1, 20))));
+
+        load(YearMonth.of(2025, 1));
+        load(YearMonth.of(2025, 2));
+
+        assertEquals(3, loads.get());
+        assertEquals(1, summaryCache.stats().getInvalidationCount());
+    }
+
+    @Test
+    void testUpdateAcrossMonthsInvalidatesBoth() {
+        load(YearMonth.of(2025, 1));
+        load(YearMonth.of(2025, 2));
+
+        summaryCache.onExpenseChanged(ExpenseChangedEvent.updated(
+                expenseOn(LocalDate.of(2025, 1, 20)), expenseOn(LocalDate.of(2025, 2, 3))));
+
+        load(YearMonth.of(2025, 1));
+        load(YearMonth.of(2025, 2));
+
+        assertEquals(4, loads.get());
+        assertEquals(2, summaryCache.stats().getInvalidationCount());
+    }
+
+    @Test
+    void testNewStampLoadsAfresh() {
+        load(YearMonth.of(2025, 1), "1-1");
+        load(YearMonth.of(2025, 1), "1-2");
+
+        // A body is only served under the stamp it was loaded for.
+        assertEquals(new BigDecimal(2), load(YearMonth.of(2025, 1), "1-2").get(0).getSum());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void testRollupRebuildInvalidatesEverything() {
+        load(YearMonth.of(2025, 1));
+        load(YearMonth.of(2025, 2));
+
+        summaryCache.onRollupRebuilt(new RollupRebuiltEvent());
+
+        load(YearMonth.of(2025, 1));
+        load(YearMonth.of(2025, 2));
+
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    void testSizeBoundEvicts() {
+        for (int month = 1; month <= 12; month++) {
+            load(YearMonth.of(2025, month));
+        }
+
+        CacheStatsDto stats = summaryCache.stats();
+        assertTrue(stats.getSize() <= 2, "size " + stats.getSize());
+        assertTrue(stats.getEvictionCount() > 0);
+    }
+
+    @Test
+    void testConcurrentMissesShareOneLoad() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<List<CategorySumDto>> first = CompletableFuture.supplyAsync(() ->
+                summaryCache.get(YearMonth.of(2025, 1), "1-1", () -> {
+                    loads.incrementAndGet();
+                    loading.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    return List.of(new CategorySumDto("FOOD", BigDecimal.ONE));
+                }));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<List<CategorySumDto>> second = CompletableFuture.supplyAsync(() -> load(YearMonth.of(2025, 1)));
+        release.countDown();
+
+        assertEquals(BigDecimal.ONE, first.get(5, TimeUnit.SECONDS).get(0).getSum());
+        assertEquals(BigDecimal.ONE, second.get(5, TimeUnit.SECONDS).get(0).getSum());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void testFailedLoadIsRetried() {
+        assertThrows(IllegalStateException.class, () -> summaryCache.get(YearMonth.of(2025, 1), "1-1", () -> {
+            throw new IllegalStateException("database down");
+        }));
+
+        load(YearMonth.of(2025, 1));
+
+        assertEquals(1, loads.get());
+    }
+
+}
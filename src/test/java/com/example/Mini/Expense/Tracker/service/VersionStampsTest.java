@@ -0,0 +1,102 @@
+package com.example.Mini.Expense.Tracker.service;
+
+import com.example.Mini.Expense.Tracker.model.ExpenseCategory;
+import com.example.Mini.Expense.Tracker.model.ExpenseDto;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VersionStampsTest {
+
+    private final AtomicLong nanos = new AtomicLong();
+
+    private final VersionStamps versionStamps = new VersionStamps(100, Duration.ofMinutes(10), nanos::get);
+
+    private static ExpenseDto expense(long version, LocalDate date) {
+        return new ExpenseDto(1L, "Lunch", new BigDecimal("12.50"), ExpenseCategory.FOOD, date, version);
+    }
+
+
+    @Test
+    void testRowVersionNeverGoesBack() {
+        versionStamps.recordRow(0L, 1L, 3);
+        versionStamps.recordRow(0L, 1L, 2);
+
+        assertEquals(3L, versionStamps.rowVersion(0L, 1L));
+        assertNull(versionStamps.rowVersion(0L, 2L));
+    }
+
+    @Test
+    void testRowVersionIsKeptPerOwner() {
+        versionStamps.recordRow(7L, 1L, 3);
+
+        assertEquals(3L, versionStamps.rowVersion(7L, 1L));
+        assertNull(versionStamps.rowVersion(0L, 1L));
+    }
+
+    @Test
+    void testUpdateRecordsNewVersionAndBumpsBothMonths() {
+        String may = versionStamps.monthStamp(YearMonth.of(2024, 5));
+        String june = versionStamps.monthStamp(YearMonth.of(2024, 6));
+        String july = versionStamps.monthStamp(YearMonth.of(2024, 7));
+
+        versionStamps.onExpenseChanged(ExpenseChangedEvent.updated(expense(0, LocalDate.of(2024, 5, 10)),
+                expense(1, LocalDate.of(2024, 6, 10))));
+
+        assertEquals(1L, versionStamps.rowVersion(0L, 1L));
+        assertNotEquals(may, versionStamps.monthStamp(YearMonth.of(2024, 5)));
+        assertNotEquals(june, versionStamps.monthStamp(YearMonth.of(2024, 6)));
+        assertEquals(july, versionStamps.monthStamp(YearMonth.of(2024, 7)));
+    }
+
+    @Test
+    void testDeleteLeavesATombstone() {
+        versionStamps.recordRow(0L, 1L, 4);
+
+        versionStamps.onExpenseChanged(ExpenseChangedEvent.deleted(expense(4, LocalDate.of(2024, 5, 10))));
+        // A read that raced the delete must not bring the row back.
+        versionStamps.recordRow(0L, 1L, 4);
+
+        assertNull(versionStamps.rowVersion(0L, 1L));
+    }
+
+    @Test
+    void testCreateOnlyBumpsTheMonth() {
+        String may = versionStamps.monthStamp(YearMonth.of(2024, 5));
+
+        versionStamps.onExpenseChanged(ExpenseChangedEvent.created(expense(0, LocalDate.of(2024, 5, 10))));
+
+        assertNull(versionStamps.rowVersion(0L, 1L));
+        assertNotEquals(may, versionStamps.monthStamp(YearMonth.of(2024, 5)));
+    }
+
+    @Test
+    void testRebuildRetiresEveryMonthStamp() {
+        String may = versionStamps.monthStamp(YearMonth.of(2024, 5));
+
+        versionStamps.onRollupRebuilt(new RollupRebuiltEvent());
+
+        assertNotEquals(may, versionStamps.monthStamp(YearMonth.of(2024, 5)));
+    }
+
+    @Test
+    void testStampsExpireAfterTtl() {
+        versionStamps.recordRow(0L, 1L, 3);
+        String may = versionStamps.monthStamp(YearMonth.of(2024, 5));
+
+        nanos.addAndGet(Duration.ofMinutes(9).toNanos());
+        assertEquals(3L, versionStamps.rowVersion(0L, 1L));
+        assertEquals(may, versionStamps.monthStamp(YearMonth.of(2024, 5)));
+
+        // Another instance may have written since; neither stamp is trusted past the TTL.
+        nanos.addAndGet(Duration.ofMinutes(2).toNanos());
+        assertNull(versionStamps.rowVersion(0L, 1L));
+        assertNotEquals(may, versionStamps.monthStamp(YearMonth.of(2024, 5)));
+    }
+}
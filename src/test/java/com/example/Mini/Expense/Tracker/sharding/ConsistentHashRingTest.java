@@ -0,0 +1,59 @@
+package com.example.Mini.Expense.Tracker.sharding;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConsistentHashRingTest {
+
+    private static final int USERS = 100_000;
+
+
+    @Test
+    void testUsersAreSpreadEvenly() {
+        ConsistentHashRing ring = new ConsistentHashRing(4, 160);
+
+        int[] users = new int[4];
+        for (long userId = 0; userId < USERS; userId++) users[ring.shardOf(userId)]++;
+
+        for (int count : users) {
+            assertEquals(USERS / 4.0, count, USERS * 0.05, "users per shard " + Arrays.toString(users));
+        }
+    }
+
+    @Test
+    void testAddingAShardOnlyMovesUsersToIt() {
+        ConsistentHashRing four = new ConsistentHashRing(4, 160);
+        ConsistentHashRing five = new ConsistentHashRing(5, 160);
+
+        int moved = 0;
+        for (long userId = 0; userId < USERS; userId++) {
+            int before = four.shardOf(userId);
+            int after = five.shardOf(userId);
+            if (before != after) {
+                assertEquals(4, after, "user " + userId + " moved between old shards");
+                moved++;
+            }
+        }
+        assertEquals(USERS / 5.0, moved, USERS * 0.05);
+    }
+
+    @Test
+    void testSameRingOnEveryInstance() {
+        ConsistentHashRing ring = new ConsistentHashRing(3, 160);
+        ConsistentHashRing other = new ConsistentHashRing(3, 160);
+
+        for (long userId = -1000; userId < 1000; userId++) {
+            assertEquals(ring.shardOf(userId), other.shardOf(userId));
+        }
+        assertEquals(0, new ConsistentHashRing(1, 160).shardOf(42L));
+    }
+
+    @Test
+    void testRejectsEmptyRing() {
+        assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing(0, 160));
+        assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing(2, 0));
+    }
+}
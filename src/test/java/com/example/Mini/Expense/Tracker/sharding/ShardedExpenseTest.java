@@ -0,0 +1,196 @@
+package com.example.Mini.Expense.Tracker.sharding;
+
+import com.example.Mini.Expense.Tracker.model.ExpenseCategory;
+import com.example.Mini.Expense.Tracker.model.ExpenseDto;
+import com.example.Mini.Expense.Tracker.model.HistogramBucket;
+import com.example.Mini.Expense.Tracker.model.HistogramDto;
+import com.example.Mini.Expense.Tracker.service.ExpenseService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Runs the application over three embedded H2 databases as shards and checks where rows land
+ * and how reads across users are merged.
+ */
+@SpringBootTest(properties = {"expense.sharding.urls=jdbc:h2:mem:shard0;DB_CLOSE_DELAY=-1,"
+        + "jdbc:h2:mem:shard1;DB_CLOSE_DELAY=-1,jdbc:h2:mem:shard2;DB_CLOSE_DELAY=-1",
+        "spring.datasource.hikari.maximum-pool-size=7", "spring.datasource.hikari.connection-timeout=2500"})
+@AutoConfigureMockMvc
+public class ShardedExpenseTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ExpenseService expenseService;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ShardRoutingDataSource shardRoutingDataSource;
+
+    private long alice;
+    private long bob;
+
+
+    @BeforeEach
+    void setUp() {
+        shardRouter.forEachShard(shard -> {
+            jdbcTemplate.execute("TRUNCATE TABLE expenses");
+            jdbcTemplate.execute("TRUNCATE TABLE monthly_category_totals");
+            jdbcTemplate.execute("TRUNCATE TABLE expense_idempotency_keys");
+        });
+
+        alice = 1L;
+        bob = LongStream.range(2, 100)
+                .filter(userId -> shardRouter.shardOf(userId) != shardRouter.shardOf(alice))
+                .findFirst().orElseThrow();
+    }
+
+    private ExpenseDto create(long userId, String description, String amount, ExpenseCategory category,
+                              LocalDate date) throws Exception {
+        ExpenseDto dto = new ExpenseDto(0L, description, new BigDecimal(amount), category, date, 0L, userId);
+        String body = mockMvc.perform(post("/expenses")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(dto)))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(body, ExpenseDto.class);
+    }
+
+    private List<Long> ownersOf(int shard, long id) {
+        return shardRouter.onShard(shard, () ->
+                jdbcTemplate.queryForList("SELECT user_id FROM expenses WHERE id = ?", Long.class, id));
+    }
+
+
+    @Test
+    void testExpensesLandOnTheirOwnersShard() throws Exception {
+        ExpenseDto lunch = create(alice, "Lunch", "12.50", ExpenseCategory.FOOD, LocalDate.of(2024, 5, 10));
+        ExpenseDto taxi = create(bob, "Taxi", "18.00", ExpenseCategory.TRAVEL, LocalDate.of(2024, 5, 11));
+
+        assertNotEquals(lunch.getId(), taxi.getId());
+        assertEquals(bob, taxi.getUserId());
+        for (int shard = 0; shard < shardRouter.shards(); shard++) {
+            assertEquals(shard == shardRouter.shardOf(alice) ? List.of(alice) : List.of(), ownersOf(shard, lunch.getId()));
+            assertEquals(shard == shardRouter.shardOf(bob) ? List.of(bob) : List.of(), ownersOf(shard, taxi.getId()));
+        }
+    }
+
+    @Test
+    void testExpensesAreOnlyVisibleToTheirOwner() throws Exception {
+        ExpenseDto lunch = create(alice, "Lunch", "12.50", ExpenseCategory.FOOD, LocalDate.of(2024, 5, 10));
+        create(bob, "Dinner", "30.00", ExpenseCategory.FOOD, LocalDate.of(2024, 5, 10));
+
+        mockMvc.perform(get("/expenses/{id}", lunch.getId()).param("userId", Long.toString(alice)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.description").value("Lunch"));
+        mockMvc.perform(get("/expenses/{id}", lunch.getId()).param("userId", Long.toString(bob)))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(delete("/expenses/{id}", lunch.getId()).param("userId", Long.toString(bob)))
+                .andExpect(status().isNotFound());
+
+        mockMvc.perform(get("/expenses")
+                        .param("from", "2024-05-01")
+                        .param("to", "2024-05-31")
+                        .param("category", "FOOD")
+                        .param("userId", Long.toString(bob)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].description").value("Dinner"));
+    }
+
+    @Test
+    void testSummariesAreMergedAcrossShards() throws Exception {
+        create(alice, "Lunch", "12.50", ExpenseCategory.FOOD, LocalDate.of(2024, 6, 10));
+        create(bob, "Dinner", "30.00", ExpenseCategory.FOOD, LocalDate.of(2024, 6, 10));
+        create(bob, "Taxi", "18.00", ExpenseCategory.TRAVEL, LocalDate.of(2024, 6, 12));
+
+        mockMvc.perform(get("/expenses/summary").param("year", "2024").param("month", "6"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].category").value("FOOD"))
+                .andExpect(jsonPath("$[0].sum").value(42.50))
+                .andExpect(jsonPath("$[1].category").value("TRAVEL"))
+                .andExpect(jsonPath("$[1].sum").value(18.00));
+
+        HistogramDto histogram = expenseService.histogram(LocalDate.of(2024, 6, 10), LocalDate.of(2024, 6, 12),
+                HistogramBucket.DAY, ExpenseCategory.FOOD);
+        assertArrayEquals(new long[]{4250, 0, 0}, histogram.getTotals()[0]);
+    }
+
+    @Test
+    void testBatchMustStayOnOneShard() throws Exception {
+        List<ExpenseDto> batch = List.of(
+                new ExpenseDto(0L, "Lunch", new BigDecimal("12.50"), ExpenseCategory.FOOD, LocalDate.of(2024, 5, 10),
+                        0L, alice),
+                new ExpenseDto(0L, "Taxi", new BigDecimal("18.00"), ExpenseCategory.TRAVEL, LocalDate.of(2024, 5, 11),
+                        0L, bob));
+
+        mockMvc.perform(post("/expenses/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testShardPoolsTakeTheHikariSettings() {
+        assertEquals(3, shardRoutingDataSource.shards().size());
+        for (int shard = 0; shard < 3; shard++) {
+            HikariDataSource pool = (HikariDataSource) shardRoutingDataSource.shards().get(shard);
+            assertEquals(7, pool.getMaximumPoolSize());
+            assertEquals(2500, pool.getConnectionTimeout());
+            assertEquals("expense-shard-" + shard, pool.getPoolName());
+        }
+    }
+
+    @Test
+    void testRoutingNeedsATransaction() {
+        assertThrows(IllegalStateException.class, () -> shardRouter.route(alice));
+        assertNull(shardRouter.currentShard());
+        assertEquals(2, shardRouter.onShard(2, shardRouter::currentShard));
+    }
+
+    @Test
+    void testScatterQueriesEveryShardAtOnce() {
+        // Each shard's query waits for all the others, so this only finishes if they run in parallel.
+        CountDownLatch arrived = new CountDownLatch(shardRouter.shards());
+        List<Integer> shards = shardRouter.scatter(shard -> {
+            arrived.countDown();
+            try {
+                assertTrue(arrived.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return shardRouter.currentShard();
+        });
+
+        assertEquals(List.of(0, 1, 2), shards);
+    }
+}
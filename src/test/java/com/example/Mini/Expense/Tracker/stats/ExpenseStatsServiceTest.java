@@ -0,0 +1,198 @@
+package com.example.Mini.Expense.Tracker.stats;
+
+import com.example.Mini.Expense.Tracker.model.CategoryStatsDto;
+import com.example.Mini.Expense.Tracker.model.ExpenseCategory;
+import com.example.Mini.Expense.Tracker.model.ExpenseDto;
+import com.example.Mini.Expense.Tracker.service.ExpenseService;
+import com.example.Mini.Expense.Tracker.sharding.ShardRouter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * Runs the sketches against the default H2 database through the real write path.
+ */
+@SpringBootTest
+public class ExpenseStatsServiceTest {
+
+    private static final YearMonth JANUARY = YearMonth.of(2024, 1);
+    private static final YearMonth FEBRUARY = YearMonth.of(2024, 2);
+
+    @Autowired
+    private ExpenseStatsService statsService;
+
+    @Autowired
+    private ExpenseService expenseService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockitoSpyBean
+    private ShardRouter shardRouter;
+
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("TRUNCATE TABLE expenses");
+        jdbcTemplate.execute("TRUNCATE TABLE monthly_category_totals");
+        jdbcTemplate.execute("TRUNCATE TABLE monthly_category_sketches");
+        statsService.evict();
+    }
+
+
+    @Test
+    void testPercentilesAndDescriptionsAcrossMonths() {
+        // 1.00 to 100.00 in January, with "Lunch" written a few different ways.
+        List<ExpenseDto> expenses = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            String description = i % 4 == 0 ? (i % 8 == 0 ? " lunch " : "LUNCH") : "Snack " + i;
+            expenses.add(expense(description, i + ".00", ExpenseCategory.FOOD, LocalDate.of(2024, 1, 1 + i % 28)));
+        }
+        expenseService.saveAll(expenses);
+
+        CategoryStatsDto food = single(statsService.stats(JANUARY, JANUARY, null, 2));
+        assertEquals(100, food.getCount());
+        assertEquals(new BigDecimal("1.00"), food.getMin());
+        assertEquals(new BigDecimal("50.00"), food.getP50());
+        assertEquals(new BigDecimal("90.00"), food.getP90());
+        assertEquals(new BigDecimal("99.00"), food.getP99());
+        assertEquals(new BigDecimal("100.00"), food.getMax());
+        assertEquals(QuantileSketch.rankError(QuantileSketch.DEFAULT_K), food.getRankError());
+        assertEquals("lunch", food.getTopDescriptions().get(0).getDescription());
+        assertEquals(25, food.getTopDescriptions().get(0).getCount());
+        assertEquals(2, food.getTopDescriptions().size());
+
+        // February is loaded and empty, so this create goes straight into its sketch.
+        assertEquals(List.of(), statsService.stats(FEBRUARY, FEBRUARY, null, 10));
+        expenseService.save(expense("Lunch", "500.00", ExpenseCategory.FOOD, LocalDate.of(2024, 2, 3)));
+        expenseService.save(expense("Taxi", "20.00", ExpenseCategory.TRAVEL, LocalDate.of(2024, 2, 3)));
+
+        List<CategoryStatsDto> stats = statsService.stats(JANUARY, FEBRUARY, null, 10);
+        assertEquals(2, stats.size());
+        assertEquals(101, stats.get(0).getCount());
+        assertEquals(new BigDecimal("500.00"), stats.get(0).getMax());
+        assertEquals(26, stats.get(0).getTopDescriptions().get(0).getCount());
+        assertEquals("TRAVEL", stats.get(1).getCategory());
+
+        assertEquals(List.of("TRAVEL"), statsService.stats(JANUARY, FEBRUARY, ExpenseCategory.TRAVEL, 0).stream()
+                .map(CategoryStatsDto::getCategory).toList());
+    }
+
+    @Test
+    void testUpdateAndDeleteRebuildTheMonth() throws Exception {
+        ExpenseDto lunch = expenseService.save(expense("Lunch", "10.00", ExpenseCategory.FOOD, LocalDate.of(2024, 1, 5)));
+        ExpenseDto dinner = expenseService.save(expense("Dinner", "30.00", ExpenseCategory.FOOD, LocalDate.of(2024, 1, 6)));
+        assertEquals(new BigDecimal("30.00"), single(statsService.stats(JANUARY, JANUARY, null, 10)).getMax());
+
+        expenseService.updateExpense(expense("Lunch", "12.00", ExpenseCategory.FOOD, LocalDate.of(2024, 2, 1)),
+                lunch.getId());
+        expenseService.delete(dinner.getId());
+
+        assertEquals(List.of(), statsService.stats(JANUARY, JANUARY, null, 10));
+        CategoryStatsDto february = single(statsService.stats(FEBRUARY, FEBRUARY, null, 10));
+        assertEquals(1, february.getCount());
+        assertEquals(new BigDecimal("12.00"), february.getP50());
+    }
+
+    @Test
+    void testWritesDuringARebuildAreNotHeldUp() throws Exception {
+        ExpenseDto lunch = expenseService.save(expense("Lunch", "10.00", ExpenseCategory.FOOD, LocalDate.of(2024, 1, 5)));
+        single(statsService.stats(JANUARY, JANUARY, null, 10));
+        expenseService.updateExpense(expense("Lunch", "12.00", ExpenseCategory.FOOD, LocalDate.of(2024, 1, 5)),
+                lunch.getId());
+
+        // The rebuild waits before its scan until the write below is done.
+        CountDownLatch scanning = new CountDownLatch(1);
+        CountDownLatch written = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            scanning.countDown();
+            assertTrue(written.await(5, TimeUnit.SECONDS));
+            return invocation.callRealMethod();
+        }).when(shardRouter).forEachShard(any());
+
+        CompletableFuture<List<CategoryStatsDto>> reading =
+                CompletableFuture.supplyAsync(() -> statsService.stats(JANUARY, JANUARY, null, 10));
+        assertTrue(scanning.await(5, TimeUnit.SECONDS));
+        CompletableFuture.runAsync(() -> expenseService.save(
+                expense("Dinner", "30.00", ExpenseCategory.FOOD, LocalDate.of(2024, 1, 6)))).get(5, TimeUnit.SECONDS);
+        written.countDown();
+
+        assertEquals(2, single(reading.get(5, TimeUnit.SECONDS)).getCount());
+        // The write landed during the rebuild, so the month stays stale: not flushed, and rebuilt again.
+        assertEquals(0, statsService.flush());
+        CategoryStatsDto january = single(statsService.stats(JANUARY, JANUARY, null, 10));
+        assertEquals(2, january.getCount());
+        assertEquals(new BigDecimal("30.00"), january.getMax());
+    }
+
+    @Test
+    void testFlushedMonthsAreReloadedAndChecked() {
+        expenseService.saveAll(List.of(
+                expense("Lunch", "10.00", ExpenseCategory.FOOD, LocalDate.of(2024, 1, 5)),
+                expense("Bus", "2.50", ExpenseCategory.TRAVEL, LocalDate.of(2024, 1, 6))));
+        List<CategoryStatsDto> expected = statsService.stats(JANUARY, JANUARY, null, 10);
+
+        assertEquals(1, statsService.flush());
+        assertEquals(0, statsService.flush());
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM monthly_category_sketches", Integer.class));
+
+        statsService.evict();
+        assertStatsEqual(expected, statsService.stats(JANUARY, JANUARY, null, 10));
+        assertEquals(0, statsService.flush());
+
+        // A row that no longer matches the rollup is not trusted; the month is rebuilt and rewritten.
+        jdbcTemplate.update("DELETE FROM monthly_category_sketches WHERE category = 'TRAVEL'");
+        statsService.evict();
+        assertStatsEqual(expected, statsService.stats(JANUARY, JANUARY, null, 10));
+        assertEquals(1, statsService.flush());
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM monthly_category_sketches", Integer.class));
+    }
+
+    @Test
+    void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> statsService.stats(FEBRUARY, JANUARY, null, 10));
+        assertThrows(IllegalArgumentException.class,
+                () -> statsService.stats(JANUARY, JANUARY.plusMonths(ExpenseStatsService.MAX_RANGE_MONTHS), null, 10));
+        assertThrows(IllegalArgumentException.class, () -> statsService.stats(JANUARY, JANUARY, null, -1));
+        assertThrows(IllegalArgumentException.class,
+                () -> statsService.stats(JANUARY, JANUARY, null, ExpenseStatsService.MAX_TOP + 1));
+    }
+
+
+    private static ExpenseDto expense(String description, String amount, ExpenseCategory category, LocalDate date) {
+        return new ExpenseDto(0L, description, new BigDecimal(amount), category, date);
+    }
+
+    private static CategoryStatsDto single(List<CategoryStatsDto> stats) {
+        assertEquals(1, stats.size());
+        return stats.get(0);
+    }
+
+    private static void assertStatsEqual(List<CategoryStatsDto> expected, List<CategoryStatsDto> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getCategory(), actual.get(i).getCategory());
+            assertEquals(expected.get(i).getCount(), actual.get(i).getCount());
+            assertEquals(expected.get(i).getP50(), actual.get(i).getP50());
+            assertEquals(expected.get(i).getMax(), actual.get(i).getMax());
+            assertEquals(expected.get(i).getTopDescriptions().get(0).getDescription(),
+                    actual.get(i).getTopDescriptions().get(0).getDescription());
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.Mini.Expense.Tracker.stats;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FrequentItemsSketchTest {
+
+    @Test
+    void testExactBelowCapacity() {
+        FrequentItemsSketch sketch = new FrequentItemsSketch(8);
+        for (String item : List.of("lunch", "taxi", "lunch", "rent", "lunch", "taxi")) sketch.add(item);
+
+        assertEquals(List.of(new FrequentItemsSketch.Item("lunch", 3, 0), new FrequentItemsSketch.Item("taxi", 2, 0)),
+                sketch.top(2));
+        assertEquals(3, sketch.top(10).size());
+        assertEquals(List.of(), sketch.top(0));
+    }
+
+    @Test
+    void testHeavyHittersOnSkewedStream() {
+        Map<String, Long> truth = new HashMap<>();
+        FrequentItemsSketch sketch = stream(new Random(3), 50_000, truth);
+
+        assertHeavyHittersBounded(sketch, truth);
+    }
+
+    @Test
+    void testMerge() {
+        Map<String, Long> truth = new HashMap<>();
+        FrequentItemsSketch merged = new FrequentItemsSketch(FrequentItemsSketch.DEFAULT_CAPACITY);
+        Random random = new Random(5);
+        for (int month = 0; month < 12; month++) merged.merge(stream(random, 5_000, truth));
+
+        assertEquals(60_000, merged.count());
+        assertHeavyHittersBounded(merged, truth);
+    }
+
+    @Test
+    void testRoundTrip() {
+        FrequentItemsSketch sketch = stream(new Random(9), 5_000, new HashMap<>());
+        sketch.add("café crème");
+
+        FrequentItemsSketch copy = FrequentItemsSketch.fromBytes(sketch.toBytes());
+
+        assertEquals(sketch.count(), copy.count());
+        assertEquals(sketch.capacity(), copy.capacity());
+        assertEquals(sketch.top(100), copy.top(100));
+
+        assertThrows(IllegalArgumentException.class, () -> FrequentItemsSketch.fromBytes(new byte[]{1, 64}));
+    }
+
+
+    // Zipf-like: item i is drawn with probability proportional to 1 / (i + 1), out of 2000.
+    private static FrequentItemsSketch stream(Random random, int n, Map<String, Long> truth) {
+        FrequentItemsSketch sketch = new FrequentItemsSketch(FrequentItemsSketch.DEFAULT_CAPACITY);
+        double[] cumulative = new double[2000];
+        double sum = 0;
+        for (int i = 0; i < cumulative.length; i++) cumulative[i] = sum += 1.0 / (i + 1);
+        for (int i = 0; i < n; i++) {
+            double draw = random.nextDouble() * sum;
+            int index = 0;
+            while (cumulative[index] < draw) index++;
+            String item = "item " + index;
+            sketch.add(item);
+            truth.merge(item, 1L, Long::sum);
+        }
+        return sketch;
+    }
+
+    private static void assertHeavyHittersBounded(FrequentItemsSketch sketch, Map<String, Long> truth) {
+        long bound = sketch.maxError();
+        for (FrequentItemsSketch.Item item : sketch.top(FrequentItemsSketch.DEFAULT_CAPACITY)) {
+            long actual = truth.get(item.item());
+            assertTrue(item.count() >= actual, item + " below " + actual);
+            assertTrue(item.count() - actual <= item.error(), item + " error understated");
+            assertTrue(item.error() <= bound, item + " above bound " + bound);
+        }
+
+        List<String> reported = sketch.top(FrequentItemsSketch.DEFAULT_CAPACITY).stream()
+                .map(FrequentItemsSketch.Item::item).toList();
+        truth.forEach((item, count) -> {
+            if (count > bound) assertTrue(reported.contains(item), item + " seen " + count + " times is missing");
+        });
+        assertEquals("item 0", sketch.top(1).get(0).item());
+    }
+}
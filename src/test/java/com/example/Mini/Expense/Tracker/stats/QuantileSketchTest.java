@@ -0,0 +1,116 @@
+package com.example.Mini.Expense.Tracker.stats;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class QuantileSketchTest {
+
+    private static final int N = 100_000;
+
+
+    @Test
+    void testExactBelowCapacity() {
+        QuantileSketch sketch = new QuantileSketch(QuantileSketch.DEFAULT_K);
+        for (long value = 100; value >= 1; value--) sketch.add(value);
+
+        assertArrayEquals(new long[]{1, 50, 90, 99, 100}, sketch.quantiles(0, 0.5, 0.9, 0.99, 1));
+        assertEquals(100, sketch.count());
+        assertEquals(1, sketch.min());
+        assertEquals(100, sketch.max());
+        assertEquals(100, sketch.retained());
+    }
+
+    @Test
+    void testRankErrorOnLargeStream() {
+        Random random = new Random(7);
+        long[] values = new long[N];
+        QuantileSketch sketch = new QuantileSketch(QuantileSketch.DEFAULT_K);
+        for (int i = 0; i < N; i++) {
+            // Skewed like expense amounts: mostly small, with a long tail.
+            values[i] = (long) (Math.exp(random.nextGaussian() * 1.2 + 7));
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+
+        assertEquals(N, sketch.count());
+        assertTrue(sketch.retained() < 4 * QuantileSketch.DEFAULT_K, "retained " + sketch.retained());
+        assertRanksWithin(values, sketch);
+    }
+
+    @Test
+    void testMergeMatchesOneStream() {
+        Random random = new Random(11);
+        long[] values = new long[N];
+        QuantileSketch merged = new QuantileSketch(QuantileSketch.DEFAULT_K);
+        for (int part = 0; part < 10; part++) {
+            QuantileSketch month = new QuantileSketch(QuantileSketch.DEFAULT_K);
+            for (int i = part * N / 10; i < (part + 1) * N / 10; i++) {
+                values[i] = random.nextInt(1_000_000) - 1000;
+                month.add(values[i]);
+            }
+            merged.merge(month);
+        }
+        Arrays.sort(values);
+
+        assertEquals(N, merged.count());
+        assertEquals(values[0], merged.min());
+        assertEquals(values[N - 1], merged.max());
+        assertRanksWithin(values, merged);
+
+        assertThrows(IllegalArgumentException.class, () -> merged.merge(new QuantileSketch(100)));
+    }
+
+    @Test
+    void testRoundTrip() {
+        QuantileSketch sketch = new QuantileSketch(QuantileSketch.DEFAULT_K);
+        for (int i = 0; i < 10_000; i++) sketch.add(i % 3 == 0 ? -i : i * 7L);
+
+        byte[] bytes = sketch.toBytes();
+        QuantileSketch copy = QuantileSketch.fromBytes(bytes);
+
+        assertEquals(sketch.count(), copy.count());
+        assertEquals(sketch.min(), copy.min());
+        assertEquals(sketch.max(), copy.max());
+        assertEquals(sketch.retained(), copy.retained());
+        assertArrayEquals(sketch.quantiles(0.1, 0.5, 0.9), copy.quantiles(0.1, 0.5, 0.9));
+        assertTrue(bytes.length < sketch.retained() * 4, "encoded " + bytes.length + " bytes");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> QuantileSketch.fromBytes(Arrays.copyOf(bytes, bytes.length - 1)));
+        assertThrows(IllegalArgumentException.class, () -> QuantileSketch.fromBytes(new byte[]{9}));
+    }
+
+    @Test
+    void testEmpty() {
+        QuantileSketch sketch = new QuantileSketch(QuantileSketch.DEFAULT_K);
+        assertThrows(IllegalStateException.class, () -> sketch.quantile(0.5));
+        assertEquals(0, QuantileSketch.fromBytes(sketch.toBytes()).count());
+    }
+
+
+    // Twice the 99% bound, so the test does not fail one run in a hundred.
+    private static void assertRanksWithin(long[] sorted, QuantileSketch sketch) {
+        double allowed = 2 * QuantileSketch.rankError(sketch.k()) * sorted.length;
+        double[] fractions = {0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99};
+        long[] estimates = sketch.quantiles(fractions);
+        for (int i = 0; i < fractions.length; i++) {
+            long target = (long) Math.ceil(fractions[i] * sorted.length);
+            long low = lowerBound(sorted, estimates[i]);
+            long high = lowerBound(sorted, estimates[i] + 1);
+            // Any rank the estimate occupies among the true values will do.
+            long distance = target < low ? low - target : target > high ? target - high : 0;
+            assertTrue(distance <= allowed, "q" + fractions[i] + " off by " + distance + " ranks");
+        }
+    }
+
+    private static int lowerBound(long[] sorted, long value) {
+        int index = Arrays.binarySearch(sorted, value);
+        if (index < 0) return -index - 1;
+        while (index > 0 && sorted[index - 1] == value) index--;
+        return index;
+    }
+}